@@ -0,0 +1,352 @@
+package com.compomics.denovogui.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares the results to a baseline. For every
+ * benchmark and number of spectra, the mean and 99th percentile of the time
+ * per operation and the memory allocated per operation are compared to the
+ * baseline. The process exits with 1 if one of them is worse than the
+ * baseline by more than the tolerance, so that the comparison can gate a
+ * release.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The default baseline file.
+     */
+    public static final String DEFAULT_BASELINE = "baseline.properties";
+    /**
+     * The default file where the complete JMH results are written.
+     */
+    public static final String DEFAULT_RESULTS = "benchmark-results.json";
+    /**
+     * The default relative tolerance before a result is considered a
+     * regression.
+     */
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    /**
+     * The default pattern of the benchmarks to run.
+     */
+    public static final String DEFAULT_INCLUDE = BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark\\..*";
+    /**
+     * The name of the mean time metric in milliseconds per operation.
+     */
+    public static final String MEAN = "mean";
+    /**
+     * The name of the 99th percentile time metric in milliseconds per
+     * operation.
+     */
+    public static final String P99 = "p99";
+    /**
+     * The name of the allocation metric in bytes per operation.
+     */
+    public static final String ALLOCATION = "alloc";
+    /**
+     * The metrics compared to the baseline, lower is better for all.
+     */
+    private static final String[] GATED_METRICS = {MEAN, P99, ALLOCATION};
+    /**
+     * The suffix of the JMH key of the allocation rate in MB/s.
+     */
+    private static final String ALLOCATION_RATE_KEY = "gc.alloc.rate";
+    /**
+     * The suffix of the JMH key of the allocation in bytes per operation.
+     */
+    private static final String ALLOCATION_NORM_KEY = "gc.alloc.rate.norm";
+
+    /**
+     * Main method.
+     *
+     * @param args the command line arguments, see printUsage
+     */
+    public static void main(String[] args) {
+
+        String include = DEFAULT_INCLUDE;
+        String nSpectra = null;
+        File baselineFile = new File(DEFAULT_BASELINE);
+        File resultsFile = new File(DEFAULT_RESULTS);
+        double tolerance = DEFAULT_TOLERANCE;
+        Integer forks = null;
+        String jvmArgs = null;
+        boolean update = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-update")) {
+                    update = true;
+                } else if (i + 1 < args.length) {
+                    String value = args[++i];
+                    if (arg.equals("-include")) {
+                        include = value;
+                    } else if (arg.equals("-nSpectra")) {
+                        nSpectra = value;
+                    } else if (arg.equals("-baseline")) {
+                        baselineFile = new File(value);
+                    } else if (arg.equals("-results")) {
+                        resultsFile = new File(value);
+                    } else if (arg.equals("-tolerance")) {
+                        tolerance = new Double(value);
+                    } else if (arg.equals("-forks")) {
+                        forks = new Integer(value);
+                    } else if (arg.equals("-jvmArgs")) {
+                        jvmArgs = value;
+                    } else {
+                        throw new IllegalArgumentException("Unknown option " + arg + ".");
+                    }
+                } else {
+                    throw new IllegalArgumentException("Missing value for option " + arg + ".");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+
+        File datasetFolder = SyntheticData.getDatasetFolder();
+        if (!new File(datasetFolder, SyntheticData.REFERENCE_MGF).exists()) {
+            System.err.println("Reference data not found in " + datasetFolder.getAbsolutePath() + ", set it using -D" + SyntheticData.DATASET_PROPERTY + ".");
+            System.exit(1);
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-D" + SyntheticData.DATASET_PROPERTY + "=" + datasetFolder.getAbsolutePath())
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultsFile.getAbsolutePath());
+        if (nSpectra != null) {
+            options.param("nSpectra", nSpectra.split(","));
+        }
+        if (forks != null) {
+            options.forks(forks);
+        }
+        if (jvmArgs != null) {
+            options.jvmArgsAppend(jvmArgs.trim().split("\\s+"));
+        }
+
+        try {
+            Collection<RunResult> results = new Runner(options.build()).run();
+            Properties current = getMetrics(results);
+
+            if (update) {
+                saveBaseline(current, baselineFile);
+                System.out.println("Baseline saved to " + baselineFile.getAbsolutePath() + ".");
+            } else if (baselineFile.exists()) {
+                ArrayList<String> regressions = compare(current, loadBaseline(baselineFile), tolerance);
+                if (!regressions.isEmpty()) {
+                    System.out.println();
+                    System.out.println(regressions.size() + " regression(s) compared to " + baselineFile.getAbsolutePath() + ":");
+                    for (String regression : regressions) {
+                        System.out.println("  " + regression);
+                    }
+                    System.exit(1);
+                }
+                System.out.println("No regression compared to " + baselineFile.getAbsolutePath() + ".");
+            } else {
+                System.out.println("No baseline found at " + baselineFile.getAbsolutePath() + ", use -update to create it.");
+            }
+        } catch (RunnerException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the report of the results and returns their metrics.
+     *
+     * @param results the results of the benchmarks
+     *
+     * @return the metrics indexed by benchmark, number of spectra and metric
+     * name
+     */
+    private static Properties getMetrics(Collection<RunResult> results) {
+
+        Properties metrics = new Properties();
+
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%-50s %10s %12s %12s %14s %12s %14s",
+                "Benchmark", "Spectra", "Mean (ms)", "p99 (ms)", "Spectra/s", "Alloc MB/s", "Alloc B/op"));
+
+        for (RunResult result : results) {
+
+            String benchmark = getShortName(result.getParams().getBenchmark());
+            String nSpectra = result.getParams().getParam("nSpectra");
+            Result primaryResult = result.getPrimaryResult();
+            double mean = primaryResult.getScore();
+            double p99 = primaryResult.getStatistics().getPercentile(99.0);
+            double throughput = nSpectra == null || mean == 0 ? Double.NaN : new Integer(nSpectra) * 1000.0 / mean;
+            double allocationRate = getSecondaryScore(result, ALLOCATION_RATE_KEY);
+            double allocation = getSecondaryScore(result, ALLOCATION_NORM_KEY);
+
+            System.out.println(String.format(Locale.US, "%-50s %10s %12.3f %12.3f %14.0f %12.1f %14.0f",
+                    benchmark, nSpectra, mean, p99, throughput, allocationRate, allocation));
+
+            String key = benchmark + "." + nSpectra + ".";
+            metrics.setProperty(key + MEAN, Double.toString(mean));
+            metrics.setProperty(key + P99, Double.toString(p99));
+            if (!Double.isNaN(allocation)) {
+                metrics.setProperty(key + ALLOCATION, Double.toString(allocation));
+            }
+        }
+
+        System.out.println();
+
+        return metrics;
+    }
+
+    /**
+     * Compares the metrics to the baseline.
+     *
+     * @param current the current metrics
+     * @param baseline the baseline metrics
+     * @param tolerance the relative tolerance
+     *
+     * @return a description of the regressions
+     */
+    private static ArrayList<String> compare(Properties current, Properties baseline, double tolerance) {
+        ArrayList<String> regressions = new ArrayList<String>();
+        for (String key : current.stringPropertyNames()) {
+            String baselineValue = baseline.getProperty(key);
+            if (baselineValue == null || !isGated(key)) {
+                continue;
+            }
+            double reference = new Double(baselineValue);
+            double value = new Double(current.getProperty(key));
+            if (value > reference * (1 + tolerance)) {
+                regressions.add(String.format(Locale.US, "%s: %.3f instead of %.3f (+%.1f%%)", key, value, reference, 100 * (value - reference) / reference));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Indicates whether a metric is compared to the baseline.
+     *
+     * @param key the key of the metric
+     *
+     * @return a boolean indicating whether a metric is compared to the
+     * baseline
+     */
+    private static boolean isGated(String key) {
+        for (String metric : GATED_METRICS) {
+            if (key.endsWith("." + metric)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the score of a secondary result, NaN if not found, e.g. when
+     * the GC profiler is not supported by the virtual machine.
+     *
+     * @param result the result
+     * @param keySuffix the end of the key of the secondary result
+     *
+     * @return the score of the secondary result
+     */
+    private static double getSecondaryScore(RunResult result, String keySuffix) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            // the key is prefixed by a separator depending on the JMH version
+            String key = entry.getKey();
+            if (key.endsWith(keySuffix) && (key.length() == keySuffix.length() || !Character.isLetterOrDigit(key.charAt(key.length() - keySuffix.length() - 1)))) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the name of a benchmark without package.
+     *
+     * @param benchmark the complete name of the benchmark
+     *
+     * @return the name of the benchmark without package
+     */
+    private static String getShortName(String benchmark) {
+        String packagePrefix = BenchmarkRunner.class.getPackage().getName() + ".";
+        if (benchmark.startsWith(packagePrefix)) {
+            return benchmark.substring(packagePrefix.length());
+        }
+        return benchmark;
+    }
+
+    /**
+     * Loads the baseline.
+     *
+     * @param baselineFile the baseline file
+     *
+     * @return the baseline metrics
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static Properties loadBaseline(File baselineFile) throws IOException {
+        Properties baseline = new Properties();
+        InputStream in = new FileInputStream(baselineFile);
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+        return baseline;
+    }
+
+    /**
+     * Saves the baseline.
+     *
+     * @param metrics the metrics to save
+     * @param baselineFile the baseline file
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    private static void saveBaseline(Properties metrics, File baselineFile) throws IOException {
+        OutputStream out = new FileOutputStream(baselineFile);
+        try {
+            metrics.store(out, "DeNovoGUI benchmark baseline, times in ms/op and allocation in bytes/op");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Prints the usage of the runner.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: java [-D" + SyntheticData.DATASET_PROPERTY + "=example_dataset] -jar benchmarks.jar [options]");
+        System.err.println("  -include <regex>      the benchmarks to run, default: all");
+        System.err.println("  -nSpectra <n1,n2,..>  the numbers of spectra, default: 30,10000,100000");
+        System.err.println("  -forks <n>            the number of forks per benchmark, default: 1");
+        System.err.println("  -jvmArgs <args>       additional arguments of the forked virtual machines, e.g. \"-Xmx8g\"");
+        System.err.println("  -baseline <file>      the baseline file, default: " + DEFAULT_BASELINE);
+        System.err.println("  -tolerance <value>    the relative tolerance, default: " + DEFAULT_TOLERANCE);
+        System.err.println("  -results <file>       the JMH results file, default: " + DEFAULT_RESULTS);
+        System.err.println("  -update               saves the results as new baseline");
+    }
+}
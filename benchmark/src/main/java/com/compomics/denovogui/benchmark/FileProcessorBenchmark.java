@@ -0,0 +1,220 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.FileProcessor;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the chunking of the spectrum files and of the merging of the
+ * PepNovo+ results of the chunks.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class FileProcessorBenchmark {
+
+    /**
+     * The number of spectra in the spectrum file.
+     */
+    @Param({"30", "10000", "100000"})
+    public int nSpectra;
+    /**
+     * The number of chunks, corresponding to the number of threads used for
+     * PepNovo+.
+     */
+    @Param({"8"})
+    public int nChunks;
+    /**
+     * The folder of the benchmark files.
+     */
+    private File folder;
+    /**
+     * The synthetic spectrum file.
+     */
+    private File mgfFile;
+    /**
+     * The folder where the chunks are written.
+     */
+    private File chunkFolder;
+    /**
+     * The PepNovo+ results of the chunks, templates of the files to merge.
+     */
+    private ArrayList<File> templateOutFiles;
+
+    /**
+     * Writes the synthetic spectrum file and the results of its chunks.
+     *
+     * @throws IOException thrown if an error occurred while writing the files
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        folder = SyntheticData.createTempFolder("denovogui_file_processor");
+        SyntheticData syntheticData = new SyntheticData();
+        mgfFile = new File(folder, "synthetic.mgf");
+        syntheticData.writeMgf(nSpectra, mgfFile);
+
+        chunkFolder = new File(folder, "chunks");
+        chunkFolder.mkdirs();
+
+        File templateFolder = new File(folder, "templates");
+        templateFolder.mkdirs();
+        int nFiles = Math.min(nChunks, nSpectra);
+        ArrayList<File> chunkFiles = FileProcessor.chunkFile(mgfFile, templateFolder, nSpectra / nFiles, nSpectra % nFiles, nSpectra, null);
+        templateOutFiles = new ArrayList<File>(chunkFiles.size());
+        for (File chunkFile : chunkFiles) {
+            File outFile = FileProcessor.getOutFile(templateFolder, chunkFile);
+            syntheticData.writePepNovoResults(chunkFile, outFile);
+            templateOutFiles.add(outFile);
+            chunkFile.delete();
+        }
+    }
+
+    /**
+     * Deletes the chunks written by the last invocation.
+     */
+    @TearDown(Level.Invocation)
+    public void clearChunks() {
+        File[] files = chunkFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the benchmark files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticData.deleteFolder(folder);
+    }
+
+    /**
+     * Chunks the spectrum file.
+     *
+     * @return the chunk files
+     *
+     * @throws IOException thrown if an error occurred while chunking the file
+     */
+    @Benchmark
+    public ArrayList<File> chunkFile() throws IOException {
+        int nFiles = Math.min(nChunks, nSpectra);
+        return FileProcessor.chunkFile(mgfFile, chunkFolder, nSpectra / nFiles, nSpectra % nFiles, nSpectra, null);
+    }
+
+    /**
+     * Merges the PepNovo+ results of the chunks.
+     *
+     * @param mergeFiles the files to merge
+     *
+     * @return the merged file
+     *
+     * @throws IOException thrown if an error occurred while merging the files
+     */
+    @Benchmark
+    public File mergeAndDeleteOutputFiles(MergeFiles mergeFiles) throws IOException {
+        FileProcessor.mergeAndDeleteOutputFiles(mergeFiles.outFiles, mergeFiles.mergedFile);
+        return mergeFiles.mergedFile;
+    }
+
+    /**
+     * The PepNovo+ results of the chunks to merge. The results are copied
+     * from the templates before every merge as the merge deletes them.
+     */
+    @State(Scope.Benchmark)
+    public static class MergeFiles {
+
+        /**
+         * The PepNovo+ results of the chunks to merge.
+         */
+        private ArrayList<File> outFiles;
+        /**
+         * The merged PepNovo+ results.
+         */
+        private File mergedFile;
+
+        /**
+         * Sets the files to merge.
+         *
+         * @param benchmark the benchmark state holding the templates
+         */
+        @Setup(Level.Trial)
+        public void setUp(FileProcessorBenchmark benchmark) {
+            File mergeFolder = new File(benchmark.folder, "merge");
+            mergeFolder.mkdirs();
+            outFiles = new ArrayList<File>(benchmark.templateOutFiles.size());
+            for (File templateOutFile : benchmark.templateOutFiles) {
+                outFiles.add(new File(mergeFolder, templateOutFile.getName()));
+            }
+            mergedFile = FileProcessor.getOutFile(mergeFolder, benchmark.mgfFile);
+        }
+
+        /**
+         * Copies the chunk results to merge.
+         *
+         * @param benchmark the benchmark state holding the templates
+         *
+         * @throws IOException thrown if an error occurred while copying the
+         * files
+         */
+        @Setup(Level.Invocation)
+        public void copyOutFiles(FileProcessorBenchmark benchmark) throws IOException {
+            for (int i = 0; i < outFiles.size(); i++) {
+                copyFile(benchmark.templateOutFiles.get(i), outFiles.get(i));
+            }
+        }
+    }
+
+    /**
+     * Copies a file.
+     *
+     * @param source the file to copy
+     * @param destination the destination file
+     *
+     * @throws IOException thrown if an error occurred while copying the file
+     */
+    private static void copyFile(File source, File destination) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                byte[] buffer = new byte[1024 * 1024];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, length);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
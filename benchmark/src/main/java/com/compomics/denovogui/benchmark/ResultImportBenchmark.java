@@ -0,0 +1,126 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.gui.qc.ScoreStatistics;
+import com.compomics.denovogui.io.AssumptionFilter;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.util.ResourcePlanner;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.io.identifications.IdfileReader;
+import com.compomics.util.experiment.io.identifications.IdfileReaderFactory;
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the import of the de novo results. The benchmark runs the
+ * non-graphical part of ResultsFrame.importDeNovoResults: the parsing of the
+ * result file, the import filter and the score statistics.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ResultImportBenchmark {
+
+    /**
+     * The number of spectra in the result file.
+     */
+    @Param({"30", "10000", "100000"})
+    public int nSpectra;
+    /**
+     * The number of matches kept per spectrum by the import filter.
+     */
+    @Param({"10"})
+    public int nMatches;
+    /**
+     * The folder of the benchmark files.
+     */
+    private File folder;
+    /**
+     * The synthetic PepNovo+ result file.
+     */
+    private File outFile;
+    /**
+     * The search parameters.
+     */
+    private SearchParameters searchParameters;
+    /**
+     * The executor gathering the score statistics.
+     */
+    private ExecutorService executor;
+    /**
+     * The number of threads used for the score statistics.
+     */
+    private int nThreads;
+
+    /**
+     * Writes the synthetic results and loads the search parameters.
+     *
+     * @throws Exception thrown if an error occurred while writing the files
+     * or loading the search parameters
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = SyntheticData.createTempFolder("denovogui_result_import");
+        SyntheticData syntheticData = new SyntheticData();
+        File mgfFile = new File(folder, "synthetic.mgf");
+        syntheticData.writeMgf(nSpectra, mgfFile);
+        outFile = FileProcessor.getOutFile(folder, mgfFile);
+        syntheticData.writePepNovoResults(mgfFile, outFile);
+        searchParameters = SyntheticData.loadSearchParameters();
+        nThreads = ResourcePlanner.getInstance().getNCpus();
+        executor = Executors.newFixedThreadPool(nThreads);
+    }
+
+    /**
+     * Deletes the benchmark files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        SyntheticData.deleteFolder(folder);
+    }
+
+    /**
+     * Imports the results.
+     *
+     * @return the score statistics of the results
+     *
+     * @throws Exception thrown if an error occurred while importing the
+     * results
+     */
+    @Benchmark
+    public ScoreStatistics importDeNovoResults() throws Exception {
+        IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(outFile);
+        try {
+            LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(null, searchParameters);
+            new AssumptionFilter(nMatches).filter(spectrumMatches);
+            ScoreStatistics scoreStatistics = new ScoreStatistics();
+            scoreStatistics.addSpectrumMatches(spectrumMatches, executor, nThreads);
+            return scoreStatistics;
+        } finally {
+            idfileReader.close();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Generator of synthetic data sets for the benchmarks. The spectra and
+ * peptides of the example dataset are recycled under unique titles to scale
+ * the reference data from 30 spectra up to millions of spectra.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SyntheticData {
+
+    /**
+     * The system property giving the folder of the reference data.
+     */
+    public static final String DATASET_PROPERTY = "denovogui.benchmark.dataset";
+    /**
+     * The default folder of the reference data, relative to the benchmark
+     * module.
+     */
+    public static final String DEFAULT_DATASET_FOLDER = "../example_dataset";
+    /**
+     * The name of the reference spectrum file.
+     */
+    public static final String REFERENCE_MGF = "Ecoli_30.mgf";
+    /**
+     * The name of the reference peptide matches.
+     */
+    public static final String REFERENCE_MATCHES = "peptide_matches.txt";
+    /**
+     * The name of the reference search parameters.
+     */
+    public static final String REFERENCE_PARAMETERS = "denovo.par";
+    /**
+     * The index of the peptide column in the reference peptide matches.
+     */
+    private static final int PEPTIDE_COLUMN = 6;
+    /**
+     * The number of matches written per spectrum in the synthetic results.
+     */
+    public static final int MATCHES_PER_SPECTRUM = 5;
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON_MASS = 1.00727646677;
+    /**
+     * The spectra of the reference spectrum file, as lines from BEGIN IONS to
+     * END IONS.
+     */
+    private final ArrayList<ArrayList<String>> referenceSpectra;
+    /**
+     * The peptide sequences of the reference matches.
+     */
+    private final ArrayList<String> referencePeptides;
+
+    /**
+     * Constructor. Loads the reference data from the folder given by the
+     * DATASET_PROPERTY system property.
+     *
+     * @throws IOException thrown if the reference data cannot be read
+     */
+    public SyntheticData() throws IOException {
+        this(getDatasetFolder());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param datasetFolder the folder of the reference data
+     *
+     * @throws IOException thrown if the reference data cannot be read
+     */
+    public SyntheticData(File datasetFolder) throws IOException {
+        referenceSpectra = readSpectra(new File(datasetFolder, REFERENCE_MGF));
+        referencePeptides = readPeptides(new File(datasetFolder, REFERENCE_MATCHES));
+        if (referenceSpectra.isEmpty() || referencePeptides.isEmpty()) {
+            throw new IllegalArgumentException("No reference data found in " + datasetFolder.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the folder of the reference data.
+     *
+     * @return the folder of the reference data
+     */
+    public static File getDatasetFolder() {
+        return new File(System.getProperty(DATASET_PROPERTY, DEFAULT_DATASET_FOLDER));
+    }
+
+    /**
+     * Returns the reference search parameters file.
+     *
+     * @return the reference search parameters file
+     */
+    public static File getParametersFile() {
+        return new File(getDatasetFolder(), REFERENCE_PARAMETERS);
+    }
+
+    /**
+     * Loads the reference search parameters and their modifications.
+     *
+     * @return the reference search parameters
+     *
+     * @throws IOException thrown if the search parameters cannot be read
+     * @throws ClassNotFoundException thrown if the search parameters cannot be
+     * parsed
+     */
+    public static SearchParameters loadSearchParameters() throws IOException, ClassNotFoundException {
+        SearchParameters searchParameters = SearchParameters.getIdentificationParameters(getParametersFile());
+        DeNovoSequencingHandler.loadModifications(searchParameters);
+        return searchParameters;
+    }
+
+    /**
+     * Creates a temporary folder for the files of a benchmark.
+     *
+     * @param prefix the prefix of the folder name
+     *
+     * @return the temporary folder
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    public static File createTempFolder(String prefix) throws IOException {
+        File folder = File.createTempFile(prefix, "");
+        if (!folder.delete() || !folder.mkdirs()) {
+            throw new IOException("Impossible to create the temporary folder " + folder.getAbsolutePath() + ".");
+        }
+        return folder;
+    }
+
+    /**
+     * Deletes a folder and its content.
+     *
+     * @param folder the folder to delete
+     */
+    public static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * Writes a synthetic mgf file. The reference spectra are repeated in
+     * order, each copy getting a unique title.
+     *
+     * @param nSpectra the number of spectra to write
+     * @param mgfFile the file to write
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    public void writeMgf(int nSpectra, File mgfFile) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(mgfFile), 1024 * 1024);
+        try {
+            for (int i = 0; i < nSpectra; i++) {
+                for (String line : referenceSpectra.get(i % referenceSpectra.size())) {
+                    if (line.startsWith("TITLE=")) {
+                        writer.write(getTitle(line, i));
+                    } else {
+                        writer.write(line);
+                    }
+                    writer.newLine();
+                }
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes synthetic PepNovo+ results for the spectra of an mgf file
+     * written by this generator. The reference peptides are assigned to the
+     * spectra in turn.
+     *
+     * @param mgfFile the spectrum file
+     * @param outFile the PepNovo+ result file to write
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the files
+     */
+    public void writePepNovoResults(File mgfFile, File outFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile), 1024 * 1024);
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(outFile), 1024 * 1024);
+            try {
+                writer.write("PepNovo v3.1 (beta)");
+                writer.newLine();
+                writer.newLine();
+                String title = null;
+                double precursorMz = 0;
+                int charge = 2;
+                int spectrumIndex = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("TITLE=")) {
+                        title = line.substring(6).trim();
+                    } else if (line.startsWith("PEPMASS=")) {
+                        precursorMz = new Double(line.substring(8).trim().split("\\s+")[0]);
+                    } else if (line.startsWith("CHARGE=")) {
+                        charge = new Integer(line.substring(7).replaceAll("[^0-9]", ""));
+                    } else if (line.startsWith("END IONS")) {
+                        writeMatches(writer, spectrumIndex, title, precursorMz, charge);
+                        spectrumIndex++;
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes the PepNovo+ matches of a spectrum.
+     *
+     * @param writer the writer
+     * @param spectrumIndex the index of the spectrum in the file
+     * @param title the title of the spectrum
+     * @param precursorMz the precursor m/z
+     * @param charge the precursor charge
+     *
+     * @throws IOException thrown if an error occurred while writing
+     */
+    private void writeMatches(BufferedWriter writer, int spectrumIndex, String title, double precursorMz, int charge) throws IOException {
+        double mh = Math.round(1000 * (precursorMz * charge - (charge - 1) * PROTON_MASS)) / 1000.0;
+        writer.write(">> 0 " + spectrumIndex + " " + title);
+        writer.newLine();
+        writer.write("#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence");
+        writer.newLine();
+        for (int rank = 0; rank < MATCHES_PER_SPECTRUM; rank++) {
+            String peptide = referencePeptides.get((spectrumIndex + rank) % referencePeptides.size());
+            // scores decreasing with the rank, varying between spectra
+            double rankScore = (100 - 20 * rank - spectrumIndex % 7) / 100.0;
+            double pepNovoScore = 60 - 5 * rank - spectrumIndex % 11;
+            writer.write(rank + "\t" + rankScore + "\t" + pepNovoScore + "\t0.000\t0.000\t" + mh + "\t" + charge + "\t" + peptide);
+            writer.newLine();
+        }
+        writer.newLine();
+    }
+
+    /**
+     * Returns the unique title of a copy of a reference spectrum.
+     *
+     * @param titleLine the title line of the reference spectrum
+     * @param index the index of the spectrum in the synthetic file
+     *
+     * @return the title line of the copy
+     */
+    private static String getTitle(String titleLine, int index) {
+        return "TITLE=" + index + " " + titleLine.substring(6).trim();
+    }
+
+    /**
+     * Reads the spectra of an mgf file.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the spectra as lines from BEGIN IONS to END IONS
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static ArrayList<ArrayList<String>> readSpectra(File mgfFile) throws IOException {
+        ArrayList<ArrayList<String>> spectra = new ArrayList<ArrayList<String>>();
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            ArrayList<String> spectrum = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("BEGIN IONS")) {
+                    spectrum = new ArrayList<String>();
+                }
+                if (spectrum != null) {
+                    spectrum.add(line);
+                    if (line.startsWith("END IONS")) {
+                        spectra.add(spectrum);
+                        spectrum = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return spectra;
+    }
+
+    /**
+     * Reads the peptide sequences of a peptide matches export.
+     *
+     * @param matchesFile the peptide matches file
+     *
+     * @return the peptide sequences
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static ArrayList<String> readPeptides(File matchesFile) throws IOException {
+        ArrayList<String> peptides = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(matchesFile));
+        try {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split("\t", -1);
+                if (values.length > PEPTIDE_COLUMN) {
+                    // only the unmodified residues, the modifications of the reference parameters are not needed
+                    String peptide = values[PEPTIDE_COLUMN].trim().toUpperCase().replaceAll("[^ACDEFGHIKLMNPQRSTVWY]", "");
+                    if (!peptide.isEmpty()) {
+                        peptides.add(peptide);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return peptides;
+    }
+}
@@ -0,0 +1,184 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.TextExporter;
+import com.compomics.util.db.ObjectsCache;
+import com.compomics.util.experiment.MsExperiment;
+import com.compomics.util.experiment.ProteomicAnalysis;
+import com.compomics.util.experiment.SampleAnalysisSet;
+import com.compomics.util.experiment.biology.Sample;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.IdentificationMethod;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.identifications.Ms2Identification;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.io.identifications.IdfileReader;
+import com.compomics.util.experiment.io.identifications.IdfileReaderFactory;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the text exports of the de novo results. The identification
+ * is built from synthetic results in the same way as
+ * ResultsFrame.importDeNovoResults.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TextExporterBenchmark {
+
+    /**
+     * The number of spectra in the identification.
+     */
+    @Param({"30", "10000", "100000"})
+    public int nSpectra;
+    /**
+     * The number of matches exported per spectrum.
+     */
+    @Param({"10"})
+    public int nMatches;
+    /**
+     * The folder of the benchmark files.
+     */
+    private File folder;
+    /**
+     * The file where the exports are written.
+     */
+    private File exportFile;
+    /**
+     * The search parameters.
+     */
+    private SearchParameters searchParameters;
+    /**
+     * The identification to export.
+     */
+    private Identification identification;
+    /**
+     * The spectrum factory.
+     */
+    private final SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+
+    /**
+     * Writes the synthetic data and loads them in the identification and the
+     * spectrum factory.
+     *
+     * @throws Exception thrown if an error occurred while writing or loading
+     * the data
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        folder = SyntheticData.createTempFolder("denovogui_text_exporter");
+        SyntheticData syntheticData = new SyntheticData();
+        File mgfFile = new File(folder, "synthetic.mgf");
+        syntheticData.writeMgf(nSpectra, mgfFile);
+        File outFile = FileProcessor.getOutFile(folder, mgfFile);
+        syntheticData.writePepNovoResults(mgfFile, outFile);
+        exportFile = new File(folder, "export.txt");
+        searchParameters = SyntheticData.loadSearchParameters();
+
+        // the precursors are exported from the spectrum factory
+        spectrumFactory.addSpectra(mgfFile, null);
+
+        String projectReference = "DeNovoGUI";
+        String sampleReference = "sample reference";
+        int replicateNumber = 0;
+        String identificationReference = Identification.getDefaultReference(projectReference, sampleReference, replicateNumber);
+        MsExperiment experiment = new MsExperiment(projectReference);
+        Sample sample = new Sample(sampleReference);
+        SampleAnalysisSet analysisSet = new SampleAnalysisSet(sample, new ProteomicAnalysis(replicateNumber));
+        experiment.addAnalysisSet(sample, analysisSet);
+        ProteomicAnalysis analysis = experiment.getAnalysisSet(sample).getProteomicAnalysis(replicateNumber);
+        analysis.addIdentificationResults(IdentificationMethod.MS2_IDENTIFICATION, new Ms2Identification(identificationReference));
+        identification = analysis.getIdentification(IdentificationMethod.MS2_IDENTIFICATION);
+        ObjectsCache objectsCache = new ObjectsCache();
+        objectsCache.setAutomatedMemoryManagement(true);
+        identification.establishConnection(new File(folder, "db").getAbsolutePath(), true, objectsCache);
+
+        IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(outFile);
+        try {
+            LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(null, searchParameters);
+            identification.addSpectrumMatches(spectrumMatches);
+        } finally {
+            idfileReader.close();
+        }
+    }
+
+    /**
+     * Closes the identification and the spectrum factory and deletes the
+     * benchmark files.
+     *
+     * @throws Exception thrown if an error occurred while closing the
+     * identification or the spectrum files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            identification.close();
+            spectrumFactory.closeFiles();
+            spectrumFactory.clearFactory();
+        } finally {
+            SyntheticData.deleteFolder(folder);
+        }
+    }
+
+    /**
+     * Exports the peptides.
+     *
+     * @return the export file
+     *
+     * @throws Exception thrown if an error occurred while exporting
+     */
+    @Benchmark
+    public File exportPeptides() throws Exception {
+        TextExporter.exportPeptides(exportFile, identification, searchParameters, null, null, true, nMatches);
+        return exportFile;
+    }
+
+    /**
+     * Exports the tags.
+     *
+     * @return the export file
+     *
+     * @throws Exception thrown if an error occurred while exporting
+     */
+    @Benchmark
+    public File exportTags() throws Exception {
+        TextExporter.exportTags(exportFile, identification, searchParameters, null, null, true, nMatches);
+        return exportFile;
+    }
+
+    /**
+     * Exports the peptides in the BLAST format.
+     *
+     * @return the export file
+     *
+     * @throws Exception thrown if an error occurred while exporting
+     */
+    @Benchmark
+    public File exportBlastPSMs() throws Exception {
+        TextExporter.exportBlastPSMs(exportFile, identification, searchParameters, null, null, true, nMatches);
+        return exportFile;
+    }
+}
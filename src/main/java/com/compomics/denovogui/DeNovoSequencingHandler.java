@@ -1,13 +1,30 @@
 package com.compomics.denovogui;
 
+import com.compomics.denovogui.execution.EngineWorkerPool;
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.execution.ProcessSupervisor;
+import com.compomics.denovogui.execution.TelemetryRecorder;
 import com.compomics.denovogui.execution.jobs.DirecTagJob;
+import com.compomics.denovogui.execution.jobs.DirecTagWorker;
 import com.compomics.denovogui.execution.jobs.NovorJob;
 import com.compomics.denovogui.execution.jobs.PNovoJob;
 import com.compomics.denovogui.execution.jobs.PepNovoJob;
+import com.compomics.denovogui.execution.jobs.PepNovoWorker;
+import com.compomics.denovogui.execution.jobs.PepNovoSupervisor;
+import com.compomics.denovogui.gui.qc.LiveStatistics;
 import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.LiveResultFeed;
+import com.compomics.denovogui.io.LiveResultReader;
 import com.compomics.denovogui.io.PepNovoModificationFile;
+import com.compomics.denovogui.io.ShardMerger;
+import com.compomics.denovogui.io.SkippedSpectraReport;
+import com.compomics.denovogui.io.SpectrumClusterer;
+import com.compomics.denovogui.io.SpectrumClusters;
+import com.compomics.denovogui.io.SpectrumIndex;
+import com.compomics.denovogui.io.SpectrumPreprocessor;
 import com.compomics.denovogui.util.Properties;
+import com.compomics.denovogui.util.ResourcePlanner;
 import com.compomics.software.CompomicsWrapper;
 import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.biology.PTMFactory;
@@ -22,12 +39,14 @@ import com.compomics.util.waiting.WaitingHandler;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import javax.swing.JOptionPane;
 
@@ -89,6 +108,11 @@ public class DeNovoSequencingHandler {
      * The enzyme file.
      */
     private static String ENZYME_FILE = "resources/conf/enzymes.xml";
+    /**
+     * The time in seconds given to the jobs to stop when the sequencing is
+     * canceled.
+     */
+    private static final long CANCEL_TIMEOUT = 10;
     /**
      * The chunk files.
      */
@@ -96,7 +120,7 @@ public class DeNovoSequencingHandler {
     /**
      * Number of threads to use for the processing.
      */
-    private int nThreads = Runtime.getRuntime().availableProcessors(); // @TODO: should be moved to user preferences?
+    private int nThreads = ResourcePlanner.getInstance().getNThreads(true); // @TODO: should be moved to user preferences?
     /**
      * The thread executor.
      */
@@ -108,7 +132,17 @@ public class DeNovoSequencingHandler {
     /**
      * The job queue.
      */
-    private Deque<Job> jobs;
+    private volatile Deque<Job> jobs;
+    /**
+     * The number of spectrum files remaining to process in the current
+     * sequencing.
+     */
+    private volatile int nSpectrumFilesRemaining = 0;
+    /**
+     * Indicates whether this version should be set as the default DeNovoGUI
+     * version in the user preferences when starting a sequencing.
+     */
+    private boolean registerVersion = true;
     /**
      * The exception handler.
      */
@@ -117,6 +151,70 @@ public class DeNovoSequencingHandler {
      * The factory used to handle the modifications.
      */
     private PTMFactory ptmFactory = PTMFactory.getInstance();
+    /**
+     * The feed of the live statistics on the results of the current
+     * sequencing.
+     */
+    private LiveResultFeed liveResultFeed = null;
+    /**
+     * The live statistics to feed during the next sequencing, null to use new
+     * statistics.
+     */
+    private LiveStatistics liveStatistics = null;
+    /**
+     * The file where the performance metrics of the jobs are written as JSON
+     * lines, null if not recorded.
+     */
+    private File metricsFile = null;
+    /**
+     * The recorder of the performance metrics of the current sequencing, null
+     * if not recorded.
+     */
+    private TelemetryRecorder telemetryRecorder = null;
+    /**
+     * The report of the spectra skipped in the current sequencing.
+     */
+    private SkippedSpectraReport skippedSpectraReport = null;
+    /**
+     * The spectrum files already processed by the Novor processes run at the
+     * same time in the current sequencing.
+     */
+    private HashSet<File> novorProcessedFiles = new HashSet<File>();
+    /**
+     * Indicates whether the spectrum files are processed together by engine
+     * workers when there are several files, for the engines supporting it.
+     */
+    private boolean engineWorkers = true;
+    /**
+     * The spectrum files already processed by the DirecTag worker in the
+     * current sequencing.
+     */
+    private HashSet<File> direcTagProcessedFiles = new HashSet<File>();
+    /**
+     * The spectrum files already processed by the PepNovo+ workers in the
+     * current sequencing.
+     */
+    private HashSet<File> pepNovoProcessedFiles = new HashSet<File>();
+    /**
+     * The incomplete result files of the jobs stopped because they exceeded
+     * their timeout in the current sequencing, as moved out of the way.
+     */
+    private ArrayList<File> failedResultFiles = new ArrayList<File>();
+    /**
+     * The preprocessor of the spectra given to the engines, null if the
+     * engines process the original spectra.
+     */
+    private SpectrumPreprocessor spectrumPreprocessor = null;
+    /**
+     * The clusterer of the replicate spectra, null if the spectra are not
+     * clustered.
+     */
+    private SpectrumClusterer spectrumClusterer = null;
+    /**
+     * The preprocessor writing the spectra given to the engines in the
+     * current sequencing, null if the engines process the original spectra.
+     */
+    private SpectrumPreprocessor preprocessor = null;
 
     /**
      * Constructor.
@@ -197,7 +295,7 @@ public class DeNovoSequencingHandler {
 
         // get the number of available threads
         String fileEnding = "";
-        if (spectrumFactory.getMgfFileNames().size() > 1) {
+        if (numberOfSpectrumFiles > 1) {
             fileEnding = "s";
         }
         String threadEnding = "";
@@ -206,7 +304,7 @@ public class DeNovoSequencingHandler {
         }
         
         // set this version as the default DeNovoGUI version
-        if (!getJarFilePath().equalsIgnoreCase(".")) {
+        if (registerVersion && !getJarFilePath().equalsIgnoreCase(".")) {
             UtilitiesUserPreferences utilitiesUserPreferences = UtilitiesUserPreferences.loadUserPreferences();
             String versionNumber = Properties.getVersion();
             utilitiesUserPreferences.setDeNovoGuiPath(new File(getJarFilePath(), "DeNovoGUI-" + versionNumber + ".jar").getAbsolutePath());
@@ -216,20 +314,151 @@ public class DeNovoSequencingHandler {
         Duration duration = new Duration();
         duration.start();
 
-        waitingHandler.appendReport("Starting de novo sequencing: " + spectrumFactory.getNSpectra() + " spectra in "
-                + spectrumFactory.getMgfFileNames().size() + " file" + fileEnding + " using " + nThreads + " thread" + threadEnding + ".", true, true);
-        waitingHandler.appendReportEndLine();
+        // read the results while they are written
+        LiveStatistics runStatistics = liveStatistics;
+        if (runStatistics == null) {
+            runStatistics = new LiveStatistics();
+        }
+        liveResultFeed = new LiveResultFeed(runStatistics, waitingHandler);
+        liveResultFeed.start(LiveResultFeed.DEFAULT_POLLING_INTERVAL);
+
+        // record the performance metrics of the jobs
+        if (metricsFile != null) {
+            try {
+                telemetryRecorder = new TelemetryRecorder(metricsFile, TelemetryRecorder.DEFAULT_SAMPLING_INTERVAL);
+            } catch (IOException e) {
+                waitingHandler.appendReport("The performance metrics cannot be written to " + metricsFile.getAbsolutePath() + ": " + e.getMessage(), true, true);
+            }
+        }
 
+        // only count the spectra of this job, the factory may contain other files
+        int nSpectra = 0;
         for (File spectrumFile : spectrumFiles) {
+            nSpectra += spectrumFactory.getNSpectra(spectrumFile.getName());
+        }
+        waitingHandler.appendReport("Starting de novo sequencing: " + nSpectra + " spectra in "
+                + numberOfSpectrumFiles + " file" + fileEnding + " using " + nThreads + " thread" + threadEnding + ".", true, true);
+        waitingHandler.appendReportEndLine();
+
+        nSpectrumFilesRemaining = spectrumFiles.size();
+        skippedSpectraReport = new SkippedSpectraReport(outputFolder);
+
+        // cluster the replicate spectra, only the representative spectra of the clusters are given to the engines
+        preprocessor = spectrumPreprocessor;
+        SpectrumClusters spectrumClusters = null;
+        File clustersFile = SpectrumClusters.getClustersFile(outputFolder);
+        if (spectrumClusterer != null) {
+            waitingHandler.appendReport("Clustering the spectra.", true, true);
+            try {
+                spectrumClusters = spectrumClusterer.cluster(spectrumFiles, new File(outputFolder, SpectrumIndex.FOLDER_NAME), nThreads, waitingHandler);
+                spectrumClusters.write(clustersFile);
+            } catch (Exception e) {
+                waitingHandler.appendReport("An error occurred while clustering the spectra: " + e.getMessage(), true, true);
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
+                liveResultFeed.stop();
+                return;
+            }
+            waitingHandler.appendReport(spectrumClusters.getNMembers() + " spectra clustered with a representative spectrum.", true, true);
+            if (preprocessor == null) {
+                preprocessor = SpectrumPreprocessor.getFilter(searchParameters.getFragmentIonAccuracy());
+            }
+        } else if (clustersFile.exists()) {
+            // clusters of a previous sequencing
+            clustersFile.delete();
+        }
+        if (preprocessor != null) {
+            preprocessor.setClusters(spectrumClusters);
+        }
+
+        // preprocess the spectra once for all engines, the preprocessed files have the names of the original files
+        List<File> engineFiles = spectrumFiles;
+        if (preprocessor != null) {
+            waitingHandler.appendReport("Preprocessing the spectra.", true, true);
+            try {
+                engineFiles = preprocessor.preprocess(spectrumFiles, new File(outputFolder, SpectrumPreprocessor.FOLDER_NAME), nThreads,
+                        skippedSpectraReport, waitingHandler);
+            } catch (Exception e) {
+                waitingHandler.appendReport("An error occurred while preprocessing the spectra: " + e.getMessage(), true, true);
+                exceptionHandler.catchException(e);
+                waitingHandler.setRunCanceled();
+                liveResultFeed.stop();
+                return;
+            }
+            ProcessSupervisor.getInstance().addTempFiles(engineFiles);
+        }
+
+        failedResultFiles = new ArrayList<File>();
+
+        // run novor on several files at the same time, the files not processed are processed with the other algorithms
+        novorProcessedFiles = new HashSet<File>();
+        if (enableNovor && engineFiles.size() > 1 && nThreads > 1) {
+            startNovorProcesses(engineFiles, searchParameters, outputFolder, waitingHandler);
+        }
+
+        // process all files in the same engine processes, the files not processed are processed one by one
+        direcTagProcessedFiles = new HashSet<File>();
+        pepNovoProcessedFiles = new HashSet<File>();
+        if (engineWorkers && engineFiles.size() > 1) {
+            if (enableDirecTag && !waitingHandler.isRunCanceled()) {
+                startDirecTagWorker(engineFiles, searchParameters, outputFolder, direcTagExeTitle, waitingHandler);
+            }
+            if (enablePepNovo && !waitingHandler.isRunCanceled()) {
+                startPepNovoWorkers(engineFiles, searchParameters, outputFolder, pepNovoExeTitle, waitingHandler);
+            }
+        }
+
+        for (File spectrumFile : engineFiles) {
             startSequencing(spectrumFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+            nSpectrumFilesRemaining--;
             if (waitingHandler.isRunCanceled()) {
                 break;
             }
         }
 
+        if (preprocessor != null) {
+            for (File preprocessedFile : engineFiles) {
+                // set the original indexes in the results referring to the spectra by index
+                int[] originalIndexes = preprocessor.getOriginalIndexes(preprocessedFile.getName());
+                if (originalIndexes != null) {
+                    try {
+                        File tagsFile = FileProcessor.getTagsFile(outputFolder, preprocessedFile);
+                        if (enableDirecTag && tagsFile.exists()) {
+                            ShardMerger.reindexDirecTag(tagsFile, originalIndexes);
+                        }
+                        File novorFile = FileProcessor.getNovorResultFile(outputFolder, preprocessedFile);
+                        if (enableNovor && novorFile.exists()) {
+                            ShardMerger.reindexNovor(novorFile, originalIndexes);
+                        }
+                    } catch (IOException e) {
+                        waitingHandler.appendReport("An error occurred while setting the spectrum indexes of the results of " + preprocessedFile.getName() + ": " + e.getMessage(), true, true);
+                        exceptionHandler.catchException(e);
+                    }
+                }
+                preprocessedFile.delete();
+            }
+            new File(outputFolder, SpectrumPreprocessor.FOLDER_NAME).delete();
+            ProcessSupervisor.getInstance().removeTempFiles(engineFiles);
+        }
+
+        liveResultFeed.stop();
+
+        if (telemetryRecorder != null) {
+            telemetryRecorder.close(waitingHandler.isRunCanceled());
+            telemetryRecorder = null;
+        }
+
         if (!waitingHandler.isRunCanceled()) {
             duration.end();
             waitingHandler.appendReport("De novo sequencing completed (" + duration.toString() + ").", true, true);
+            liveResultFeed.report();
+
+            if (skippedSpectraReport.getNSpectra() > 0) {
+                waitingHandler.appendReport(skippedSpectraReport.getNSpectra() + " spectra were skipped, see " + skippedSpectraReport.getFile().getAbsolutePath() + ".", true, true);
+            }
+            if (!failedResultFiles.isEmpty()) {
+                waitingHandler.appendReport(failedResultFiles.size() + " result file(s) are incomplete and will not be imported, see the .failed files in " + outputFolder.getAbsolutePath() + ".", true, true);
+            }
 
             // store the pepnovo to utilities ptm mapping
             PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(Advocate.pepnovo.getIndex());
@@ -271,10 +500,11 @@ public class DeNovoSequencingHandler {
             String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle, WaitingHandler waitingHandler) throws IOException {
 
         try {
-            jobs = new ArrayDeque<Job>();
+            jobs = new LinkedBlockingDeque<Job>();
+            int nSpectra = getNSpectra(spectrumFile);
 
             // Novor
-            if (enableNovor && !waitingHandler.isRunCanceled()) {
+            if (enableNovor && !novorProcessedFiles.contains(spectrumFile) && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -285,20 +515,18 @@ public class DeNovoSequencingHandler {
 
                 threadExecutor = Executors.newFixedThreadPool(1);
                 NovorJob novorJob = new NovorJob(novorFolder, spectrumFile, outputFolder, searchParameters, waitingHandler instanceof WaitingHandlerCLIImpl, waitingHandler, exceptionHandler);
+                novorJob.setTelemetryRecorder(telemetryRecorder);
+                novorJob.setTimeouts(Job.getTimeout(nSpectra, NovorJob.EXPECTED_SPECTRA_PER_SECOND), 0);
                 threadExecutor.submit(novorJob);
                 jobs.add(novorJob);
+                LiveResultReader novorReader = liveResultFeed.addFile(novorJob.getOutputFile(), null, Advocate.novor.getIndex());
 
                 // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
-                }
+                awaitJobs(waitingHandler);
+
+                liveResultFeed.removeFile(novorReader);
+                endTelemetry(novorJob, novorReader);
+                discardTimedOutResults(novorJob, spectrumFile, novorJob.getOutputFile(), waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -313,7 +541,7 @@ public class DeNovoSequencingHandler {
             }
 
             // DirecTag
-            if (enableDirecTag && !waitingHandler.isRunCanceled()) {
+            if (enableDirecTag && !direcTagProcessedFiles.contains(spectrumFile) && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -324,20 +552,18 @@ public class DeNovoSequencingHandler {
 
                 threadExecutor = Executors.newFixedThreadPool(1);
                 DirecTagJob direcTagJob = new DirecTagJob(direcTagFolder, direcTagExeTitle, spectrumFile, nThreads, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+                direcTagJob.setTelemetryRecorder(telemetryRecorder);
+                direcTagJob.setTimeouts(Job.getTimeout(nSpectra, nThreads * DirecTagJob.EXPECTED_SPECTRA_PER_SECOND), 0);
                 threadExecutor.submit(direcTagJob);
                 jobs.add(direcTagJob);
+                LiveResultReader direcTagReader = liveResultFeed.addFile(FileProcessor.getTagsFile(outputFolder, spectrumFile), null, Advocate.direcTag.getIndex());
 
                 // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
-                }
+                awaitJobs(waitingHandler);
+
+                liveResultFeed.removeFile(direcTagReader);
+                endTelemetry(direcTagJob, direcTagReader);
+                discardTimedOutResults(direcTagJob, spectrumFile, FileProcessor.getTagsFile(outputFolder, spectrumFile), waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -352,7 +578,7 @@ public class DeNovoSequencingHandler {
             }
 
             // PepNovo+
-            if (enablePepNovo && !waitingHandler.isRunCanceled()) {
+            if (enablePepNovo && !pepNovoProcessedFiles.contains(spectrumFile) && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -365,7 +591,6 @@ public class DeNovoSequencingHandler {
                 threadExecutor = Executors.newFixedThreadPool(nThreads);
 
                 // job queue
-                int nSpectra = spectrumFactory.getNSpectra(spectrumFile.getName());
                 if (nThreads > 1) {
                     int remaining = nSpectra % nThreads;
                     int chunkSize = nSpectra / nThreads;
@@ -379,6 +604,8 @@ public class DeNovoSequencingHandler {
 
                     waitingHandler.appendReport("Preparing the spectra.", true, true);
                     chunkFiles = FileProcessor.chunkFile(spectrumFile, chunkSize, remaining, nSpectra, waitingHandler);
+                    ProcessSupervisor.getInstance().addTempFiles(chunkFiles);
+                    ProcessSupervisor.getInstance().addTempFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
                 }
 
                 if (waitingHandler.isRunCanceled()) {
@@ -400,17 +627,23 @@ public class DeNovoSequencingHandler {
                     }
                 }
 
-                // distribute the chunked spectra to the different PepNovo+ jobs
+                // distribute the chunked spectra to the different PepNovo+ jobs, the jobs are restarted when failing
+                ArrayList<PepNovoSupervisor> pepNovoSupervisors = new ArrayList<PepNovoSupervisor>();
+                ArrayList<LiveResultReader> pepNovoReaders = new ArrayList<LiveResultReader>();
                 if (chunksuccess) {
                     for (File chunkFile : chunkFiles) {
-                        PepNovoJob pepNovoJob = new PepNovoJob(pepNovoFolder, pepNovoExeTitle, chunkFile, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                        threadExecutor.submit(pepNovoJob);
-                        jobs.add(pepNovoJob);
+                        PepNovoSupervisor pepNovoSupervisor = new PepNovoSupervisor(pepNovoFolder, pepNovoExeTitle, chunkFile, ShardMerger.countSpectra(chunkFile), spectrumFile.getName(),
+                                outputFolder, searchParameters, jobs, telemetryRecorder, skippedSpectraReport, waitingHandler, exceptionHandler);
+                        threadExecutor.submit(pepNovoSupervisor);
+                        pepNovoSupervisors.add(pepNovoSupervisor);
+                        pepNovoReaders.add(liveResultFeed.addFile(pepNovoSupervisor.getOutputFile(), null, Advocate.pepnovo.getIndex()));
                     }
                 } else {
-                    PepNovoJob pepNovoJob = new PepNovoJob(pepNovoFolder, pepNovoExeTitle, spectrumFile, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                    threadExecutor.submit(pepNovoJob);
-                    jobs.add(pepNovoJob);
+                    PepNovoSupervisor pepNovoSupervisor = new PepNovoSupervisor(pepNovoFolder, pepNovoExeTitle, spectrumFile, nSpectra, spectrumFile.getName(),
+                            outputFolder, searchParameters, jobs, telemetryRecorder, skippedSpectraReport, waitingHandler, exceptionHandler);
+                    threadExecutor.submit(pepNovoSupervisor);
+                    pepNovoSupervisors.add(pepNovoSupervisor);
+                    pepNovoReaders.add(liveResultFeed.addFile(pepNovoSupervisor.getOutputFile(), null, Advocate.pepnovo.getIndex()));
                 }
 
                 if (waitingHandler.isRunCanceled()) {
@@ -418,23 +651,22 @@ public class DeNovoSequencingHandler {
                 }
 
                 // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
-                }
+                awaitJobs(waitingHandler);
 
                 waitingHandler.setSecondaryProgressCounterIndeterminate(true);
 
+                // read the chunk results a last time before they are merged
+                for (int i = 0; i < pepNovoReaders.size(); i++) {
+                    liveResultFeed.removeFile(pepNovoReaders.get(i));
+                    endTelemetry(pepNovoSupervisors.get(i).getJob(), pepNovoReaders.get(i));
+                }
+
                 FileProcessor.mergeAndDeleteOutputFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
 
                 // delete the mgf file chunks
                 FileProcessor.deleteChunkFiles(chunkFiles, waitingHandler);
+                ProcessSupervisor.getInstance().removeTempFiles(chunkFiles);
+                ProcessSupervisor.getInstance().removeTempFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -460,20 +692,18 @@ public class DeNovoSequencingHandler {
 
                 threadExecutor = Executors.newFixedThreadPool(1);
                 PNovoJob pNovoJob = new PNovoJob(pNovoFolder, pNovoExeTitle, spectrumFile, nThreads, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+                pNovoJob.setTelemetryRecorder(telemetryRecorder);
+                pNovoJob.setTimeouts(Job.getTimeout(nSpectra, nThreads * PNovoJob.EXPECTED_SPECTRA_PER_SECOND), 0);
                 threadExecutor.submit(pNovoJob);
                 jobs.add(pNovoJob);
+                LiveResultReader pNovoReader = liveResultFeed.addFile(pNovoJob.getOutputFile(), FileProcessor.getPNovoResultFile(outputFolder, spectrumFile), Advocate.pNovo.getIndex());
 
                 // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
-                }
+                awaitJobs(waitingHandler);
+
+                liveResultFeed.removeFile(pNovoReader);
+                endTelemetry(pNovoJob, pNovoReader);
+                discardTimedOutResults(pNovoJob, spectrumFile, pNovoJob.getOutputFile(), waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -495,13 +725,396 @@ public class DeNovoSequencingHandler {
     }
 
     /**
-     * Cancels the sequencing process.
+     * Runs Novor on the given spectrum files, one process per file and
+     * several processes at the same time. The files processed are added to
+     * the novorProcessedFiles.
+     *
+     * @param spectrumFiles the spectrum files to process
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param waitingHandler the waiting handler
+     */
+    private void startNovorProcesses(List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, WaitingHandler waitingHandler) {
+
+        Duration algorithmDuration = new Duration();
+        algorithmDuration.start();
+
+        int nProcesses = Math.min(Math.min(nThreads, spectrumFiles.size()), ResourcePlanner.getInstance().getMaxNovorProcesses());
+        if (nProcesses < 2) {
+            return;
+        }
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using Novor (" + nProcesses + " at the same time).", true, true);
+        waitingHandler.appendReportEndLine();
+
+        // create all the jobs before starting them, the parameter files are then not written while novor reads them
+        jobs = new LinkedBlockingDeque<Job>();
+        ArrayList<NovorJob> novorJobs = new ArrayList<NovorJob>(spectrumFiles.size());
+        for (File spectrumFile : spectrumFiles) {
+            NovorJob novorJob = new NovorJob(novorFolder, spectrumFile, outputFolder, searchParameters, waitingHandler instanceof WaitingHandlerCLIImpl, waitingHandler, exceptionHandler);
+            novorJob.setTelemetryRecorder(telemetryRecorder);
+            novorJob.setTimeouts(Job.getTimeout(getNSpectra(spectrumFile), NovorJob.EXPECTED_SPECTRA_PER_SECOND), 0);
+            novorJobs.add(novorJob);
+            jobs.add(novorJob);
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        threadExecutor = Executors.newFixedThreadPool(nProcesses);
+        ArrayList<LiveResultReader> novorReaders = new ArrayList<LiveResultReader>(novorJobs.size());
+        for (NovorJob novorJob : novorJobs) {
+            novorReaders.add(liveResultFeed.addFile(novorJob.getOutputFile(), null, Advocate.novor.getIndex()));
+            threadExecutor.submit(novorJob);
+        }
+
+        // wait for executor service to shutdown
+        awaitJobs(waitingHandler);
+
+        for (int i = 0; i < novorJobs.size(); i++) {
+            NovorJob novorJob = novorJobs.get(i);
+            File spectrumFile = spectrumFiles.get(i);
+            liveResultFeed.removeFile(novorReaders.get(i));
+            endTelemetry(novorJob, novorReaders.get(i));
+            discardTimedOutResults(novorJob, spectrumFile, novorJob.getOutputFile(), waitingHandler);
+            novorProcessedFiles.add(spectrumFile);
+            waitingHandler.increasePrimaryProgressCounter();
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        algorithmDuration.end();
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using Novor completed (" + algorithmDuration.toString() + ").", true, true);
+        waitingHandler.appendReportEndLine();
+    }
+
+    /**
+     * Runs DirecTag on all the spectrum files in a single process. The files
+     * processed are added to the direcTagProcessedFiles, DirecTag is run
+     * again on the others one file at a time.
+     *
+     * @param spectrumFiles the spectrum files to process
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param waitingHandler the waiting handler
+     */
+    private void startDirecTagWorker(List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, String direcTagExeTitle, WaitingHandler waitingHandler) {
+
+        Duration algorithmDuration = new Duration();
+        algorithmDuration.start();
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using DirecTag.", true, true);
+        waitingHandler.appendReportEndLine();
+
+        int nSpectra = 0;
+        for (File spectrumFile : spectrumFiles) {
+            nSpectra += getNSpectra(spectrumFile);
+        }
+
+        EngineWorkerPool<DirecTagWorker> workerPool = new EngineWorkerPool<DirecTagWorker>();
+        DirecTagWorker direcTagWorker = new DirecTagWorker(direcTagFolder, direcTagExeTitle, spectrumFiles, 0, nThreads, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+        direcTagWorker.setTelemetryRecorder(telemetryRecorder);
+        direcTagWorker.setTimeouts(Job.getTimeout(nSpectra, nThreads * DirecTagJob.EXPECTED_SPECTRA_PER_SECOND), 0);
+        workerPool.add(direcTagWorker);
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        jobs = new LinkedBlockingDeque<Job>();
+        threadExecutor = Executors.newFixedThreadPool(1);
+        ArrayList<LiveResultReader> direcTagReaders = new ArrayList<LiveResultReader>(spectrumFiles.size());
+        for (File spectrumFile : spectrumFiles) {
+            direcTagReaders.add(liveResultFeed.addFile(FileProcessor.getTagsFile(outputFolder, spectrumFile), null, Advocate.direcTag.getIndex()));
+        }
+        workerPool.start(threadExecutor, jobs);
+
+        // wait for executor service to shutdown
+        awaitJobs(waitingHandler);
+
+        for (LiveResultReader direcTagReader : direcTagReaders) {
+            liveResultFeed.removeFile(direcTagReader);
+        }
+        endTelemetry(direcTagWorker, direcTagReaders);
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        for (File spectrumFile : workerPool.dispatchResults()) {
+            direcTagProcessedFiles.add(spectrumFile);
+            waitingHandler.increasePrimaryProgressCounter();
+        }
+
+        algorithmDuration.end();
+
+        waitingHandler.appendReportEndLine();
+        if (direcTagProcessedFiles.size() == spectrumFiles.size()) {
+            waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using DirecTag completed (" + algorithmDuration.toString() + ").", true, true);
+        } else {
+            String reason = direcTagWorker.isTimedOut() ? "did not complete within the time limit" : "failed (exit value " + direcTagWorker.getExitValue() + ")";
+            waitingHandler.appendReport("DirecTag " + reason + ", the files will be processed one by one.", true, true);
+        }
+        waitingHandler.appendReportEndLine();
+    }
+
+    /**
+     * Runs PepNovo+ on all the spectrum files using one PepNovo+ process per
+     * thread, so that PepNovo+ loads its models once per thread instead of
+     * once per file and thread. Every file is split in one chunk per thread
+     * and every process gets a chunk of every file. The files processed are
+     * added to the pepNovoProcessedFiles, PepNovo+ is run again on the others
+     * one file at a time.
+     *
+     * @param spectrumFiles the spectrum files to process
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if an error occurred while writing the
+     * spectrum chunks or the results
+     */
+    private void startPepNovoWorkers(List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
+            WaitingHandler waitingHandler) throws IOException {
+
+        // the blast queries are written per spectrum file
+        PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(Advocate.pepnovo.getIndex());
+        if (pepnovoParameters.generateQuery()) {
+            return;
+        }
+
+        Duration algorithmDuration = new Duration();
+        algorithmDuration.start();
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using PepNovo+.", true, true);
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Preparing the spectra.", true, true);
+
+        // split the files in one chunk per thread
+        HashMap<File, ArrayList<File>> fileChunks = new HashMap<File, ArrayList<File>>();
+        ArrayList<ArrayList<File>> chunkGroups = new ArrayList<ArrayList<File>>(spectrumFiles.size());
+        chunkFiles = new ArrayList<File>();
+        int nSpectra = 0;
+        for (File spectrumFile : spectrumFiles) {
+            int nFileSpectra = getNSpectra(spectrumFile);
+            nSpectra += nFileSpectra;
+            ArrayList<File> chunks;
+            if (nThreads > 1 && nFileSpectra >= nThreads) {
+                chunks = FileProcessor.chunkFile(spectrumFile, nFileSpectra / nThreads, nFileSpectra % nThreads, nFileSpectra, waitingHandler);
+                chunkFiles.addAll(chunks);
+                ProcessSupervisor.getInstance().addTempFiles(chunks);
+                ProcessSupervisor.getInstance().addTempFiles(FileProcessor.getOutFiles(outputFolder, chunks));
+            } else {
+                chunks = new ArrayList<File>(1);
+                chunks.add(spectrumFile);
+            }
+            fileChunks.put(spectrumFile, chunks);
+            chunkGroups.add(chunks);
+            if (waitingHandler.isRunCanceled()) {
+                return;
+            }
+        }
+
+        // every worker gets a chunk of every file
+        EngineWorkerPool<PepNovoWorker> workerPool = new EngineWorkerPool<PepNovoWorker>();
+        ArrayList<ArrayList<File>> batches = EngineWorkerPool.getBatches(chunkGroups, nThreads);
+        for (int i = 0; i < batches.size(); i++) {
+            ArrayList<File> batch = batches.get(i);
+            int nBatchSpectra = 0;
+            for (File file : batch) {
+                nBatchSpectra += ShardMerger.countSpectra(file);
+            }
+            PepNovoWorker pepNovoWorker = new PepNovoWorker(pepNovoFolder, pepNovoExeTitle, batch, i, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+            pepNovoWorker.setTelemetryRecorder(telemetryRecorder);
+            pepNovoWorker.setTimeouts(Job.getTimeout(nBatchSpectra, PepNovoJob.EXPECTED_SPECTRA_PER_SECOND), PepNovoJob.STALL_TIMEOUT);
+            workerPool.add(pepNovoWorker);
+            ArrayList<File> workerFiles = new ArrayList<File>(2);
+            workerFiles.add(PepNovoWorker.getListFile(outputFolder, i));
+            workerFiles.add(pepNovoWorker.getOutputFile());
+            ProcessSupervisor.getInstance().addTempFiles(workerFiles);
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        waitingHandler.appendReport("Processing " + spectrumFiles.size() + " files (" + nSpectra + " spectra) in " + batches.size() + " PepNovo+ process"
+                + (batches.size() > 1 ? "es" : "") + ".", true, true);
+        waitingHandler.setWaitingText("Processing " + spectrumFiles.size() + " files.");
+        waitingHandler.resetSecondaryProgressCounter();
+        waitingHandler.setMaxSecondaryProgressCounter(nSpectra);
+
+        jobs = new LinkedBlockingDeque<Job>();
+        threadExecutor = Executors.newFixedThreadPool(batches.size());
+        ArrayList<LiveResultReader> pepNovoReaders = new ArrayList<LiveResultReader>(batches.size());
+        for (PepNovoWorker pepNovoWorker : workerPool.getWorkers()) {
+            pepNovoReaders.add(liveResultFeed.addFile(pepNovoWorker.getOutputFile(), null, Advocate.pepnovo.getIndex()));
+        }
+        workerPool.start(threadExecutor, jobs);
+
+        // wait for executor service to shutdown
+        awaitJobs(waitingHandler);
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+        boolean timedOut = false;
+        for (int i = 0; i < pepNovoReaders.size(); i++) {
+            PepNovoWorker pepNovoWorker = workerPool.getWorkers().get(i);
+            liveResultFeed.removeFile(pepNovoReaders.get(i));
+            endTelemetry(pepNovoWorker, pepNovoReaders.get(i));
+            timedOut |= pepNovoWorker.isTimedOut();
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        // merge the results of the files completely processed
+        HashSet<File> completedChunks = workerPool.dispatchResults();
+        for (File spectrumFile : spectrumFiles) {
+            ArrayList<File> chunks = fileChunks.get(spectrumFile);
+            boolean chunked = chunks.get(0) != spectrumFile;
+            if (completedChunks.containsAll(chunks)) {
+                if (chunked) {
+                    FileProcessor.mergeAndDeleteOutputFiles(FileProcessor.getOutFiles(outputFolder, chunks));
+                }
+                pepNovoProcessedFiles.add(spectrumFile);
+                waitingHandler.increasePrimaryProgressCounter();
+                waitingHandler.increasePrimaryProgressCounter();
+            } else if (chunked) {
+                for (File outFile : FileProcessor.getOutFiles(outputFolder, chunks)) {
+                    outFile.delete();
+                }
+            }
+        }
+
+        // delete the mgf file chunks
+        FileProcessor.deleteChunkFiles(chunkFiles, waitingHandler);
+        ProcessSupervisor.getInstance().removeTempFiles(chunkFiles);
+        ProcessSupervisor.getInstance().removeTempFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
+        chunkFiles = null;
+        for (int i = 0; i < batches.size(); i++) {
+            ArrayList<File> workerFiles = new ArrayList<File>(2);
+            workerFiles.add(PepNovoWorker.getListFile(outputFolder, i));
+            workerFiles.add(PepNovoWorker.getOutputFile(outputFolder, i));
+            ProcessSupervisor.getInstance().removeTempFiles(workerFiles);
+        }
+
+        algorithmDuration.end();
+
+        waitingHandler.appendReportEndLine();
+        if (pepNovoProcessedFiles.size() == spectrumFiles.size()) {
+            waitingHandler.appendReport("Sequencing " + spectrumFiles.size() + " files using PepNovo+ completed (" + algorithmDuration.toString() + ").", true, true);
+        } else {
+            String reason = timedOut ? "did not complete within the time limit" : "failed";
+            int nRemaining = spectrumFiles.size() - pepNovoProcessedFiles.size();
+            waitingHandler.appendReport("PepNovo+ " + reason + ", the " + nRemaining + " file" + (nRemaining > 1 ? "s" : "") + " not processed will be processed one by one.", true, true);
+        }
+        waitingHandler.appendReportEndLine();
+    }
+
+    /**
+     * Writes the performance metrics of a completed job. The number of
+     * spectra found in the result file is used when the job output does not
+     * allow counting them.
+     *
+     * @param job the job
+     * @param resultReader the reader of the result file of the job
+     */
+    private void endTelemetry(Job job, LiveResultReader resultReader) {
+        if (telemetryRecorder != null && job.getTelemetry() != null) {
+            job.getTelemetry().setNSpectra(resultReader.getNSpectra());
+            telemetryRecorder.endJob(job.getTelemetry());
+        }
+    }
+
+    /**
+     * Writes the performance metrics of a completed job processing several
+     * spectrum files. The number of spectra is the sum of the spectra found
+     * in the result files.
+     *
+     * @param job the job
+     * @param resultReaders the readers of the result files of the job
+     */
+    private void endTelemetry(Job job, List<LiveResultReader> resultReaders) {
+        if (telemetryRecorder != null && job.getTelemetry() != null) {
+            int nSpectra = 0;
+            for (LiveResultReader resultReader : resultReaders) {
+                nSpectra += resultReader.getNSpectra();
+            }
+            job.getTelemetry().setNSpectra(nSpectra);
+            telemetryRecorder.endJob(job.getTelemetry());
+        }
+    }
+
+    /**
+     * Waits for the jobs submitted to the thread executor to complete. The
+     * jobs are bounded by their timeouts.
+     *
+     * @param waitingHandler the waiting handler
+     */
+    private void awaitJobs(WaitingHandler waitingHandler) {
+        threadExecutor.shutdown();
+        try {
+            while (!threadExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // the jobs are still running
+            }
+        } catch (InterruptedException ex) {
+            if (!waitingHandler.isRunCanceled()) {
+                threadExecutor.shutdownNow();
+                exceptionHandler.catchException(ex);
+            }
+        }
+    }
+
+    /**
+     * Discards the results of a job destroyed because it exceeded its
+     * timeout. The result file is truncated: it is renamed with the .failed
+     * extension, or deleted if it cannot be renamed, so that it is neither
+     * reindexed, merged nor imported as a complete result file.
+     *
+     * @param job the job
+     * @param spectrumFile the spectrum file processed by the job
+     * @param resultFile the result file written by the job
+     * @param waitingHandler the waiting handler
+     */
+    private void discardTimedOutResults(Job job, File spectrumFile, File resultFile, WaitingHandler waitingHandler) {
+        if (job.isTimedOut()) {
+            File failedFile = new File(resultFile.getParentFile(), resultFile.getName() + ".failed");
+            if (failedFile.exists()) {
+                failedFile.delete();
+            }
+            if (resultFile.exists() && !resultFile.renameTo(failedFile)) {
+                resultFile.delete();
+            }
+            failedResultFiles.add(failedFile);
+            waitingHandler.appendReport(job.getDescription() + " did not complete on " + spectrumFile.getName()
+                    + " within the time limit and was stopped, the incomplete results were moved to " + failedFile.getName() + " and will not be imported.", true, true);
+        }
+    }
+
+    /**
+     * Cancels the sequencing process. The processes are stopped together
+     * with their descendants and the chunk files are deleted.
      *
      * @param outputFolder the output folder
      * @param waitingHandler the waiting handler
      * @throws IOException thrown if the deletion of the chunk files fail
      */
     public void cancelSequencing(File outputFolder, WaitingHandler waitingHandler) throws IOException {
+        if (liveResultFeed != null) {
+            liveResultFeed.stop();
+        }
         if (jobs != null) {
             // cancel the jobs and delete temp .out files
             for (Job job : jobs) {
@@ -511,7 +1124,9 @@ public class DeNovoSequencingHandler {
         if (threadExecutor != null) {
             threadExecutor.shutdown();
             try {
-                threadExecutor.awaitTermination(12, TimeUnit.HOURS);
+                if (!threadExecutor.awaitTermination(CANCEL_TIMEOUT, TimeUnit.SECONDS)) {
+                    threadExecutor.shutdownNow();
+                }
             } catch (InterruptedException ex) {
                 if (waitingHandler.isRunCanceled()) {
                     threadExecutor.shutdownNow();
@@ -525,8 +1140,195 @@ public class DeNovoSequencingHandler {
 
                 // delete the mgf file chunks
                 FileProcessor.deleteChunkFiles(chunkFiles, waitingHandler);
+
+                ProcessSupervisor.getInstance().removeTempFiles(chunkFiles);
+                ProcessSupervisor.getInstance().removeTempFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
+            }
+        }
+    }
+
+    /**
+     * Returns the live statistics on the results of the current or last
+     * sequencing, null if no sequencing was started.
+     *
+     * @return the live statistics on the results of the sequencing
+     */
+    public LiveStatistics getLiveStatistics() {
+        return liveResultFeed == null ? null : liveResultFeed.getLiveStatistics();
+    }
+
+    /**
+     * Sets the live statistics to feed with the results of the next
+     * sequencing, for instance to display them while sequencing. New
+     * statistics are used if null.
+     *
+     * @param liveStatistics the live statistics to feed during the next
+     * sequencing
+     */
+    public void setLiveStatistics(LiveStatistics liveStatistics) {
+        this.liveStatistics = liveStatistics;
+    }
+
+    /**
+     * Returns the number of jobs of the current spectrum file waiting to be
+     * executed.
+     *
+     * @return the number of jobs waiting
+     */
+    public int getNJobsWaiting() {
+        Deque<Job> currentJobs = jobs;
+        if (currentJobs == null) {
+            return 0;
+        }
+        int nWaiting = 0;
+        for (Job job : currentJobs) {
+            if (job.getStatus() == JobStatus.WAITING) {
+                nWaiting++;
+            }
+        }
+        return nWaiting;
+    }
+
+    /**
+     * Returns the number of spectrum files remaining to process in the
+     * current sequencing, including the file being processed.
+     *
+     * @return the number of spectrum files remaining
+     */
+    public int getNSpectrumFilesRemaining() {
+        return nSpectrumFilesRemaining;
+    }
+
+    /**
+     * Returns the incomplete result files of the jobs stopped because they
+     * exceeded their timeout in the last sequencing. The files were renamed
+     * with the .failed extension and are not part of the results.
+     *
+     * @return the incomplete result files
+     */
+    public ArrayList<File> getFailedResultFiles() {
+        return failedResultFiles;
+    }
+
+    /**
+     * Returns the file where the performance metrics of the jobs are written
+     * as JSON lines, null if not recorded.
+     *
+     * @return the file where the performance metrics are written
+     */
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Sets the file where the performance metrics of the jobs are written as
+     * JSON lines. The records are appended to the file. Null to not record
+     * the metrics.
+     *
+     * @param metricsFile the file where the performance metrics are written
+     */
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * Indicates whether the spectrum files are processed together by engine
+     * workers when there are several files.
+     *
+     * @return true if the spectrum files are processed together by engine
+     * workers
+     */
+    public boolean isEngineWorkers() {
+        return engineWorkers;
+    }
+
+    /**
+     * Sets whether the spectrum files are processed together by engine
+     * workers when there are several files, i.e. by a single DirecTag process
+     * and by one PepNovo+ process per thread. The engines then load their
+     * models once per process instead of once per file.
+     *
+     * @param engineWorkers if true the spectrum files are processed together
+     * by engine workers
+     */
+    public void setEngineWorkers(boolean engineWorkers) {
+        this.engineWorkers = engineWorkers;
+    }
+
+    /**
+     * Returns the number of spectra given to the engines for a spectrum file.
+     *
+     * @param spectrumFile the spectrum file given to the engines
+     *
+     * @return the number of spectra given to the engines
+     */
+    private int getNSpectra(File spectrumFile) {
+        if (preprocessor != null) {
+            Integer nSpectra = preprocessor.getNSpectra(spectrumFile.getName());
+            if (nSpectra != null) {
+                return nSpectra;
             }
         }
+        return spectrumFactory.getNSpectra(spectrumFile.getName());
+    }
+
+    /**
+     * Returns the preprocessor of the spectra given to the engines.
+     *
+     * @return the preprocessor of the spectra given to the engines, null if
+     * the engines process the original spectra
+     */
+    public SpectrumPreprocessor getSpectrumPreprocessor() {
+        return spectrumPreprocessor;
+    }
+
+    /**
+     * Sets the preprocessor of the spectra given to the engines. The spectra
+     * are then preprocessed in parallel before the sequencing and all engines
+     * process the same preprocessed spectra.
+     *
+     * @param spectrumPreprocessor the preprocessor of the spectra, null to
+     * process the original spectra
+     */
+    public void setSpectrumPreprocessor(SpectrumPreprocessor spectrumPreprocessor) {
+        this.spectrumPreprocessor = spectrumPreprocessor;
+    }
+
+    /**
+     * Returns the clusterer of the replicate spectra.
+     *
+     * @return the clusterer of the replicate spectra, null if the spectra are
+     * not clustered
+     */
+    public SpectrumClusterer getSpectrumClusterer() {
+        return spectrumClusterer;
+    }
+
+    /**
+     * Sets the clusterer of the replicate spectra. The replicate spectra are
+     * then clustered before the sequencing and only the representative
+     * spectrum of every cluster is given to the engines. The other spectra
+     * get the results of their representative spectrum when the results are
+     * imported.
+     *
+     * @param spectrumClusterer the clusterer of the replicate spectra, null
+     * to sequence all spectra
+     */
+    public void setSpectrumClusterer(SpectrumClusterer spectrumClusterer) {
+        this.spectrumClusterer = spectrumClusterer;
+    }
+
+    /**
+     * Sets whether this version should be set as the default DeNovoGUI
+     * version in the user preferences when starting a sequencing. True by
+     * default, can be disabled when the preferences were already updated,
+     * e.g. by a long-running process.
+     *
+     * @param registerVersion if true this version is set as the default
+     * version when starting a sequencing
+     */
+    public void setRegisterVersion(boolean registerVersion) {
+        this.registerVersion = registerVersion;
     }
 
     /**
@@ -0,0 +1,353 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.SpectrumFileConverter;
+import com.compomics.denovogui.util.JsonLine;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A sequencing job submitted to the daemon, i.e. one DeNovoCLI command line.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class DaemonJob {
+
+    /**
+     * The id of the job.
+     */
+    private final int id;
+    /**
+     * The command line parameters of the job.
+     */
+    private final DeNovoCLIInputBean deNovoCLIInputBean;
+    /**
+     * The number of threads allocated to the job.
+     */
+    private final int nThreads;
+    /**
+     * The status of the job.
+     */
+    private volatile JobStatus status = JobStatus.WAITING;
+    /**
+     * A message on the outcome of the job, null if none.
+     */
+    private volatile String message = null;
+    /**
+     * The time when the job was submitted.
+     */
+    private final long submissionTime;
+    /**
+     * The time when the job was started, -1 if not started.
+     */
+    private volatile long startTime = -1;
+    /**
+     * The time when the job ended, -1 if not ended.
+     */
+    private volatile long endTime = -1;
+    /**
+     * Indicates whether the cancellation of the job was requested.
+     */
+    private volatile boolean cancelRequested = false;
+    /**
+     * The waiting handler of the job, null if not started.
+     */
+    private volatile DaemonWaitingHandler waitingHandler = null;
+    /**
+     * The sequencing handler of the job, null if not started.
+     */
+    private volatile DeNovoSequencingHandler sequencingHandler = null;
+    /**
+     * The file where the manifest of the job is written when it ends, null if
+     * not written.
+     */
+    private File manifestFile = null;
+
+    /**
+     * Constructor.
+     *
+     * @param id the id of the job
+     * @param deNovoCLIInputBean the command line parameters of the job
+     * @param nThreads the number of threads allocated to the job
+     */
+    public DaemonJob(int id, DeNovoCLIInputBean deNovoCLIInputBean, int nThreads) {
+        this.id = id;
+        this.deNovoCLIInputBean = deNovoCLIInputBean;
+        this.nThreads = nThreads;
+        this.submissionTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the id of the job.
+     *
+     * @return the id of the job
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the command line parameters of the job.
+     *
+     * @return the command line parameters of the job
+     */
+    public DeNovoCLIInputBean getDeNovoCLIInputBean() {
+        return deNovoCLIInputBean;
+    }
+
+    /**
+     * Returns the number of threads allocated to the job.
+     *
+     * @return the number of threads allocated to the job
+     */
+    public int getNThreads() {
+        return nThreads;
+    }
+
+    /**
+     * Returns the key of the search parameters of the job. Jobs with
+     * different search parameters are not run simultaneously as the
+     * modifications are shared by the whole process.
+     *
+     * @return the key of the search parameters of the job
+     */
+    public String getParametersKey() {
+        return deNovoCLIInputBean.getSearchParametersFile().getAbsolutePath();
+    }
+
+    /**
+     * Returns the spectrum files of the job.
+     *
+     * @return the spectrum files of the job
+     */
+    public ArrayList<File> getSpectrumFiles() {
+        return deNovoCLIInputBean.getSpectrumFiles();
+    }
+
+    /**
+     * Returns the mgf files given to the engines, the converted files being
+     * written in the output folder of the job.
+     *
+     * @return the mgf files given to the engines
+     */
+    public ArrayList<File> getMgfFiles() {
+        ArrayList<File> mgfFiles = new ArrayList<File>();
+        for (File spectrumFile : getSpectrumFiles()) {
+            mgfFiles.add(SpectrumFileConverter.getMgfFile(spectrumFile, deNovoCLIInputBean.getOutputFile()));
+        }
+        return mgfFiles;
+    }
+
+    /**
+     * Returns the log file of the job.
+     *
+     * @return the log file of the job
+     */
+    public File getLogFile() {
+        return new File(deNovoCLIInputBean.getOutputFile(), "DeNovoDaemon_job_" + id + ".log");
+    }
+
+    /**
+     * Indicates that the job is started.
+     *
+     * @param waitingHandler the waiting handler of the job
+     */
+    public void start(DaemonWaitingHandler waitingHandler) {
+        this.waitingHandler = waitingHandler;
+        startTime = System.currentTimeMillis();
+        status = JobStatus.RUNNING;
+    }
+
+    /**
+     * Indicates that the job ended.
+     *
+     * @param status the final status of the job
+     * @param message a message on the outcome of the job, can be null
+     */
+    public void end(JobStatus status, String message) {
+        this.message = message;
+        endTime = System.currentTimeMillis();
+        this.status = status;
+        if (waitingHandler != null) {
+            waitingHandler.close();
+        }
+    }
+
+    /**
+     * Writes the manifest of the job: the spectrum files with their size and
+     * modification date, the outcome of the job and the result files
+     * written. Does nothing if no manifest file is set.
+     *
+     * @throws IOException thrown if an error occurred while writing the
+     * manifest
+     */
+    public void writeManifest() throws IOException {
+
+        if (manifestFile == null) {
+            return;
+        }
+
+        StringBuilder spectrumFiles = new StringBuilder("[");
+        for (File spectrumFile : getSpectrumFiles()) {
+            if (spectrumFiles.length() > 1) {
+                spectrumFiles.append(',');
+            }
+            spectrumFiles.append(new JsonLine()
+                    .add("path", spectrumFile.getAbsolutePath())
+                    .add("size", spectrumFile.length())
+                    .add("lastModified", spectrumFile.lastModified())
+                    .toString());
+        }
+        spectrumFiles.append(']');
+
+        StringBuilder resultFiles = new StringBuilder("[");
+        for (File resultFile : FileProcessor.getAllResultFiles(deNovoCLIInputBean.getOutputFile(), getMgfFiles(),
+                deNovoCLIInputBean.enablePepNovo(), deNovoCLIInputBean.enableDirecTag(), deNovoCLIInputBean.enablePNovo(), deNovoCLIInputBean.enableNovor())) {
+            if (resultFile.exists()) {
+                if (resultFiles.length() > 1) {
+                    resultFiles.append(',');
+                }
+                resultFiles.append(JsonLine.quote(resultFile.getName()));
+            }
+        }
+        resultFiles.append(']');
+
+        // write under a temporary name so that the manifest is never read incomplete
+        File tempFile = new File(manifestFile.getParentFile(), manifestFile.getName() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
+        try {
+            writer.write(new JsonLine()
+                    .add("job", id)
+                    .add("status", status.toString())
+                    .add("message", message)
+                    .add("submitted", submissionTime)
+                    .add("started", startTime)
+                    .add("ended", endTime)
+                    .add("searchParameters", deNovoCLIInputBean.getSearchParametersFile().getAbsolutePath())
+                    .addRaw("spectrumFiles", spectrumFiles.toString())
+                    .addRaw("resultFiles", resultFiles.toString())
+                    .toString());
+            writer.newLine();
+        } finally {
+            writer.close();
+        }
+        if (!tempFile.renameTo(manifestFile)) {
+            manifestFile.delete();
+            if (!tempFile.renameTo(manifestFile)) {
+                throw new IOException("Failed to rename " + tempFile.getAbsolutePath() + " to " + manifestFile.getName() + ".");
+            }
+        }
+    }
+
+    /**
+     * Returns the file where the manifest of the job is written when it
+     * ends, null if not written.
+     *
+     * @return the file where the manifest of the job is written
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Sets the file where the manifest of the job is written when it ends,
+     * null to not write it.
+     *
+     * @param manifestFile the file where the manifest of the job is written
+     */
+    public void setManifestFile(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Cancels the job. Does nothing if the job is not running.
+     *
+     * @throws IOException thrown if an error occurred while cleaning the
+     * output folder
+     */
+    public void cancel() throws IOException {
+        cancelRequested = true;
+        DaemonWaitingHandler currentWaitingHandler = waitingHandler;
+        if (currentWaitingHandler != null) {
+            currentWaitingHandler.setRunCanceled();
+            DeNovoSequencingHandler currentSequencingHandler = sequencingHandler;
+            if (currentSequencingHandler != null) {
+                currentSequencingHandler.cancelSequencing(deNovoCLIInputBean.getOutputFile(), currentWaitingHandler);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the cancellation of the job was requested.
+     *
+     * @return true if the cancellation of the job was requested
+     */
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Sets the sequencing handler of the job.
+     *
+     * @param sequencingHandler the sequencing handler of the job
+     */
+    public void setSequencingHandler(DeNovoSequencingHandler sequencingHandler) {
+        this.sequencingHandler = sequencingHandler;
+    }
+
+    /**
+     * Returns the status of the job.
+     *
+     * @return the status of the job
+     */
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Indicates whether the job ended.
+     *
+     * @return true if the job ended
+     */
+    public boolean isEnded() {
+        return status == JobStatus.FINISHED || status == JobStatus.ERROR || status == JobStatus.CANCELED;
+    }
+
+    /**
+     * Returns the status of the job as a JSON object.
+     *
+     * @return the status of the job as a JSON object
+     */
+    public String toJson() {
+        JsonLine result = new JsonLine()
+                .add("id", id)
+                .add("status", status.toString())
+                .add("threads", nThreads)
+                .add("outputFolder", deNovoCLIInputBean.getOutputFile().getAbsolutePath())
+                .add("spectrumFiles", getSpectrumFiles().size())
+                .add("submitted", submissionTime);
+        if (startTime != -1) {
+            result.add("started", startTime);
+            result.add("log", getLogFile().getAbsolutePath());
+        }
+        DaemonWaitingHandler currentWaitingHandler = waitingHandler;
+        if (status == JobStatus.RUNNING && currentWaitingHandler != null) {
+            result.add("progress", currentWaitingHandler.getProgress());
+            result.add("etaMs", currentWaitingHandler.getEta());
+            result.add("text", currentWaitingHandler.getWaitingText());
+        }
+        if (endTime != -1) {
+            result.add("ended", endTime);
+        }
+        if (message != null) {
+            result.add("message", message);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.compomics.denovogui.cmd;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Waiting handler of a job run by the daemon. The report is written to a log
+ * file of the job instead of the standard output shared by all jobs.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class DaemonWaitingHandler extends ProgressWaitingHandler {
+
+    /**
+     * The format of the dates in the report.
+     */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    /**
+     * The writer of the log file.
+     */
+    private final PrintWriter logWriter;
+
+    /**
+     * Constructor. The report is appended to the given file.
+     *
+     * @param logFile the log file of the job
+     *
+     * @throws IOException thrown if the log file cannot be opened
+     */
+    public DaemonWaitingHandler(File logFile) throws IOException {
+        super();
+        logWriter = new PrintWriter(new FileWriter(logFile, true), true);
+    }
+
+    @Override
+    public synchronized void appendReport(String report, boolean includeDate, boolean addNewLine) {
+        if (includeDate) {
+            logWriter.print(dateFormat.format(new Date()) + " " + report);
+        } else {
+            logWriter.print(report);
+        }
+        if (addNewLine) {
+            logWriter.println();
+        } else {
+            logWriter.flush();
+        }
+    }
+
+    @Override
+    public synchronized void appendReportEndLine() {
+        logWriter.println();
+    }
+
+    /**
+     * Closes the log file.
+     */
+    public synchronized void close() {
+        logWriter.close();
+    }
+}
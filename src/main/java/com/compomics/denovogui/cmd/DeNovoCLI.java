@@ -1,8 +1,11 @@
 package com.compomics.denovogui.cmd;
 
 import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.io.SpectrumFileConverter;
+import com.compomics.denovogui.io.SpectrumIndexer;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
 import com.compomics.denovogui.util.Properties;
+import com.compomics.denovogui.util.ResourcePlanner;
 import com.compomics.software.CompomicsWrapper;
 import com.compomics.software.settings.PathKey;
 import com.compomics.software.settings.UtilitiesPathPreferences;
@@ -118,158 +121,35 @@ public class DeNovoCLI implements Callable {
         enzymeFactory = EnzymeFactory.getInstance();
 
         try {
-            WaitingHandlerCLIImpl waitingHandlerCLIImpl = new WaitingHandlerCLIImpl();
+            WaitingHandlerCLIImpl waitingHandlerCLIImpl;
+            if (deNovoCLIInputBean.getProgressFile() != null || deNovoCLIInputBean.getMetricsPort() != null) {
+                waitingHandlerCLIImpl = new ProgressWaitingHandler();
+            } else {
+                waitingHandlerCLIImpl = new WaitingHandlerCLIImpl();
+            }
 
             boolean runPepNovo = deNovoCLIInputBean.enablePepNovo();
             boolean runDirecTag = deNovoCLIInputBean.enableDirecTag();
             boolean runPNovo = deNovoCLIInputBean.enablePNovo();
             boolean runNovor = deNovoCLIInputBean.enableNovor();
 
-            File pepNovoExecutable = deNovoCLIInputBean.getPepNovoExecutable();
-            File direcTagExecutable = deNovoCLIInputBean.getDirecTagExecutable();
-            File pNovoExecutable = deNovoCLIInputBean.getPNovoExecutable();
-            File novorExecutable = deNovoCLIInputBean.getNovorExecutable();
-            File pepNovoFolder = null, direcTagFolder = null, pNovoFolder = null, novorFolder = null;
-            String pepNovoExecutableTitle = null, direcTagExecutableTitle = null, pNovoExecutableTitle = null, novorExecutableTitle = null;
-
-            // OS check
-            String osName = System.getProperty("os.name").toLowerCase();
-            String arch = System.getProperty("os.arch").toLowerCase();
-
-            // pepNovo
-            if (pepNovoExecutable != null) {
-                pepNovoExecutableTitle = pepNovoExecutable.getName();
-                pepNovoFolder = pepNovoExecutable.getParentFile();
-            } else if (new File(getJarFilePath() + "/resources/PepNovo").exists()) {
-
-                // use the default PepNovo folder if not set by user
-                pepNovoFolder = new File(getJarFilePath() + "/resources/PepNovo");
-
-                if (osName.contains("mac os")) {
-                    pepNovoExecutableTitle = "PepNovo_Mac";
-                } else if (osName.contains("windows")) {
-                    pepNovoExecutableTitle = "PepNovo_Windows.exe";
-                } else if (osName.contains("nix") || osName.contains("nux")) {
-                    pepNovoExecutableTitle = "PepNovo_Linux";
-                } else {
-                    // unsupported OS version
-                }
-            }
-
-            // direcTag
-            if (direcTagExecutable != null) {
-                direcTagExecutableTitle = direcTagExecutable.getName();
-                direcTagFolder = direcTagExecutable.getParentFile();
-            } else if (new File(getJarFilePath() + "/resources/DirecTag").exists()) {
-
-                // use the default DirecTag folder if not set by user
-                if (osName.contains("windows")) {
-                    if (arch.lastIndexOf("64") != -1) {
-                        direcTagFolder = new File(getJarFilePath() + "/resources/DirecTag/windows_64bits");
-                    } else {
-                        direcTagFolder = new File(getJarFilePath() + "/resources/DirecTag/windows_32bits");
-                    }
-                    direcTagExecutableTitle = "directag.exe";
-                } else if (osName.contains("nix") || osName.contains("nux")) {
-                    if (arch.lastIndexOf("64") != -1) {
-                        direcTagFolder = new File(getJarFilePath() + "/resources/DirecTag/linux_64bit");
-                    } else {
-                        direcTagFolder = new File(getJarFilePath() + "/resources/DirecTag/linux_32bit");
-                    }
-                    direcTagExecutableTitle = "directag";
-                } else if (osName.contains("mac os")) {
-
-                    // try the linux version..?
-                    direcTagFolder = new File(getJarFilePath() + "/resources/DirecTag/linux_32bit");
-                    direcTagExecutableTitle = "directag";
-
-                } else {
-                    // unsupported OS version
-                }
-            }
-
-            // pNovo
-            if (pNovoExecutable != null) {
-                pNovoExecutableTitle = pNovoExecutable.getName();
-                pNovoFolder = pNovoExecutable.getParentFile();
-            } else if (new File(getJarFilePath() + "/resources/pNovo").exists()) {
-
-                // use the default pNovo folder if not set by user
-                pNovoFolder = new File(getJarFilePath() + "/resources/pNovo");
-
-                if (osName.contains("mac os")) {
-                    // unsupported OS version
-                } else if (osName.contains("windows")) {
-                    pNovoExecutableTitle = "pNovoplus.exe";
-                } else if (osName.contains("nix") || osName.contains("nux")) {
-                    // unsupported OS version
-                } else {
-                    // unsupported OS version
-                }
-            }
-
-            // novor
-            if (novorExecutable != null) {
-                novorExecutableTitle = novorExecutable.getName();
-                novorFolder = novorExecutable.getParentFile();
-            } else if (new File(getJarFilePath() + "/resources/Novor").exists()) {
-
-                // use the default Novor folder if not set by user
-                novorFolder = new File(getJarFilePath() + "/resources/Novor");
-                novorExecutableTitle = "novor.jar";
-            }
-
-            // check if the PepNovo folder is set
-            if (pepNovoFolder == null && runPepNovo) {
-                waitingHandlerCLIImpl.appendReport("\nPepNovo+ location not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check of the PepNovo executable is set
-            if (pepNovoExecutableTitle == null && runPepNovo) {
-                waitingHandlerCLIImpl.appendReport("\nPepNovo+ executable not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check if the DirecTag folder is set
-            if (direcTagFolder == null && runDirecTag) {
-                waitingHandlerCLIImpl.appendReport("\nDirecTag location not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check of the DirecTag executable is set
-            if (direcTagExecutableTitle == null && runDirecTag) {
-                waitingHandlerCLIImpl.appendReport("\nDirecTag executable not set! Sequencing canceled.", false, true);
+            // locate the algorithms
+            SequencingEngines engines = new SequencingEngines(deNovoCLIInputBean.getPepNovoExecutable(), deNovoCLIInputBean.getDirecTagExecutable(),
+                    deNovoCLIInputBean.getPNovoExecutable(), deNovoCLIInputBean.getNovorExecutable(), getJarFilePath());
+            String engineError = engines.getError(runPepNovo, runDirecTag, runPNovo, runNovor);
+            if (engineError != null) {
+                waitingHandlerCLIImpl.appendReport("\n" + engineError, false, true);
                 System.exit(1);
             }
 
-            // check if the pNovo folder is set
-            if (pNovoFolder == null && runPNovo) {
-                waitingHandlerCLIImpl.appendReport("\npNovo+ location not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check of the pNovo executable is set
-            if (pNovoExecutableTitle == null && runPNovo) {
-                waitingHandlerCLIImpl.appendReport("\npNovo+ executable not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check of the Novor executable is set
-            if (novorExecutableTitle == null && runNovor) {
-                waitingHandlerCLIImpl.appendReport("\nNovor executable not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            // check if the Novor folder is set
-            if (novorFolder == null && runNovor) {
-                waitingHandlerCLIImpl.appendReport("\nNovor location not set! Sequencing canceled.", false, true);
-                System.exit(1);
-            }
-
-            if (!runPepNovo && !runDirecTag && !runPNovo && !runNovor) {
-                waitingHandlerCLIImpl.appendReport("\nNo sequencing algorithms selected! Sequencing canceled.", false, true);
-                System.exit(1);
+            // check the limits of the container
+            ResourcePlanner resourcePlanner = ResourcePlanner.getInstance();
+            if (resourcePlanner.isLimited()) {
+                waitingHandlerCLIImpl.appendReport("Container resources: " + resourcePlanner + ".", true, true);
+                String memoryWarning = resourcePlanner.getMemoryWarning(runPepNovo, runDirecTag, runPNovo, runNovor, deNovoCLIInputBean.getNThreads());
+                if (memoryWarning != null) {
+                    waitingHandlerCLIImpl.appendReport(memoryWarning, true, true);
+                }
             }
 
             File searchParametersFile = deNovoCLIInputBean.getSearchParametersFile();
@@ -292,10 +172,15 @@ public class DeNovoCLI implements Callable {
             waitingHandlerCLIImpl.appendReport("Starting DeNovoCLI.", true, true);
             waitingHandlerCLIImpl.appendReportEndLine();
 
-            // load the spectra into the factory
+            // convert the mzML and gzipped files to mgf
+            ArrayList<File> spectrumFiles = new SpectrumFileConverter(deNovoCLIInputBean.getNThreads()).convert(deNovoCLIInputBean.getSpectrumFiles(),
+                    deNovoCLIInputBean.getOutputFile(), waitingHandlerCLIImpl);
+
+            // index the spectra in parallel and load them into the factory
             SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
             waitingHandlerCLIImpl.appendReport("Loading the spectra.", true, true);
-            for (File spectrumFile : deNovoCLIInputBean.getSpectrumFiles()) {
+            new SpectrumIndexer(deNovoCLIInputBean.getNThreads()).buildFactoryIndexes(spectrumFiles, waitingHandlerCLIImpl);
+            for (File spectrumFile : spectrumFiles) {
                 spectrumFactory.addSpectra(spectrumFile, waitingHandlerCLIImpl);
             }
             waitingHandlerCLIImpl.appendReport("Done loading the spectra.", true, true);
@@ -307,12 +192,38 @@ public class DeNovoCLI implements Callable {
             }
 
             // start the sequencing
-            DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+            DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(engines.getPepNovoFolder(), engines.getDirecTagFolder(), engines.getPNovoFolder(), engines.getNovorFolder());
             searchHandler.setNThreads(deNovoCLIInputBean.getNThreads());
-            searchHandler.startSequencing(deNovoCLIInputBean.getSpectrumFiles(),
-                    searchParameters,
-                    deNovoCLIInputBean.getOutputFile(), searchParametersFile, pepNovoExecutableTitle, direcTagExecutableTitle, pNovoExecutableTitle, novorExecutableTitle,
-                    runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandlerCLIImpl, exceptionHandler);
+            searchHandler.setMetricsFile(deNovoCLIInputBean.getMetricsFile());
+            searchHandler.setSpectrumPreprocessor(deNovoCLIInputBean.getSpectrumPreprocessor(searchParameters));
+            searchHandler.setSpectrumClusterer(deNovoCLIInputBean.getSpectrumClusterer(searchParameters));
+
+            // report the progress in a machine readable format
+            ProgressFeed progressFeed = null;
+            MetricsEndpoint metricsEndpoint = null;
+            if (waitingHandlerCLIImpl instanceof ProgressWaitingHandler) {
+                progressFeed = new ProgressFeed((ProgressWaitingHandler) waitingHandlerCLIImpl, searchHandler, deNovoCLIInputBean.getProgressFile());
+                progressFeed.start(ProgressFeed.DEFAULT_INTERVAL);
+                if (deNovoCLIInputBean.getMetricsPort() != null) {
+                    metricsEndpoint = new MetricsEndpoint(progressFeed, deNovoCLIInputBean.getMetricsPort());
+                    metricsEndpoint.start();
+                }
+            }
+
+            try {
+                searchHandler.startSequencing(spectrumFiles,
+                        searchParameters,
+                        deNovoCLIInputBean.getOutputFile(), searchParametersFile, engines.getPepNovoExecutableTitle(), engines.getDirecTagExecutableTitle(),
+                        engines.getPNovoExecutableTitle(), engines.getNovorExecutableTitle(),
+                        runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandlerCLIImpl, exceptionHandler);
+            } finally {
+                if (progressFeed != null) {
+                    progressFeed.stop();
+                }
+                if (metricsEndpoint != null) {
+                    metricsEndpoint.stop();
+                }
+            }
         } catch (Exception e) {
             exceptionHandler.catchException(e);
             return 1;
@@ -338,7 +249,7 @@ public class DeNovoCLI implements Callable {
         return System.getProperty("line.separator")
                 + "DeNovoCLI performs de novo sequencing using the PepNovo+, DirecTag, pNovo+ and Novor algoritms." + System.getProperty("line.separator")
                 + System.getProperty("line.separator")
-                + "Spectra must be provided in the Mascot Generic File (mgf) format." + System.getProperty("line.separator")
+                + "Spectra must be provided in the Mascot Generic File (mgf) or mzML format, possibly gzipped. The mzML and gzipped files are converted to mgf in the output folder." + System.getProperty("line.separator")
                 + System.getProperty("line.separator")
                 + "The identification parameters can be provided as a file as saved from the GUI or generated using the IdentificationParametersCLI." + System.getProperty("line.separator")
                 + "See http://compomics.github.io/projects/compomics-utilities/wiki/identificationparameterscli.html for more details." + System.getProperty("line.separator")
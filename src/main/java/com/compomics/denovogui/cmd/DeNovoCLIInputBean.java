@@ -1,6 +1,11 @@
 package com.compomics.denovogui.cmd;
 
 import com.compomics.cli.identification_parameters.IdentificationParametersInputBean;
+import com.compomics.denovogui.io.SpectrumClusterer;
+import com.compomics.denovogui.io.SpectrumFileConverter;
+import com.compomics.denovogui.io.SpectrumPreprocessor;
+import com.compomics.denovogui.io.SpectrumQualityFilter;
+import com.compomics.denovogui.util.ResourcePlanner;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
 import com.compomics.util.preferences.IdentificationParameters;
@@ -64,9 +69,44 @@ public class DeNovoCLIInputBean {
      */
     private File novorExecutable = null;
     /**
-     * Number of threads to use. Defaults to the number of cores available.
+     * Number of threads to use. Defaults to the number of CPUs available
+     * within the limits of the container.
      */
-    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private int nThreads;
+    /**
+     * The file where the performance metrics are written, null if not
+     * recorded.
+     */
+    private File metricsFile = null;
+    /**
+     * The file where the progress is written, null if not written.
+     */
+    private File progressFile = null;
+    /**
+     * The port where the progress is served, null if not served.
+     */
+    private Integer metricsPort = null;
+    /**
+     * If true, the spectra are preprocessed before the sequencing.
+     */
+    private boolean preprocessing = false;
+    /**
+     * The number of peaks kept per m/z window when preprocessing the spectra.
+     */
+    private int preprocessingPeaks = SpectrumPreprocessor.DEFAULT_PEAKS_PER_WINDOW;
+    /**
+     * The minimal quality score of the spectra to sequence, null if all
+     * spectra are sequenced.
+     */
+    private Double qualityCutoff = null;
+    /**
+     * If true, the replicate spectra are clustered before the sequencing.
+     */
+    private boolean clustering = false;
+    /**
+     * The minimal cosine similarity between the spectra of a cluster.
+     */
+    private double clusteringSimilarity = SpectrumClusterer.DEFAULT_SIMILARITY;
     /**
      * The path settings.
      */
@@ -141,6 +181,40 @@ public class DeNovoCLIInputBean {
         if (aLine.hasOption(DeNovoCLIParams.THREADS.id)) {
             arg = aLine.getOptionValue(DeNovoCLIParams.THREADS.id);
             nThreads = new Integer(arg);
+        } else {
+            nThreads = ResourcePlanner.getInstance().getNThreads(pepNovoEnabled);
+        }
+
+        // the performance metrics file
+        if (aLine.hasOption(DeNovoCLIParams.METRICS_FILE.id)) {
+            metricsFile = new File(aLine.getOptionValue(DeNovoCLIParams.METRICS_FILE.id));
+        }
+
+        // the progress file and endpoint
+        if (aLine.hasOption(DeNovoCLIParams.PROGRESS_FILE.id)) {
+            progressFile = new File(aLine.getOptionValue(DeNovoCLIParams.PROGRESS_FILE.id));
+        }
+        if (aLine.hasOption(DeNovoCLIParams.METRICS_PORT.id)) {
+            metricsPort = new Integer(aLine.getOptionValue(DeNovoCLIParams.METRICS_PORT.id).trim());
+        }
+
+        // the preprocessing of the spectra
+        if (aLine.hasOption(DeNovoCLIParams.PREPROCESSING.id)) {
+            preprocessing = aLine.getOptionValue(DeNovoCLIParams.PREPROCESSING.id).trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.PREPROCESSING_PEAKS.id)) {
+            preprocessingPeaks = new Integer(aLine.getOptionValue(DeNovoCLIParams.PREPROCESSING_PEAKS.id).trim());
+        }
+        if (aLine.hasOption(DeNovoCLIParams.QUALITY_CUTOFF.id)) {
+            qualityCutoff = new Double(aLine.getOptionValue(DeNovoCLIParams.QUALITY_CUTOFF.id).trim());
+        }
+
+        // the clustering of the spectra
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTERING.id)) {
+            clustering = aLine.getOptionValue(DeNovoCLIParams.CLUSTERING.id).trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTERING_SIMILARITY.id)) {
+            clusteringSimilarity = new Double(aLine.getOptionValue(DeNovoCLIParams.CLUSTERING_SIMILARITY.id).trim());
         }
         
         // identification parameters
@@ -186,9 +260,7 @@ public class DeNovoCLIInputBean {
      * found
      */
     public static ArrayList<File> getSpectrumFiles(String optionInput) throws FileNotFoundException {
-        ArrayList<String> extentions = new ArrayList<String>();
-        extentions.add(".mgf");
-        return CommandLineUtils.getFiles(optionInput, extentions);
+        return CommandLineUtils.getFiles(optionInput, SpectrumFileConverter.getSupportedExtensions());
     }
 
     /**
@@ -272,6 +344,129 @@ public class DeNovoCLIInputBean {
         return nThreads;
     }
 
+    /**
+     * Returns the file where the performance metrics are written, null if not
+     * recorded.
+     *
+     * @return the file where the performance metrics are written
+     */
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Returns the file where the progress is written, null if not written.
+     *
+     * @return the file where the progress is written
+     */
+    public File getProgressFile() {
+        return progressFile;
+    }
+
+    /**
+     * Returns the port where the progress is served, null if not served.
+     *
+     * @return the port where the progress is served
+     */
+    public Integer getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Returns if the spectra are to be preprocessed before the sequencing.
+     *
+     * @return if the spectra are to be preprocessed before the sequencing
+     */
+    public boolean enablePreprocessing() {
+        return preprocessing;
+    }
+
+    /**
+     * Returns the number of peaks kept per m/z window when preprocessing the
+     * spectra.
+     *
+     * @return the number of peaks kept per m/z window
+     */
+    public int getPreprocessingPeaks() {
+        return preprocessingPeaks;
+    }
+
+    /**
+     * Returns the minimal quality score of the spectra to sequence.
+     *
+     * @return the minimal quality score of the spectra to sequence, null if
+     * all spectra are sequenced
+     */
+    public Double getQualityCutoff() {
+        return qualityCutoff;
+    }
+
+    /**
+     * Returns if the replicate spectra are to be clustered before the
+     * sequencing.
+     *
+     * @return if the replicate spectra are to be clustered
+     */
+    public boolean enableClustering() {
+        return clustering;
+    }
+
+    /**
+     * Returns the minimal cosine similarity between the spectra of a cluster.
+     *
+     * @return the minimal cosine similarity between the spectra of a cluster
+     */
+    public double getClusteringSimilarity() {
+        return clusteringSimilarity;
+    }
+
+    /**
+     * Returns the clusterer of the spectra for the given search parameters,
+     * null if the spectra are not clustered.
+     *
+     * @param searchParameters the search parameters
+     *
+     * @return the clusterer of the spectra, null if the spectra are not
+     * clustered
+     */
+    public SpectrumClusterer getSpectrumClusterer(SearchParameters searchParameters) {
+        if (!clustering) {
+            return null;
+        }
+        SpectrumClusterer spectrumClusterer = new SpectrumClusterer(searchParameters.getPrecursorAccuracyDalton(), searchParameters.getFragmentIonAccuracy());
+        spectrumClusterer.setSimilarity(clusteringSimilarity);
+        return spectrumClusterer;
+    }
+
+    /**
+     * Returns the preprocessor of the spectra for the given search
+     * parameters, null if the spectra are neither preprocessed nor filtered.
+     *
+     * @param searchParameters the search parameters
+     *
+     * @return the preprocessor of the spectra, null if the spectra are
+     * neither preprocessed nor filtered
+     */
+    public SpectrumPreprocessor getSpectrumPreprocessor(SearchParameters searchParameters) {
+        if (!preprocessing && qualityCutoff == null) {
+            return null;
+        }
+        SpectrumPreprocessor spectrumPreprocessor;
+        if (preprocessing) {
+            spectrumPreprocessor = new SpectrumPreprocessor(searchParameters.getFragmentIonAccuracy());
+            spectrumPreprocessor.setPeaksPerWindow(preprocessingPeaks);
+        } else {
+            // the peaks are copied as they are
+            spectrumPreprocessor = SpectrumPreprocessor.getFilter(searchParameters.getFragmentIonAccuracy());
+        }
+        if (qualityCutoff != null) {
+            SpectrumQualityFilter qualityFilter = new SpectrumQualityFilter(searchParameters.getFragmentIonAccuracy());
+            qualityFilter.setCutoff(qualityCutoff);
+            spectrumPreprocessor.setQualityFilter(qualityFilter);
+        }
+        return spectrumPreprocessor;
+    }
+
     /**
      * Verifies the command line start parameters.
      *
@@ -323,6 +518,65 @@ public class DeNovoCLIInputBean {
             }
         }
 
+        if (aLine.hasOption(DeNovoCLIParams.METRICS_PORT.id)) {
+            String portTxt = aLine.getOptionValue(DeNovoCLIParams.METRICS_PORT.id).trim();
+            boolean valid;
+            try {
+                int port = new Integer(portTxt);
+                valid = port > 0 && port < 65536;
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            if (!valid) {
+                System.out.println(System.getProperty("line.separator") + "Invalid metrics port \'" + portTxt + "\'." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.PREPROCESSING_PEAKS.id)) {
+            String peaksTxt = aLine.getOptionValue(DeNovoCLIParams.PREPROCESSING_PEAKS.id).trim();
+            boolean valid;
+            try {
+                valid = new Integer(peaksTxt) > 0;
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            if (!valid) {
+                System.out.println(System.getProperty("line.separator") + "Invalid number of preprocessing peaks \'" + peaksTxt + "\'." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.QUALITY_CUTOFF.id)) {
+            String cutoffTxt = aLine.getOptionValue(DeNovoCLIParams.QUALITY_CUTOFF.id).trim();
+            boolean valid;
+            try {
+                double cutoff = new Double(cutoffTxt);
+                valid = cutoff >= 0 && cutoff <= 1;
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            if (!valid) {
+                System.out.println(System.getProperty("line.separator") + "Invalid quality cutoff \'" + cutoffTxt + "\'." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTERING_SIMILARITY.id)) {
+            String similarityTxt = aLine.getOptionValue(DeNovoCLIParams.CLUSTERING_SIMILARITY.id).trim();
+            boolean valid;
+            try {
+                double similarity = new Double(similarityTxt);
+                valid = similarity > 0 && similarity <= 1;
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            if (!valid) {
+                System.out.println(System.getProperty("line.separator") + "Invalid cluster similarity \'" + similarityTxt + "\'." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
         // Check the identification parameters
         if (!IdentificationParametersInputBean.isValidStartup(aLine, false)) {
             return false;
@@ -14,10 +14,10 @@ public enum DeNovoCLIParams {
     // IMPORTANT: Any change here must be reported in the wiki: 
     // https://github.com/compomics/denovogui/wiki/DeNovoCLI.
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    SPECTRUM_FILES("spectrum_files", "Spectrum files (mgf format), comma separated list or an entire folder.", true),
+    SPECTRUM_FILES("spectrum_files", "Spectrum files (mgf or mzML format, possibly gzipped), comma separated list or an entire folder.", true),
     OUTPUT_FOLDER("output_folder", "The output folder.", true),
     IDENTIFICATION_PARAMETERS("id_params", "A search parameters file. Can be generated from the GUI or using the IdentificationParametersCLI (see http://compomics.github.io/projects/compomics-utilities/wiki/identificationparameterscli.html for details).", false),
-    THREADS("threads", "The number of threads to use for the processing. Default is the number of cores available.", false),
+    THREADS("threads", "The number of threads to use for the processing. Default is the number of cores available, within the CPU and memory limits of the container.", false),
     PEPNOVO("pepnovo", "Turn the PepNovo+ sequencing on or off (1: on, 0: off, default is '1'). (At least one sequencing method has to be enabled.)", false),
     DIRECT_TAG("directag", "Turn the DirecTag sequencing on or off (1: on, 0: off, default is '1'). (At least one sequencing method has to be enabled.)", false),
     PNOVO("pnovo", "Turn the pNovo+ sequencing on or off (1: on, 0: off, default is '0'). (At least one sequencing method has to be enabled.)", false),
@@ -25,7 +25,15 @@ public enum DeNovoCLIParams {
     PEPNOVO_LOCATION("pepnovo_folder", "The PepNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
     DIRECTAG_LOCATION("directag_folder", "The DirecTag executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
     PNOVO_LOCATION("pnovo_folder", "The pNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
-    NOVOR_LOCATION("novor_folder", "The Novor executable, defaults to the OS dependent versions included with DeNovoGUI.", false);
+    NOVOR_LOCATION("novor_folder", "The Novor executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    METRICS_FILE("metrics_file", "File where the performance metrics of the sequencing jobs are appended as JSON lines. CPU, memory and I/O metrics are only available on Linux. Not recorded by default.", false),
+    PROGRESS_FILE("progress_file", "File where the progress of the sequencing is appended as JSON lines every second. Not written by default.", false),
+    METRICS_PORT("metrics_port", "Local port where the progress of the sequencing is served in the Prometheus text format at /metrics. Not served by default.", false),
+    PREPROCESSING("preprocessing", "Preprocess the spectra before the sequencing: removal of the precursor, noise and isotope peaks, and of all but the most intense peaks per 100 m/z window (1: on, 0: off, default is '0').", false),
+    PREPROCESSING_PEAKS("preprocessing_peaks", "The number of most intense peaks kept per 100 m/z window when preprocessing the spectra. Default is '10'.", false),
+    QUALITY_CUTOFF("quality_cutoff", "Minimal quality score of the spectra to sequence, between 0 and 1, based on the number of peaks, signal to noise ratio and complementary ions. The spectra below the cutoff are skipped and listed in skipped_spectra.txt. All spectra are sequenced by default.", false),
+    CLUSTERING("clustering", "Cluster the replicate spectra and only sequence the most intense spectrum of every cluster, the other spectra get its results (1: on, 0: off, default is '0').", false),
+    CLUSTERING_SIMILARITY("cluster_similarity", "The minimal cosine similarity between the spectra of a cluster, between 0 and 1. Default is '0.8'.", false);
 
     /**
      * Short Id for the CLI parameter.
@@ -96,6 +104,14 @@ public enum DeNovoCLIParams {
         output += "-" + String.format(formatter, PNOVO_LOCATION.id) + " " + PNOVO_LOCATION.description + "\n";
         output += "-" + String.format(formatter, NOVOR_LOCATION.id) + " " + NOVOR_LOCATION.description + "\n";
         output += "-" + String.format(formatter, THREADS.id) + " " + THREADS.description + "\n";
+        output += "-" + String.format(formatter, METRICS_FILE.id) + " " + METRICS_FILE.description + "\n";
+        output += "-" + String.format(formatter, PROGRESS_FILE.id) + " " + PROGRESS_FILE.description + "\n";
+        output += "-" + String.format(formatter, METRICS_PORT.id) + " " + METRICS_PORT.description + "\n";
+        output += "-" + String.format(formatter, PREPROCESSING.id) + " " + PREPROCESSING.description + "\n";
+        output += "-" + String.format(formatter, PREPROCESSING_PEAKS.id) + " " + PREPROCESSING_PEAKS.description + "\n";
+        output += "-" + String.format(formatter, QUALITY_CUTOFF.id) + " " + QUALITY_CUTOFF.description + "\n";
+        output += "-" + String.format(formatter, CLUSTERING.id) + " " + CLUSTERING.description + "\n";
+        output += "-" + String.format(formatter, CLUSTERING_SIMILARITY.id) + " " + CLUSTERING_SIMILARITY.description + "\n";
 
         output += "\n\nOptional Temporary Folder:\n\n";
         output += "-" + String.format(formatter, PathSettingsCLIParams.ALL.id) + " " + PathSettingsCLIParams.ALL.description + "\n";
@@ -0,0 +1,1098 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.io.FolderWatcher;
+import com.compomics.denovogui.io.SpectrumFileConverter;
+import com.compomics.denovogui.io.SpectrumIndexer;
+import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
+import com.compomics.denovogui.util.JsonLine;
+import com.compomics.denovogui.util.Properties;
+import com.compomics.denovogui.util.ResourcePlanner;
+import com.compomics.software.CompomicsWrapper;
+import com.compomics.software.settings.UtilitiesPathPreferences;
+import com.compomics.util.Util;
+import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
+import com.compomics.util.experiment.biology.EnzymeFactory;
+import com.compomics.util.experiment.biology.PTMFactory;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.preferences.UtilitiesUserPreferences;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.cli.*;
+
+/**
+ * Long-running DeNovoCLI process accepting sequencing jobs on a local port.
+ * The factories, the engine installations and the search parameters are
+ * loaded once and kept for all jobs, removing the start-up cost of DeNovoCLI
+ * for every spectrum file.
+ * <br><br>
+ * The daemon reads one command per line and answers every command with one
+ * JSON line:
+ * <br>- submit [DeNovoCLI arguments]: queues a job, e.g. 'submit
+ * -spectrum_files "my file.mgf" -output_folder out -id_params
+ * params.par'
+ * <br>- status [job id]: returns the status of the daemon or of a job
+ * <br>- cancel [job id]: cancels a job
+ * <br>- shutdown: cancels the queued jobs and stops the daemon once the
+ * running jobs are completed
+ * <br><br>
+ * The jobs are run in the order of submission and share the number of threads
+ * given to the daemon. Jobs with different search parameters files are not
+ * run simultaneously, as the modifications are shared by the whole process.
+ * The engine locations are set when starting the daemon.
+ * <br><br>
+ * A folder can be watched, every complete spectrum file dropped in the folder
+ * is then sequenced in a separate output folder where a manifest.json file is
+ * written when the job ends. Files with a manifest are not sequenced again,
+ * delete the manifest to sequence a file again.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class DeNovoDaemon {
+
+    /**
+     * The default port.
+     */
+    public static final int DEFAULT_PORT = 7170;
+    /**
+     * The number of spectrum files kept in the spectrum factory before the
+     * factory is cleared. New jobs are held until the running jobs are
+     * completed when this number is reached.
+     */
+    public static final int MAX_LOADED_SPECTRUM_FILES = 256;
+    /**
+     * The number of ended jobs kept for status queries.
+     */
+    public static final int MAX_JOB_HISTORY = 1000;
+    /**
+     * The interval between two listings of the watch folder in milliseconds.
+     */
+    public static final long WATCH_POLLING_INTERVAL = 1000;
+    /**
+     * The port where the jobs are accepted.
+     */
+    private int port = DEFAULT_PORT;
+    /**
+     * The number of threads shared by the jobs.
+     */
+    private int nThreads = ResourcePlanner.getInstance().getNThreads(true);
+    /**
+     * The number of threads used by the running jobs.
+     */
+    private int nThreadsUsed = 0;
+    /**
+     * The installations of the algorithms.
+     */
+    private SequencingEngines engines;
+    /**
+     * The exception handler.
+     */
+    private CommandLineExceptionHandler exceptionHandler = new CommandLineExceptionHandler();
+    /**
+     * The spectrum factory.
+     */
+    private SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    /**
+     * The jobs indexed by id, in the order of submission.
+     */
+    private final LinkedHashMap<Integer, DaemonJob> jobs = new LinkedHashMap<Integer, DaemonJob>();
+    /**
+     * The jobs waiting to be run, in the order of submission.
+     */
+    private final ArrayList<DaemonJob> waitingJobs = new ArrayList<DaemonJob>();
+    /**
+     * The jobs running.
+     */
+    private final ArrayList<DaemonJob> runningJobs = new ArrayList<DaemonJob>();
+    /**
+     * The id of the last job submitted.
+     */
+    private int lastId = 0;
+    /**
+     * The key of the search parameters of the running jobs.
+     */
+    private String activeParametersKey = null;
+    /**
+     * The spectrum files loaded in the spectrum factory indexed by name.
+     */
+    private final HashMap<String, File> loadedSpectrumFiles = new HashMap<String, File>();
+    /**
+     * The search parameters loaded indexed by file path.
+     */
+    private final HashMap<String, SearchParameters> searchParametersCache = new HashMap<String, SearchParameters>();
+    /**
+     * The modification date of the search parameters files loaded indexed by
+     * file path.
+     */
+    private final HashMap<String, Long> searchParametersDates = new HashMap<String, Long>();
+    /**
+     * The key of the search parameters whose modifications are loaded in the
+     * modifications factory.
+     */
+    private String loadedParametersKey = null;
+    /**
+     * Indicates whether the daemon is shutting down.
+     */
+    private boolean shuttingDown = false;
+    /**
+     * The server socket.
+     */
+    private ServerSocket serverSocket;
+    /**
+     * The watcher of the watch folder, null if no folder is watched.
+     */
+    private FolderWatcher folderWatcher = null;
+    /**
+     * The folder where the results of the watched files are written.
+     */
+    private File watchOutputFolder = null;
+    /**
+     * The DeNovoCLI arguments used for the watched files.
+     */
+    private ArrayList<String> watchArguments = null;
+    /**
+     * The maximal number of jobs of watched files queued or running.
+     */
+    private int watchMaxJobs;
+    /**
+     * The number of jobs of watched files queued or running.
+     */
+    private int nWatchJobs = 0;
+    /**
+     * The watched files complete and waiting to be submitted.
+     */
+    private final ArrayList<File> pendingWatchFiles = new ArrayList<File>();
+    /**
+     * The executor polling the watch folder, null if no folder is watched.
+     */
+    private ScheduledExecutorService watchExecutor = null;
+    /**
+     * The executor running the jobs and the connections.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "DeNovoDaemon");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Constructor. Parses the command line and runs the daemon until it is
+     * shut down.
+     *
+     * @param args the command line arguments
+     */
+    public DeNovoDaemon(String[] args) {
+
+        try {
+
+            Options lOptions = new Options();
+            DeNovoDaemonParams.createOptionsCLI(lOptions);
+            BasicParser parser = new BasicParser();
+            CommandLine line = parser.parse(lOptions, args);
+
+            if (!isValidStartup(line)) {
+                PrintWriter lPrintWriter = new PrintWriter(System.out);
+                lPrintWriter.print("\n======================" + System.getProperty("line.separator"));
+                lPrintWriter.print("DeNovoDaemon" + System.getProperty("line.separator"));
+                lPrintWriter.print("======================" + System.getProperty("line.separator"));
+                lPrintWriter.print(getHeader());
+                lPrintWriter.print(DeNovoDaemonParams.getOptionsAsString());
+                lPrintWriter.flush();
+                lPrintWriter.close();
+
+                System.exit(1);
+            } else {
+                call(line);
+            }
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+        }
+    }
+
+    /**
+     * Loads the settings and factories and serves the jobs until the daemon
+     * is shut down.
+     *
+     * @param line the command line
+     *
+     * @throws IOException thrown if the port cannot be bound
+     */
+    private void call(CommandLine line) throws IOException {
+
+        if (line.hasOption(DeNovoDaemonParams.PORT.id)) {
+            port = new Integer(line.getOptionValue(DeNovoDaemonParams.PORT.id).trim());
+        }
+        if (line.hasOption(DeNovoDaemonParams.THREADS.id)) {
+            nThreads = new Integer(line.getOptionValue(DeNovoDaemonParams.THREADS.id).trim());
+        }
+
+        // path settings
+        PathSettingsCLIInputBean pathSettingsCLIInputBean = new PathSettingsCLIInputBean(line);
+        if (pathSettingsCLIInputBean.getLogFolder() != null) {
+            DeNovoCLI.redirectErrorStream(pathSettingsCLIInputBean.getLogFolder());
+        }
+        if (pathSettingsCLIInputBean.hasInput()) {
+            PathSettingsCLI pathSettingsCLI = new PathSettingsCLI(pathSettingsCLIInputBean);
+            pathSettingsCLI.setPathSettings();
+        } else {
+            try {
+                File pathConfigurationFile = new File(getJarFilePath(), UtilitiesPathPreferences.configurationFileName);
+                if (pathConfigurationFile.exists()) {
+                    DeNovoGUIPathPreferences.loadPathPreferencesFromFile(pathConfigurationFile);
+                }
+            } catch (Exception e) {
+                System.out.println("An error occurred when setting the path configurations. Default paths will be used.");
+                exceptionHandler.catchException(e);
+            }
+        }
+
+        // warm up the factories
+        EnzymeFactory.getInstance();
+        PTMFactory.getInstance();
+
+        // locate the algorithms
+        engines = new SequencingEngines(getFile(line, DeNovoDaemonParams.PEPNOVO_LOCATION), getFile(line, DeNovoDaemonParams.DIRECTAG_LOCATION),
+                getFile(line, DeNovoDaemonParams.PNOVO_LOCATION), getFile(line, DeNovoDaemonParams.NOVOR_LOCATION), getJarFilePath());
+
+        // set this version as the default DeNovoGUI version once for all jobs
+        UtilitiesUserPreferences utilitiesUserPreferences = UtilitiesUserPreferences.loadUserPreferences();
+        if (!getJarFilePath().equalsIgnoreCase(".")) {
+            utilitiesUserPreferences.setDeNovoGuiPath(new File(getJarFilePath(), "DeNovoGUI-" + Properties.getVersion() + ".jar").getAbsolutePath());
+            UtilitiesUserPreferences.saveUserPreferences(utilitiesUserPreferences);
+        }
+        if (utilitiesUserPreferences.isAutoUpdate()) {
+            Util.sendGAUpdate("UA-36198780-4", "startrun-cl", "denovogui-" + Properties.getVersion());
+        }
+
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        System.out.println("DeNovoDaemon listening on 127.0.0.1:" + port + " using " + nThreads + " thread(s).");
+        ResourcePlanner resourcePlanner = ResourcePlanner.getInstance();
+        if (resourcePlanner.isLimited()) {
+            System.out.println("Container resources: " + resourcePlanner + ".");
+        }
+
+        // watch folder
+        if (line.hasOption(DeNovoDaemonParams.WATCH_FOLDER.id)) {
+            startWatching(line);
+        }
+
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (isShuttingDown()) {
+                    break;
+                }
+                throw e;
+            }
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+
+        if (watchExecutor != null) {
+            watchExecutor.shutdownNow();
+        }
+
+        // let the connections send their last answer
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // stop anyway
+        }
+        clearSpectrumFactory();
+        System.out.println("DeNovoDaemon stopped.");
+    }
+
+    /**
+     * Reads the commands of a connection and answers them until the
+     * connection is closed.
+     *
+     * @param socket the socket of the connection
+     */
+    private void serve(Socket socket) {
+        try {
+            try {
+                BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+                String command;
+                while ((command = br.readLine()) != null) {
+                    command = command.trim();
+                    if (command.length() > 0) {
+                        writer.print(processCommand(command));
+                        writer.print('\n');
+                        writer.flush();
+                    }
+                }
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    /**
+     * Processes a command and returns the answer.
+     *
+     * @param command the command
+     *
+     * @return the answer as a JSON object
+     */
+    private String processCommand(String command) {
+        try {
+            ArrayList<String> tokens = tokenize(command);
+            String name = tokens.remove(0).toLowerCase();
+            if (name.equals("submit")) {
+                return submit(tokens.toArray(new String[tokens.size()]), null).toJson();
+            } else if (name.equals("status")) {
+                if (tokens.isEmpty()) {
+                    return getStatus();
+                }
+                DaemonJob job = getJob(tokens.get(0));
+                return job == null ? getError("Job " + tokens.get(0) + " not found.") : job.toJson();
+            } else if (name.equals("cancel")) {
+                if (tokens.isEmpty()) {
+                    return getError("Job id missing.");
+                }
+                DaemonJob job = getJob(tokens.get(0));
+                if (job == null) {
+                    return getError("Job " + tokens.get(0) + " not found.");
+                }
+                cancel(job);
+                return job.toJson();
+            } else if (name.equals("shutdown")) {
+                shutdown();
+                return getStatus();
+            }
+            return getError("Unknown command '" + name + "'. Supported commands: submit, status, cancel, shutdown.");
+        } catch (IllegalArgumentException e) {
+            return getError(e.getMessage());
+        } catch (Exception e) {
+            return getError(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues a job.
+     *
+     * @param args the DeNovoCLI arguments of the job
+     * @param manifestFile the file where the manifest of the job is written
+     * when it ends, null if not written
+     *
+     * @return the job
+     *
+     * @throws IllegalArgumentException thrown if the arguments are not valid
+     * @throws Exception thrown if the arguments cannot be parsed
+     */
+    private DaemonJob submit(String[] args, File manifestFile) throws Exception {
+
+        Options lOptions = new Options();
+        DeNovoCLIParams.createOptionsCLI(lOptions);
+        CommandLine line = new BasicParser().parse(lOptions, args);
+        if (!line.hasOption(DeNovoCLIParams.IDENTIFICATION_PARAMETERS.id)) {
+            throw new IllegalArgumentException("Search parameters file not specified.");
+        }
+        if (!DeNovoCLIInputBean.isValidStartup(line)) {
+            throw new IllegalArgumentException("Invalid DeNovoCLI arguments, see the output of the daemon for details.");
+        }
+        DeNovoCLIInputBean deNovoCLIInputBean = new DeNovoCLIInputBean(line);
+        String engineError = engines.getError(deNovoCLIInputBean.enablePepNovo(), deNovoCLIInputBean.enableDirecTag(),
+                deNovoCLIInputBean.enablePNovo(), deNovoCLIInputBean.enableNovor());
+        if (engineError != null) {
+            throw new IllegalArgumentException(engineError);
+        }
+
+        // small jobs use one thread by default to run in parallel
+        int jobThreads = line.hasOption(DeNovoCLIParams.THREADS.id) ? deNovoCLIInputBean.getNThreads() : 1;
+        jobThreads = Math.max(1, Math.min(jobThreads, nThreads));
+
+        DaemonJob job;
+        synchronized (this) {
+            if (shuttingDown) {
+                throw new IllegalArgumentException("The daemon is shutting down.");
+            }
+            job = new DaemonJob(++lastId, deNovoCLIInputBean, jobThreads);
+            job.setManifestFile(manifestFile);
+            jobs.put(job.getId(), job);
+            waitingJobs.add(job);
+            schedule();
+        }
+        return job;
+    }
+
+    /**
+     * Starts the waiting jobs in the order of submission as long as enough
+     * threads are available. A job is held, together with the ones submitted
+     * after it, if it uses other search parameters than the running jobs, if
+     * one of its spectrum files is used by a running job, or if the spectrum
+     * factory needs to be cleared.
+     */
+    private synchronized void schedule() {
+
+        while (!waitingJobs.isEmpty()) {
+
+            DaemonJob job = waitingJobs.get(0);
+
+            if (isSpectrumFactoryFull(job)) {
+                if (!runningJobs.isEmpty()) {
+                    return;
+                }
+                clearSpectrumFactory();
+            }
+            if (!runningJobs.isEmpty() && !job.getParametersKey().equals(activeParametersKey)) {
+                return;
+            }
+            if (job.getNThreads() > nThreads - nThreadsUsed) {
+                return;
+            }
+            for (DaemonJob runningJob : runningJobs) {
+                for (File spectrumFile : job.getSpectrumFiles()) {
+                    if (runningJob.getSpectrumFiles().contains(spectrumFile)) {
+                        return;
+                    }
+                }
+            }
+
+            waitingJobs.remove(0);
+            runningJobs.add(job);
+            nThreadsUsed += job.getNThreads();
+            activeParametersKey = job.getParametersKey();
+            for (File spectrumFile : job.getSpectrumFiles()) {
+                loadedSpectrumFiles.put(spectrumFile.getName(), spectrumFile);
+            }
+
+            final DaemonJob jobToRun = job;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runJob(jobToRun);
+                }
+            });
+        }
+    }
+
+    /**
+     * Indicates whether the spectrum factory must be cleared before running
+     * the given job, i.e. if too many files are loaded or if a different file
+     * with the same name as one of the files of the job is loaded.
+     *
+     * @param job the job
+     *
+     * @return true if the spectrum factory must be cleared
+     */
+    private boolean isSpectrumFactoryFull(DaemonJob job) {
+        if (loadedSpectrumFiles.size() >= MAX_LOADED_SPECTRUM_FILES) {
+            return true;
+        }
+        for (File spectrumFile : job.getSpectrumFiles()) {
+            File loadedFile = loadedSpectrumFiles.get(spectrumFile.getName());
+            if (loadedFile != null && !loadedFile.equals(spectrumFile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes and clears the spectrum files loaded in the spectrum factory.
+     */
+    private synchronized void clearSpectrumFactory() {
+        try {
+            spectrumFactory.closeFiles();
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+        }
+        spectrumFactory.clearFactory();
+        loadedSpectrumFiles.clear();
+    }
+
+    /**
+     * Runs a job.
+     *
+     * @param job the job
+     */
+    private void runJob(DaemonJob job) {
+
+        DeNovoCLIInputBean deNovoCLIInputBean = job.getDeNovoCLIInputBean();
+        JobStatus status = JobStatus.ERROR;
+        String message = null;
+        ProgressFeed progressFeed = null;
+
+        try {
+            DaemonWaitingHandler waitingHandler = new DaemonWaitingHandler(job.getLogFile());
+            job.start(waitingHandler);
+            System.out.println(new Date() + " Job " + job.getId() + " started.");
+
+            File searchParametersFile = deNovoCLIInputBean.getSearchParametersFile();
+            SearchParameters searchParameters = getSearchParameters(searchParametersFile, waitingHandler);
+
+            // check precursor tolerance, max is 5, but default for search params is 10...
+            if (searchParameters.getPrecursorAccuracyDalton() > 5) {
+                message = "Precursor tolerance has to be between 0 and 5.0!";
+                waitingHandler.appendReport(message, true, true);
+                return;
+            }
+
+            // convert the mzML and gzipped files to mgf
+            ArrayList<File> mgfFiles = new SpectrumFileConverter(job.getNThreads()).convert(deNovoCLIInputBean.getSpectrumFiles(), deNovoCLIInputBean.getOutputFile(), waitingHandler);
+            if (waitingHandler.isRunCanceled()) {
+                if (job.isCancelRequested()) {
+                    status = JobStatus.CANCELED;
+                } else {
+                    message = "The conversion of the spectra was canceled.";
+                }
+                return;
+            }
+
+            // build the missing factory indexes one file per thread and load the spectra
+            waitingHandler.appendReport("Loading the spectra.", true, true);
+            new SpectrumIndexer(job.getNThreads()).buildFactoryIndexes(mgfFiles, waitingHandler);
+            for (File spectrumFile : mgfFiles) {
+                spectrumFactory.addSpectra(spectrumFile, waitingHandler);
+            }
+            waitingHandler.appendReport("Done loading the spectra.", true, true);
+
+            DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(engines.getPepNovoFolder(), engines.getDirecTagFolder(), engines.getPNovoFolder(), engines.getNovorFolder());
+            searchHandler.setNThreads(job.getNThreads());
+            searchHandler.setMetricsFile(deNovoCLIInputBean.getMetricsFile());
+            searchHandler.setSpectrumPreprocessor(deNovoCLIInputBean.getSpectrumPreprocessor(searchParameters));
+            searchHandler.setSpectrumClusterer(deNovoCLIInputBean.getSpectrumClusterer(searchParameters));
+            searchHandler.setRegisterVersion(false);
+            job.setSequencingHandler(searchHandler);
+
+            if (deNovoCLIInputBean.getProgressFile() != null) {
+                progressFeed = new ProgressFeed(waitingHandler, searchHandler, deNovoCLIInputBean.getProgressFile());
+                progressFeed.start(ProgressFeed.DEFAULT_INTERVAL);
+            }
+
+            if (!waitingHandler.isRunCanceled()) {
+                // the search parameters are saved by the daemon as they are shared by the jobs
+                searchHandler.startSequencing(mgfFiles,
+                        searchParameters,
+                        deNovoCLIInputBean.getOutputFile(), null, engines.getPepNovoExecutableTitle(), engines.getDirecTagExecutableTitle(),
+                        engines.getPNovoExecutableTitle(), engines.getNovorExecutableTitle(),
+                        deNovoCLIInputBean.enablePepNovo(), deNovoCLIInputBean.enableDirecTag(), deNovoCLIInputBean.enablePNovo(), deNovoCLIInputBean.enableNovor(),
+                        waitingHandler, exceptionHandler);
+            }
+
+            if (job.isCancelRequested()) {
+                status = JobStatus.CANCELED;
+            } else if (waitingHandler.isRunCanceled()) {
+                message = "The sequencing was canceled, see the log of the job for details.";
+            } else {
+                saveSearchParameters(searchParametersFile, searchParameters);
+                status = JobStatus.FINISHED;
+            }
+        } catch (Exception e) {
+            message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            exceptionHandler.catchException(e);
+        } finally {
+            if (progressFeed != null) {
+                progressFeed.stop();
+            }
+            job.end(status, message);
+            System.out.println(new Date() + " Job " + job.getId() + " " + status.toString().toLowerCase() + ".");
+            writeManifest(job);
+            jobEnded(job);
+        }
+    }
+
+    /**
+     * Releases the resources of a job ended and starts the next jobs.
+     *
+     * @param job the job ended
+     */
+    private synchronized void jobEnded(DaemonJob job) {
+
+        if (runningJobs.remove(job)) {
+            nThreadsUsed -= job.getNThreads();
+        }
+        if (job.getManifestFile() != null) {
+            nWatchJobs--;
+        }
+
+        // keep a limited history
+        int nEnded = jobs.size() - waitingJobs.size() - runningJobs.size();
+        Iterator<DaemonJob> iterator = jobs.values().iterator();
+        while (nEnded > MAX_JOB_HISTORY && iterator.hasNext()) {
+            if (iterator.next().isEnded()) {
+                iterator.remove();
+                nEnded--;
+            }
+        }
+
+        if (shuttingDown && runningJobs.isEmpty()) {
+            closeServer();
+        } else {
+            schedule();
+        }
+    }
+
+    /**
+     * Starts watching the watch folder given on the command line.
+     *
+     * @param line the command line
+     */
+    private void startWatching(CommandLine line) {
+
+        File watchFolder = new File(line.getOptionValue(DeNovoDaemonParams.WATCH_FOLDER.id));
+        if (line.hasOption(DeNovoDaemonParams.WATCH_OUTPUT_FOLDER.id)) {
+            watchOutputFolder = new File(line.getOptionValue(DeNovoDaemonParams.WATCH_OUTPUT_FOLDER.id));
+        } else {
+            watchOutputFolder = new File(watchFolder, "results");
+        }
+        watchArguments = tokenize(line.getOptionValue(DeNovoDaemonParams.WATCH_ARGUMENTS.id));
+        watchMaxJobs = nThreads;
+        if (line.hasOption(DeNovoDaemonParams.WATCH_MAX_JOBS.id)) {
+            watchMaxJobs = new Integer(line.getOptionValue(DeNovoDaemonParams.WATCH_MAX_JOBS.id).trim());
+        }
+
+        folderWatcher = new FolderWatcher(watchFolder, SpectrumFileConverter.getSupportedExtensions(), FolderWatcher.DEFAULT_STABILITY_TIME);
+        watchExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DeNovoDaemon watch folder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watchExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pollWatchFolder();
+                } catch (Exception e) {
+                    exceptionHandler.catchException(e);
+                }
+            }
+        }, 0, WATCH_POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+
+        System.out.println("Watching " + watchFolder.getAbsolutePath() + ", results written to " + watchOutputFolder.getAbsolutePath() + ".");
+    }
+
+    /**
+     * Queues the watched files which became complete and submits the files
+     * queued as long as the maximal number of watch jobs is not reached.
+     * Files which already have a manifest are ignored.
+     */
+    private void pollWatchFolder() {
+
+        for (File spectrumFile : folderWatcher.poll()) {
+            if (!getManifestFile(spectrumFile).exists()) {
+                synchronized (this) {
+                    if (!pendingWatchFiles.contains(spectrumFile)) {
+                        pendingWatchFiles.add(spectrumFile);
+                    }
+                }
+            }
+        }
+
+        while (true) {
+
+            File spectrumFile;
+            synchronized (this) {
+                if (shuttingDown || pendingWatchFiles.isEmpty() || nWatchJobs >= watchMaxJobs) {
+                    return;
+                }
+                spectrumFile = pendingWatchFiles.remove(0);
+                nWatchJobs++;
+            }
+
+            File outputFolder = getManifestFile(spectrumFile).getParentFile();
+            ArrayList<String> args = new ArrayList<String>(watchArguments);
+            args.add("-" + DeNovoCLIParams.SPECTRUM_FILES.id);
+            args.add(spectrumFile.getAbsolutePath());
+            args.add("-" + DeNovoCLIParams.OUTPUT_FOLDER.id);
+            args.add(outputFolder.getAbsolutePath());
+
+            try {
+                if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+                    throw new IllegalArgumentException("Failed to create the output folder " + outputFolder.getAbsolutePath() + ".");
+                }
+                DaemonJob job = submit(args.toArray(new String[args.size()]), getManifestFile(spectrumFile));
+                System.out.println(new Date() + " Job " + job.getId() + " submitted for " + spectrumFile.getName() + ".");
+            } catch (Exception e) {
+                synchronized (this) {
+                    nWatchJobs--;
+                }
+                System.out.println(new Date() + " Failed to submit " + spectrumFile.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the manifest file of a watched spectrum file. The results of
+     * every watched file are written to a separate folder named after the
+     * file, together with the manifest.
+     *
+     * @param spectrumFile the watched spectrum file
+     *
+     * @return the manifest file
+     */
+    private File getManifestFile(File spectrumFile) {
+        String name = spectrumFile.getName();
+        String folderName = name;
+        for (String extension : SpectrumFileConverter.getSupportedExtensions()) {
+            if (name.toLowerCase().endsWith(extension.toLowerCase())) {
+                folderName = name.substring(0, name.length() - extension.length());
+                break;
+            }
+        }
+        return new File(new File(watchOutputFolder, folderName), "manifest.json");
+    }
+
+    /**
+     * Writes the manifest of a job if needed. Errors are only reported as the
+     * job already ended.
+     *
+     * @param job the job
+     */
+    private void writeManifest(DaemonJob job) {
+        try {
+            job.writeManifest();
+        } catch (IOException e) {
+            exceptionHandler.catchException(e);
+        }
+    }
+
+    /**
+     * Returns the search parameters stored in the given file. The parameters
+     * are loaded only once unless the file is modified, and their
+     * modifications are loaded in the modifications factory when needed.
+     *
+     * @param searchParametersFile the search parameters file
+     * @param waitingHandler the waiting handler of the job
+     *
+     * @return the search parameters
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     * @throws ClassNotFoundException thrown if the file cannot be parsed
+     */
+    private SearchParameters getSearchParameters(File searchParametersFile, DaemonWaitingHandler waitingHandler) throws IOException, ClassNotFoundException {
+        synchronized (searchParametersCache) {
+            String key = searchParametersFile.getAbsolutePath();
+            SearchParameters searchParameters = searchParametersCache.get(key);
+            Long date = searchParametersDates.get(key);
+            if (searchParameters == null || date == null || date != searchParametersFile.lastModified()) {
+                searchParameters = SearchParameters.getIdentificationParameters(searchParametersFile);
+                searchParametersCache.put(key, searchParameters);
+                searchParametersDates.put(key, searchParametersFile.lastModified());
+                loadedParametersKey = null;
+            }
+            if (!key.equals(loadedParametersKey)) {
+                String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+                if (error != null) {
+                    waitingHandler.appendReport(error, true, true);
+                }
+                loadedParametersKey = key;
+            }
+            return searchParameters;
+        }
+    }
+
+    /**
+     * Saves the search parameters, including the modifications mapping of the
+     * algorithms.
+     *
+     * @param searchParametersFile the search parameters file
+     * @param searchParameters the search parameters
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    private void saveSearchParameters(File searchParametersFile, SearchParameters searchParameters) throws IOException {
+        synchronized (searchParametersCache) {
+            SearchParameters.saveIdentificationParameters(searchParameters, searchParametersFile);
+            searchParametersDates.put(searchParametersFile.getAbsolutePath(), searchParametersFile.lastModified());
+        }
+    }
+
+    /**
+     * Cancels a job.
+     *
+     * @param job the job
+     *
+     * @throws IOException thrown if an error occurred while cleaning the
+     * output folder
+     */
+    private void cancel(final DaemonJob job) throws IOException {
+        synchronized (this) {
+            if (waitingJobs.remove(job)) {
+                job.end(JobStatus.CANCELED, null);
+                writeManifest(job);
+                jobEnded(job);
+                return;
+            }
+        }
+        if (!job.isEnded()) {
+            // the cancellation waits for the processes to end
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        job.cancel();
+                    } catch (IOException e) {
+                        exceptionHandler.catchException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancels the waiting jobs and stops the daemon once the running jobs are
+     * completed.
+     */
+    private synchronized void shutdown() {
+        shuttingDown = true;
+        for (DaemonJob job : waitingJobs) {
+            job.end(JobStatus.CANCELED, "The daemon was shut down.");
+        }
+        waitingJobs.clear();
+        if (runningJobs.isEmpty()) {
+            closeServer();
+        }
+    }
+
+    /**
+     * Indicates whether the daemon is shutting down.
+     *
+     * @return true if the daemon is shutting down
+     */
+    private synchronized boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Closes the server socket, which stops the daemon.
+     */
+    private void closeServer() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            exceptionHandler.catchException(e);
+        }
+    }
+
+    /**
+     * Returns the job with the given id, null if not found.
+     *
+     * @param id the id as text
+     *
+     * @return the job
+     */
+    private synchronized DaemonJob getJob(String id) {
+        try {
+            return jobs.get(new Integer(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the status of the daemon and of its jobs.
+     *
+     * @return the status as a JSON object
+     */
+    private synchronized String getStatus() {
+        int nEnded = jobs.size() - waitingJobs.size() - runningJobs.size();
+        StringBuilder jobList = new StringBuilder("[");
+        for (DaemonJob job : jobs.values()) {
+            if (!job.isEnded()) {
+                if (jobList.length() > 1) {
+                    jobList.append(',');
+                }
+                jobList.append(job.toJson());
+            }
+        }
+        jobList.append(']');
+        return new JsonLine()
+                .add("version", Properties.getVersion())
+                .add("shuttingDown", shuttingDown)
+                .add("threads", nThreads)
+                .add("threadsUsed", nThreadsUsed)
+                .add("waiting", waitingJobs.size())
+                .add("running", runningJobs.size())
+                .add("ended", nEnded)
+                .add("loadedSpectrumFiles", loadedSpectrumFiles.size())
+                .addRaw("jobs", jobList.toString())
+                .toString();
+    }
+
+    /**
+     * Returns an error answer.
+     *
+     * @param message the error message
+     *
+     * @return the error as a JSON object
+     */
+    private static String getError(String message) {
+        return new JsonLine().add("error", message).toString();
+    }
+
+    /**
+     * Splits a command in tokens separated by white spaces. Tokens can be
+     * quoted using double quotes.
+     *
+     * @param command the command
+     *
+     * @return the tokens
+     */
+    private static ArrayList<String> tokenize(String command) {
+        ArrayList<String> tokens = new ArrayList<String>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for (int i = 0; i < command.length(); i++) {
+            char character = command.charAt(i);
+            if (character == '"') {
+                quoted = !quoted;
+                if (token == null) {
+                    token = new StringBuilder();
+                }
+            } else if (!quoted && Character.isWhitespace(character)) {
+                if (token != null) {
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            } else {
+                if (token == null) {
+                    token = new StringBuilder();
+                }
+                token.append(character);
+            }
+        }
+        if (token != null) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the file given for an option, null if not set.
+     *
+     * @param line the command line
+     * @param option the option
+     *
+     * @return the file given for the option
+     */
+    private static File getFile(CommandLine line, DeNovoDaemonParams option) {
+        return line.hasOption(option.id) ? new File(line.getOptionValue(option.id)) : null;
+    }
+
+    /**
+     * Verifies the command line start parameters.
+     *
+     * @param aLine the command line to validate
+     *
+     * @return true if the startup was valid
+     */
+    private static boolean isValidStartup(CommandLine aLine) {
+        try {
+            if (aLine.hasOption(DeNovoDaemonParams.PORT.id)) {
+                int port = new Integer(aLine.getOptionValue(DeNovoDaemonParams.PORT.id).trim());
+                if (port <= 0 || port >= 65536) {
+                    System.out.println(System.getProperty("line.separator") + "Invalid port." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+            if (aLine.hasOption(DeNovoDaemonParams.THREADS.id)) {
+                int threads = new Integer(aLine.getOptionValue(DeNovoDaemonParams.THREADS.id).trim());
+                if (threads <= 0) {
+                    System.out.println(System.getProperty("line.separator") + "Invalid number of threads." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+            if (aLine.hasOption(DeNovoDaemonParams.WATCH_FOLDER.id)) {
+                File watchFolder = new File(aLine.getOptionValue(DeNovoDaemonParams.WATCH_FOLDER.id));
+                if (!watchFolder.isDirectory()) {
+                    System.out.println(System.getProperty("line.separator") + "Watch folder \'" + watchFolder.getAbsolutePath() + "\' not found." + System.getProperty("line.separator"));
+                    return false;
+                }
+                if (!aLine.hasOption(DeNovoDaemonParams.WATCH_ARGUMENTS.id)
+                        || !tokenize(aLine.getOptionValue(DeNovoDaemonParams.WATCH_ARGUMENTS.id)).contains("-" + DeNovoCLIParams.IDENTIFICATION_PARAMETERS.id)) {
+                    System.out.println(System.getProperty("line.separator") + "The arguments for the watched files must include the search parameters file." + System.getProperty("line.separator"));
+                    return false;
+                }
+                if (aLine.hasOption(DeNovoDaemonParams.WATCH_MAX_JOBS.id)
+                        && new Integer(aLine.getOptionValue(DeNovoDaemonParams.WATCH_MAX_JOBS.id).trim()) <= 0) {
+                    System.out.println(System.getProperty("line.separator") + "Invalid maximal number of watch jobs." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(System.getProperty("line.separator") + "Invalid number: " + e.getMessage() + System.getProperty("line.separator"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * DeNovoDaemon header message when printing the usage.
+     */
+    private static String getHeader() {
+        return System.getProperty("line.separator")
+                + "DeNovoDaemon runs DeNovoCLI jobs submitted on a local port, keeping the settings loaded between jobs." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "Send one command per line: 'submit [DeNovoCLI arguments]', 'status [job id]', 'cancel [job id]' or 'shutdown'." + System.getProperty("line.separator")
+                + "Every command is answered by one line in the JSON format." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "For further help see http://compomics.github.io/projects/denovogui/wiki/denovocli.html." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "----------------------"
+                + System.getProperty("line.separator")
+                + "OPTIONS"
+                + System.getProperty("line.separator")
+                + "----------------------" + System.getProperty("line.separator")
+                + "\n";
+    }
+
+    /**
+     * Starts the daemon. Use this as the main class in the jar file.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            new DeNovoDaemon(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the path to the jar file.
+     *
+     * @return the path to the jar file
+     */
+    public String getJarFilePath() {
+        return CompomicsWrapper.getJarFilePath(this.getClass().getResource("DeNovoDaemon.class").getPath(), "DeNovoGUI");
+    }
+}
@@ -0,0 +1,97 @@
+package com.compomics.denovogui.cmd;
+
+import org.apache.commons.cli.Options;
+
+/**
+ * Command line option parameters for DeNovoDaemon.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public enum DeNovoDaemonParams {
+
+    PORT("port", "The local port where the daemon accepts jobs and status queries. Default is '" + DeNovoDaemon.DEFAULT_PORT + "'.", false),
+    THREADS("threads", "The number of threads shared by all jobs. Default is the number of cores available, within the CPU and memory limits of the container.", false),
+    PEPNOVO_LOCATION("pepnovo_folder", "The PepNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    DIRECTAG_LOCATION("directag_folder", "The DirecTag executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    PNOVO_LOCATION("pnovo_folder", "The pNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    NOVOR_LOCATION("novor_folder", "The Novor executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    WATCH_FOLDER("watch_folder", "A folder to watch. The spectrum files (mgf or mzML format, possibly gzipped) written in this folder are sequenced as soon as complete. Not watched by default.", false),
+    WATCH_OUTPUT_FOLDER("watch_output_folder", "The folder where the results of the watched files are written, one folder per spectrum file. Default is a 'results' folder in the watch folder.", false),
+    WATCH_ARGUMENTS("watch_args", "The DeNovoCLI arguments used for the watched files, without spectrum files and output folder, e.g. \"-id_params my_params.par -novor 1\". Mandatory when watching a folder.", false),
+    WATCH_MAX_JOBS("watch_max_jobs", "The maximal number of watched files queued or sequenced at the same time. Default is the number of threads.", false);
+
+    /**
+     * Short Id for the CLI parameter.
+     */
+    public String id;
+    /**
+     * Explanation for the CLI parameter.
+     */
+    public String description;
+    /**
+     * Boolean indicating whether the parameter is mandatory.
+     */
+    public boolean mandatory;
+
+    /**
+     * Private constructor managing the various variables for the enum
+     * instances.
+     *
+     * @param id the id
+     * @param description the description
+     * @param mandatory is the parameter mandatory
+     */
+    private DeNovoDaemonParams(String id, String description, boolean mandatory) {
+        this.id = id;
+        this.description = description;
+        this.mandatory = mandatory;
+    }
+
+    /**
+     * Creates the options for the command line interface based on the possible
+     * values.
+     *
+     * @param aOptions the options object where the options will be added
+     */
+    public static void createOptionsCLI(Options aOptions) {
+        for (DeNovoDaemonParams deNovoDaemonParams : values()) {
+            aOptions.addOption(deNovoDaemonParams.id, true, deNovoDaemonParams.description);
+        }
+
+        // Path setup
+        PathSettingsCLIParams.createOptionsCLI(aOptions);
+    }
+
+    /**
+     * Returns the options as a string.
+     *
+     * @return the options as a string
+     */
+    public static String getOptionsAsString() {
+
+        String output = "";
+        String formatter = "%-35s";
+
+        output += "Optional Parameters:\n\n";
+        output += "-" + String.format(formatter, PORT.id) + " " + PORT.description + "\n";
+        output += "-" + String.format(formatter, THREADS.id) + " " + THREADS.description + "\n";
+
+        output += "\n\nOptional Advanced Parameters:\n\n";
+        output += "-" + String.format(formatter, PEPNOVO_LOCATION.id) + " " + PEPNOVO_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, DIRECTAG_LOCATION.id) + " " + DIRECTAG_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, PNOVO_LOCATION.id) + " " + PNOVO_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, NOVOR_LOCATION.id) + " " + NOVOR_LOCATION.description + "\n";
+
+        output += "\n\nOptional Watch Folder Parameters:\n\n";
+        output += "-" + String.format(formatter, WATCH_FOLDER.id) + " " + WATCH_FOLDER.description + "\n";
+        output += "-" + String.format(formatter, WATCH_OUTPUT_FOLDER.id) + " " + WATCH_OUTPUT_FOLDER.description + "\n";
+        output += "-" + String.format(formatter, WATCH_ARGUMENTS.id) + " " + WATCH_ARGUMENTS.description + "\n";
+        output += "-" + String.format(formatter, WATCH_MAX_JOBS.id) + " " + WATCH_MAX_JOBS.description + "\n";
+
+        output += "\n\nOptional Temporary Folder:\n\n";
+        output += "-" + String.format(formatter, PathSettingsCLIParams.ALL.id) + " " + PathSettingsCLIParams.ALL.description + "\n";
+
+        return output;
+    }
+}
@@ -0,0 +1,343 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.io.ShardWorkFolder;
+import com.compomics.denovogui.util.ResourcePlanner;
+import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
+import com.compomics.software.CompomicsWrapper;
+import com.compomics.software.settings.UtilitiesPathPreferences;
+import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
+import com.compomics.util.experiment.biology.EnzymeFactory;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import com.compomics.util.waiting.Duration;
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import org.apache.commons.cli.*;
+
+/**
+ * Runs DeNovoCLI on several computers sharing a work folder. The coordinator
+ * splits the spectrum files in shards, the workers claim the shards and
+ * sequence them, and the coordinator merges the results in the output folder.
+ * The coordinator can start workers on the same computer.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class DeNovoShardCLI {
+
+    /**
+     * The coordinator mode.
+     */
+    public static final String COORDINATOR_MODE = "coordinator";
+    /**
+     * The worker mode.
+     */
+    public static final String WORKER_MODE = "worker";
+    /**
+     * The exception handler for the command line process.
+     */
+    private CommandLineExceptionHandler exceptionHandler = new CommandLineExceptionHandler();
+
+    /**
+     * Constructor. Parses the command line and runs the coordinator or the
+     * worker.
+     *
+     * @param args the command line arguments
+     */
+    public DeNovoShardCLI(String[] args) {
+
+        try {
+
+            Options lOptions = new Options();
+            DeNovoShardParams.createOptionsCLI(lOptions);
+            BasicParser parser = new BasicParser();
+            CommandLine line = parser.parse(lOptions, args);
+
+            if (!isValidStartup(line)) {
+                PrintWriter lPrintWriter = new PrintWriter(System.out);
+                lPrintWriter.print("\n======================" + System.getProperty("line.separator"));
+                lPrintWriter.print("DeNovoShardCLI" + System.getProperty("line.separator"));
+                lPrintWriter.print("======================" + System.getProperty("line.separator"));
+                lPrintWriter.print(getHeader());
+                lPrintWriter.print(DeNovoShardParams.getOptionsAsString());
+                lPrintWriter.flush();
+                lPrintWriter.close();
+
+                System.exit(1);
+            } else {
+                int status = call(line);
+                if (status != 0) {
+                    System.exit(status);
+                }
+            }
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the coordinator or the worker.
+     *
+     * @param line the command line
+     *
+     * @return the exit status, 0 if successful
+     *
+     * @throws Exception thrown if an error occurred during the run
+     */
+    private int call(CommandLine line) throws Exception {
+
+        // path settings
+        PathSettingsCLIInputBean pathSettingsCLIInputBean = new PathSettingsCLIInputBean(line);
+        if (pathSettingsCLIInputBean.getLogFolder() != null) {
+            DeNovoCLI.redirectErrorStream(pathSettingsCLIInputBean.getLogFolder());
+        }
+        if (pathSettingsCLIInputBean.hasInput()) {
+            PathSettingsCLI pathSettingsCLI = new PathSettingsCLI(pathSettingsCLIInputBean);
+            pathSettingsCLI.setPathSettings();
+        } else {
+            try {
+                File pathConfigurationFile = new File(getJarFilePath(), UtilitiesPathPreferences.configurationFileName);
+                if (pathConfigurationFile.exists()) {
+                    DeNovoGUIPathPreferences.loadPathPreferencesFromFile(pathConfigurationFile);
+                }
+            } catch (Exception e) {
+                System.out.println("An error occurred when setting the path configurations. Default paths will be used.");
+                exceptionHandler.catchException(e);
+            }
+        }
+
+        // load enzymes
+        EnzymeFactory.getInstance();
+
+        ShardWorkFolder workFolder = new ShardWorkFolder(new File(line.getOptionValue(DeNovoShardParams.WORK_FOLDER.id)));
+        long claimTimeout = ShardWorker.DEFAULT_CLAIM_TIMEOUT;
+        if (line.hasOption(DeNovoShardParams.CLAIM_TIMEOUT.id)) {
+            claimTimeout = 1000L * new Integer(line.getOptionValue(DeNovoShardParams.CLAIM_TIMEOUT.id).trim());
+        }
+
+        if (line.getOptionValue(DeNovoShardParams.MODE.id).trim().equalsIgnoreCase(WORKER_MODE)) {
+
+            // locate the algorithms on this computer
+            SequencingEngines engines = new SequencingEngines(getFile(line, DeNovoCLIParams.PEPNOVO_LOCATION), getFile(line, DeNovoCLIParams.DIRECTAG_LOCATION),
+                    getFile(line, DeNovoCLIParams.PNOVO_LOCATION), getFile(line, DeNovoCLIParams.NOVOR_LOCATION), getJarFilePath());
+            ResourcePlanner resourcePlanner = ResourcePlanner.getInstance();
+            if (resourcePlanner.isLimited()) {
+                System.out.println("Container resources: " + resourcePlanner + ".");
+            }
+            int nThreads = resourcePlanner.getNThreads(true);
+            if (line.hasOption(DeNovoCLIParams.THREADS.id)) {
+                nThreads = new Integer(line.getOptionValue(DeNovoCLIParams.THREADS.id).trim());
+            }
+
+            ShardWorker shardWorker = new ShardWorker(workFolder, engines, nThreads, claimTimeout, exceptionHandler);
+            shardWorker.run();
+            return 0;
+        }
+
+        DeNovoCLIInputBean deNovoCLIInputBean = new DeNovoCLIInputBean(line);
+        WaitingHandlerCLIImpl waitingHandlerCLIImpl = new WaitingHandlerCLIImpl();
+
+        SearchParameters searchParameters = SearchParameters.getIdentificationParameters(deNovoCLIInputBean.getSearchParametersFile());
+        String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+        if (error != null) {
+            System.out.println(error);
+        }
+
+        // check precursor tolerance, max is 5, but default for search params is 10...
+        if (searchParameters.getPrecursorAccuracyDalton() > 5) {
+            waitingHandlerCLIImpl.appendReport("\nPrecursor tolerance has to be between 0 and 5.0!", false, true);
+            return 1;
+        }
+
+        int nLocalWorkers = 0;
+        if (line.hasOption(DeNovoShardParams.LOCAL_WORKERS.id)) {
+            nLocalWorkers = new Integer(line.getOptionValue(DeNovoShardParams.LOCAL_WORKERS.id).trim());
+        }
+        if (nLocalWorkers > 0) {
+            SequencingEngines engines = new SequencingEngines(deNovoCLIInputBean.getPepNovoExecutable(), deNovoCLIInputBean.getDirecTagExecutable(),
+                    deNovoCLIInputBean.getPNovoExecutable(), deNovoCLIInputBean.getNovorExecutable(), getJarFilePath());
+            String engineError = engines.getError(deNovoCLIInputBean.enablePepNovo(), deNovoCLIInputBean.enableDirecTag(),
+                    deNovoCLIInputBean.enablePNovo(), deNovoCLIInputBean.enableNovor());
+            if (engineError != null) {
+                waitingHandlerCLIImpl.appendReport("\n" + engineError, false, true);
+                return 1;
+            }
+        }
+
+        int shardSize = ShardCoordinator.DEFAULT_SHARD_SIZE;
+        if (line.hasOption(DeNovoShardParams.SHARD_SIZE.id)) {
+            shardSize = new Integer(line.getOptionValue(DeNovoShardParams.SHARD_SIZE.id).trim());
+        }
+
+        Duration duration = new Duration();
+        duration.start();
+
+        ShardCoordinator shardCoordinator = new ShardCoordinator(workFolder, deNovoCLIInputBean, shardSize, claimTimeout);
+        shardCoordinator.split(waitingHandlerCLIImpl);
+        if (waitingHandlerCLIImpl.isRunCanceled()) {
+            return 1;
+        }
+
+        if (nLocalWorkers > 0) {
+
+            // the local workers share the cores of this computer
+            int workerThreads = Math.max(1, ResourcePlanner.getInstance().getNThreads(deNovoCLIInputBean.enablePepNovo()) / nLocalWorkers);
+            if (line.hasOption(DeNovoCLIParams.THREADS.id)) {
+                workerThreads = deNovoCLIInputBean.getNThreads();
+            }
+            ArrayList<String> workerArguments = new ArrayList<String>();
+            workerArguments.add("-" + DeNovoCLIParams.THREADS.id);
+            workerArguments.add(Integer.toString(workerThreads));
+            workerArguments.add("-" + DeNovoShardParams.CLAIM_TIMEOUT.id);
+            workerArguments.add(Long.toString(claimTimeout / 1000));
+            for (DeNovoCLIParams option : new DeNovoCLIParams[]{DeNovoCLIParams.PEPNOVO_LOCATION, DeNovoCLIParams.DIRECTAG_LOCATION,
+                DeNovoCLIParams.PNOVO_LOCATION, DeNovoCLIParams.NOVOR_LOCATION}) {
+                if (line.hasOption(option.id)) {
+                    workerArguments.add("-" + option.id);
+                    workerArguments.add(new File(line.getOptionValue(option.id)).getAbsolutePath());
+                }
+            }
+            shardCoordinator.startLocalWorkers(nLocalWorkers, workerArguments);
+            waitingHandlerCLIImpl.appendReport(nLocalWorkers + " local worker(s) started using " + workerThreads + " thread(s) each.", true, true);
+        }
+
+        boolean complete;
+        try {
+            waitingHandlerCLIImpl.appendReport("Waiting for the workers, work folder: " + workFolder.getFolder().getAbsolutePath() + ".", true, true);
+            shardCoordinator.waitForShards(waitingHandlerCLIImpl);
+            complete = shardCoordinator.merge(waitingHandlerCLIImpl);
+            shardCoordinator.saveSearchParameters(searchParameters);
+        } catch (Exception e) {
+            shardCoordinator.stopLocalWorkers();
+            throw e;
+        }
+
+        duration.end();
+        if (complete) {
+            waitingHandlerCLIImpl.appendReport("Distributed de novo sequencing completed (" + duration.toString() + ").", true, true);
+            return 0;
+        } else {
+            waitingHandlerCLIImpl.appendReport("Distributed de novo sequencing completed with errors (" + duration.toString() + ").", true, true);
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the file given for an option, null if not set.
+     *
+     * @param line the command line
+     * @param option the option
+     *
+     * @return the file given for the option
+     */
+    private static File getFile(CommandLine line, DeNovoCLIParams option) {
+        return line.hasOption(option.id) ? new File(line.getOptionValue(option.id)) : null;
+    }
+
+    /**
+     * Verifies the command line start parameters.
+     *
+     * @param aLine the command line to validate
+     *
+     * @return true if the startup was valid
+     *
+     * @throws Exception thrown if the DeNovoCLI parameters cannot be validated
+     */
+    private static boolean isValidStartup(CommandLine aLine) throws Exception {
+
+        if (!aLine.hasOption(DeNovoShardParams.MODE.id)) {
+            System.out.println(System.getProperty("line.separator") + "Mode not specified." + System.getProperty("line.separator"));
+            return false;
+        }
+        String mode = aLine.getOptionValue(DeNovoShardParams.MODE.id).trim();
+        if (!mode.equalsIgnoreCase(COORDINATOR_MODE) && !mode.equalsIgnoreCase(WORKER_MODE)) {
+            System.out.println(System.getProperty("line.separator") + "Unknown mode \'" + mode + "\'." + System.getProperty("line.separator"));
+            return false;
+        }
+        if (!aLine.hasOption(DeNovoShardParams.WORK_FOLDER.id) || aLine.getOptionValue(DeNovoShardParams.WORK_FOLDER.id).equals("")) {
+            System.out.println(System.getProperty("line.separator") + "Work folder not specified." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        try {
+            if (aLine.hasOption(DeNovoShardParams.CLAIM_TIMEOUT.id) && new Integer(aLine.getOptionValue(DeNovoShardParams.CLAIM_TIMEOUT.id).trim()) <= 0) {
+                System.out.println(System.getProperty("line.separator") + "Invalid claim timeout." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (aLine.hasOption(DeNovoCLIParams.THREADS.id) && new Integer(aLine.getOptionValue(DeNovoCLIParams.THREADS.id).trim()) <= 0) {
+                System.out.println(System.getProperty("line.separator") + "Invalid number of threads." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (aLine.hasOption(DeNovoShardParams.SHARD_SIZE.id) && new Integer(aLine.getOptionValue(DeNovoShardParams.SHARD_SIZE.id).trim()) <= 0) {
+                System.out.println(System.getProperty("line.separator") + "Invalid shard size." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (aLine.hasOption(DeNovoShardParams.LOCAL_WORKERS.id) && new Integer(aLine.getOptionValue(DeNovoShardParams.LOCAL_WORKERS.id).trim()) < 0) {
+                System.out.println(System.getProperty("line.separator") + "Invalid number of local workers." + System.getProperty("line.separator"));
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(System.getProperty("line.separator") + "Invalid number: " + e.getMessage() + System.getProperty("line.separator"));
+            return false;
+        }
+
+        if (mode.equalsIgnoreCase(COORDINATOR_MODE)) {
+            if (!aLine.hasOption(DeNovoCLIParams.IDENTIFICATION_PARAMETERS.id)) {
+                System.out.println(System.getProperty("line.separator") + "Search parameters file not specified." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (!DeNovoCLIInputBean.isValidStartup(aLine)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * DeNovoShardCLI header message when printing the usage.
+     */
+    private static String getHeader() {
+        return System.getProperty("line.separator")
+                + "DeNovoShardCLI distributes the de novo sequencing of DeNovoCLI on several computers sharing a work folder." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "Start one coordinator with the DeNovoCLI parameters, and workers on the computers sharing the work folder." + System.getProperty("line.separator")
+                + "The coordinator splits the spectrum files in shards, the workers sequence the shards and the coordinator merges the results in the output folder." + System.getProperty("line.separator")
+                + "Workers can be started by the coordinator on the same computer using the local_workers option." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "For further help see http://compomics.github.io/projects/denovogui/wiki/denovocli.html." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "----------------------"
+                + System.getProperty("line.separator")
+                + "OPTIONS"
+                + System.getProperty("line.separator")
+                + "----------------------" + System.getProperty("line.separator")
+                + "\n";
+    }
+
+    /**
+     * Starts the coordinator or a worker. Use this as the main class in the
+     * jar file.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            new DeNovoShardCLI(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the path to the jar file.
+     *
+     * @return the path to the jar file
+     */
+    public String getJarFilePath() {
+        return CompomicsWrapper.getJarFilePath(this.getClass().getResource("DeNovoShardCLI.class").getPath(), "DeNovoGUI");
+    }
+}
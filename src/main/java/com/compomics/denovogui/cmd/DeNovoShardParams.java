@@ -0,0 +1,103 @@
+package com.compomics.denovogui.cmd;
+
+import org.apache.commons.cli.Options;
+
+/**
+ * Command line option parameters for DeNovoShardCLI. The DeNovoCLI options
+ * are used for the spectrum files, output folder, search parameters,
+ * algorithms and engine locations.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public enum DeNovoShardParams {
+
+    MODE("mode", "'coordinator' to split the spectrum files and merge the results, 'worker' to sequence the shards.", true),
+    WORK_FOLDER("work_folder", "The work folder shared by the coordinator and the workers, e.g. on a network file system.", true),
+    SHARD_SIZE("shard_size", "The maximal number of spectra per shard. Default is '" + ShardCoordinator.DEFAULT_SHARD_SIZE + "'.", false),
+    LOCAL_WORKERS("local_workers", "The number of workers started by the coordinator on this computer. Default is '0', i.e. only remote workers.", false),
+    CLAIM_TIMEOUT("claim_timeout", "The time in seconds after which a shard claimed by a worker which stopped responding can be claimed by another worker. Default is '" + ShardWorker.DEFAULT_CLAIM_TIMEOUT / 1000 + "'.", false);
+
+    /**
+     * Short Id for the CLI parameter.
+     */
+    public String id;
+    /**
+     * Explanation for the CLI parameter.
+     */
+    public String description;
+    /**
+     * Boolean indicating whether the parameter is mandatory.
+     */
+    public boolean mandatory;
+
+    /**
+     * Private constructor managing the various variables for the enum
+     * instances.
+     *
+     * @param id the id
+     * @param description the description
+     * @param mandatory is the parameter mandatory
+     */
+    private DeNovoShardParams(String id, String description, boolean mandatory) {
+        this.id = id;
+        this.description = description;
+        this.mandatory = mandatory;
+    }
+
+    /**
+     * Creates the options for the command line interface based on the possible
+     * values.
+     *
+     * @param aOptions the options object where the options will be added
+     */
+    public static void createOptionsCLI(Options aOptions) {
+        for (DeNovoShardParams deNovoShardParams : values()) {
+            aOptions.addOption(deNovoShardParams.id, true, deNovoShardParams.description);
+        }
+
+        // DeNovoCLI and path setup
+        DeNovoCLIParams.createOptionsCLI(aOptions);
+    }
+
+    /**
+     * Returns the options as a string.
+     *
+     * @return the options as a string
+     */
+    public static String getOptionsAsString() {
+
+        String output = "";
+        String formatter = "%-35s";
+
+        output += "Mandatory Parameters:\n\n";
+        output += "-" + String.format(formatter, MODE.id) + " " + MODE.description + "\n";
+        output += "-" + String.format(formatter, WORK_FOLDER.id) + " " + WORK_FOLDER.description + "\n";
+
+        output += "\n\nMandatory Coordinator Parameters:\n\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.SPECTRUM_FILES.id) + " " + DeNovoCLIParams.SPECTRUM_FILES.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.OUTPUT_FOLDER.id) + " " + DeNovoCLIParams.OUTPUT_FOLDER.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.IDENTIFICATION_PARAMETERS.id) + " " + DeNovoCLIParams.IDENTIFICATION_PARAMETERS.description + "\n";
+
+        output += "\n\nOptional Coordinator Parameters:\n\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.PEPNOVO.id) + " " + DeNovoCLIParams.PEPNOVO.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.DIRECT_TAG.id) + " " + DeNovoCLIParams.DIRECT_TAG.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.PNOVO.id) + " " + DeNovoCLIParams.PNOVO.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.NOVOR.id) + " " + DeNovoCLIParams.NOVOR.description + "\n";
+        output += "-" + String.format(formatter, SHARD_SIZE.id) + " " + SHARD_SIZE.description + "\n";
+        output += "-" + String.format(formatter, LOCAL_WORKERS.id) + " " + LOCAL_WORKERS.description + "\n";
+
+        output += "\n\nOptional Worker Parameters:\n\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.THREADS.id) + " " + DeNovoCLIParams.THREADS.description + "\n";
+        output += "-" + String.format(formatter, CLAIM_TIMEOUT.id) + " " + CLAIM_TIMEOUT.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.PEPNOVO_LOCATION.id) + " " + DeNovoCLIParams.PEPNOVO_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.DIRECTAG_LOCATION.id) + " " + DeNovoCLIParams.DIRECTAG_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.PNOVO_LOCATION.id) + " " + DeNovoCLIParams.PNOVO_LOCATION.description + "\n";
+        output += "-" + String.format(formatter, DeNovoCLIParams.NOVOR_LOCATION.id) + " " + DeNovoCLIParams.NOVOR_LOCATION.description + "\n";
+
+        output += "\n\nOptional Temporary Folder:\n\n";
+        output += "-" + String.format(formatter, PathSettingsCLIParams.ALL.id) + " " + PathSettingsCLIParams.ALL.description + "\n";
+
+        return output;
+    }
+}
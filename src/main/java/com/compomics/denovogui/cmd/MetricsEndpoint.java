@@ -0,0 +1,90 @@
+package com.compomics.denovogui.cmd;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Local HTTP endpoint serving the progress of a command line sequencing in
+ * the Prometheus text format at /metrics. The endpoint is bound to the
+ * loopback interface only.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class MetricsEndpoint {
+
+    /**
+     * The feed providing the metrics.
+     */
+    private final ProgressFeed progressFeed;
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Constructor. The server is not started.
+     *
+     * @param progressFeed the feed providing the metrics
+     * @param port the port where to listen
+     *
+     * @throws IOException thrown if the port cannot be bound
+     */
+    public MetricsEndpoint(ProgressFeed progressFeed, int port) throws IOException {
+        this.progressFeed = progressFeed;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sendMetrics(exchange);
+            }
+        });
+    }
+
+    /**
+     * Starts serving the metrics.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving the metrics.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Sends the last snapshot of the progress feed.
+     *
+     * @param exchange the HTTP exchange
+     *
+     * @throws IOException thrown if an error occurred while sending the
+     * response
+     */
+    private void sendMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = progressFeed.getPrometheusText().getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            try {
+                os.write(body);
+            } finally {
+                os.close();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.gui.qc.LiveStatistics;
+import com.compomics.denovogui.util.JsonLine;
+import com.compomics.util.experiment.identification.Advocate;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Periodically takes a snapshot of the progress of a command line sequencing
+ * and writes it as JSON lines to a progress file. The last snapshot is also
+ * available in the Prometheus text format for the metrics endpoint. The
+ * snapshots are taken by a separate thread from the counters of the waiting
+ * handler, so that the sequencing threads never wait on the reporting.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ProgressFeed {
+
+    /**
+     * The default interval between two snapshots in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(ProgressFeed.class);
+    /**
+     * The waiting handler providing the progress counters.
+     */
+    private final ProgressWaitingHandler waitingHandler;
+    /**
+     * The sequencing handler providing the queue and the live statistics.
+     */
+    private final DeNovoSequencingHandler sequencingHandler;
+    /**
+     * The file where the snapshots are written, null if not written.
+     */
+    private final File progressFile;
+    /**
+     * The writer of the progress file.
+     */
+    private BufferedWriter writer = null;
+    /**
+     * The counters of the last snapshot written, used to skip identical
+     * snapshots.
+     */
+    private String lastCounters = null;
+    /**
+     * The last snapshot in the Prometheus text format.
+     */
+    private volatile String prometheusText = "";
+    /**
+     * The executor taking the snapshots.
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * Constructor.
+     *
+     * @param waitingHandler the waiting handler providing the progress
+     * counters
+     * @param sequencingHandler the sequencing handler providing the queue and
+     * the live statistics
+     * @param progressFile the file where the snapshots are appended, can be
+     * null
+     */
+    public ProgressFeed(ProgressWaitingHandler waitingHandler, DeNovoSequencingHandler sequencingHandler, File progressFile) {
+        this.waitingHandler = waitingHandler;
+        this.sequencingHandler = sequencingHandler;
+        this.progressFile = progressFile;
+    }
+
+    /**
+     * Starts taking snapshots periodically.
+     *
+     * @param interval the interval between two snapshots in milliseconds
+     *
+     * @throws IOException thrown if the progress file cannot be opened
+     */
+    public synchronized void start(long interval) throws IOException {
+        if (executor != null) {
+            return;
+        }
+        if (progressFile != null) {
+            writer = new BufferedWriter(new FileWriter(progressFile, true));
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ProgressFeed");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                update(false);
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops taking snapshots, writes a last snapshot and closes the progress
+     * file.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (executor == null) {
+                return;
+            }
+            executor.shutdownNow();
+            executor = null;
+        }
+        update(true);
+        synchronized (this) {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close the progress file " + progressFile.getAbsolutePath() + ": " + e.getMessage());
+                }
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the progress. The snapshot is written to the
+     * progress file only if the counters changed since the last one.
+     *
+     * @param force if true the snapshot is written even if unchanged
+     */
+    private synchronized void update(boolean force) {
+
+        long now = System.currentTimeMillis();
+        int primary = waitingHandler.getPrimaryCounter();
+        int primaryMax = waitingHandler.getPrimaryCounterMax();
+        int secondary = waitingHandler.getSecondaryCounter();
+        int secondaryMax = waitingHandler.getSecondaryCounterMax();
+        boolean indeterminate = waitingHandler.isSecondaryIndeterminate();
+        double progress = waitingHandler.getProgress();
+        long eta = waitingHandler.getEta();
+        int jobsWaiting = sequencingHandler.getNJobsWaiting();
+        int filesRemaining = sequencingHandler.getNSpectrumFilesRemaining();
+        String state = waitingHandler.getState();
+
+        JsonLine engines = new JsonLine();
+        StringBuilder prometheus = new StringBuilder();
+        appendMetric(prometheus, "denovogui_primary_progress", "gauge", "Primary progress counter.", primary);
+        appendMetric(prometheus, "denovogui_primary_progress_max", "gauge", "Maximal value of the primary progress counter.", primaryMax);
+        appendMetric(prometheus, "denovogui_secondary_progress", "gauge", "Secondary progress counter.", secondary);
+        appendMetric(prometheus, "denovogui_secondary_progress_max", "gauge", "Maximal value of the secondary progress counter, 0 if indeterminate.", indeterminate ? 0 : secondaryMax);
+        appendMetric(prometheus, "denovogui_progress_ratio", "gauge", "Estimated share of the work completed.", progress);
+        appendMetric(prometheus, "denovogui_eta_seconds", "gauge", "Estimated time remaining, -1 if unknown.", eta < 0 ? -1 : eta / 1000.0);
+        appendMetric(prometheus, "denovogui_queue_jobs_waiting", "gauge", "Number of jobs of the current spectrum file waiting to be executed.", jobsWaiting);
+        appendMetric(prometheus, "denovogui_queue_files_remaining", "gauge", "Number of spectrum files remaining, including the current one.", filesRemaining);
+        appendMetric(prometheus, "denovogui_running", "gauge", "1 while the sequencing is running.", "running".equals(state) ? 1 : 0);
+
+        LiveStatistics liveStatistics = sequencingHandler.getLiveStatistics();
+        if (liveStatistics != null) {
+            StringBuilder spectra = new StringBuilder();
+            StringBuilder throughput = new StringBuilder();
+            for (int advocateIndex : liveStatistics.getAdvocates()) {
+                String engine = Advocate.getAdvocate(advocateIndex).getName();
+                long nSpectra = liveStatistics.getNSpectra(advocateIndex);
+                double spectraPerSecond = liveStatistics.getThroughput(advocateIndex);
+                engines.addRaw(engine, new JsonLine().add("spectra", nSpectra).add("spectraPerSecond", spectraPerSecond).toString());
+                spectra.append("denovogui_spectra_total{engine=\"").append(engine).append("\"} ").append(nSpectra).append('\n');
+                throughput.append("denovogui_spectra_per_second{engine=\"").append(engine).append("\"} ").append(format(spectraPerSecond)).append('\n');
+            }
+            if (spectra.length() > 0) {
+                prometheus.append("# HELP denovogui_spectra_total Number of spectra in the results written by the engine.\n");
+                prometheus.append("# TYPE denovogui_spectra_total counter\n").append(spectra);
+                prometheus.append("# HELP denovogui_spectra_per_second Throughput of the engine while running.\n");
+                prometheus.append("# TYPE denovogui_spectra_per_second gauge\n").append(throughput);
+            }
+        }
+        prometheusText = prometheus.toString();
+
+        if (writer == null) {
+            return;
+        }
+
+        String counters = state + ' ' + primary + ' ' + primaryMax + ' ' + secondary + ' ' + secondaryMax + ' ' + jobsWaiting + ' ' + filesRemaining + ' ' + engines;
+        if (!force && counters.equals(lastCounters)) {
+            return;
+        }
+        lastCounters = counters;
+
+        String record = new JsonLine()
+                .add("time", now)
+                .add("state", state)
+                .add("text", waitingHandler.getWaitingText())
+                .add("primary", primary)
+                .add("primaryMax", primaryMax)
+                .add("secondary", secondary)
+                .add("secondaryMax", indeterminate ? -1 : secondaryMax)
+                .add("progress", progress)
+                .add("etaMs", eta)
+                .add("jobsWaiting", jobsWaiting)
+                .add("filesRemaining", filesRemaining)
+                .addRaw("engines", engines.toString())
+                .toString();
+        try {
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Failed to write to the progress file " + progressFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the last snapshot in the Prometheus text format.
+     *
+     * @return the last snapshot in the Prometheus text format
+     */
+    public String getPrometheusText() {
+        return prometheusText;
+    }
+
+    /**
+     * Appends a metric without label in the Prometheus text format.
+     *
+     * @param output the output
+     * @param name the name of the metric
+     * @param type the type of the metric
+     * @param help the description of the metric
+     * @param value the value
+     */
+    private static void appendMetric(StringBuilder output, String name, String type, String help, double value) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        output.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Formats a value for the Prometheus text format.
+     *
+     * @param value the value
+     *
+     * @return the formatted value
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.US, "%.4f", value);
+    }
+}
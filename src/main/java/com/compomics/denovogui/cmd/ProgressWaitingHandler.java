@@ -0,0 +1,246 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command line waiting handler keeping track of the progress counters so that
+ * they can be reported in a machine readable format. The counters are only
+ * stored in atomic variables when updated, the reporting being done by
+ * another thread, so that updates remain cheap.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ProgressWaitingHandler extends WaitingHandlerCLIImpl {
+
+    /**
+     * The primary progress counter.
+     */
+    private final AtomicInteger primaryCounter = new AtomicInteger();
+    /**
+     * The maximal value of the primary progress counter.
+     */
+    private volatile int primaryCounterMax = 0;
+    /**
+     * The secondary progress counter.
+     */
+    private final AtomicInteger secondaryCounter = new AtomicInteger();
+    /**
+     * The maximal value of the secondary progress counter.
+     */
+    private volatile int secondaryCounterMax = 0;
+    /**
+     * Indicates whether the secondary progress is indeterminate.
+     */
+    private volatile boolean secondaryIndeterminate = true;
+    /**
+     * The current waiting text.
+     */
+    private volatile String waitingText = "";
+    /**
+     * The state of the run: running, finished or canceled.
+     */
+    private volatile String state = "running";
+    /**
+     * The time when the handler was created.
+     */
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     */
+    public ProgressWaitingHandler() {
+        super();
+    }
+
+    @Override
+    public void setMaxPrimaryProgressCounter(int maxProgressValue) {
+        super.setMaxPrimaryProgressCounter(maxProgressValue);
+        primaryCounterMax = maxProgressValue;
+    }
+
+    @Override
+    public void increasePrimaryProgressCounter() {
+        super.increasePrimaryProgressCounter();
+        primaryCounter.incrementAndGet();
+    }
+
+    @Override
+    public void increasePrimaryProgressCounter(int amount) {
+        super.increasePrimaryProgressCounter(amount);
+        primaryCounter.addAndGet(amount);
+    }
+
+    @Override
+    public void setPrimaryProgressCounter(int value) {
+        super.setPrimaryProgressCounter(value);
+        primaryCounter.set(value);
+    }
+
+    @Override
+    public void resetPrimaryProgressCounter() {
+        super.resetPrimaryProgressCounter();
+        primaryCounter.set(0);
+    }
+
+    @Override
+    public void setMaxSecondaryProgressCounter(int maxProgressValue) {
+        super.setMaxSecondaryProgressCounter(maxProgressValue);
+        secondaryCounterMax = maxProgressValue;
+    }
+
+    @Override
+    public void increaseSecondaryProgressCounter() {
+        super.increaseSecondaryProgressCounter();
+        secondaryCounter.incrementAndGet();
+    }
+
+    @Override
+    public void increaseSecondaryProgressCounter(int value) {
+        super.increaseSecondaryProgressCounter(value);
+        secondaryCounter.addAndGet(value);
+    }
+
+    @Override
+    public void setSecondaryProgressCounter(int value) {
+        super.setSecondaryProgressCounter(value);
+        secondaryCounter.set(value);
+    }
+
+    @Override
+    public void resetSecondaryProgressCounter() {
+        super.resetSecondaryProgressCounter();
+        secondaryCounter.set(0);
+    }
+
+    @Override
+    public void setSecondaryProgressCounterIndeterminate(boolean indeterminate) {
+        super.setSecondaryProgressCounterIndeterminate(indeterminate);
+        secondaryIndeterminate = indeterminate;
+    }
+
+    @Override
+    public void setWaitingText(String text) {
+        super.setWaitingText(text);
+        waitingText = text;
+    }
+
+    @Override
+    public void setRunFinished() {
+        super.setRunFinished();
+        state = "finished";
+    }
+
+    @Override
+    public void setRunCanceled() {
+        super.setRunCanceled();
+        state = "canceled";
+    }
+
+    /**
+     * Returns the primary progress counter.
+     *
+     * @return the primary progress counter
+     */
+    public int getPrimaryCounter() {
+        return primaryCounter.get();
+    }
+
+    /**
+     * Returns the maximal value of the primary progress counter.
+     *
+     * @return the maximal value of the primary progress counter
+     */
+    public int getPrimaryCounterMax() {
+        return primaryCounterMax;
+    }
+
+    /**
+     * Returns the secondary progress counter.
+     *
+     * @return the secondary progress counter
+     */
+    public int getSecondaryCounter() {
+        return secondaryCounter.get();
+    }
+
+    /**
+     * Returns the maximal value of the secondary progress counter.
+     *
+     * @return the maximal value of the secondary progress counter
+     */
+    public int getSecondaryCounterMax() {
+        return secondaryCounterMax;
+    }
+
+    /**
+     * Indicates whether the secondary progress is indeterminate.
+     *
+     * @return true if the secondary progress is indeterminate
+     */
+    public boolean isSecondaryIndeterminate() {
+        return secondaryIndeterminate;
+    }
+
+    /**
+     * Returns the current waiting text.
+     *
+     * @return the current waiting text
+     */
+    public String getWaitingText() {
+        return waitingText;
+    }
+
+    /**
+     * Returns the state of the run: running, finished or canceled.
+     *
+     * @return the state of the run
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Returns the time when the handler was created.
+     *
+     * @return the time when the handler was created
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the share of the work completed, between 0 and 1, estimated
+     * from the primary counter and the fraction of the secondary counter.
+     *
+     * @return the share of the work completed
+     */
+    public double getProgress() {
+        int max = primaryCounterMax;
+        if (max <= 0) {
+            return 0;
+        }
+        double progress = primaryCounter.get();
+        int secondaryMax = secondaryCounterMax;
+        if (!secondaryIndeterminate && secondaryMax > 0) {
+            progress += Math.min((double) secondaryCounter.get() / secondaryMax, 1);
+        }
+        return Math.min(progress / max, 1);
+    }
+
+    /**
+     * Returns the estimated time remaining in milliseconds, -1 if not
+     * available yet.
+     *
+     * @return the estimated time remaining
+     */
+    public long getEta() {
+        double progress = getProgress();
+        if (progress <= 0) {
+            return -1;
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        return (long) (elapsed * (1 - progress) / progress);
+    }
+}
@@ -0,0 +1,279 @@
+package com.compomics.denovogui.cmd;
+
+import java.io.File;
+
+/**
+ * The installations of the sequencing algorithms used from the command line:
+ * the folder and executable name of every algorithm, either provided by the
+ * user or defaulting to the versions shipped with DeNovoGUI.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SequencingEngines {
+
+    /**
+     * The PepNovo+ folder.
+     */
+    private File pepNovoFolder = null;
+    /**
+     * The PepNovo+ executable name.
+     */
+    private String pepNovoExecutableTitle = null;
+    /**
+     * The DirecTag folder.
+     */
+    private File direcTagFolder = null;
+    /**
+     * The DirecTag executable name.
+     */
+    private String direcTagExecutableTitle = null;
+    /**
+     * The pNovo+ folder.
+     */
+    private File pNovoFolder = null;
+    /**
+     * The pNovo+ executable name.
+     */
+    private String pNovoExecutableTitle = null;
+    /**
+     * The Novor folder.
+     */
+    private File novorFolder = null;
+    /**
+     * The Novor executable name.
+     */
+    private String novorExecutableTitle = null;
+
+    /**
+     * Constructor. The executables not provided are looked up in the resources
+     * folder of the given jar file path according to the operating system.
+     *
+     * @param pepNovoExecutable the PepNovo+ executable, can be null
+     * @param direcTagExecutable the DirecTag executable, can be null
+     * @param pNovoExecutable the pNovo+ executable, can be null
+     * @param novorExecutable the Novor executable, can be null
+     * @param jarFilePath the path to the jar file
+     */
+    public SequencingEngines(File pepNovoExecutable, File direcTagExecutable, File pNovoExecutable, File novorExecutable, String jarFilePath) {
+
+        // OS check
+        String osName = System.getProperty("os.name").toLowerCase();
+        String arch = System.getProperty("os.arch").toLowerCase();
+
+        // pepNovo
+        if (pepNovoExecutable != null) {
+            pepNovoExecutableTitle = pepNovoExecutable.getName();
+            pepNovoFolder = pepNovoExecutable.getParentFile();
+        } else if (new File(jarFilePath + "/resources/PepNovo").exists()) {
+
+            // use the default PepNovo folder if not set by user
+            pepNovoFolder = new File(jarFilePath + "/resources/PepNovo");
+
+            if (osName.contains("mac os")) {
+                pepNovoExecutableTitle = "PepNovo_Mac";
+            } else if (osName.contains("windows")) {
+                pepNovoExecutableTitle = "PepNovo_Windows.exe";
+            } else if (osName.contains("nix") || osName.contains("nux")) {
+                pepNovoExecutableTitle = "PepNovo_Linux";
+            } else {
+                // unsupported OS version
+            }
+        }
+
+        // direcTag
+        if (direcTagExecutable != null) {
+            direcTagExecutableTitle = direcTagExecutable.getName();
+            direcTagFolder = direcTagExecutable.getParentFile();
+        } else if (new File(jarFilePath + "/resources/DirecTag").exists()) {
+
+            // use the default DirecTag folder if not set by user
+            if (osName.contains("windows")) {
+                if (arch.lastIndexOf("64") != -1) {
+                    direcTagFolder = new File(jarFilePath + "/resources/DirecTag/windows_64bits");
+                } else {
+                    direcTagFolder = new File(jarFilePath + "/resources/DirecTag/windows_32bits");
+                }
+                direcTagExecutableTitle = "directag.exe";
+            } else if (osName.contains("nix") || osName.contains("nux")) {
+                if (arch.lastIndexOf("64") != -1) {
+                    direcTagFolder = new File(jarFilePath + "/resources/DirecTag/linux_64bit");
+                } else {
+                    direcTagFolder = new File(jarFilePath + "/resources/DirecTag/linux_32bit");
+                }
+                direcTagExecutableTitle = "directag";
+            } else if (osName.contains("mac os")) {
+
+                // try the linux version..?
+                direcTagFolder = new File(jarFilePath + "/resources/DirecTag/linux_32bit");
+                direcTagExecutableTitle = "directag";
+
+            } else {
+                // unsupported OS version
+            }
+        }
+
+        // pNovo
+        if (pNovoExecutable != null) {
+            pNovoExecutableTitle = pNovoExecutable.getName();
+            pNovoFolder = pNovoExecutable.getParentFile();
+        } else if (new File(jarFilePath + "/resources/pNovo").exists()) {
+
+            // use the default pNovo folder if not set by user
+            pNovoFolder = new File(jarFilePath + "/resources/pNovo");
+
+            if (osName.contains("mac os")) {
+                // unsupported OS version
+            } else if (osName.contains("windows")) {
+                pNovoExecutableTitle = "pNovoplus.exe";
+            } else if (osName.contains("nix") || osName.contains("nux")) {
+                // unsupported OS version
+            } else {
+                // unsupported OS version
+            }
+        }
+
+        // novor
+        if (novorExecutable != null) {
+            novorExecutableTitle = novorExecutable.getName();
+            novorFolder = novorExecutable.getParentFile();
+        } else if (new File(jarFilePath + "/resources/Novor").exists()) {
+
+            // use the default Novor folder if not set by user
+            novorFolder = new File(jarFilePath + "/resources/Novor");
+            novorExecutableTitle = "novor.jar";
+        }
+    }
+
+    /**
+     * Returns an error message if one of the algorithms to run is not
+     * installed or if no algorithm is selected, null otherwise.
+     *
+     * @param runPepNovo indicates whether PepNovo+ should be run
+     * @param runDirecTag indicates whether DirecTag should be run
+     * @param runPNovo indicates whether pNovo+ should be run
+     * @param runNovor indicates whether Novor should be run
+     *
+     * @return an error message, null if all algorithms to run are installed
+     */
+    public String getError(boolean runPepNovo, boolean runDirecTag, boolean runPNovo, boolean runNovor) {
+
+        // check if the PepNovo folder is set
+        if (pepNovoFolder == null && runPepNovo) {
+            return "PepNovo+ location not set! Sequencing canceled.";
+        }
+
+        // check of the PepNovo executable is set
+        if (pepNovoExecutableTitle == null && runPepNovo) {
+            return "PepNovo+ executable not set! Sequencing canceled.";
+        }
+
+        // check if the DirecTag folder is set
+        if (direcTagFolder == null && runDirecTag) {
+            return "DirecTag location not set! Sequencing canceled.";
+        }
+
+        // check of the DirecTag executable is set
+        if (direcTagExecutableTitle == null && runDirecTag) {
+            return "DirecTag executable not set! Sequencing canceled.";
+        }
+
+        // check if the pNovo folder is set
+        if (pNovoFolder == null && runPNovo) {
+            return "pNovo+ location not set! Sequencing canceled.";
+        }
+
+        // check of the pNovo executable is set
+        if (pNovoExecutableTitle == null && runPNovo) {
+            return "pNovo+ executable not set! Sequencing canceled.";
+        }
+
+        // check of the Novor executable is set
+        if (novorExecutableTitle == null && runNovor) {
+            return "Novor executable not set! Sequencing canceled.";
+        }
+
+        // check if the Novor folder is set
+        if (novorFolder == null && runNovor) {
+            return "Novor location not set! Sequencing canceled.";
+        }
+
+        if (!runPepNovo && !runDirecTag && !runPNovo && !runNovor) {
+            return "No sequencing algorithms selected! Sequencing canceled.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the PepNovo+ folder.
+     *
+     * @return the PepNovo+ folder
+     */
+    public File getPepNovoFolder() {
+        return pepNovoFolder;
+    }
+
+    /**
+     * Returns the PepNovo+ executable name.
+     *
+     * @return the PepNovo+ executable name
+     */
+    public String getPepNovoExecutableTitle() {
+        return pepNovoExecutableTitle;
+    }
+
+    /**
+     * Returns the DirecTag folder.
+     *
+     * @return the DirecTag folder
+     */
+    public File getDirecTagFolder() {
+        return direcTagFolder;
+    }
+
+    /**
+     * Returns the DirecTag executable name.
+     *
+     * @return the DirecTag executable name
+     */
+    public String getDirecTagExecutableTitle() {
+        return direcTagExecutableTitle;
+    }
+
+    /**
+     * Returns the pNovo+ folder.
+     *
+     * @return the pNovo+ folder
+     */
+    public File getPNovoFolder() {
+        return pNovoFolder;
+    }
+
+    /**
+     * Returns the pNovo+ executable name.
+     *
+     * @return the pNovo+ executable name
+     */
+    public String getPNovoExecutableTitle() {
+        return pNovoExecutableTitle;
+    }
+
+    /**
+     * Returns the Novor folder.
+     *
+     * @return the Novor folder
+     */
+    public File getNovorFolder() {
+        return novorFolder;
+    }
+
+    /**
+     * Returns the Novor executable name.
+     *
+     * @return the Novor executable name
+     */
+    public String getNovorExecutableTitle() {
+        return novorExecutableTitle;
+    }
+}
@@ -0,0 +1,478 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.execution.ProcessSupervisor;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.PepNovoModificationFile;
+import com.compomics.denovogui.io.ShardMerger;
+import com.compomics.denovogui.io.ShardWorkFolder;
+import com.compomics.denovogui.io.SkippedSpectraReport;
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.identification_parameters.tool_specific.PepnovoParameters;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Coordinator of a distributed sequencing. The coordinator splits the
+ * spectrum files in shards in the work folder, waits until the shards are
+ * sequenced by the workers, and merges the results of the shards in the
+ * output folder using the same file names as DeNovoCLI.
+ * <br><br>
+ * Workers can be started on this computer, allowing the distributed mode to
+ * be used on a single computer, and on other computers sharing the work
+ * folder.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ShardCoordinator {
+
+    /**
+     * The default maximal number of spectra per shard.
+     */
+    public static final int DEFAULT_SHARD_SIZE = 2000;
+    /**
+     * The time in milliseconds between two listings of the results.
+     */
+    public static final long POLLING_INTERVAL = 2000;
+    /**
+     * The work folder.
+     */
+    private final ShardWorkFolder workFolder;
+    /**
+     * The command line parameters.
+     */
+    private final DeNovoCLIInputBean deNovoCLIInputBean;
+    /**
+     * The maximal number of spectra per shard.
+     */
+    private final int shardSize;
+    /**
+     * The time in milliseconds after which a claim not touched is considered
+     * stale.
+     */
+    private final long claimTimeout;
+    /**
+     * The names of the shards of every spectrum file in the order of the
+     * spectra.
+     */
+    private final LinkedHashMap<File, ArrayList<String>> shards = new LinkedHashMap<File, ArrayList<String>>();
+    /**
+     * The workers started on this computer.
+     */
+    private final ArrayList<Process> localWorkers = new ArrayList<Process>();
+
+    /**
+     * Constructor.
+     *
+     * @param workFolder the work folder
+     * @param deNovoCLIInputBean the command line parameters
+     * @param shardSize the maximal number of spectra per shard
+     * @param claimTimeout the time in milliseconds after which a claim not
+     * touched is considered stale
+     */
+    public ShardCoordinator(ShardWorkFolder workFolder, DeNovoCLIInputBean deNovoCLIInputBean, int shardSize, long claimTimeout) {
+        this.workFolder = workFolder;
+        this.deNovoCLIInputBean = deNovoCLIInputBean;
+        this.shardSize = shardSize;
+        this.claimTimeout = claimTimeout;
+    }
+
+    /**
+     * Splits the spectrum files in shards and writes the run description in
+     * the work folder.
+     *
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if an error occurred while writing the shards
+     */
+    public void split(WaitingHandler waitingHandler) throws IOException {
+
+        if (workFolder.getRunFile().exists()) {
+            throw new IllegalArgumentException("The work folder " + workFolder.getFolder().getAbsolutePath() + " already contains a run. Please use an empty folder.");
+        }
+
+        // the shards are named after the spectrum files
+        HashSet<String> names = new HashSet<String>();
+        for (File spectrumFile : deNovoCLIInputBean.getSpectrumFiles()) {
+            if (!names.add(spectrumFile.getName())) {
+                throw new IllegalArgumentException("Two spectrum files are named " + spectrumFile.getName() + ". Please rename one of them.");
+            }
+        }
+
+        workFolder.createFolders();
+
+        Properties runDescription = new Properties();
+        runDescription.setProperty(ShardWorkFolder.ID_PARAMS, deNovoCLIInputBean.getSearchParametersFile().getAbsolutePath());
+        runDescription.setProperty(ShardWorkFolder.PEPNOVO, Boolean.toString(deNovoCLIInputBean.enablePepNovo()));
+        runDescription.setProperty(ShardWorkFolder.DIRECTAG, Boolean.toString(deNovoCLIInputBean.enableDirecTag()));
+        runDescription.setProperty(ShardWorkFolder.PNOVO, Boolean.toString(deNovoCLIInputBean.enablePNovo()));
+        runDescription.setProperty(ShardWorkFolder.NOVOR, Boolean.toString(deNovoCLIInputBean.enableNovor()));
+
+        int nShardsTotal = 0;
+
+        for (File spectrumFile : deNovoCLIInputBean.getSpectrumFiles()) {
+
+            ArrayList<String> shardNames = new ArrayList<String>();
+            int nSpectra = ShardMerger.countSpectra(spectrumFile);
+
+            if (nSpectra == 0) {
+                waitingHandler.appendReport("No spectrum found in " + spectrumFile.getName() + ".", true, true);
+            } else {
+                int nShards = (nSpectra + shardSize - 1) / shardSize;
+                int chunkSize = nSpectra / nShards;
+                int remaining = nSpectra % nShards;
+                waitingHandler.appendReport("Splitting " + spectrumFile.getName() + " (" + nSpectra + " spectra) in " + nShards + " shard(s).", true, true);
+                for (File shardFile : FileProcessor.chunkFile(spectrumFile, workFolder.getShardsFolder(), chunkSize, remaining, nSpectra, waitingHandler)) {
+                    shardNames.add(shardFile.getName());
+                    runDescription.setProperty(ShardWorkFolder.SHARD + nShardsTotal, shardFile.getName());
+                    nShardsTotal++;
+                }
+                if (waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            }
+
+            shards.put(spectrumFile, shardNames);
+        }
+
+        runDescription.setProperty(ShardWorkFolder.SHARDS, Integer.toString(nShardsTotal));
+        workFolder.writeRunDescription(runDescription);
+    }
+
+    /**
+     * Starts workers on this computer. The output of every worker is written
+     * to a log file in the work folder.
+     *
+     * @param nWorkers the number of workers to start
+     * @param workerArguments the command line arguments of the workers in
+     * addition to the mode and work folder
+     *
+     * @throws IOException thrown if a worker cannot be started
+     */
+    public void startLocalWorkers(int nWorkers, List<String> workerArguments) throws IOException {
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        for (int i = 1; i <= nWorkers; i++) {
+
+            ArrayList<String> command = new ArrayList<String>();
+            command.add(java);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(DeNovoShardCLI.class.getName());
+            command.add("-" + DeNovoShardParams.MODE.id);
+            command.add(DeNovoShardCLI.WORKER_MODE);
+            command.add("-" + DeNovoShardParams.WORK_FOLDER.id);
+            command.add(workFolder.getFolder().getAbsolutePath());
+            command.addAll(workerArguments);
+
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            localWorkers.add(process);
+            ProcessSupervisor.getInstance().register(process);
+
+            final InputStream inputStream = process.getInputStream();
+            final OutputStream logStream = new FileOutputStream(new File(workFolder.getLogsFolder(), "local_worker_" + i + ".log"));
+            Thread logThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = inputStream.read(buffer)) != -1) {
+                            logStream.write(buffer, 0, read);
+                            logStream.flush();
+                        }
+                    } catch (IOException e) {
+                        // the worker stopped
+                    } finally {
+                        try {
+                            logStream.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            }, "DeNovoShard local worker " + i);
+            logThread.setDaemon(true);
+            logThread.start();
+        }
+    }
+
+    /**
+     * Waits until all shards are sequenced or failed.
+     *
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if the local workers stopped while no other
+     * worker is sequencing the remaining shards
+     * @throws InterruptedException thrown if the coordinator is interrupted
+     */
+    public void waitForShards(WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        ArrayList<String> shardNames = new ArrayList<String>();
+        for (ArrayList<String> fileShards : shards.values()) {
+            shardNames.addAll(fileShards);
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.setMaxSecondaryProgressCounter(shardNames.size());
+        waitingHandler.setSecondaryProgressCounter(0);
+
+        int lastReported = -1;
+
+        while (!waitingHandler.isRunCanceled()) {
+
+            int nEnded = 0;
+            for (String shardName : shardNames) {
+                if (workFolder.isDone(shardName) || workFolder.isFailed(shardName)) {
+                    nEnded++;
+                }
+            }
+
+            if (nEnded != lastReported) {
+                waitingHandler.setSecondaryProgressCounter(nEnded);
+                waitingHandler.appendReport(nEnded + " of " + shardNames.size() + " shard(s) sequenced.", true, true);
+                lastReported = nEnded;
+            }
+
+            if (nEnded == shardNames.size()) {
+                return;
+            }
+
+            if (!localWorkers.isEmpty() && !isLocalWorkerAlive() && !isClaimActive(shardNames)) {
+                throw new IOException("The local workers stopped before all shards were sequenced, see the logs in " + workFolder.getLogsFolder().getAbsolutePath() + ".");
+            }
+
+            Thread.sleep(POLLING_INTERVAL);
+        }
+    }
+
+    /**
+     * Indicates whether one of the workers started on this computer is still
+     * running.
+     *
+     * @return true if a local worker is still running
+     */
+    private boolean isLocalWorkerAlive() {
+        for (Process process : localWorkers) {
+            try {
+                process.exitValue();
+            } catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether one of the given shards is claimed by a worker which
+     * did not stop responding.
+     *
+     * @param shardNames the names of the shards
+     *
+     * @return true if one of the shards is claimed by a worker
+     */
+    private boolean isClaimActive(ArrayList<String> shardNames) {
+        long now = System.currentTimeMillis();
+        for (String shardName : shardNames) {
+            File claimFile = workFolder.getClaimFile(shardName);
+            long lastModified = claimFile.lastModified();
+            if (lastModified != 0 && now - lastModified < claimTimeout) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the workers started on this computer together with their
+     * sequencing processes.
+     */
+    public void stopLocalWorkers() {
+        for (Process process : localWorkers) {
+            ProcessSupervisor.getInstance().terminate(process);
+            ProcessSupervisor.getInstance().unregister(process);
+        }
+    }
+
+    /**
+     * Merges the results of the shards in the output folder. The results of
+     * a spectrum file are not merged if one of its shards failed.
+     *
+     * @param waitingHandler the waiting handler
+     *
+     * @return true if the results of all spectrum files were merged
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the results
+     */
+    public boolean merge(WaitingHandler waitingHandler) throws IOException {
+
+        File outputFolder = deNovoCLIInputBean.getOutputFile();
+        boolean complete = true;
+        SkippedSpectraReport skippedSpectraReport = new SkippedSpectraReport(outputFolder);
+
+        for (File spectrumFile : shards.keySet()) {
+
+            ArrayList<String> shardNames = shards.get(spectrumFile);
+            if (shardNames.isEmpty()) {
+                continue;
+            }
+
+            boolean failed = false;
+            for (String shardName : shardNames) {
+                if (workFolder.isFailed(shardName)) {
+                    waitingHandler.appendReport("The sequencing of " + shardName + " failed: " + readFailure(shardName), true, true);
+                    failed = true;
+                }
+            }
+            if (failed) {
+                waitingHandler.appendReport("The results of " + spectrumFile.getName() + " are not merged.", true, true);
+                complete = false;
+                continue;
+            }
+
+            // the number of spectra before every shard
+            int[] offsets = new int[shardNames.size()];
+            for (int i = 1; i < shardNames.size(); i++) {
+                offsets[i] = offsets[i - 1] + ShardMerger.countSpectra(workFolder.getShardFile(shardNames.get(i - 1)));
+            }
+
+            if (deNovoCLIInputBean.enablePepNovo()) {
+                ArrayList<File> resultFiles = new ArrayList<File>();
+                for (String shardName : shardNames) {
+                    File resultFile = FileProcessor.getOutFile(workFolder.getResultFolder(shardName), workFolder.getShardFile(shardName));
+                    if (resultFile.exists()) {
+                        resultFiles.add(resultFile);
+                    }
+                }
+                if (!resultFiles.isEmpty()) {
+                    ShardMerger.mergePepNovo(resultFiles, FileProcessor.getOutFile(outputFolder, spectrumFile));
+                }
+            }
+            if (deNovoCLIInputBean.enableDirecTag()) {
+                ArrayList<File> resultFiles = new ArrayList<File>();
+                ArrayList<Integer> resultOffsets = new ArrayList<Integer>();
+                for (int i = 0; i < shardNames.size(); i++) {
+                    String shardName = shardNames.get(i);
+                    File resultFile = FileProcessor.getTagsFile(workFolder.getResultFolder(shardName), workFolder.getShardFile(shardName));
+                    if (resultFile.exists()) {
+                        resultFiles.add(resultFile);
+                        resultOffsets.add(offsets[i]);
+                    }
+                }
+                if (!resultFiles.isEmpty()) {
+                    ShardMerger.mergeDirecTag(resultFiles, toArray(resultOffsets), FileProcessor.getTagsFile(outputFolder, spectrumFile));
+                }
+            }
+            if (deNovoCLIInputBean.enablePNovo()) {
+                ArrayList<File> resultFiles = new ArrayList<File>();
+                for (String shardName : shardNames) {
+                    File resultFile = FileProcessor.getPNovoResultFile(workFolder.getResultFolder(shardName), workFolder.getShardFile(shardName));
+                    if (resultFile.exists()) {
+                        resultFiles.add(resultFile);
+                    }
+                }
+                if (!resultFiles.isEmpty()) {
+                    ShardMerger.mergePNovo(resultFiles, FileProcessor.getPNovoResultFile(outputFolder, spectrumFile));
+                }
+            }
+            if (deNovoCLIInputBean.enableNovor()) {
+                ArrayList<File> resultFiles = new ArrayList<File>();
+                ArrayList<Integer> resultOffsets = new ArrayList<Integer>();
+                for (int i = 0; i < shardNames.size(); i++) {
+                    String shardName = shardNames.get(i);
+                    File resultFile = FileProcessor.getNovorResultFile(workFolder.getResultFolder(shardName), workFolder.getShardFile(shardName));
+                    if (resultFile.exists()) {
+                        resultFiles.add(resultFile);
+                        resultOffsets.add(offsets[i]);
+                    }
+                }
+                if (!resultFiles.isEmpty()) {
+                    ShardMerger.mergeNovor(resultFiles, toArray(resultOffsets), FileProcessor.getNovorResultFile(outputFolder, spectrumFile));
+                }
+            }
+
+            // the spectra skipped in the shards
+            for (String shardName : shardNames) {
+                File reportFile = SkippedSpectraReport.getReportFile(workFolder.getResultFolder(shardName));
+                if (reportFile.exists()) {
+                    skippedSpectraReport.addReport(reportFile, spectrumFile.getName());
+                }
+            }
+
+            waitingHandler.appendReport("Results of " + spectrumFile.getName() + " merged from " + shardNames.size() + " shard(s).", true, true);
+        }
+
+        if (skippedSpectraReport.getNSpectra() > 0) {
+            waitingHandler.appendReport(skippedSpectraReport.getNSpectra() + " spectra were skipped, see " + skippedSpectraReport.getFile().getAbsolutePath() + ".", true, true);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Saves the search parameters including the PepNovo+ modifications
+     * mapping, as done by DeNovoCLI when the sequencing is completed.
+     *
+     * @param searchParameters the search parameters
+     *
+     * @throws IOException thrown if an error occurred while writing the files
+     */
+    public void saveSearchParameters(SearchParameters searchParameters) throws IOException {
+        PepNovoModificationFile.writeFile(workFolder.getFolder(), searchParameters.getPtmSettings());
+        PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(Advocate.pepnovo.getIndex());
+        pepnovoParameters.setPepNovoPtmMap(PepNovoModificationFile.getInvertedModIdMap());
+        SearchParameters.saveIdentificationParameters(searchParameters, deNovoCLIInputBean.getSearchParametersFile());
+    }
+
+    /**
+     * Returns the message of a failed shard.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the message of the failed shard
+     */
+    private String readFailure(String shardName) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(workFolder.getFailureFile(shardName)));
+            try {
+                String line = reader.readLine();
+                return line == null ? "unknown error" : line;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return "unknown error";
+        }
+    }
+
+    /**
+     * Converts a list of integers to an array.
+     *
+     * @param list the list
+     *
+     * @return the array
+     */
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
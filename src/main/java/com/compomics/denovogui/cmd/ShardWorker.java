@@ -0,0 +1,287 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.ProcessSupervisor;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.ShardWorkFolder;
+import com.compomics.denovogui.io.SkippedSpectraReport;
+import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker of a distributed sequencing. The worker claims the shards of the
+ * work folder one by one, sequences them in a local temporary folder and
+ * publishes the results in the work folder. The worker stops when all shards
+ * are sequenced.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ShardWorker {
+
+    /**
+     * The default time in milliseconds after which a claim not touched is
+     * considered stale.
+     */
+    public static final long DEFAULT_CLAIM_TIMEOUT = 300000;
+    /**
+     * The time in milliseconds between two listings of the work folder when
+     * no shard can be claimed.
+     */
+    public static final long POLLING_INTERVAL = 2000;
+    /**
+     * The work folder.
+     */
+    private final ShardWorkFolder workFolder;
+    /**
+     * The installations of the sequencing algorithms on this computer.
+     */
+    private final SequencingEngines engines;
+    /**
+     * The number of threads used to sequence a shard.
+     */
+    private final int nThreads;
+    /**
+     * The time in milliseconds after which a claim not touched is considered
+     * stale.
+     */
+    private final long claimTimeout;
+    /**
+     * The id of the worker, unique among the workers of the run.
+     */
+    private final String workerId;
+    /**
+     * The exception handler.
+     */
+    private final CommandLineExceptionHandler exceptionHandler;
+    /**
+     * The spectrum factory.
+     */
+    private final SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+
+    /**
+     * Constructor.
+     *
+     * @param workFolder the work folder
+     * @param engines the installations of the sequencing algorithms on this
+     * computer
+     * @param nThreads the number of threads used to sequence a shard
+     * @param claimTimeout the time in milliseconds after which a claim not
+     * touched is considered stale
+     * @param exceptionHandler the exception handler
+     */
+    public ShardWorker(ShardWorkFolder workFolder, SequencingEngines engines, int nThreads, long claimTimeout, CommandLineExceptionHandler exceptionHandler) {
+        this.workFolder = workFolder;
+        this.engines = engines;
+        this.nThreads = nThreads;
+        this.claimTimeout = claimTimeout;
+        this.exceptionHandler = exceptionHandler;
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^a-zA-Z0-9.@-]", "_").replace('@', '_');
+    }
+
+    /**
+     * Returns the id of the worker.
+     *
+     * @return the id of the worker
+     */
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Sequences the shards of the work folder until all shards are sequenced.
+     * Waits for the run description if not written yet.
+     *
+     * @return the number of shards sequenced by this worker
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the work folder
+     * @throws ClassNotFoundException thrown if the search parameters cannot be
+     * parsed
+     * @throws InterruptedException thrown if the worker is interrupted
+     */
+    public int run() throws IOException, ClassNotFoundException, InterruptedException {
+
+        Properties runDescription = workFolder.readRunDescription();
+        if (runDescription == null) {
+            System.out.println(new Date() + " Worker " + workerId + " waiting for the coordinator.");
+            while ((runDescription = workFolder.readRunDescription()) == null) {
+                Thread.sleep(POLLING_INTERVAL);
+            }
+        }
+
+        boolean runPepNovo = Boolean.parseBoolean(runDescription.getProperty(ShardWorkFolder.PEPNOVO));
+        boolean runDirecTag = Boolean.parseBoolean(runDescription.getProperty(ShardWorkFolder.DIRECTAG));
+        boolean runPNovo = Boolean.parseBoolean(runDescription.getProperty(ShardWorkFolder.PNOVO));
+        boolean runNovor = Boolean.parseBoolean(runDescription.getProperty(ShardWorkFolder.NOVOR));
+
+        String engineError = engines.getError(runPepNovo, runDirecTag, runPNovo, runNovor);
+        if (engineError != null) {
+            throw new IllegalArgumentException(engineError);
+        }
+
+        SearchParameters searchParameters = SearchParameters.getIdentificationParameters(new File(runDescription.getProperty(ShardWorkFolder.ID_PARAMS)));
+        String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+        if (error != null) {
+            System.out.println(error);
+        }
+
+        ArrayList<String> shardNames = ShardWorkFolder.getShardNames(runDescription);
+        System.out.println(new Date() + " Worker " + workerId + " started on " + shardNames.size() + " shard(s) using " + nThreads + " thread(s).");
+
+        int nSequenced = 0;
+
+        while (true) {
+
+            boolean remaining = false;
+            boolean claimed = false;
+
+            for (String shardName : shardNames) {
+                if (workFolder.isDone(shardName) || workFolder.isFailed(shardName)) {
+                    continue;
+                }
+                remaining = true;
+                if (workFolder.claim(shardName, workerId, claimTimeout)) {
+                    claimed = true;
+                    sequence(shardName, searchParameters, runPepNovo, runDirecTag, runPNovo, runNovor);
+                    nSequenced++;
+                }
+            }
+
+            if (!remaining) {
+                break;
+            }
+            if (!claimed) {
+                // the remaining shards are sequenced by other workers
+                Thread.sleep(POLLING_INTERVAL);
+            }
+        }
+
+        System.out.println(new Date() + " Worker " + workerId + " completed, " + nSequenced + " shard(s) sequenced.");
+
+        return nSequenced;
+    }
+
+    /**
+     * Sequences a shard claimed by this worker and publishes its results.
+     *
+     * @param shardName the name of the shard
+     * @param searchParameters the search parameters
+     * @param runPepNovo indicates whether PepNovo+ should be run
+     * @param runDirecTag indicates whether DirecTag should be run
+     * @param runPNovo indicates whether pNovo+ should be run
+     * @param runNovor indicates whether Novor should be run
+     *
+     * @throws IOException thrown if an error occurred while writing the work
+     * folder
+     */
+    private void sequence(final String shardName, SearchParameters searchParameters, boolean runPepNovo, boolean runDirecTag, boolean runPNovo, boolean runNovor) throws IOException {
+
+        System.out.println(new Date() + " Worker " + workerId + " sequencing " + shardName + ".");
+
+        // show that the worker is alive while sequencing
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DeNovoShard heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long heartbeatInterval = Math.max(claimTimeout / 4, 1000);
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                workFolder.touchClaim(shardName, workerId);
+            }
+        }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+
+        // the shard is sequenced locally to spare the shared file system
+        File localFolder = new File(System.getProperty("java.io.tmpdir"), "DeNovoShard_" + workerId + "_" + shardName);
+        File spectraFolder = new File(localFolder, "spectra");
+        File outputFolder = new File(localFolder, "results");
+        spectraFolder.mkdirs();
+        outputFolder.mkdirs();
+
+        // if the worker is stopped, the local folder is deleted, the claim expires after the timeout
+        ArrayList<File> tempFiles = new ArrayList<File>(1);
+        tempFiles.add(localFolder);
+        ProcessSupervisor.getInstance().addTempFiles(tempFiles);
+
+        try {
+            File spectrumFile = new File(spectraFolder, shardName);
+            ShardWorkFolder.copyFile(workFolder.getShardFile(shardName), spectrumFile);
+            ArrayList<File> spectrumFiles = new ArrayList<File>();
+            spectrumFiles.add(spectrumFile);
+
+            WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+            spectrumFactory.addSpectra(spectrumFile, waitingHandler);
+
+            DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(engines.getPepNovoFolder(), engines.getDirecTagFolder(), engines.getPNovoFolder(), engines.getNovorFolder());
+            searchHandler.setNThreads(nThreads);
+            searchHandler.setRegisterVersion(false);
+
+            // the search parameters are saved by the coordinator
+            searchHandler.startSequencing(spectrumFiles, searchParameters, outputFolder, null,
+                    engines.getPepNovoExecutableTitle(), engines.getDirecTagExecutableTitle(), engines.getPNovoExecutableTitle(), engines.getNovorExecutableTitle(),
+                    runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandler, exceptionHandler);
+
+            if (waitingHandler.isRunCanceled()) {
+                workFolder.fail(shardName, workerId, "The sequencing of " + shardName + " by worker " + workerId + " was canceled, see the output of the worker for details.");
+                System.out.println(new Date() + " Worker " + workerId + " failed to sequence " + shardName + ".");
+            } else if (!searchHandler.getFailedResultFiles().isEmpty()) {
+                // the truncated results must not be merged as if complete
+                workFolder.fail(shardName, workerId, "The sequencing of " + shardName + " by worker " + workerId + " did not complete within the time limit, see the output of the worker for details.");
+                System.out.println(new Date() + " Worker " + workerId + " failed to sequence " + shardName + ".");
+            } else {
+                ArrayList<File> resultFiles = FileProcessor.getAllResultFiles(outputFolder, spectrumFiles, runPepNovo, runDirecTag, runPNovo, runNovor);
+                File skippedSpectraFile = SkippedSpectraReport.getReportFile(outputFolder);
+                if (skippedSpectraFile.exists()) {
+                    resultFiles.add(skippedSpectraFile);
+                }
+                workFolder.publish(shardName, resultFiles, workerId);
+                System.out.println(new Date() + " Worker " + workerId + " published " + shardName + ".");
+            }
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+            workFolder.fail(shardName, workerId, "Worker " + workerId + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            heartbeat.shutdownNow();
+            ProcessSupervisor.getInstance().removeTempFiles(tempFiles);
+            spectrumFactory.closeFiles();
+            spectrumFactory.clearFactory();
+            deleteFolder(localFolder);
+        }
+    }
+
+    /**
+     * Deletes a folder and its content.
+     *
+     * @param folder the folder to delete
+     */
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+}
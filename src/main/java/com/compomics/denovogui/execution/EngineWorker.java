@@ -0,0 +1,36 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A job processing a batch of spectrum files in a single process of the
+ * sequencing engine. The engine loads its models once for all the files of
+ * the batch instead of once per file.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public interface EngineWorker extends Executable {
+
+    /**
+     * Returns the spectrum files processed by the worker.
+     *
+     * @return the spectrum files processed by the worker
+     */
+    public List<File> getBatch();
+
+    /**
+     * Writes the results of the spectrum files of the batch to their result
+     * files and returns the files completely processed. Called once the
+     * worker stopped, the files not returned have to be processed again.
+     *
+     * @return the spectrum files completely processed
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the results
+     */
+    public ArrayList<File> dispatchResults() throws IOException;
+}
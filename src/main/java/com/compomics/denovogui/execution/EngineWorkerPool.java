@@ -0,0 +1,111 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Pool of engine workers sharing the spectrum files of a sequencing. Every
+ * worker processes its batch of files in a single process of the engine, so
+ * that the engine models are loaded once per worker instead of once per file.
+ * The files which the workers did not completely process are returned to be
+ * processed file by file.
+ *
+ * @param <W> the type of worker
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class EngineWorkerPool<W extends Job & EngineWorker> {
+
+    /**
+     * The workers.
+     */
+    private final ArrayList<W> workers = new ArrayList<W>();
+
+    /**
+     * Distributes the spectrum files among the given number of batches. The
+     * files of a group are assigned to different batches, e.g. the chunks of
+     * a spectrum file are processed in parallel, and the batches get similar
+     * numbers of files.
+     *
+     * @param groups the groups of spectrum files
+     * @param nBatches the number of batches
+     *
+     * @return the batches, empty batches are not returned
+     */
+    public static ArrayList<ArrayList<File>> getBatches(Collection<? extends List<File>> groups, int nBatches) {
+        ArrayList<ArrayList<File>> batches = new ArrayList<ArrayList<File>>(nBatches);
+        for (int i = 0; i < nBatches; i++) {
+            batches.add(new ArrayList<File>());
+        }
+        int batchIndex = 0;
+        for (List<File> group : groups) {
+            for (File file : group) {
+                batches.get(batchIndex).add(file);
+                batchIndex = (batchIndex + 1) % nBatches;
+            }
+        }
+        ArrayList<ArrayList<File>> result = new ArrayList<ArrayList<File>>(nBatches);
+        for (ArrayList<File> batch : batches) {
+            if (!batch.isEmpty()) {
+                result.add(batch);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a worker to the pool.
+     *
+     * @param worker the worker
+     */
+    public void add(W worker) {
+        workers.add(worker);
+    }
+
+    /**
+     * Returns the workers of the pool.
+     *
+     * @return the workers of the pool
+     */
+    public ArrayList<W> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Submits the workers to the given executor. The workers are registered
+     * in the job queue to be canceled with the other jobs.
+     *
+     * @param executor the executor running the workers
+     * @param jobs the job queue
+     */
+    public void start(ExecutorService executor, Collection<Job> jobs) {
+        for (W worker : workers) {
+            jobs.add(worker);
+            executor.submit(worker);
+        }
+    }
+
+    /**
+     * Writes the results of the workers to the result files of the spectrum
+     * files and returns the spectrum files completely processed. To be called
+     * when all workers stopped.
+     *
+     * @return the spectrum files completely processed
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the results
+     */
+    public HashSet<File> dispatchResults() throws IOException {
+        HashSet<File> completedFiles = new HashSet<File>();
+        for (W worker : workers) {
+            completedFiles.addAll(worker.dispatchResults());
+        }
+        return completedFiles;
+    }
+}
@@ -9,6 +9,11 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 
 /**
@@ -20,6 +25,31 @@ import org.apache.log4j.Logger;
  */
 public abstract class Job implements Executable, Runnable {
 
+    /**
+     * The minimal timeout in milliseconds of a job.
+     */
+    public static final long MIN_TIMEOUT = 120000;
+    /**
+     * The factor applied to the expected processing time of a job to obtain
+     * its timeout.
+     */
+    public static final double TIMEOUT_FACTOR = 10;
+    /**
+     * The interval in milliseconds between two checks of the watchdog.
+     */
+    private static final long WATCHDOG_INTERVAL = 1000;
+    /**
+     * The executor checking the timeouts of the running jobs.
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Job watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /**
      * The job ID.
      */
@@ -72,6 +102,40 @@ public abstract class Job implements Executable, Runnable {
      * The spectrum factory.
      */
     private SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    /**
+     * The recorder of the performance metrics, null if not recorded.
+     */
+    private TelemetryRecorder telemetryRecorder = null;
+    /**
+     * The performance metrics of the process, null if not recorded.
+     */
+    private JobTelemetry telemetry = null;
+    /**
+     * The time in milliseconds after which the process is destroyed, 0 for no
+     * limit.
+     */
+    private long timeout = 0;
+    /**
+     * The time in milliseconds without output from the process after which
+     * the process is destroyed, 0 for no limit.
+     */
+    private long stallTimeout = 0;
+    /**
+     * The time when the process last wrote to its output.
+     */
+    private volatile long lastActivity;
+    /**
+     * Indicates whether the process was destroyed by the watchdog.
+     */
+    private volatile boolean timedOut = false;
+    /**
+     * The exit value of the process, -1 if not terminated.
+     */
+    private int exitValue = -1;
+    /**
+     * The number of spectra reported in the output of the process.
+     */
+    private int nSpectraReported = 0;
 
     /**
      * Executes a job.
@@ -79,9 +143,24 @@ public abstract class Job implements Executable, Runnable {
     @Override
     public void run() {
         proc = null;
+        ScheduledFuture<?> watchdog = null;
+
+        // the sequencing was canceled before the job started
+        if (waitingHandler.isRunCanceled()) {
+            setStatus(JobStatus.CANCELED);
+            return;
+        }
+
         try {
             proc = procBuilder.start();
+            ProcessSupervisor.getInstance().register(proc);
             setStatus(JobStatus.RUNNING);
+            if (telemetryRecorder != null) {
+                telemetry = telemetryRecorder.startJob(getDescription(), outputFile, proc);
+            }
+            if (timeout > 0 || stallTimeout > 0) {
+                watchdog = startWatchdog(proc);
+            }
         } catch (IOException ioe) {
             setStatus(JobStatus.ERROR);
             setError(ioe.getMessage());
@@ -100,6 +179,7 @@ public abstract class Job implements Executable, Runnable {
             // get input from scanner and send to stdout
             while (scan.hasNextLine() && !waitingHandler.isRunCanceled()) {
                 String temp = scan.nextLine();
+                lastActivity = System.currentTimeMillis();
                 waitingHandler.appendReport(temp, false, true); // @TODO: better processing of pNovo progress output
             }
 
@@ -108,6 +188,7 @@ public abstract class Job implements Executable, Runnable {
             // get input from scanner and send to stdout
             while (scan.hasNextLine() && !waitingHandler.isRunCanceled()) {
                 String temp = scan.nextLine();
+                lastActivity = System.currentTimeMillis();
                 waitingHandler.appendReport(temp, false, true);
             }
             
@@ -129,6 +210,7 @@ public abstract class Job implements Executable, Runnable {
                 // get input from scanner and send to stdout
                 while (scan.hasNextLine() && !waitingHandler.isRunCanceled()) {
                     String temp = scan.nextLine();
+                    lastActivity = System.currentTimeMillis();
                     writer.write(temp);
                     writer.newLine();
 
@@ -146,6 +228,10 @@ public abstract class Job implements Executable, Runnable {
                                         + " of " + totalSpectrumCount + ".", true, true);
                             }
                             waitingHandler.increaseSecondaryProgressCounter();
+                            nSpectraReported++;
+                            if (telemetry != null) {
+                                telemetry.addSpectrum();
+                            }
                         }
                     }
                 }
@@ -161,10 +247,17 @@ public abstract class Job implements Executable, Runnable {
 
         try {
             proc.waitFor();
-            setStatus(JobStatus.FINISHED);
+            exitValue = proc.exitValue();
+
+            if (timedOut) {
+                setStatus(JobStatus.ERROR);
+                setError(getDescription() + " did not complete within the time limit.");
+            } else {
+                setStatus(JobStatus.FINISHED);
+            }
 
             // rename the pnovo result file
-            if (description.equalsIgnoreCase("pNovo+")) {
+            if (!timedOut && description.equalsIgnoreCase("pNovo+")) {
                 String txtFileName = outputFile.getName().substring(0, outputFile.getName().lastIndexOf("."));
                 File temp = new File(outputFile.getParentFile(), txtFileName + ".pnovo.txt");
                 if (temp.exists()) {
@@ -179,11 +272,106 @@ public abstract class Job implements Executable, Runnable {
                 exceptionHandler.catchException(e);
                 if (proc != null) {
                     log.warn("SUBPROCESS KILLED!");
-                    proc.destroy();
+                    ProcessSupervisor.getInstance().terminate(proc);
                 }
                 waitingHandler.setRunCanceled();
             }
         }
+
+        if (watchdog != null) {
+            watchdog.cancel(false);
+        }
+        if (proc != null) {
+            ProcessSupervisor.getInstance().unregister(proc);
+        }
+
+        if (telemetry != null) {
+            telemetry.end(getStatus());
+        }
+    }
+
+    /**
+     * Starts checking the timeouts of the process. The process and its
+     * descendants are stopped when it runs longer than the timeout, or when
+     * it does not write any output for longer than the stall timeout.
+     *
+     * @param process the process
+     *
+     * @return the scheduled checks
+     */
+    private ScheduledFuture<?> startWatchdog(final Process process) {
+        final long startTime = System.currentTimeMillis();
+        lastActivity = startTime;
+        return WATCHDOG.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                if (!timedOut && (timeout > 0 && now - startTime > timeout
+                        || stallTimeout > 0 && now - lastActivity > stallTimeout)) {
+                    timedOut = true;
+                    log.warn(getDescription() + " exceeded its time limit, subprocess killed.");
+                    ProcessSupervisor.getInstance().terminate(process);
+                }
+            }
+        }, WATCHDOG_INTERVAL, WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the timeout of a job, i.e. the expected processing time
+     * multiplied by the timeout factor, and at least the minimal timeout.
+     *
+     * @param nSpectra the number of spectra processed by the job
+     * @param spectraPerSecond the expected number of spectra processed per
+     * second
+     *
+     * @return the timeout in milliseconds
+     */
+    public static long getTimeout(int nSpectra, double spectraPerSecond) {
+        return Math.max(MIN_TIMEOUT, (long) (TIMEOUT_FACTOR * 1000 * nSpectra / spectraPerSecond));
+    }
+
+    /**
+     * Sets the timeouts of the process. Must be set before the job is
+     * started.
+     *
+     * @param timeout the time in milliseconds after which the process is
+     * destroyed, 0 for no limit
+     * @param stallTimeout the time in milliseconds without output from the
+     * process after which the process is destroyed, 0 for no limit
+     */
+    public void setTimeouts(long timeout, long stallTimeout) {
+        this.timeout = timeout;
+        this.stallTimeout = stallTimeout;
+    }
+
+    /**
+     * Indicates whether the process was destroyed because it exceeded its
+     * timeout.
+     *
+     * @return true if the process was destroyed because it exceeded its
+     * timeout
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Returns the exit value of the process, -1 if not terminated.
+     *
+     * @return the exit value of the process
+     */
+    public int getExitValue() {
+        return exitValue;
+    }
+
+    /**
+     * Returns the number of spectra reported in the output of the process.
+     * Only counted for PepNovo+.
+     *
+     * @return the number of spectra reported in the output of the process
+     */
+    public int getNSpectraReported() {
+        return nSpectraReported;
     }
 
     @Override
@@ -246,6 +434,36 @@ public abstract class Job implements Executable, Runnable {
         this.filename = filename;
     }
 
+    /**
+     * Returns the file where the output of the job is written.
+     *
+     * @return the file where the output of the job is written
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Sets the recorder of the performance metrics. Must be set before the
+     * job is started.
+     *
+     * @param telemetryRecorder the recorder of the performance metrics, null
+     * to not record them
+     */
+    public void setTelemetryRecorder(TelemetryRecorder telemetryRecorder) {
+        this.telemetryRecorder = telemetryRecorder;
+    }
+
+    /**
+     * Returns the performance metrics of the process, null if not recorded
+     * or not started.
+     *
+     * @return the performance metrics of the process
+     */
+    public JobTelemetry getTelemetry() {
+        return telemetry;
+    }
+
     /**
      * Writes the command executed to the out stream.
      */
@@ -254,7 +472,7 @@ public abstract class Job implements Executable, Runnable {
     @Override
     public void cancel() {
         if (proc != null) {
-            proc.destroy();
+            ProcessSupervisor.getInstance().terminate(proc);
             log.info("PROCESS CANCELED.");
         }
     }
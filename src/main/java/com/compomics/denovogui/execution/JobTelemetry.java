@@ -0,0 +1,341 @@
+package com.compomics.denovogui.execution;
+
+import com.compomics.denovogui.util.JsonLine;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Performance metrics of the process of a job, sampled from the /proc file
+ * system on Linux: CPU time, peak resident memory and bytes read and written.
+ * On other systems, or if the process id cannot be obtained, only the wall
+ * time and the number of spectra are recorded.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class JobTelemetry {
+
+    /**
+     * The number of clock ticks per second used in /proc/[pid]/stat. This
+     * value is fixed by the kernel ABI on all common Linux architectures.
+     */
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    /**
+     * The description of the job, i.e. the name of the algorithm.
+     */
+    private final String description;
+    /**
+     * The output file of the job.
+     */
+    private final File outputFile;
+    /**
+     * The id of the process, -1 if not available.
+     */
+    private final int pid;
+    /**
+     * The time when the process was started.
+     */
+    private final long startTime;
+    /**
+     * The time when the process ended, -1 if still running.
+     */
+    private long endTime = -1;
+    /**
+     * The CPU time consumed by the process in milliseconds.
+     */
+    private long cpuTime = 0;
+    /**
+     * The peak resident set size of the process in kB.
+     */
+    private long peakRss = 0;
+    /**
+     * The maximal number of threads of the process.
+     */
+    private long maxThreads = 0;
+    /**
+     * The number of bytes read from the storage by the process.
+     */
+    private long readBytes = 0;
+    /**
+     * The number of bytes written to the storage by the process.
+     */
+    private long writeBytes = 0;
+    /**
+     * The number of spectra processed.
+     */
+    private long nSpectra = 0;
+    /**
+     * The status of the job when it ended.
+     */
+    private JobStatus status = null;
+
+    /**
+     * Constructor.
+     *
+     * @param description the description of the job
+     * @param outputFile the output file of the job
+     * @param process the process of the job
+     */
+    public JobTelemetry(String description, File outputFile, Process process) {
+        this.description = description;
+        this.outputFile = outputFile;
+        this.pid = getPid(process);
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Samples the metrics of the process. The values of the last successful
+     * sample are kept when the process is not available anymore.
+     */
+    public synchronized void sample() {
+
+        if (pid == -1 || endTime != -1) {
+            return;
+        }
+
+        File procFolder = new File("/proc", Integer.toString(pid));
+
+        try {
+            // cpu time and threads, fields 14, 15 and 20 after the command between parentheses
+            String stat = readFirstLine(new File(procFolder, "stat"));
+            if (stat != null) {
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+                cpuTime = Math.max(cpuTime, 1000 * ticks / CLOCK_TICKS_PER_SECOND);
+                maxThreads = Math.max(maxThreads, Long.parseLong(fields[17]));
+            }
+
+            // peak resident memory
+            BufferedReader br = new BufferedReader(new FileReader(new File(procFolder, "status")));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("VmHWM:") || line.startsWith("VmRSS:")) {
+                        peakRss = Math.max(peakRss, parseValue(line));
+                    }
+                }
+            } finally {
+                br.close();
+            }
+
+            // storage access, only readable by the owner of the process
+            File ioFile = new File(procFolder, "io");
+            if (ioFile.canRead()) {
+                br = new BufferedReader(new FileReader(ioFile));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith("read_bytes:")) {
+                            readBytes = Math.max(readBytes, parseValue(line));
+                        } else if (line.startsWith("write_bytes:")) {
+                            writeBytes = Math.max(writeBytes, parseValue(line));
+                        }
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } catch (IOException e) {
+            // the process ended in the meantime
+        } catch (RuntimeException e) {
+            // unexpected format, keep the last values
+        }
+    }
+
+    /**
+     * Indicates that the process ended.
+     *
+     * @param status the status of the job
+     */
+    public synchronized void end(JobStatus status) {
+        sample();
+        if (endTime == -1) {
+            endTime = System.currentTimeMillis();
+        }
+        this.status = status;
+    }
+
+    /**
+     * Adds a spectrum processed.
+     */
+    public synchronized void addSpectrum() {
+        nSpectra++;
+    }
+
+    /**
+     * Sets the number of spectra processed if higher than the number
+     * counted.
+     *
+     * @param nSpectra the number of spectra processed
+     */
+    public synchronized void setNSpectra(long nSpectra) {
+        this.nSpectra = Math.max(this.nSpectra, nSpectra);
+    }
+
+    /**
+     * Returns the description of the job.
+     *
+     * @return the description of the job
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the time when the process was started.
+     *
+     * @return the time when the process was started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time when the process ended, the current time if still
+     * running.
+     *
+     * @return the time when the process ended
+     */
+    public synchronized long getEndTime() {
+        return endTime == -1 ? System.currentTimeMillis() : endTime;
+    }
+
+    /**
+     * Returns the CPU time consumed by the process in milliseconds.
+     *
+     * @return the CPU time consumed by the process
+     */
+    public synchronized long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the peak resident set size of the process in kB.
+     *
+     * @return the peak resident set size of the process
+     */
+    public synchronized long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * Returns the number of bytes read from the storage by the process.
+     *
+     * @return the number of bytes read
+     */
+    public synchronized long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * Returns the number of bytes written to the storage by the process.
+     *
+     * @return the number of bytes written
+     */
+    public synchronized long getWriteBytes() {
+        return writeBytes;
+    }
+
+    /**
+     * Returns the number of spectra processed.
+     *
+     * @return the number of spectra processed
+     */
+    public synchronized long getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the metrics as a JSON lines record.
+     *
+     * @return the metrics as a JSON lines record
+     */
+    public synchronized String toJson() {
+        long wallTime = getEndTime() - startTime;
+        return new JsonLine()
+                .add("type", "job")
+                .add("engine", description)
+                .add("output", outputFile == null ? null : outputFile.getName())
+                .add("pid", pid)
+                .add("status", status == null ? null : status.toString())
+                .add("start", startTime)
+                .add("end", getEndTime())
+                .add("wallTimeMs", wallTime)
+                .add("cpuTimeMs", cpuTime)
+                .add("cpuUtilization", wallTime > 0 ? (double) cpuTime / wallTime : Double.NaN)
+                .add("peakRssKb", peakRss)
+                .add("maxThreads", maxThreads)
+                .add("readBytes", readBytes)
+                .add("writeBytes", writeBytes)
+                .add("spectra", nSpectra)
+                .add("spectraPerSecond", wallTime > 0 ? 1000.0 * nSpectra / wallTime : Double.NaN)
+                .toString();
+    }
+
+    /**
+     * Returns the id of the given process, -1 if not available. The id is
+     * obtained by reflection as the process API does not expose it on the
+     * Java versions supported.
+     *
+     * @param process the process
+     *
+     * @return the id of the process
+     */
+    public static int getPid(Process process) {
+        if (process == null) {
+            return -1;
+        }
+        try {
+            Method pidMethod = Process.class.getMethod("pid");
+            return ((Long) pidMethod.invoke(process)).intValue();
+        } catch (Exception e) {
+            // not available before Java 9
+        }
+        try {
+            Field pidField = process.getClass().getDeclaredField("pid");
+            pidField.setAccessible(true);
+            return pidField.getInt(process);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the first line of a file, null if empty.
+     *
+     * @param file the file
+     *
+     * @return the first line of the file
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static String readFirstLine(File file) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            return br.readLine();
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Returns the numeric value of a line of the /proc files in the format
+     * 'key: value [unit]'.
+     *
+     * @param line the line
+     *
+     * @return the value
+     */
+    private static long parseValue(String line) {
+        String value = line.substring(line.indexOf(':') + 1).trim();
+        int spaceIndex = value.indexOf(' ');
+        if (spaceIndex != -1) {
+            value = value.substring(0, spaceIndex);
+        }
+        return Long.parseLong(value);
+    }
+}
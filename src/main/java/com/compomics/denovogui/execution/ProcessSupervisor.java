@@ -0,0 +1,474 @@
+package com.compomics.denovogui.execution;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Supervises the processes started by DeNovoGUI. The processes are stopped
+ * together with their descendants, e.g. the Java process started by a
+ * wrapper script, first gracefully and then forcibly if still running after
+ * a grace period. A shutdown hook stops the running processes and deletes the
+ * temporary files when the virtual machine exits, e.g. when the command line
+ * is interrupted.
+ * <br><br>
+ * On Linux the descendants of a process are found in /proc, on Windows the
+ * process trees are stopped using taskkill.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ProcessSupervisor {
+
+    /**
+     * The time in milliseconds given to a process tree to stop gracefully
+     * before it is killed.
+     */
+    public static final long GRACE_PERIOD = 3000;
+    /**
+     * The time in milliseconds given to the process trees to stop gracefully
+     * when the virtual machine exits.
+     */
+    public static final long SHUTDOWN_GRACE_PERIOD = 2000;
+    /**
+     * The interval in milliseconds between two checks of the processes
+     * stopping.
+     */
+    private static final long POLLING_INTERVAL = 100;
+    /**
+     * The instance of the supervisor.
+     */
+    private static ProcessSupervisor instance = null;
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(ProcessSupervisor.class);
+    /**
+     * The folder of the process information, /proc on Linux.
+     */
+    private final File procFolder;
+    /**
+     * Indicates whether the system is Windows.
+     */
+    private final boolean windows;
+    /**
+     * The processes running.
+     */
+    private final LinkedHashSet<Process> processes = new LinkedHashSet<Process>();
+    /**
+     * The temporary files and folders to delete when the virtual machine
+     * exits.
+     */
+    private final LinkedHashSet<File> tempFiles = new LinkedHashSet<File>();
+    /**
+     * The executor killing the processes which did not stop during the grace
+     * period.
+     */
+    private final ScheduledExecutorService killer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Process killer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Constructor.
+     *
+     * @param procFolder the folder of the process information, /proc on
+     * Linux
+     */
+    private ProcessSupervisor(File procFolder) {
+        this.procFolder = procFolder;
+        this.windows = System.getProperty("os.name").toLowerCase().contains("windows");
+    }
+
+    /**
+     * Returns the instance of the supervisor. The shutdown hook is registered
+     * when the instance is created.
+     *
+     * @return the instance of the supervisor
+     */
+    public static synchronized ProcessSupervisor getInstance() {
+        if (instance == null) {
+            final ProcessSupervisor processSupervisor = new ProcessSupervisor(new File("/proc"));
+            Runtime.getRuntime().addShutdownHook(new Thread("DeNovoGUI shutdown") {
+                @Override
+                public void run() {
+                    processSupervisor.shutdown();
+                }
+            });
+            instance = processSupervisor;
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a process started.
+     *
+     * @param process the process
+     */
+    public synchronized void register(Process process) {
+        processes.add(process);
+    }
+
+    /**
+     * Unregisters a process which completed.
+     *
+     * @param process the process
+     */
+    public synchronized void unregister(Process process) {
+        processes.remove(process);
+    }
+
+    /**
+     * Registers temporary files or folders to delete if the virtual machine
+     * exits before they are deleted.
+     *
+     * @param files the temporary files or folders
+     */
+    public synchronized void addTempFiles(Collection<File> files) {
+        tempFiles.addAll(files);
+    }
+
+    /**
+     * Unregisters temporary files or folders deleted or kept on purpose.
+     *
+     * @param files the temporary files or folders
+     */
+    public synchronized void removeTempFiles(Collection<File> files) {
+        tempFiles.removeAll(files);
+    }
+
+    /**
+     * Stops a process and its descendants. The processes are asked to stop
+     * and are killed if still running after the grace period. Returns
+     * immediately.
+     *
+     * @param process the process
+     */
+    public void terminate(final Process process) {
+
+        if (process == null || !isAlive(process)) {
+            return;
+        }
+
+        final ArrayList<Integer> processTree = getProcessTree(process);
+        if (processTree.isEmpty()) {
+            process.destroy();
+        } else {
+            signal(processTree, false);
+        }
+
+        killer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                kill(process, processTree);
+            }
+        }, GRACE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Kills the processes of a process tree still running.
+     *
+     * @param process the root process of the tree
+     * @param processTree the ids of the processes of the tree when it was
+     * asked to stop
+     */
+    private void kill(Process process, ArrayList<Integer> processTree) {
+
+        LinkedHashSet<Integer> remaining = new LinkedHashSet<Integer>();
+        if (isAlive(process)) {
+            remaining.addAll(getProcessTree(process));
+        }
+        for (Integer pid : processTree) {
+            if (isAlive(pid)) {
+                remaining.add(pid);
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            log.warn("Killing " + remaining.size() + " process(es) which did not stop gracefully.");
+            signal(new ArrayList<Integer>(remaining), true);
+        }
+        process.destroy();
+    }
+
+    /**
+     * Stops all the processes running and deletes the temporary files. Used
+     * when the virtual machine exits, waits for the processes to stop.
+     */
+    public void shutdown() {
+
+        ArrayList<Process> runningProcesses;
+        ArrayList<File> remainingFiles;
+        synchronized (this) {
+            runningProcesses = new ArrayList<Process>(processes);
+            remainingFiles = new ArrayList<File>(tempFiles);
+        }
+
+        HashMap<Process, ArrayList<Integer>> processTrees = new HashMap<Process, ArrayList<Integer>>();
+        for (Process process : runningProcesses) {
+            if (isAlive(process)) {
+                ArrayList<Integer> processTree = getProcessTree(process);
+                processTrees.put(process, processTree);
+                if (processTree.isEmpty()) {
+                    process.destroy();
+                } else {
+                    signal(processTree, false);
+                }
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_GRACE_PERIOD;
+        while (!processTrees.isEmpty() && System.currentTimeMillis() < deadline && isAnyAlive(processTrees)) {
+            try {
+                Thread.sleep(POLLING_INTERVAL);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        for (Process process : processTrees.keySet()) {
+            kill(process, processTrees.get(process));
+        }
+
+        for (File file : remainingFiles) {
+            delete(file);
+        }
+    }
+
+    /**
+     * Indicates whether a process of the given trees is still running.
+     *
+     * @param processTrees the process trees
+     *
+     * @return true if a process is still running
+     */
+    private boolean isAnyAlive(HashMap<Process, ArrayList<Integer>> processTrees) {
+        for (Process process : processTrees.keySet()) {
+            if (isAlive(process)) {
+                return true;
+            }
+            for (Integer pid : processTrees.get(process)) {
+                if (isAlive(pid)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ids of a process and of its descendants, empty if the id of
+     * the process is not available. On Windows only the id of the process is
+     * returned, the tree is handled by taskkill.
+     *
+     * @param process the process
+     *
+     * @return the ids of the process and of its descendants
+     */
+    public ArrayList<Integer> getProcessTree(Process process) {
+
+        ArrayList<Integer> processTree = new ArrayList<Integer>();
+        int pid = JobTelemetry.getPid(process);
+        if (pid < 0) {
+            return processTree;
+        }
+        processTree.add(pid);
+
+        if (windows || !procFolder.isDirectory()) {
+            return processTree;
+        }
+
+        // map every process to its children
+        HashMap<Integer, ArrayList<Integer>> children = new HashMap<Integer, ArrayList<Integer>>();
+        File[] processFolders = procFolder.listFiles();
+        if (processFolders != null) {
+            for (File processFolder : processFolders) {
+                String name = processFolder.getName();
+                if (name.length() == 0 || !Character.isDigit(name.charAt(0))) {
+                    continue;
+                }
+                int parentPid = getParentPid(processFolder);
+                if (parentPid > 0) {
+                    ArrayList<Integer> parentChildren = children.get(parentPid);
+                    if (parentChildren == null) {
+                        parentChildren = new ArrayList<Integer>();
+                        children.put(parentPid, parentChildren);
+                    }
+                    try {
+                        parentChildren.add(Integer.valueOf(name));
+                    } catch (NumberFormatException e) {
+                        // not a process
+                    }
+                }
+            }
+        }
+
+        // add the descendants breadth first
+        for (int i = 0; i < processTree.size(); i++) {
+            ArrayList<Integer> processChildren = children.get(processTree.get(i));
+            if (processChildren != null) {
+                for (Integer child : processChildren) {
+                    if (!processTree.contains(child)) {
+                        processTree.add(child);
+                    }
+                }
+            }
+        }
+
+        return processTree;
+    }
+
+    /**
+     * Returns the id of the parent of a process from its stat file, -1 if
+     * not available. The stat file has the format 'pid (name) state ppid
+     * ...' where the name may contain spaces and parentheses.
+     *
+     * @param processFolder the folder of the process in /proc
+     *
+     * @return the id of the parent of the process
+     */
+    private static int getParentPid(File processFolder) {
+        String stat = readStat(processFolder);
+        if (stat == null) {
+            return -1;
+        }
+        int nameEnd = stat.lastIndexOf(')');
+        if (nameEnd == -1) {
+            return -1;
+        }
+        String[] values = stat.substring(nameEnd + 1).trim().split(" ");
+        if (values.length < 2) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(values[1]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the stat file of a process, null if the process does not exist
+     * anymore.
+     *
+     * @param processFolder the folder of the process in /proc
+     *
+     * @return the content of the stat file
+     */
+    private static String readStat(File processFolder) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(new File(processFolder, "stat")));
+            try {
+                return reader.readLine();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether a process is running.
+     *
+     * @param process the process
+     *
+     * @return true if the process is running
+     */
+    public static boolean isAlive(Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Indicates whether the process with the given id is running. Zombie
+     * processes are considered stopped. Always false when the process
+     * information is not available.
+     *
+     * @param pid the id of the process
+     *
+     * @return true if the process is running
+     */
+    private boolean isAlive(int pid) {
+        String stat = readStat(new File(procFolder, Integer.toString(pid)));
+        if (stat == null) {
+            return false;
+        }
+        int nameEnd = stat.lastIndexOf(')');
+        return nameEnd == -1 || !stat.substring(nameEnd + 1).trim().startsWith("Z");
+    }
+
+    /**
+     * Sends a stop signal to processes.
+     *
+     * @param pids the ids of the processes
+     * @param force if true the processes are killed, otherwise they are asked
+     * to stop
+     */
+    private void signal(ArrayList<Integer> pids, boolean force) {
+
+        ArrayList<String> command = new ArrayList<String>();
+        if (windows) {
+            command.add("taskkill");
+            if (force) {
+                command.add("/F");
+            }
+            command.add("/T");
+            for (Integer pid : pids) {
+                command.add("/PID");
+                command.add(pid.toString());
+            }
+        } else {
+            command.add("kill");
+            command.add(force ? "-KILL" : "-TERM");
+            for (Integer pid : pids) {
+                command.add(pid.toString());
+            }
+        }
+
+        try {
+            Process killProcess = Runtime.getRuntime().exec(command.toArray(new String[command.size()]));
+            killProcess.getOutputStream().close();
+            killProcess.getInputStream().close();
+            killProcess.getErrorStream().close();
+            killProcess.waitFor();
+        } catch (IOException e) {
+            log.warn("Failed to stop processes " + pids + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Deletes a file or a folder and its content.
+     *
+     * @param file the file or folder
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
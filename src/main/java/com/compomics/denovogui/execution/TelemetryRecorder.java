@@ -0,0 +1,234 @@
+package com.compomics.denovogui.execution;
+
+import com.compomics.denovogui.util.JsonLine;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Samples the processes of the jobs of a sequencing run and writes their
+ * metrics as JSON lines: one record per job when it is completed, then one
+ * record per algorithm and one record for the whole run when the run is
+ * completed.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class TelemetryRecorder {
+
+    /**
+     * The default interval between two samples in milliseconds.
+     */
+    public static final long DEFAULT_SAMPLING_INTERVAL = 1000;
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(TelemetryRecorder.class);
+    /**
+     * The file where the records are written.
+     */
+    private final File metricsFile;
+    /**
+     * The writer of the records.
+     */
+    private BufferedWriter writer;
+    /**
+     * The telemetry of the jobs running.
+     */
+    private final CopyOnWriteArrayList<JobTelemetry> runningJobs = new CopyOnWriteArrayList<JobTelemetry>();
+    /**
+     * The telemetry of the jobs completed.
+     */
+    private final ArrayList<JobTelemetry> completedJobs = new ArrayList<JobTelemetry>();
+    /**
+     * The time when the run started.
+     */
+    private final long startTime;
+    /**
+     * The executor sampling the processes.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor. The records are appended to the given file.
+     *
+     * @param metricsFile the file where the records are written
+     * @param samplingInterval the interval between two samples in
+     * milliseconds
+     *
+     * @throws IOException thrown if the file cannot be opened
+     */
+    public TelemetryRecorder(File metricsFile, long samplingInterval) throws IOException {
+        this.metricsFile = metricsFile;
+        writer = new BufferedWriter(new FileWriter(metricsFile, true));
+        startTime = System.currentTimeMillis();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TelemetryRecorder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                for (JobTelemetry jobTelemetry : runningJobs) {
+                    jobTelemetry.sample();
+                }
+            }
+        }, 0, samplingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts recording the metrics of the process of a job.
+     *
+     * @param description the description of the job
+     * @param outputFile the output file of the job
+     * @param process the process of the job
+     *
+     * @return the telemetry of the job
+     */
+    public JobTelemetry startJob(String description, File outputFile, Process process) {
+        JobTelemetry jobTelemetry = new JobTelemetry(description, outputFile, process);
+        jobTelemetry.sample();
+        runningJobs.add(jobTelemetry);
+        return jobTelemetry;
+    }
+
+    /**
+     * Stops recording the metrics of a job and writes its record. The
+     * telemetry must have been ended when the process ended.
+     *
+     * @param jobTelemetry the telemetry of the job
+     */
+    public synchronized void endJob(JobTelemetry jobTelemetry) {
+        if (runningJobs.remove(jobTelemetry)) {
+            completedJobs.add(jobTelemetry);
+            write(jobTelemetry.toJson());
+        }
+    }
+
+    /**
+     * Stops the sampling, writes the records of the algorithms and of the run,
+     * and closes the file.
+     *
+     * @param canceled indicates whether the run was canceled
+     */
+    public synchronized void close(boolean canceled) {
+
+        executor.shutdownNow();
+
+        for (JobTelemetry jobTelemetry : runningJobs) {
+            jobTelemetry.end(JobStatus.CANCELED);
+            endJob(jobTelemetry);
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        // group the jobs per algorithm
+        LinkedHashMap<String, ArrayList<JobTelemetry>> jobsPerEngine = new LinkedHashMap<String, ArrayList<JobTelemetry>>();
+        for (JobTelemetry jobTelemetry : completedJobs) {
+            ArrayList<JobTelemetry> engineJobs = jobsPerEngine.get(jobTelemetry.getDescription());
+            if (engineJobs == null) {
+                engineJobs = new ArrayList<JobTelemetry>();
+                jobsPerEngine.put(jobTelemetry.getDescription(), engineJobs);
+            }
+            engineJobs.add(jobTelemetry);
+        }
+
+        for (String engine : jobsPerEngine.keySet()) {
+            JsonLine record = new JsonLine().add("type", "engine").add("engine", engine);
+            write(getSummary(record, jobsPerEngine.get(engine)).toString());
+        }
+
+        JsonLine record = new JsonLine().add("type", "run").add("canceled", canceled).add("start", startTime).add("end", endTime);
+        write(getSummary(record, completedJobs).toString());
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the metrics file " + metricsFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the aggregated metrics of the given jobs to a record. The
+     * throughput is computed over the time where at least one of the jobs was
+     * running, jobs running in parallel being counted once.
+     *
+     * @param record the record
+     * @param jobs the jobs
+     *
+     * @return the record
+     */
+    private static JsonLine getSummary(JsonLine record, ArrayList<JobTelemetry> jobs) {
+
+        long cpuTime = 0, readBytes = 0, writeBytes = 0, nSpectra = 0, peakRss = 0;
+
+        for (JobTelemetry jobTelemetry : jobs) {
+            cpuTime += jobTelemetry.getCpuTime();
+            readBytes += jobTelemetry.getReadBytes();
+            writeBytes += jobTelemetry.getWriteBytes();
+            nSpectra += jobTelemetry.getNSpectra();
+            peakRss = Math.max(peakRss, jobTelemetry.getPeakRss());
+        }
+
+        // union of the running times of the jobs
+        ArrayList<JobTelemetry> sortedJobs = new ArrayList<JobTelemetry>(jobs);
+        Collections.sort(sortedJobs, new Comparator<JobTelemetry>() {
+            @Override
+            public int compare(JobTelemetry o1, JobTelemetry o2) {
+                return Long.valueOf(o1.getStartTime()).compareTo(o2.getStartTime());
+            }
+        });
+        long wallTime = 0;
+        long intervalStart = -1, intervalEnd = -1;
+        for (JobTelemetry jobTelemetry : sortedJobs) {
+            if (jobTelemetry.getStartTime() > intervalEnd) {
+                wallTime += intervalEnd - intervalStart;
+                intervalStart = jobTelemetry.getStartTime();
+                intervalEnd = jobTelemetry.getEndTime();
+            } else {
+                intervalEnd = Math.max(intervalEnd, jobTelemetry.getEndTime());
+            }
+        }
+        wallTime += intervalEnd - intervalStart;
+
+        return record
+                .add("jobs", jobs.size())
+                .add("wallTimeMs", wallTime)
+                .add("cpuTimeMs", cpuTime)
+                .add("maxPeakRssKb", peakRss)
+                .add("readBytes", readBytes)
+                .add("writeBytes", writeBytes)
+                .add("spectra", nSpectra)
+                .add("spectraPerSecond", wallTime > 0 ? 1000.0 * nSpectra / wallTime : Double.NaN);
+    }
+
+    /**
+     * Writes a record to the file.
+     *
+     * @param record the record
+     */
+    private synchronized void write(String record) {
+        try {
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Failed to write to the metrics file " + metricsFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.compomics.denovogui.execution.fake;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Simulated DirecTag. Takes the DirecTag command line arguments and writes
+ * made up tags in the tags file of the working folder, the progress is
+ * written to the standard output.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class FakeDirecTag extends FakeEngine {
+
+    /**
+     * The number of spectra between two progress reports.
+     */
+    private static final int PROGRESS_INTERVAL = 100;
+    /**
+     * The folder where the tags files are written.
+     */
+    private final File outputFolder;
+    /**
+     * The suffix of the tags files.
+     */
+    private final String suffix;
+    /**
+     * The length of the tags.
+     */
+    private final int tagLength;
+    /**
+     * The number of tags per spectrum.
+     */
+    private final int nTags;
+    /**
+     * The writer of the tags file.
+     */
+    private BufferedWriter tagsWriter;
+
+    /**
+     * Constructor.
+     *
+     * @param outputFolder the folder where the tags files are written
+     * @param suffix the suffix of the tags files
+     * @param tagLength the length of the tags
+     * @param nTags the number of tags per spectrum
+     *
+     * @throws IOException thrown if the settings file cannot be read
+     */
+    public FakeDirecTag(File outputFolder, String suffix, int tagLength, int nTags) throws IOException {
+        super("directag");
+        this.outputFolder = outputFolder;
+        this.suffix = suffix;
+        this.tagLength = tagLength;
+        this.nTags = (int) getDouble(SOLUTIONS, nTags);
+    }
+
+    @Override
+    protected void start(File spectrumFile, int fileIndex) throws IOException {
+        if (fileIndex == 0) {
+            out.write("DirecTag 1.4 (simulated)");
+            out.newLine();
+        }
+        out.write("Reading spectra from file \"" + spectrumFile.getAbsolutePath() + "\".");
+        out.newLine();
+
+        String fileName = spectrumFile.getName();
+        int extensionIndex = fileName.lastIndexOf(".");
+        if (extensionIndex > 0) {
+            fileName = fileName.substring(0, extensionIndex);
+        }
+        File tagsFile = new File(outputFolder, fileName + (suffix == null ? "" : suffix) + ".tags");
+
+        tagsWriter = new BufferedWriter(new FileWriter(tagsFile));
+        tagsWriter.write("H\tDirecTag 1.4 (simulated)");
+        tagsWriter.newLine();
+        tagsWriter.write("H\tTagging started at " + new Date() + ".");
+        tagsWriter.newLine();
+        tagsWriter.write("H\tInputFile: " + spectrumFile.getAbsolutePath());
+        tagsWriter.newLine();
+        tagsWriter.write("H\tTagsParameters: TagLength: " + tagLength + "; MaxTagCount: " + nTags);
+        tagsWriter.newLine();
+        tagsWriter.write("H(S)\tID\tChargeState\tObservedNmzOrMass\tTotalPeakCount\tNumTags");
+        tagsWriter.newLine();
+        tagsWriter.write("H(T)\tTag\tnTerminusFlankMass\tcTerminusFlankMass\tTotalScore\trank\tchargeState\tIntensityScore\tMzFidelityScore\tComplementScore");
+        tagsWriter.newLine();
+    }
+
+    @Override
+    protected void writeSpectrum(FakeSpectrum spectrum, Random random) throws IOException {
+
+        tagsWriter.write("S\tindex=" + spectrum.getIndex() + "\t" + spectrum.getCharge() + "\t" + round(spectrum.getMh() - PROTON_MASS)
+                + "\t" + spectrum.getNPeaks() + "\t" + nTags);
+        tagsWriter.newLine();
+
+        double eValue = 1e-6 + 1e-2 * random.nextDouble();
+        for (int rank = 1; rank <= nTags; rank++) {
+            String tag = getSequence(random, tagLength, tagLength);
+            double flanks = Math.max(0, spectrum.getMh() - PROTON_MASS - WATER_MASS - getResiduesMass(tag));
+            double nTermFlank = round(flanks * random.nextDouble());
+            double cTermFlank = round(flanks - nTermFlank);
+            tagsWriter.write("T\t" + tag + "\t" + nTermFlank + "\t" + cTermFlank + "\t" + eValue + "\t" + rank + "\t" + spectrum.getCharge()
+                    + "\t" + round(random.nextDouble()) + "\t" + round(random.nextDouble()) + "\t" + round(random.nextDouble()));
+            tagsWriter.newLine();
+            eValue *= 1 + 10 * random.nextDouble();
+        }
+
+        if ((spectrum.getIndex() + 1) % PROGRESS_INTERVAL == 0) {
+            tagsWriter.flush();
+            out.write("Tagged " + (spectrum.getIndex() + 1) + " spectra.");
+            out.newLine();
+        }
+    }
+
+    @Override
+    protected void finish(File spectrumFile, int nSpectra) throws IOException {
+        tagsWriter.close();
+        out.write("Finished tagging " + nSpectra + " spectra.");
+        out.newLine();
+    }
+
+    /**
+     * Runs the simulated DirecTag.
+     *
+     * @param args the DirecTag command line arguments, starting with the
+     * spectrum files
+     */
+    public static void main(String[] args) {
+        try {
+            ArrayList<File> spectrumFiles = new ArrayList<File>();
+            for (String arg : args) {
+                if (arg.startsWith("-")) {
+                    break;
+                }
+                spectrumFiles.add(new File(arg));
+            }
+            if (spectrumFiles.isEmpty()) {
+                System.err.println("Missing spectrum file.");
+                System.exit(1);
+            }
+            String workDir = getOption(args, "-workdir");
+            File outputFolder = workDir == null ? new File(".") : new File(workDir);
+            String suffix = getOption(args, "-OutputSuffix");
+            String tagLength = getOption(args, "-TagLength");
+            String nTags = getOption(args, "-MaxTagCount");
+            String nThreads = getOption(args, "-cpus");
+            FakeDirecTag direcTag = new FakeDirecTag(outputFolder, suffix,
+                    tagLength == null ? 3 : new Integer(tagLength),
+                    nTags == null ? 10 : new Integer(nTags));
+            System.exit(direcTag.run(spectrumFiles, nThreads == null ? 1 : new Integer(nThreads)));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
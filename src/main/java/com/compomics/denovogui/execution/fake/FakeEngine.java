@@ -0,0 +1,419 @@
+package com.compomics.denovogui.execution.fake;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Simulated sequencing algorithm. Reads the spectra of an mgf file and writes
+ * made up results at a configurable speed, with configurable start latency
+ * and failure rates. Used in place of the real algorithms to test the
+ * scheduling, cancellation and retries of the sequencing reproducibly.
+ *
+ * The behavior is set in the fake_engine.properties file next to the
+ * executables, or in the file given by the denovogui.fake.config system
+ * property. Every setting can be overridden per algorithm by prefixing it
+ * with the algorithm name, e.g. pepnovo.spectra_per_second.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public abstract class FakeEngine {
+
+    /**
+     * The name of the settings file.
+     */
+    public static final String CONFIG_FILE_NAME = "fake_engine.properties";
+    /**
+     * The system property giving the settings file.
+     */
+    public static final String CONFIG_PROPERTY = "denovogui.fake.config";
+    /**
+     * The number of spectra processed per second and per thread.
+     */
+    public static final String SPECTRA_PER_SECOND = "spectra_per_second";
+    /**
+     * The time in milliseconds before the first spectrum is processed.
+     */
+    public static final String LATENCY = "latency";
+    /**
+     * The probability that the algorithm crashes on a spectrum. The same
+     * spectra always make the algorithm crash.
+     */
+    public static final String FAILURE_RATE = "failure_rate";
+    /**
+     * The probability that the algorithm hangs on a spectrum. The same
+     * spectra always make the algorithm hang.
+     */
+    public static final String HANG_RATE = "hang_rate";
+    /**
+     * The probability that a run crashes at a random spectrum, independently
+     * of the spectra.
+     */
+    public static final String TRANSIENT_FAILURE_RATE = "transient_failure_rate";
+    /**
+     * The exit value of the algorithm when crashing.
+     */
+    public static final String EXIT_VALUE = "exit_value";
+    /**
+     * The seed of the spectrum dependent draws, the results and failures are
+     * the same for all runs with the same seed.
+     */
+    public static final String SEED = "seed";
+    /**
+     * The number of solutions written per spectrum.
+     */
+    public static final String SOLUTIONS = "solutions";
+    /**
+     * The amino acids used for the sequences.
+     */
+    private static final String AMINO_ACIDS = "ACDEFGHKLMNPQRSTVWY";
+    /**
+     * The monoisotopic residue masses of the amino acids, in the order of
+     * AMINO_ACIDS.
+     */
+    private static final double[] RESIDUE_MASSES = {71.03711, 103.00919, 115.02694, 129.04259, 147.06841, 57.02146, 137.05891, 128.09496,
+        113.08406, 131.04049, 114.04293, 97.05276, 128.05858, 156.10111, 87.03203, 101.04768, 99.06841, 186.07931, 163.06333};
+    /**
+     * The mass of water.
+     */
+    protected static final double WATER_MASS = 18.010565;
+    /**
+     * The mass of a proton.
+     */
+    protected static final double PROTON_MASS = 1.007276;
+    /**
+     * The name of the algorithm, used as prefix of the settings.
+     */
+    private final String name;
+    /**
+     * The settings.
+     */
+    private final Properties config;
+    /**
+     * The standard output.
+     */
+    protected final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out));
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the algorithm, used as prefix of the settings
+     *
+     * @throws IOException thrown if the settings file cannot be read
+     */
+    protected FakeEngine(String name) throws IOException {
+        this.name = name;
+        this.config = loadConfig();
+    }
+
+    /**
+     * Called before the first spectrum of an mgf file is processed.
+     *
+     * @param mgfFile the mgf file
+     * @param fileIndex the index of the mgf file in the list of files
+     *
+     * @throws IOException thrown if an error occurred while writing
+     */
+    protected abstract void start(File mgfFile, int fileIndex) throws IOException;
+
+    /**
+     * Writes the results of a spectrum.
+     *
+     * @param spectrum the spectrum
+     * @param random the random generator of the spectrum, giving the same
+     * draws for the same spectrum
+     *
+     * @throws IOException thrown if an error occurred while writing
+     */
+    protected abstract void writeSpectrum(FakeSpectrum spectrum, Random random) throws IOException;
+
+    /**
+     * Called after the last spectrum of an mgf file was processed.
+     *
+     * @param mgfFile the mgf file
+     * @param nSpectra the number of spectra processed
+     *
+     * @throws IOException thrown if an error occurred while writing
+     */
+    protected abstract void finish(File mgfFile, int nSpectra) throws IOException;
+
+    /**
+     * Processes the spectra of an mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param nThreads the number of threads used by the algorithm, the speed
+     * is multiplied by the number of threads
+     *
+     * @return the exit value of the algorithm
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing
+     * @throws InterruptedException thrown if the process is interrupted
+     */
+    protected int run(File mgfFile, int nThreads) throws IOException, InterruptedException {
+        return run(Arrays.asList(mgfFile), nThreads);
+    }
+
+    /**
+     * Processes the spectra of mgf files one after the other, the start
+     * latency is spent once for all files.
+     *
+     * @param mgfFiles the mgf files
+     * @param nThreads the number of threads used by the algorithm, the speed
+     * is multiplied by the number of threads
+     *
+     * @return the exit value of the algorithm
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing
+     * @throws InterruptedException thrown if the process is interrupted
+     */
+    protected int run(List<File> mgfFiles, int nThreads) throws IOException, InterruptedException {
+
+        double spectraPerSecond = getDouble(SPECTRA_PER_SECOND, 50) * Math.max(nThreads, 1);
+        double failureRate = getDouble(FAILURE_RATE, 0);
+        double hangRate = getDouble(HANG_RATE, 0);
+        double transientFailureRate = getDouble(TRANSIENT_FAILURE_RATE, 0);
+        int exitValue = (int) getDouble(EXIT_VALUE, 139);
+        long seed = (long) getDouble(SEED, 0);
+
+        Thread.sleep((long) getDouble(LATENCY, 500));
+
+        // the transient failure differs between runs
+        Random runRandom = new Random();
+        boolean transientFailure = runRandom.nextDouble() < transientFailureRate;
+
+        long startTime = System.currentTimeMillis();
+        int nProcessed = 0;
+
+        for (int fileIndex = 0; fileIndex < mgfFiles.size(); fileIndex++) {
+
+            File mgfFile = mgfFiles.get(fileIndex);
+            start(mgfFile, fileIndex);
+            out.flush();
+
+            int nSpectra = 0;
+            BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+            try {
+                FakeSpectrum spectrum = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith("BEGIN IONS")) {
+                        spectrum = new FakeSpectrum(nSpectra);
+                    } else if (spectrum != null) {
+                        if (line.startsWith("END IONS")) {
+
+                            Random random = new Random(getSpectrumSeed(seed, spectrum.getTitle()));
+                            double draw = random.nextDouble();
+                            if (draw < failureRate || transientFailure && runRandom.nextDouble() < 0.01) {
+                                out.flush();
+                                System.err.println("Simulated crash on spectrum " + spectrum.getTitle() + ".");
+                                return exitValue;
+                            }
+                            if (draw < failureRate + hangRate) {
+                                out.flush();
+                                System.err.println("Simulated hang on spectrum " + spectrum.getTitle() + ".");
+                                Thread.sleep(Long.MAX_VALUE);
+                            }
+
+                            // pace the output at the configured speed
+                            long due = startTime + (long) (1000 * (nProcessed + 1) / spectraPerSecond);
+                            long wait = due - System.currentTimeMillis();
+                            if (wait > 0) {
+                                Thread.sleep(wait);
+                            }
+
+                            writeSpectrum(spectrum, random);
+                            out.flush();
+                            nSpectra++;
+                            nProcessed++;
+                            spectrum = null;
+                        } else {
+                            spectrum.parseLine(line);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            if (transientFailure && fileIndex == mgfFiles.size() - 1) {
+                System.err.println("Simulated crash at the end of the run.");
+                return exitValue;
+            }
+
+            finish(mgfFile, nSpectra);
+            out.flush();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the seed of the draws of a spectrum. The seed and title are
+     * mixed so that close seeds give independent draws.
+     *
+     * @param seed the seed of the run
+     * @param title the title of the spectrum
+     *
+     * @return the seed of the draws of the spectrum
+     */
+    private static long getSpectrumSeed(long seed, String title) {
+        long mixed = seed * 0x9E3779B97F4A7C15L + title.hashCode();
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+
+    /**
+     * Returns a setting as double, first looking for the algorithm specific
+     * setting.
+     *
+     * @param key the key of the setting
+     * @param defaultValue the value to return if the setting is not set
+     *
+     * @return the value of the setting
+     */
+    protected double getDouble(String key, double defaultValue) {
+        String value = config.getProperty(name + "." + key);
+        if (value == null) {
+            value = config.getProperty(key);
+        }
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        return new Double(value.trim());
+    }
+
+    /**
+     * Returns a made up peptide sequence.
+     *
+     * @param random the random generator
+     * @param minLength the minimal length
+     * @param maxLength the maximal length
+     *
+     * @return a peptide sequence
+     */
+    protected static String getSequence(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sequence = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sequence.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+        }
+        return sequence.toString();
+    }
+
+    /**
+     * Returns the sum of the residue masses of a sequence.
+     *
+     * @param sequence the sequence
+     *
+     * @return the sum of the residue masses
+     */
+    protected static double getResiduesMass(String sequence) {
+        double mass = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            mass += RESIDUE_MASSES[AMINO_ACIDS.indexOf(sequence.charAt(i))];
+        }
+        return mass;
+    }
+
+    /**
+     * Returns the value following an option in the command line arguments.
+     *
+     * @param args the command line arguments
+     * @param option the option
+     *
+     * @return the value of the option, null if not found
+     */
+    protected static String getOption(String[] args, String option) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rounds a value to three decimals.
+     *
+     * @param value the value
+     *
+     * @return the rounded value
+     */
+    protected static double round(double value) {
+        return Math.round(1000 * value) / 1000.0;
+    }
+
+    /**
+     * Loads the settings, from the file given by the system property or else
+     * from the folder of the fake engines.
+     *
+     * @return the settings
+     *
+     * @throws IOException thrown if the settings file cannot be read
+     */
+    private static Properties loadConfig() throws IOException {
+
+        Properties properties = new Properties();
+
+        File configFile = null;
+        String path = System.getProperty(CONFIG_PROPERTY);
+        if (path != null) {
+            configFile = new File(path);
+        } else {
+            // the executables are either next to the jar or in a sub folder
+            File codeFolder = getCodeFolder();
+            if (codeFolder != null) {
+                configFile = new File(codeFolder, CONFIG_FILE_NAME);
+                if (!configFile.exists() && codeFolder.getParentFile() != null) {
+                    configFile = new File(codeFolder.getParentFile(), CONFIG_FILE_NAME);
+                }
+            }
+        }
+
+        if (configFile != null && configFile.exists()) {
+            InputStream in = new FileInputStream(configFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Returns the folder of the jar file or classes folder containing the
+     * fake engines.
+     *
+     * @return the folder of the fake engines, null if not found
+     */
+    private static File getCodeFolder() {
+        try {
+            File codeSource = new File(FakeEngine.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return codeSource.isDirectory() ? codeSource : codeSource.getParentFile();
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.compomics.denovogui.execution.fake;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Installs the fake engines in a folder: a launcher named like the PepNovo+
+ * and DirecTag executables, a novor.jar and a settings file. The
+ * installation is then used through the pepnovo_folder, directag_folder and
+ * novor_folder command line options. The launchers are shell scripts, the
+ * fake engines are therefore only supported on Linux and Mac.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class FakeEngineInstaller {
+
+    /**
+     * The name of the jar containing the fake engines.
+     */
+    public static final String JAR_FILE_NAME = "fake_engines.jar";
+    /**
+     * The classes of the fake engines.
+     */
+    private static final Class[] CLASSES = {FakeEngine.class, FakeSpectrum.class, FakePepNovo.class, FakeDirecTag.class, FakeNovor.class};
+
+    /**
+     * Installs the fake engines.
+     *
+     * @param folder the installation folder
+     *
+     * @throws IOException thrown if an error occurred while writing the files
+     */
+    public static void install(File folder) throws IOException {
+
+        File pepNovoFolder = new File(folder, "PepNovo");
+        File direcTagFolder = new File(folder, "DirecTag");
+        File novorFolder = new File(folder, "Novor");
+        pepNovoFolder.mkdirs();
+        direcTagFolder.mkdirs();
+        novorFolder.mkdirs();
+
+        writeJar(new File(folder, JAR_FILE_NAME), null);
+        writeJar(new File(novorFolder, "novor.jar"), FakeNovor.class);
+        writeLauncher(getPepNovoExecutable(folder), FakePepNovo.class);
+        writeLauncher(getDirecTagExecutable(folder), FakeDirecTag.class);
+
+        File configFile = new File(folder, FakeEngine.CONFIG_FILE_NAME);
+        if (!configFile.exists()) {
+            writeConfig(configFile);
+        }
+    }
+
+    /**
+     * Returns the PepNovo+ executable of an installation.
+     *
+     * @param folder the installation folder
+     *
+     * @return the PepNovo+ executable
+     */
+    public static File getPepNovoExecutable(File folder) {
+        return new File(new File(folder, "PepNovo"), "PepNovo_Linux");
+    }
+
+    /**
+     * Returns the DirecTag executable of an installation.
+     *
+     * @param folder the installation folder
+     *
+     * @return the DirecTag executable
+     */
+    public static File getDirecTagExecutable(File folder) {
+        return new File(new File(folder, "DirecTag"), "directag");
+    }
+
+    /**
+     * Returns the Novor executable of an installation.
+     *
+     * @param folder the installation folder
+     *
+     * @return the Novor executable
+     */
+    public static File getNovorExecutable(File folder) {
+        return new File(new File(folder, "Novor"), "novor.jar");
+    }
+
+    /**
+     * Writes a jar file containing the fake engines.
+     *
+     * @param jarFile the jar file
+     * @param mainClass the main class, can be null
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    private static void writeJar(File jarFile, Class mainClass) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (mainClass != null) {
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass.getName());
+        }
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile), manifest);
+        try {
+            for (Class engineClass : CLASSES) {
+                String entryName = engineClass.getName().replace('.', '/') + ".class";
+                InputStream in = FakeEngineInstaller.class.getClassLoader().getResourceAsStream(entryName);
+                if (in == null) {
+                    throw new IOException("Class " + engineClass.getName() + " not found.");
+                }
+                try {
+                    jar.putNextEntry(new JarEntry(entryName));
+                    byte[] buffer = new byte[8192];
+                    int length;
+                    while ((length = in.read(buffer)) > 0) {
+                        jar.write(buffer, 0, length);
+                    }
+                    jar.closeEntry();
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            jar.close();
+        }
+    }
+
+    /**
+     * Writes the launcher of a fake engine. The launcher replaces itself with
+     * the Java process so that the process stopped by DeNovoGUI is the fake
+     * engine.
+     *
+     * @param launcher the launcher file
+     * @param mainClass the main class of the fake engine
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    private static void writeLauncher(File launcher, Class mainClass) throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+        BufferedWriter writer = new BufferedWriter(new FileWriter(launcher));
+        try {
+            writer.write("#!/bin/sh");
+            writer.newLine();
+            writer.write("exec \"" + java + "\" -Xmx256M -cp \"$(dirname \"$0\")/../" + JAR_FILE_NAME + "\" " + mainClass.getName() + " \"$@\"");
+            writer.newLine();
+        } finally {
+            writer.close();
+        }
+        launcher.setExecutable(true);
+    }
+
+    /**
+     * Writes the default settings file.
+     *
+     * @param configFile the settings file
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    private static void writeConfig(File configFile) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(configFile));
+        try {
+            writer.write("# Settings of the fake engines. Every setting can be set per engine by");
+            writer.newLine();
+            writer.write("# prefixing it with pepnovo., directag. or novor., e.g. pepnovo.spectra_per_second.");
+            writer.newLine();
+            writer.newLine();
+            writer.write("# number of spectra processed per second and per thread");
+            writer.newLine();
+            writer.write(FakeEngine.SPECTRA_PER_SECOND + "=50");
+            writer.newLine();
+            writer.write("# time in milliseconds before the first spectrum is processed");
+            writer.newLine();
+            writer.write(FakeEngine.LATENCY + "=500");
+            writer.newLine();
+            writer.write("# probability that a spectrum makes the engine crash, always the same spectra for a given seed");
+            writer.newLine();
+            writer.write(FakeEngine.FAILURE_RATE + "=0");
+            writer.newLine();
+            writer.write("# probability that a spectrum makes the engine hang, always the same spectra for a given seed");
+            writer.newLine();
+            writer.write(FakeEngine.HANG_RATE + "=0");
+            writer.newLine();
+            writer.write("# probability that a run crashes independently of the spectra");
+            writer.newLine();
+            writer.write(FakeEngine.TRANSIENT_FAILURE_RATE + "=0");
+            writer.newLine();
+            writer.write("# exit value of a crash");
+            writer.newLine();
+            writer.write(FakeEngine.EXIT_VALUE + "=139");
+            writer.newLine();
+            writer.write("# seed of the results and failures");
+            writer.newLine();
+            writer.write(FakeEngine.SEED + "=0");
+            writer.newLine();
+            writer.write("# number of solutions per spectrum, defaults to the search parameters");
+            writer.newLine();
+            writer.write("#" + FakeEngine.SOLUTIONS + "=10");
+            writer.newLine();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Installs the fake engines in the given folder and prints the command
+     * line options to use them.
+     *
+     * @param args the installation folder
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java -cp DeNovoGUI-X.Y.Z.jar " + FakeEngineInstaller.class.getName() + " <folder>");
+            System.exit(1);
+        }
+        try {
+            File folder = new File(args[0]).getAbsoluteFile();
+            install(folder);
+            System.out.println("Fake engines installed in " + folder.getAbsolutePath() + ", settings in "
+                    + new File(folder, FakeEngine.CONFIG_FILE_NAME).getAbsolutePath() + ".");
+            System.out.println("Use them with: -pepnovo_folder " + getPepNovoExecutable(folder).getAbsolutePath()
+                    + " -directag_folder " + getDirecTagExecutable(folder).getAbsolutePath()
+                    + " -novor_folder " + getNovorExecutable(folder).getAbsolutePath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
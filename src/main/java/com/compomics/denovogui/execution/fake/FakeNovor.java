@@ -0,0 +1,131 @@
+package com.compomics.denovogui.execution.fake;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Simulated Novor. Takes the Novor command line arguments and writes made up
+ * peptides in the csv result file, the progress is written to the standard
+ * output.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class FakeNovor extends FakeEngine {
+
+    /**
+     * The number of spectra between two progress reports.
+     */
+    private static final int PROGRESS_INTERVAL = 100;
+    /**
+     * The result file.
+     */
+    private final File resultFile;
+    /**
+     * The writer of the result file.
+     */
+    private BufferedWriter resultWriter;
+
+    /**
+     * Constructor.
+     *
+     * @param resultFile the result file
+     *
+     * @throws IOException thrown if the settings file cannot be read
+     */
+    public FakeNovor(File resultFile) throws IOException {
+        super("novor");
+        this.resultFile = resultFile;
+    }
+
+    @Override
+    protected void start(File mgfFile, int fileIndex) throws IOException {
+        out.write("Novor (simulated)");
+        out.newLine();
+
+        resultWriter = new BufferedWriter(new FileWriter(resultFile));
+        resultWriter.write("#===============================================================================");
+        resultWriter.newLine();
+        resultWriter.write("# Novor (simulated)");
+        resultWriter.newLine();
+        resultWriter.write("#===============================================================================");
+        resultWriter.newLine();
+        resultWriter.write("# id, scanNum, RT, mz(data), z, pepMass(denovo), err(data-denovo), ppm(1e6*err/(mz*z)), score, peptide, aaScore, ");
+        resultWriter.newLine();
+    }
+
+    @Override
+    protected void writeSpectrum(FakeSpectrum spectrum, Random random) throws IOException {
+
+        String peptide = getSequence(random, 6, 16);
+        double measuredMass = spectrum.getMh() - PROTON_MASS;
+        double error = 0.02 * (random.nextDouble() - 0.5);
+        double ppm = 1e6 * error / (spectrum.getPrecursorMz() * spectrum.getCharge());
+        double score = 100 * random.nextDouble();
+
+        StringBuilder aaScores = new StringBuilder();
+        for (int i = 0; i < peptide.length(); i++) {
+            if (i > 0) {
+                aaScores.append('-');
+            }
+            aaScores.append(random.nextInt(100));
+        }
+
+        resultWriter.write(spectrum.getIndex() + ", " + spectrum.getIndex() + ", " + round(spectrum.getRetentionTime()) + ", "
+                + round(spectrum.getPrecursorMz()) + ", " + spectrum.getCharge() + ", " + round(measuredMass - error) + ", "
+                + round(error) + ", " + round(ppm) + ", " + round(score) + ", " + peptide + ", " + aaScores + ", ");
+        resultWriter.newLine();
+
+        if ((spectrum.getIndex() + 1) % PROGRESS_INTERVAL == 0) {
+            resultWriter.flush();
+            out.write("Processed " + (spectrum.getIndex() + 1) + " spectra.");
+            out.newLine();
+        }
+    }
+
+    @Override
+    protected void finish(File mgfFile, int nSpectra) throws IOException {
+        resultWriter.close();
+        out.write("Finished, " + nSpectra + " spectra processed.");
+        out.newLine();
+    }
+
+    /**
+     * Runs the simulated Novor.
+     *
+     * @param args the Novor command line arguments, ending with the spectrum
+     * file
+     */
+    public static void main(String[] args) {
+        try {
+            String output = getOption(args, "-o");
+            if (output == null || args.length == 0) {
+                System.err.println("Missing -o argument or spectrum file.");
+                System.exit(1);
+            }
+            File spectrumFile = new File(unquote(args[args.length - 1]));
+            FakeNovor novor = new FakeNovor(new File(unquote(output)));
+            System.exit(novor.run(spectrumFile, 1));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Removes the quotes around a command line argument.
+     *
+     * @param argument the argument
+     *
+     * @return the argument without quotes
+     */
+    private static String unquote(String argument) {
+        if (argument.length() > 1 && argument.startsWith("\"") && argument.endsWith("\"")) {
+            return argument.substring(1, argument.length() - 1);
+        }
+        return argument;
+    }
+}
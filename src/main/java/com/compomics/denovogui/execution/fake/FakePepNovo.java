@@ -0,0 +1,122 @@
+package com.compomics.denovogui.execution.fake;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Simulated PepNovo+. Takes the PepNovo+ command line arguments and writes
+ * made up solutions to the standard output in the PepNovo+ format.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class FakePepNovo extends FakeEngine {
+
+    /**
+     * The number of solutions per spectrum.
+     */
+    private final int nSolutions;
+    /**
+     * The index of the spectrum file being processed.
+     */
+    private int fileIndex = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param nSolutions the number of solutions per spectrum
+     *
+     * @throws IOException thrown if the settings file cannot be read
+     */
+    public FakePepNovo(int nSolutions) throws IOException {
+        super("pepnovo");
+        this.nSolutions = (int) getDouble(SOLUTIONS, nSolutions);
+    }
+
+    @Override
+    protected void start(File mgfFile, int fileIndex) throws IOException {
+        this.fileIndex = fileIndex;
+        if (fileIndex > 0) {
+            // the models are loaded once
+            return;
+        }
+        out.write("PepNovo+ Build 20101117 (simulated)");
+        out.newLine();
+        out.write("Copyright 2010, The Regents of the University of California. All Rights Reserved.");
+        out.newLine();
+        out.newLine();
+        out.write("Initializing models (this might take a few seconds)... Done.");
+        out.newLine();
+        out.newLine();
+    }
+
+    @Override
+    protected void writeSpectrum(FakeSpectrum spectrum, Random random) throws IOException {
+        out.write(">> " + fileIndex + " " + spectrum.getIndex() + " " + spectrum.getTitle());
+        out.newLine();
+        out.write("#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence");
+        out.newLine();
+        double rankScore = 1 - 2 * random.nextDouble();
+        double pepNovoScore = 30 + 70 * random.nextDouble();
+        for (int rank = 0; rank < nSolutions; rank++) {
+            String sequence = getSequence(random, 6, 16);
+            double gap = Math.max(0, spectrum.getMh() - getResiduesMass(sequence) - WATER_MASS - PROTON_MASS);
+            double nTermGap = random.nextBoolean() ? round(gap) : 0;
+            double cTermGap = nTermGap == 0 ? round(gap) : 0;
+            out.write(rank + "\t" + round(rankScore) + "\t" + round(pepNovoScore) + "\t" + nTermGap + "\t" + cTermGap
+                    + "\t" + round(spectrum.getMh()) + "\t" + spectrum.getCharge() + "\t" + sequence);
+            out.newLine();
+            rankScore -= 0.5 * random.nextDouble();
+            pepNovoScore -= 5 * random.nextDouble();
+        }
+        out.newLine();
+    }
+
+    @Override
+    protected void finish(File mgfFile, int nSpectra) throws IOException {
+        // PepNovo+ does not write a summary
+    }
+
+    /**
+     * Runs the simulated PepNovo+.
+     *
+     * @param args the PepNovo+ command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            String file = getOption(args, "-file");
+            String list = getOption(args, "-list");
+            if (file == null && list == null) {
+                System.err.println("Missing -file or -list argument.");
+                System.exit(1);
+            }
+            ArrayList<File> spectrumFiles = new ArrayList<File>();
+            if (file != null) {
+                spectrumFiles.add(new File(file));
+            } else {
+                BufferedReader reader = new BufferedReader(new FileReader(list));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty()) {
+                            spectrumFiles.add(new File(line));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            String nSolutions = getOption(args, "-num_solutions");
+            FakePepNovo pepNovo = new FakePepNovo(nSolutions == null ? 20 : new Integer(nSolutions));
+            System.exit(pepNovo.run(spectrumFiles, 1));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.compomics.denovogui.execution.fake;
+
+/**
+ * The information of an mgf spectrum needed by the fake engines.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class FakeSpectrum {
+
+    /**
+     * The index of the spectrum in the file.
+     */
+    private final int index;
+    /**
+     * The title of the spectrum.
+     */
+    private String title = "";
+    /**
+     * The precursor m/z.
+     */
+    private double precursorMz = 0;
+    /**
+     * The precursor charge.
+     */
+    private int charge = 2;
+    /**
+     * The retention time in seconds.
+     */
+    private double retentionTime = 0;
+    /**
+     * The number of peaks.
+     */
+    private int nPeaks = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param index the index of the spectrum in the file
+     */
+    public FakeSpectrum(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Parses a line of the spectrum.
+     *
+     * @param line the line, trimmed
+     */
+    public void parseLine(String line) {
+        if (line.startsWith("TITLE=")) {
+            title = line.substring(6).trim();
+        } else if (line.startsWith("PEPMASS=")) {
+            String[] values = line.substring(8).trim().split("\\s+");
+            precursorMz = new Double(values[0]);
+        } else if (line.startsWith("CHARGE=")) {
+            String value = line.substring(7).replaceAll("[^0-9]", "");
+            if (value.length() > 0) {
+                charge = new Integer(value.substring(0, 1));
+            }
+        } else if (line.startsWith("RTINSECONDS=")) {
+            String value = line.substring(12).trim().split("-")[0];
+            try {
+                retentionTime = new Double(value);
+            } catch (NumberFormatException e) {
+                // the retention time is not used for the sequencing
+            }
+        } else if (line.length() > 0 && Character.isDigit(line.charAt(0))) {
+            nPeaks++;
+        }
+    }
+
+    /**
+     * Returns the index of the spectrum in the file.
+     *
+     * @return the index of the spectrum in the file
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the title of the spectrum.
+     *
+     * @return the title of the spectrum
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the precursor m/z.
+     *
+     * @return the precursor m/z
+     */
+    public double getPrecursorMz() {
+        return precursorMz;
+    }
+
+    /**
+     * Returns the precursor charge.
+     *
+     * @return the precursor charge
+     */
+    public int getCharge() {
+        return charge;
+    }
+
+    /**
+     * Returns the retention time in seconds.
+     *
+     * @return the retention time in seconds
+     */
+    public double getRetentionTime() {
+        return retentionTime;
+    }
+
+    /**
+     * Returns the number of peaks.
+     *
+     * @return the number of peaks
+     */
+    public int getNPeaks() {
+        return nPeaks;
+    }
+
+    /**
+     * Returns the precursor [M+H]+ mass.
+     *
+     * @return the precursor [M+H]+ mass
+     */
+    public double getMh() {
+        return precursorMz * charge - (charge - 1) * FakeEngine.PROTON_MASS;
+    }
+}
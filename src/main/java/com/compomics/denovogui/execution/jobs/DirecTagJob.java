@@ -1,6 +1,7 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.ProcessSupervisor;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.util.Util;
 import com.compomics.util.exceptions.ExceptionHandler;
@@ -13,6 +14,7 @@ import com.compomics.util.preferences.IdentificationParameters;
 import com.compomics.util.waiting.WaitingHandler;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This job class runs DirecTag for tag-based de novo sequencing.
@@ -26,10 +28,19 @@ public class DirecTagJob extends Job {
      * Title of the DirecTag executable.
      */
     public String exeTitle;
+    /**
+     * The expected number of spectra processed per second and per thread by
+     * DirecTag, used to set the timeout of the job.
+     */
+    public static final double EXPECTED_SPECTRA_PER_SECOND = 20;
     /**
      * The spectrumFile file.
      */
     private File spectrumFile;
+    /**
+     * The spectrum files when several files are processed, null otherwise.
+     */
+    private List<File> spectrumFiles = null;
     /**
      * The search parameters.
      */
@@ -83,6 +94,35 @@ public class DirecTagJob extends Job {
         initJob();
     }
 
+    /**
+     * Constructor for a DirecTag job processing several spectrum files. The
+     * tags of every spectrum file are written to its tags file, the output of
+     * DirecTag to the given output file.
+     *
+     * @param exeFolder the path to the algorithm executable
+     * @param exeTitle title of the algorithm executable
+     * @param spectrumFiles the spectrum files
+     * @param outputFile the file where the output of DirecTag is written
+     * @param nThreads the number of threads
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    protected DirecTagJob(File exeFolder, String exeTitle, List<File> spectrumFiles, File outputFile, int nThreads, File outputFolder, SearchParameters searchParameters,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this.exeFolder = exeFolder;
+        this.exeTitle = exeTitle;
+        this.spectrumFiles = spectrumFiles;
+        this.outputFile = outputFile;
+        this.nThreads = nThreads;
+        this.outputFolder = outputFolder;
+        this.searchParameters = searchParameters;
+        this.waitingHandler = waitingHandler;
+        this.exceptionHandler = exceptionHandler;
+        initJob();
+    }
+
     /**
      * Initializes the job, setting up the commands for the ProcessBuilder.
      */
@@ -96,8 +136,14 @@ public class DirecTagJob extends Job {
             procCommands.add(exeFolder.getAbsolutePath() + File.separator + exeTitle);
             procCommands.trimToSize();
 
-            // link to the spectrum file
-            procCommands.add(spectrumFile.getAbsolutePath());
+            // link to the spectrum file(s)
+            if (spectrumFiles != null) {
+                for (File file : spectrumFiles) {
+                    procCommands.add(file.getAbsolutePath());
+                }
+            } else {
+                procCommands.add(spectrumFile.getAbsolutePath());
+            }
 
             // number of cores
             procCommands.add("-cpus");
@@ -239,7 +285,9 @@ public class DirecTagJob extends Job {
 
             procCommands.trimToSize();
 
-            outputFile = new File(outputFolder, Util.getFileName(spectrumFile) + "_directag.log");
+            if (spectrumFiles == null) {
+                outputFile = new File(outputFolder, Util.getFileName(spectrumFile) + "_directag.log");
+            }
 
             // save command line
             for (String commandComponent : procCommands) {
@@ -268,12 +316,12 @@ public class DirecTagJob extends Job {
     }
 
     /**
-     * Cancels the job by destroying the process.
+     * Cancels the job by stopping the process and its descendants.
      */
     @Override
     public void cancel() {
         if (proc != null) {
-            proc.destroy();
+            ProcessSupervisor.getInstance().terminate(proc);
             log.info(">> De novo sequencing has been canceled.");
         }
     }
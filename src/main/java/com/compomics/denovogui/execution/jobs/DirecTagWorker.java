@@ -0,0 +1,78 @@
+package com.compomics.denovogui.execution.jobs;
+
+import com.compomics.denovogui.execution.EngineWorker;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DirecTag worker processing a batch of spectrum files in a single DirecTag
+ * process. DirecTag writes the tags of every spectrum file to its own tags
+ * file, the files are therefore only considered processed when DirecTag
+ * completed.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class DirecTagWorker extends DirecTagJob implements EngineWorker {
+
+    /**
+     * The spectrum files processed by the worker.
+     */
+    private final ArrayList<File> batch;
+
+    /**
+     * Constructor.
+     *
+     * @param exeFolder the path to the DirecTag executable
+     * @param exeTitle title of the DirecTag executable
+     * @param batch the spectrum files to process
+     * @param index the index of the worker, used to name its files
+     * @param nThreads the number of threads used by DirecTag
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    public DirecTagWorker(File exeFolder, String exeTitle, List<File> batch, int index, int nThreads, File outputFolder, SearchParameters searchParameters,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        super(exeFolder, exeTitle, batch, getOutputFile(outputFolder, index), nThreads, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+        this.batch = new ArrayList<File>(batch);
+    }
+
+    /**
+     * Returns the file where the output of a worker is written.
+     *
+     * @param outputFolder the output folder
+     * @param index the index of the worker
+     *
+     * @return the file where the output of the worker is written
+     */
+    public static File getOutputFile(File outputFolder, int index) {
+        return new File(outputFolder, "directag_worker_" + index + ".log");
+    }
+
+    @Override
+    public List<File> getBatch() {
+        return batch;
+    }
+
+    /**
+     * Returns all the files of the batch if DirecTag completed, none
+     * otherwise. The tags files are already written by DirecTag.
+     *
+     * @return the spectrum files completely processed
+     */
+    @Override
+    public ArrayList<File> dispatchResults() {
+        ArrayList<File> completedFiles = new ArrayList<File>();
+        if (getStatus() == JobStatus.FINISHED && getExitValue() == 0) {
+            completedFiles.addAll(batch);
+        }
+        return completedFiles;
+    }
+}
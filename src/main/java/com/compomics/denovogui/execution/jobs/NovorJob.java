@@ -1,6 +1,8 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.ProcessSupervisor;
+import com.compomics.denovogui.util.ResourcePlanner;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.software.CompomicsWrapper;
 import com.compomics.util.exceptions.ExceptionHandler;
@@ -21,7 +23,6 @@ import java.lang.management.RuntimeMXBean;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import javax.swing.JOptionPane;
 
 /**
  * This job class runs the Novor software in wrapper mode.
@@ -34,6 +35,11 @@ public class NovorJob extends Job {
      * The name of the Novor executable.
      */
     public final static String EXECUTABLE_FILE_NAME = "novor.jar";
+    /**
+     * The expected number of spectra processed per second by Novor, used to
+     * set the timeout of the job.
+     */
+    public final static double EXPECTED_SPECTRA_PER_SECOND = 20;
     /**
      * The spectrumFile file.
      */
@@ -110,18 +116,29 @@ public class NovorJob extends Job {
             procCommands.add(javaHomeAndOptions.get(0)); // set java home
 
             // set java options
+            List<String> javaOptions;
             if (!isCommandLine) {
-                for (int i = 1; i < javaHomeAndOptions.size(); i++) {
-                    procCommands.add(javaHomeAndOptions.get(i));
-                }
+                javaOptions = javaHomeAndOptions.subList(1, javaHomeAndOptions.size());
             } else {
                 // add the jvm arguments for denovogui to novor
                 RuntimeMXBean bean = ManagementFactory.getRuntimeMXBean();
-                List<String> aList = bean.getInputArguments();
-                for (String element : aList) {
+                javaOptions = bean.getInputArguments();
+            }
+
+            // in a container, novor only gets the memory not used by denovogui
+            long childHeap = ResourcePlanner.getInstance().getChildHeap();
+            boolean heapSet = false;
+            for (String element : javaOptions) {
+                if (childHeap != -1 && element.startsWith("-Xmx")) {
+                    procCommands.add("-Xmx" + childHeap / ResourcePlanner.MB + "M");
+                    heapSet = true;
+                } else {
                     procCommands.add(element);
                 }
             }
+            if (childHeap != -1 && !heapSet) {
+                procCommands.add("-Xmx" + childHeap / ResourcePlanner.MB + "M");
+            }
 
             // add novor.jar
             procCommands.add("-jar");
@@ -178,12 +195,12 @@ public class NovorJob extends Job {
     }
 
     /**
-     * Cancels the job by destroying the process.
+     * Cancels the job by stopping the process and its descendants.
      */
     @Override
     public void cancel() {
         if (proc != null) {
-            proc.destroy();
+            ProcessSupervisor.getInstance().terminate(proc);
             log.info(">> De novo sequencing has been canceled.");
         }
     }
@@ -306,9 +323,9 @@ public class NovorJob extends Job {
             modsWriter.close();
 
         } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, new String[]{"Unable to write file: '" + e.getMessage() + "'!",
-                "Could not save Novr+ parameter file."}, "Novor Parameter File Error", JOptionPane.WARNING_MESSAGE);
+            exceptionHandler.catchException(e);
+            waitingHandler.appendReport("Could not save the Novor parameter file: " + e.getMessage(), true, true);
+            waitingHandler.setRunCanceled();
         }
     }
 
@@ -1,6 +1,7 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.ProcessSupervisor;
 import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.biology.AminoAcid;
 import com.compomics.util.experiment.biology.Enzyme;
@@ -16,7 +17,6 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
-import javax.swing.JOptionPane;
 
 /**
  * This job class runs the pNovo+ software in wrapper mode.
@@ -29,6 +29,11 @@ public class PNovoJob extends Job {
      * Title of the pNovo+ executable.
      */
     public String exeTitle;
+    /**
+     * The expected number of spectra processed per second and per thread by
+     * pNovo+, used to set the timeout of the job.
+     */
+    public static final double EXPECTED_SPECTRA_PER_SECOND = 5;
     /**
      * The spectrumFile file.
      */
@@ -136,12 +141,12 @@ public class PNovoJob extends Job {
     }
 
     /**
-     * Cancels the job by destroying the process.
+     * Cancels the job by stopping the process and its descendants.
      */
     @Override
     public void cancel() {
         if (proc != null) {
-            proc.destroy();
+            ProcessSupervisor.getInstance().terminate(proc);
             log.info(">> De novo sequencing has been canceled.");
         }
     }
@@ -353,9 +358,9 @@ public class PNovoJob extends Job {
             r.close();
 
         } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, new String[]{"Unable to write file: '" + e.getMessage() + "'!",
-                "Could not save pNovo+ parameter file."}, "pNovo+ Parameter File Error", JOptionPane.WARNING_MESSAGE);
+            exceptionHandler.catchException(e);
+            waitingHandler.appendReport("Could not save the pNovo+ parameter file: " + e.getMessage(), true, true);
+            waitingHandler.setRunCanceled();
         }
     }
 
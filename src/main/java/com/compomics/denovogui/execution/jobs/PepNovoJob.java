@@ -1,6 +1,7 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.ProcessSupervisor;
 import com.compomics.denovogui.io.FileProcessor;
 import com.compomics.denovogui.io.PepNovoModificationFile;
 import com.compomics.util.exceptions.ExceptionHandler;
@@ -27,6 +28,11 @@ public class PepNovoJob extends Job {
      * The spectrumFile file.
      */
     private File spectrumFile;
+    /**
+     * The file listing the spectrum files processed, null if a single
+     * spectrum file is processed.
+     */
+    private File listFile = null;
     /**
      * The search parameters.
      */
@@ -51,6 +57,16 @@ public class PepNovoJob extends Job {
      * The maximum allowed fragment ion tolerance.
      */
     public static final double MAX_FRAGMENT_ION_TOLERANCE = 0.75;
+    /**
+     * The expected number of spectra processed per second by a PepNovo+
+     * process, used to set the timeout of the job.
+     */
+    public static final double EXPECTED_SPECTRA_PER_SECOND = 2;
+    /**
+     * The time in milliseconds without output after which a PepNovo+ process
+     * is considered hanging.
+     */
+    public static final long STALL_TIMEOUT = 300000;
 
     /**
      * Constructor for the PepNovoJob.
@@ -74,6 +90,31 @@ public class PepNovoJob extends Job {
         initJob();
     }
 
+    /**
+     * Constructor for a PepNovoJob processing the spectrum files listed in a
+     * file. The results of all files are written to the given output file.
+     *
+     * @param pepNovoFolder the path to the PepNovo executable
+     * @param exeTitle title of the PepNovo executable
+     * @param listFile the file listing the spectrum files, one path per line
+     * @param outputFile the file where the results are written
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    protected PepNovoJob(File pepNovoFolder, String exeTitle, File listFile, File outputFile, File outputFolder, SearchParameters searchParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this.pepNovoFolder = pepNovoFolder;
+        this.exeTitle = exeTitle;
+        this.listFile = listFile;
+        this.outputFile = outputFile;
+        this.outputFolder = outputFolder;
+        this.searchParameters = searchParameters;
+        this.waitingHandler = waitingHandler;
+        this.exceptionHandler = exceptionHandler;
+        initJob();
+    }
+
     /**
      * Initializes the job, setting up the commands for the ProcessBuilder.
      */
@@ -87,9 +128,14 @@ public class PepNovoJob extends Job {
             procCommands.add(pepNovoFolder.getAbsolutePath() + File.separator + exeTitle);
             procCommands.trimToSize();
 
-            // Link to the MGF file
-            procCommands.add("-file");
-            procCommands.add(spectrumFile.getAbsolutePath());
+            // Link to the MGF file, or to the list of MGF files
+            if (listFile != null) {
+                procCommands.add("-list");
+                procCommands.add(listFile.getAbsolutePath());
+            } else {
+                procCommands.add("-file");
+                procCommands.add(spectrumFile.getAbsolutePath());
+            }
 
             // Add Model
             procCommands.add("-model");
@@ -145,15 +191,17 @@ public class PepNovoJob extends Job {
                 procCommands.add("-no_quality_filter");
             }
 
-            // Generate blast query
-            if (pepNovoParameters.generateQuery()) {
+            // Generate blast query, not supported for lists of files
+            if (pepNovoParameters.generateQuery() && listFile == null) {
                 procCommands.add("-msb_generate_query");
                 procCommands.add("-msb_query_name");
                 procCommands.add(outputFolder.getAbsolutePath() + System.getProperty("file.separator") + spectrumFile.getName() + ".query");
             }
 
             // Add output path
-            outputFile = FileProcessor.getOutFile(outputFolder, spectrumFile);
+            if (listFile == null) {
+                outputFile = FileProcessor.getOutFile(outputFolder, spectrumFile);
+            }
             procCommands.trimToSize();
 
             // save command line
@@ -182,12 +230,12 @@ public class PepNovoJob extends Job {
     }
 
     /**
-     * Cancels the job by destroying the process.
+     * Cancels the job by stopping the process and its descendants.
      */
     @Override
     public void cancel() {
         if (proc != null) {
-            proc.destroy();
+            ProcessSupervisor.getInstance().terminate(proc);
             log.info(">> De novo sequencing has been canceled.");
         }
     }
@@ -0,0 +1,342 @@
+package com.compomics.denovogui.execution.jobs;
+
+import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.ProcessSupervisor;
+import com.compomics.denovogui.execution.TelemetryRecorder;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.SkippedSpectraReport;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Runs PepNovo+ on a spectrum file, typically a chunk, and recovers from
+ * crashes and hangs. The PepNovo+ job is destroyed when exceeding its
+ * timeout, and restarted with an exponential backoff when failing. When all
+ * attempts failed, the file is bisected until the spectra making PepNovo+
+ * fail are isolated. These spectra are skipped and written to the skipped
+ * spectra report, and the results of the other spectra are merged in the out
+ * file of the spectrum file.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class PepNovoSupervisor implements Runnable {
+
+    /**
+     * The maximal number of attempts to process the spectrum file before
+     * isolating the problematic spectra.
+     */
+    public static final int MAX_ATTEMPTS = 3;
+    /**
+     * The time in milliseconds to wait before the second attempt, doubled at
+     * every attempt.
+     */
+    public static final long INITIAL_BACKOFF = 5000;
+    /**
+     * The maximal number of spectra skipped per spectrum file. When more
+     * spectra fail, the failure is most likely not caused by the spectra and
+     * the sequencing is canceled.
+     */
+    public static final int MAX_SKIPPED_SPECTRA = 10;
+    /**
+     * The path to the PepNovo executable.
+     */
+    private final File pepNovoFolder;
+    /**
+     * Title of the PepNovo+ executable.
+     */
+    private final String exeTitle;
+    /**
+     * The spectrum file to process.
+     */
+    private final File spectrumFile;
+    /**
+     * The number of spectra in the spectrum file.
+     */
+    private final int nSpectra;
+    /**
+     * The name of the original spectrum file, used in the report.
+     */
+    private final String spectrumFileName;
+    /**
+     * The output folder.
+     */
+    private final File outputFolder;
+    /**
+     * The search parameters.
+     */
+    private final SearchParameters searchParameters;
+    /**
+     * The job queue where the jobs are registered to be canceled.
+     */
+    private final Collection<Job> jobs;
+    /**
+     * The recorder of the performance metrics, null if not recorded.
+     */
+    private final TelemetryRecorder telemetryRecorder;
+    /**
+     * The report of the skipped spectra.
+     */
+    private final SkippedSpectraReport skippedSpectraReport;
+    /**
+     * The waiting handler.
+     */
+    private final WaitingHandler waitingHandler;
+    /**
+     * The exception handler.
+     */
+    private final ExceptionHandler exceptionHandler;
+    /**
+     * The last job run on the entire spectrum file.
+     */
+    private volatile PepNovoJob job;
+    /**
+     * The number of spectra skipped.
+     */
+    private int nSkipped = 0;
+    /**
+     * The temporary files created when isolating the problematic spectra.
+     */
+    private final ArrayList<File> tempFiles = new ArrayList<File>();
+
+    /**
+     * Constructor. The first job is created and registered in the job queue.
+     *
+     * @param pepNovoFolder the path to the PepNovo executable
+     * @param exeTitle title of the PepNovo executable
+     * @param spectrumFile the spectrum file to process
+     * @param nSpectra the number of spectra in the spectrum file
+     * @param spectrumFileName the name of the original spectrum file, used in
+     * the report
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param jobs the job queue where the jobs are registered to be canceled
+     * @param telemetryRecorder the recorder of the performance metrics, null
+     * to not record them
+     * @param skippedSpectraReport the report of the skipped spectra
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    public PepNovoSupervisor(File pepNovoFolder, String exeTitle, File spectrumFile, int nSpectra, String spectrumFileName, File outputFolder,
+            SearchParameters searchParameters, Collection<Job> jobs, TelemetryRecorder telemetryRecorder, SkippedSpectraReport skippedSpectraReport,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this.pepNovoFolder = pepNovoFolder;
+        this.exeTitle = exeTitle;
+        this.spectrumFile = spectrumFile;
+        this.nSpectra = nSpectra;
+        this.spectrumFileName = spectrumFileName;
+        this.outputFolder = outputFolder;
+        this.searchParameters = searchParameters;
+        this.jobs = jobs;
+        this.telemetryRecorder = telemetryRecorder;
+        this.skippedSpectraReport = skippedSpectraReport;
+        this.waitingHandler = waitingHandler;
+        this.exceptionHandler = exceptionHandler;
+        job = createJob(spectrumFile, nSpectra);
+    }
+
+    /**
+     * Returns the last job run on the entire spectrum file. Its performance
+     * metrics are left to the caller.
+     *
+     * @return the last job run on the entire spectrum file
+     */
+    public PepNovoJob getJob() {
+        return job;
+    }
+
+    /**
+     * Returns the out file of the spectrum file.
+     *
+     * @return the out file of the spectrum file
+     */
+    public File getOutputFile() {
+        return job.getOutputFile();
+    }
+
+    /**
+     * Returns the number of spectra skipped.
+     *
+     * @return the number of spectra skipped
+     */
+    public int getNSkipped() {
+        return nSkipped;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+
+                if (attempt > 1) {
+                    endTelemetry(job);
+                    long backoff = INITIAL_BACKOFF << (attempt - 2);
+                    waitingHandler.appendReport("PepNovo+ failed on " + spectrumFile.getName() + " (" + getFailure(job) + "), retrying in "
+                            + (backoff / 1000) + " seconds (attempt " + attempt + " of " + MAX_ATTEMPTS + ").", true, true);
+                    Thread.sleep(backoff);
+                    if (waitingHandler.isRunCanceled()) {
+                        return;
+                    }
+                    job = createJob(spectrumFile, nSpectra);
+                }
+
+                job.run();
+
+                if (waitingHandler.isRunCanceled() || isSuccessful(job, nSpectra)) {
+                    return;
+                }
+            }
+
+            waitingHandler.appendReport("PepNovo+ failed " + MAX_ATTEMPTS + " times on " + spectrumFile.getName() + " (" + getFailure(job)
+                    + "), isolating the problematic spectra.", true, true);
+
+            ArrayList<File> outFiles = new ArrayList<File>();
+            if (isolate(spectrumFile, nSpectra, getFailure(job), outFiles)) {
+                FileProcessor.mergeAndDeleteOutputFiles(outFiles, job.getOutputFile());
+                waitingHandler.appendReport("PepNovo+ completed on " + spectrumFile.getName() + ", " + nSkipped + " spectra skipped, see "
+                        + skippedSpectraReport.getFile().getName() + ".", true, true);
+            }
+
+        } catch (InterruptedException e) {
+            // the sequencing was canceled
+        } catch (IOException e) {
+            exceptionHandler.catchException(e);
+            waitingHandler.appendReport("An error occurred while isolating the spectra making PepNovo+ fail: " + e.getMessage(), true, true);
+            waitingHandler.setRunCanceled();
+        } finally {
+            for (File tempFile : tempFiles) {
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+            }
+            ProcessSupervisor.getInstance().removeTempFiles(tempFiles);
+        }
+    }
+
+    /**
+     * Bisects a spectrum file on which PepNovo+ failed until the spectra
+     * making PepNovo+ fail are isolated. The out files of the parts processed
+     * successfully are added to the given list in the order of the spectra.
+     *
+     * @param mgfFile the spectrum file on which PepNovo+ failed
+     * @param nFileSpectra the number of spectra in the file
+     * @param failure the failure of PepNovo+ on the file
+     * @param outFiles the list where to add the out files
+     *
+     * @return false if the isolation was aborted
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the files
+     * @throws InterruptedException thrown if the thread is interrupted
+     */
+    private boolean isolate(File mgfFile, int nFileSpectra, String failure, ArrayList<File> outFiles) throws IOException, InterruptedException {
+
+        if (nFileSpectra <= 1) {
+            ArrayList<String> titles = FileProcessor.getSpectrumTitles(mgfFile);
+            String title = titles.isEmpty() ? "unknown" : titles.get(0);
+            if (++nSkipped > MAX_SKIPPED_SPECTRA) {
+                waitingHandler.appendReport("PepNovo+ failed on more than " + MAX_SKIPPED_SPECTRA + " spectra of " + spectrumFile.getName()
+                        + ", the failure is most likely not caused by the spectra (" + failure + ").", true, true);
+                waitingHandler.setRunCanceled();
+                return false;
+            }
+            skippedSpectraReport.addSpectrum(spectrumFileName, title, "PepNovo+", failure);
+            waitingHandler.appendReport("Spectrum " + title + " skipped by PepNovo+ (" + failure + ").", true, true);
+            return true;
+        }
+
+        String baseName = mgfFile.getName().substring(0, mgfFile.getName().lastIndexOf("."));
+        int[] bounds = {0, nFileSpectra / 2, nFileSpectra};
+        String[] suffixes = {".a", ".b"};
+
+        for (int i = 0; i < 2; i++) {
+
+            File part = new File(mgfFile.getParentFile(), baseName + suffixes[i] + ".mgf");
+            int nPartSpectra = bounds[i + 1] - bounds[i];
+            PepNovoJob partJob = createJob(part, nPartSpectra);
+
+            // deleted also if the virtual machine exits
+            ArrayList<File> partFiles = new ArrayList<File>(2);
+            partFiles.add(part);
+            partFiles.add(partJob.getOutputFile());
+            tempFiles.addAll(partFiles);
+            ProcessSupervisor.getInstance().addTempFiles(partFiles);
+
+            FileProcessor.writeSpectra(mgfFile, bounds[i], bounds[i + 1], part);
+            partJob.run();
+            endTelemetry(partJob);
+
+            if (waitingHandler.isRunCanceled()) {
+                return false;
+            }
+            if (isSuccessful(partJob, nPartSpectra)) {
+                outFiles.add(partJob.getOutputFile());
+            } else if (!isolate(part, nPartSpectra, getFailure(partJob), outFiles)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates a PepNovo+ job with timeouts and registers it in the job queue.
+     *
+     * @param mgfFile the spectrum file to process
+     * @param nFileSpectra the number of spectra in the file
+     *
+     * @return the job
+     */
+    private PepNovoJob createJob(File mgfFile, int nFileSpectra) {
+        PepNovoJob pepNovoJob = new PepNovoJob(pepNovoFolder, exeTitle, mgfFile, outputFolder, searchParameters, waitingHandler, exceptionHandler);
+        pepNovoJob.setTelemetryRecorder(telemetryRecorder);
+        pepNovoJob.setTimeouts(Job.getTimeout(nFileSpectra, PepNovoJob.EXPECTED_SPECTRA_PER_SECOND), PepNovoJob.STALL_TIMEOUT);
+        jobs.add(pepNovoJob);
+        return pepNovoJob;
+    }
+
+    /**
+     * Indicates whether a job completed successfully. A job which did not
+     * exit normally but reported all spectra is considered successful.
+     *
+     * @param pepNovoJob the job
+     * @param nFileSpectra the number of spectra processed by the job
+     *
+     * @return true if the job completed successfully
+     */
+    private static boolean isSuccessful(PepNovoJob pepNovoJob, int nFileSpectra) {
+        return !pepNovoJob.isTimedOut() && (pepNovoJob.getExitValue() == 0 || pepNovoJob.getNSpectraReported() >= nFileSpectra);
+    }
+
+    /**
+     * Returns a description of the failure of a job.
+     *
+     * @param pepNovoJob the job
+     *
+     * @return a description of the failure of the job
+     */
+    private static String getFailure(PepNovoJob pepNovoJob) {
+        if (pepNovoJob.isTimedOut()) {
+            return "timeout";
+        }
+        return "exit value " + pepNovoJob.getExitValue();
+    }
+
+    /**
+     * Writes the performance metrics of a job not followed by the caller.
+     *
+     * @param pepNovoJob the job
+     */
+    private void endTelemetry(PepNovoJob pepNovoJob) {
+        if (telemetryRecorder != null && pepNovoJob.getTelemetry() != null) {
+            pepNovoJob.getTelemetry().setNSpectra(pepNovoJob.getNSpectraReported());
+            telemetryRecorder.endJob(pepNovoJob.getTelemetry());
+        }
+    }
+}
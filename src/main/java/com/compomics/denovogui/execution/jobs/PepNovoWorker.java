@@ -0,0 +1,199 @@
+package com.compomics.denovogui.execution.jobs;
+
+import com.compomics.denovogui.execution.EngineWorker;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PepNovo+ worker processing a batch of spectrum files in a single PepNovo+
+ * process. The files are given to PepNovo+ in a list file, PepNovo+ then
+ * loads its models once for all the files. The results of all files are
+ * written to the output of the worker, where every spectrum is preceded by
+ * the index of its file in the list, and are dispatched to the out files of
+ * the spectrum files when the worker stopped.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class PepNovoWorker extends PepNovoJob implements EngineWorker {
+
+    /**
+     * The spectrum files processed by the worker.
+     */
+    private final ArrayList<File> batch;
+    /**
+     * The file listing the spectrum files.
+     */
+    private final File listFile;
+    /**
+     * The output folder.
+     */
+    private final File outputFolder;
+
+    /**
+     * Constructor.
+     *
+     * @param pepNovoFolder the path to the PepNovo executable
+     * @param exeTitle title of the PepNovo executable
+     * @param batch the spectrum files to process
+     * @param index the index of the worker, used to name its files
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     *
+     * @throws IOException thrown if the list file cannot be written
+     */
+    public PepNovoWorker(File pepNovoFolder, String exeTitle, List<File> batch, int index, File outputFolder, SearchParameters searchParameters,
+            WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) throws IOException {
+        super(pepNovoFolder, exeTitle, writeListFile(batch, getListFile(outputFolder, index)), getOutputFile(outputFolder, index),
+                outputFolder, searchParameters, waitingHandler, exceptionHandler);
+        this.batch = new ArrayList<File>(batch);
+        this.listFile = getListFile(outputFolder, index);
+        this.outputFolder = outputFolder;
+    }
+
+    /**
+     * Returns the file listing the spectrum files of a worker.
+     *
+     * @param outputFolder the output folder
+     * @param index the index of the worker
+     *
+     * @return the file listing the spectrum files of the worker
+     */
+    public static File getListFile(File outputFolder, int index) {
+        return new File(outputFolder, "pepnovo_worker_" + index + ".list");
+    }
+
+    /**
+     * Returns the file where the output of a worker is written.
+     *
+     * @param outputFolder the output folder
+     * @param index the index of the worker
+     *
+     * @return the file where the output of the worker is written
+     */
+    public static File getOutputFile(File outputFolder, int index) {
+        return new File(outputFolder, "pepnovo_worker_" + index + ".out");
+    }
+
+    /**
+     * Writes the list of the spectrum files given to PepNovo+.
+     *
+     * @param batch the spectrum files
+     * @param listFile the list file
+     *
+     * @return the list file
+     *
+     * @throws IOException thrown if the list file cannot be written
+     */
+    private static File writeListFile(List<File> batch, File listFile) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(listFile));
+        try {
+            for (File spectrumFile : batch) {
+                writer.write(spectrumFile.getAbsolutePath());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        return listFile;
+    }
+
+    @Override
+    public List<File> getBatch() {
+        return batch;
+    }
+
+    /**
+     * Writes the results of every spectrum file to its out file, the file
+     * index of the spectra being set to zero as when processed alone. When
+     * PepNovo+ did not complete, only the files preceding the last file
+     * started are considered processed. The list file and the output of the
+     * worker are deleted.
+     *
+     * @return the spectrum files completely processed
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the results
+     */
+    @Override
+    public ArrayList<File> dispatchResults() throws IOException {
+
+        ArrayList<File> completedFiles = new ArrayList<File>();
+        boolean completed = getStatus() == JobStatus.FINISHED && getExitValue() == 0;
+
+        if (getStatus() != JobStatus.WAITING && getStatus() != JobStatus.CANCELED && outputFile.exists()) {
+
+            int lastIndex = -1;
+            BufferedWriter writer = null;
+            BufferedReader reader = new BufferedReader(new FileReader(outputFile));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(">>")) {
+                        String[] split = line.split(" ", 3);
+                        int fileIndex = -1;
+                        if (split.length > 1) {
+                            try {
+                                fileIndex = Integer.parseInt(split[1]);
+                            } catch (NumberFormatException e) {
+                                // not a spectrum header
+                            }
+                        }
+                        if (fileIndex < 0 || fileIndex >= batch.size() || fileIndex < lastIndex) {
+                            throw new IOException("Unexpected spectrum header in the output of PepNovo+: " + line + ".");
+                        }
+                        while (lastIndex < fileIndex) {
+                            if (writer != null) {
+                                writer.close();
+                            }
+                            lastIndex++;
+                            writer = new BufferedWriter(new FileWriter(FileProcessor.getOutFile(outputFolder, batch.get(lastIndex))));
+                        }
+                        int indexEnd = line.indexOf(' ', 3);
+                        line = ">> 0" + (indexEnd == -1 ? "" : line.substring(indexEnd));
+                    }
+                    if (writer != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                if (completed) {
+                    // files without results
+                    while (lastIndex < batch.size() - 1) {
+                        if (writer != null) {
+                            writer.close();
+                        }
+                        lastIndex++;
+                        writer = new BufferedWriter(new FileWriter(FileProcessor.getOutFile(outputFolder, batch.get(lastIndex))));
+                    }
+                }
+            } finally {
+                reader.close();
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+
+            int nCompleted = completed ? batch.size() : Math.max(lastIndex, 0);
+            completedFiles.addAll(batch.subList(0, nCompleted));
+        }
+
+        outputFile.delete();
+        listFile.delete();
+
+        return completedFiles;
+    }
+}
@@ -3,6 +3,8 @@ package com.compomics.denovogui.gui;
 import com.compomics.denovogui.DeNovoSequencingHandler;
 import com.compomics.denovogui.DeNovoGUIWrapper;
 import com.compomics.denovogui.execution.jobs.PepNovoJob;
+import com.compomics.denovogui.gui.panels.StatisticsPanel;
+import com.compomics.denovogui.gui.qc.LiveStatistics;
 import com.compomics.denovogui.util.Properties;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.software.ToolFactory;
@@ -11,6 +13,8 @@ import com.compomics.util.experiment.biology.EnzymeFactory;
 import com.compomics.util.experiment.biology.PTMFactory;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
 import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.AssumptionFilter;
+import com.compomics.denovogui.io.SpectrumIndexer;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences.DeNovoGUIPathKey;
 import com.compomics.software.CompomicsWrapper;
@@ -175,6 +179,10 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      * The dialog displayed during the search.
      */
     private WaitingDialog waitingDialog;
+    /**
+     * The dialog displaying the live statistics during the search.
+     */
+    private StatisticsDialog statisticsDialog;
     /**
      * The search task.
      */
@@ -212,6 +220,11 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      * and in this order.
      */
     public final static Advocate[] implementedAlgorithms = {Advocate.direcTag, Advocate.pepnovo, Advocate.pNovo, Advocate.novor};
+    /**
+     * The filter applied on the assumptions when importing results, null if
+     * all assumptions are to be imported.
+     */
+    private AssumptionFilter importFilter = null;
     /**
      * The utilities user preferences.
      */
@@ -550,6 +563,7 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
         exitMenuItem = new javax.swing.JMenuItem();
         editMenu = new javax.swing.JMenu();
         settingsMenuItem = new javax.swing.JMenuItem();
+        importFilterCheckBoxMenuItem = new javax.swing.JCheckBoxMenuItem();
         jSeparator2 = new javax.swing.JPopupMenu.Separator();
         modsMenuItem = new javax.swing.JMenuItem();
         jSeparator1 = new javax.swing.JPopupMenu.Separator();
@@ -1169,6 +1183,16 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
             }
         });
         editMenu.add(settingsMenuItem);
+
+        importFilterCheckBoxMenuItem.setMnemonic('I');
+        importFilterCheckBoxMenuItem.setText("Import Filter");
+        importFilterCheckBoxMenuItem.setToolTipText("Only import the best matches of every spectrum when opening results");
+        importFilterCheckBoxMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                importFilterCheckBoxMenuItemActionPerformed(evt);
+            }
+        });
+        editMenu.add(importFilterCheckBoxMenuItem);
         editMenu.add(jSeparator2);
 
         modsMenuItem.setMnemonic('M');
@@ -2248,6 +2272,24 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
         editPathSettings();
     }//GEN-LAST:event_resourceSettingsMenuItemActionPerformed
 
+    /**
+     * Set or remove the filter on the matches imported when opening results.
+     *
+     * @param evt
+     */
+    private void importFilterCheckBoxMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_importFilterCheckBoxMenuItemActionPerformed
+        if (importFilterCheckBoxMenuItem.isSelected()) {
+            ExportSettingsDialog importSettingsDialog = new ExportSettingsDialog(this, true, "Import Filter");
+            if (importSettingsDialog.canceled()) {
+                importFilterCheckBoxMenuItem.setSelected(false);
+            } else {
+                importFilter = new AssumptionFilter(importSettingsDialog.getNumberOfPeptides(), importSettingsDialog.getThreshold(), importSettingsDialog.isGreaterThenThreshold());
+            }
+        } else {
+            importFilter = null;
+        }
+    }//GEN-LAST:event_importFilterCheckBoxMenuItemActionPerformed
+
     /**
      * Open the Novor advanced settings.
      *
@@ -2461,6 +2503,7 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
     private javax.swing.JMenu fileMenu;
     private javax.swing.JMenu helpMenu;
     private javax.swing.JMenuItem helpMenuItem;
+    private javax.swing.JCheckBoxMenuItem importFilterCheckBoxMenuItem;
     private javax.swing.JPanel inputFilesPanel1;
     private javax.swing.JPopupMenu.Separator jSeparator1;
     private javax.swing.JPopupMenu.Separator jSeparator16;
@@ -2511,13 +2554,21 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      */
     public void startSequencing(WaitingHandler waitingHandler) {
 
+        // the statistics on the results, updated while sequencing
+        LiveStatistics liveStatistics = new LiveStatistics();
+        deNovoSequencingHandler.setLiveStatistics(liveStatistics);
+
         sequencingWorker = new SequencingWorker(waitingHandler, true);
         sequencingWorker.execute();
 
-        // Display the waiting dialog
+        // Display the waiting dialog and the live statistics
         if (waitingHandler != null && waitingHandler instanceof WaitingDialog) {
-            ((WaitingDialog) waitingHandler).setVisible(true);
-            ((WaitingDialog) waitingHandler).setModal(true);
+            WaitingDialog tempWaitingDialog = (WaitingDialog) waitingHandler;
+            tempWaitingDialog.setVisible(true);
+            StatisticsPanel statisticsPanel = new StatisticsPanel(this);
+            statisticsPanel.setLiveStatistics(liveStatistics);
+            statisticsDialog = new StatisticsDialog(tempWaitingDialog, "De Novo Sequencing - Live Statistics", statisticsPanel);
+            tempWaitingDialog.setModal(true);
         }
     }
 
@@ -2621,6 +2672,11 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
         protected void done() {
             finished = true;
 
+            // stop the live statistics updates after a last update
+            if (statisticsDialog != null) {
+                statisticsDialog.getStatisticsPanel().setLiveStatistics(null);
+            }
+
             if (!waitingHandler.isRunCanceled()) {
                 waitingHandler.appendReportEndLine();
                 waitingHandler.appendReport("The de novo sequencing is complete.", true, true);
@@ -2702,8 +2758,11 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      * @throws FileNotFoundException
      * @throws IOException
      * @throws ClassNotFoundException
+     * @throws InterruptedException
      */
-    private void loadSpectra(List<File> mgfFiles, WaitingHandler waitingHandler) throws FileNotFoundException, IOException, ClassNotFoundException {
+    private void loadSpectra(List<File> mgfFiles, WaitingHandler waitingHandler) throws FileNotFoundException, IOException, ClassNotFoundException, InterruptedException {
+        // Build the missing spectrum factory indexes, one file per thread
+        new SpectrumIndexer(deNovoSequencingHandler.getNThreads()).buildFactoryIndexes(mgfFiles, waitingHandler);
         // Add spectrum files to the spectrum factory
         for (File spectrumFile : mgfFiles) {
             spectrumFactory.addSpectra(spectrumFile, waitingHandler);
@@ -3354,6 +3413,27 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
         }
     }
 
+    /**
+     * Returns the filter applied on the assumptions when importing results,
+     * null if all assumptions are imported.
+     *
+     * @return the import filter
+     */
+    public AssumptionFilter getImportFilter() {
+        return importFilter;
+    }
+
+    /**
+     * Sets the filter applied on the assumptions when importing results, null
+     * to import all assumptions.
+     *
+     * @param importFilter the import filter
+     */
+    public void setImportFilter(AssumptionFilter importFilter) {
+        this.importFilter = importFilter;
+        importFilterCheckBoxMenuItem.setSelected(importFilter != null);
+    }
+
     /**
      * Check for new version.
      *
@@ -29,8 +29,21 @@ public class ExportSettingsDialog extends javax.swing.JDialog {
      * @param modal if the dialog is to be modal
      */
     public ExportSettingsDialog(java.awt.Frame parent, boolean modal) {
+        this(parent, modal, "Export Settings");
+    }
+
+    /**
+     * Creates a new ExportSettingsDialog with the given title, for instance
+     * to set the filter used when importing results.
+     *
+     * @param parent the parent
+     * @param modal if the dialog is to be modal
+     * @param title the title of the dialog
+     */
+    public ExportSettingsDialog(java.awt.Frame parent, boolean modal, String title) {
         super(parent, modal);
         initComponents();
+        setTitle(title);
         numberHitsTextField.setText(String.valueOf(numberOfHits));
         scoreThresholdTextField.setText(String.valueOf(threshold));
         setLocationRelativeTo(parent);
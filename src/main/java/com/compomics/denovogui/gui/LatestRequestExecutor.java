@@ -0,0 +1,184 @@
+package com.compomics.denovogui.gui;
+
+import com.compomics.util.exceptions.ExceptionHandler;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * Executes the requests of the GUI on a single background thread and only
+ * publishes the result of the latest request. Requests are grouped in
+ * channels: submitting a request cancels the requests of the same channel
+ * which did not start yet, and the result of a request is only published on
+ * the event dispatch thread if no other request was submitted to its channel
+ * in the meantime. Rapid selection changes are hence coalesced into the
+ * latest one.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class LatestRequestExecutor {
+
+    /**
+     * The executor running the requests.
+     */
+    private final ExecutorService executor;
+    /**
+     * The exception handler notified of the errors of the current requests.
+     */
+    private final ExceptionHandler exceptionHandler;
+    /**
+     * The generation of the last request submitted per channel.
+     */
+    private final HashMap<String, Integer> generations = new HashMap<String, Integer>();
+    /**
+     * The last request submitted per channel.
+     */
+    private final HashMap<String, Future<?>> pendingRequests = new HashMap<String, Future<?>>();
+
+    /**
+     * A request executed in the background and publishing its result on the
+     * event dispatch thread.
+     *
+     * @param <T> the type of result
+     */
+    public static abstract class Request<T> {
+
+        /**
+         * Computes the result of the request. Executed in the background
+         * thread.
+         *
+         * @return the result of the request
+         *
+         * @throws Exception thrown whenever an error occurred while computing
+         * the result
+         */
+        protected abstract T doInBackground() throws Exception;
+
+        /**
+         * Publishes the result of the request. Executed on the event dispatch
+         * thread if the request is still current.
+         *
+         * @param result the result of the request
+         */
+        protected abstract void done(T result);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadName the name of the background thread
+     * @param exceptionHandler the exception handler notified of the errors
+     */
+    public LatestRequestExecutor(final String threadName, ExceptionHandler exceptionHandler) {
+        this.exceptionHandler = exceptionHandler;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Submits a request to the given channel. The pending requests of the
+     * channel are canceled and their results will not be published.
+     *
+     * @param <T> the type of result
+     * @param channel the channel of the request
+     * @param request the request
+     */
+    public synchronized <T> void submit(final String channel, final Request<T> request) {
+
+        final int generation = invalidate(channel);
+
+        Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+
+                if (!isCurrent(channel, generation)) {
+                    return;
+                }
+
+                T result = null;
+                Exception error = null;
+
+                try {
+                    result = request.doInBackground();
+                } catch (Exception e) {
+                    error = e;
+                }
+
+                final T finalResult = result;
+                final Exception finalError = error;
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isCurrent(channel, generation)) {
+                            if (finalError != null) {
+                                exceptionHandler.catchException(finalError);
+                            } else {
+                                request.done(finalResult);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+
+        pendingRequests.put(channel, future);
+    }
+
+    /**
+     * Cancels the pending request of the given channel. A request already
+     * running is completed but its result is not published.
+     *
+     * @param channel the channel
+     *
+     * @return the new generation of the channel
+     */
+    public synchronized int invalidate(String channel) {
+
+        Future<?> pendingRequest = pendingRequests.remove(channel);
+
+        if (pendingRequest != null) {
+            pendingRequest.cancel(false);
+        }
+
+        Integer generation = generations.get(channel);
+        generation = generation == null ? 0 : generation + 1;
+        generations.put(channel, generation);
+
+        return generation;
+    }
+
+    /**
+     * Indicates whether the given generation is the latest of the channel.
+     *
+     * @param channel the channel
+     * @param generation the generation
+     *
+     * @return true if the given generation is the latest of the channel
+     */
+    private synchronized boolean isCurrent(String channel, int generation) {
+        Integer currentGeneration = generations.get(channel);
+        return currentGeneration != null && currentGeneration == generation;
+    }
+
+    /**
+     * Cancels all requests and stops the background thread.
+     */
+    public synchronized void shutdown() {
+        for (String channel : generations.keySet()) {
+            generations.put(channel, -1);
+        }
+        pendingRequests.clear();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,359 @@
+package com.compomics.denovogui.gui;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Level of detail structure for the display of dense spectra. The peaks are
+ * binned on a regular m/z grid and the most intense peak of every bin is
+ * stored for successive levels of coarser bins. For a given m/z range and
+ * number of pixels, the most intense peak per pixel can then be selected
+ * without going through all peaks of the spectrum. As the peaks are drawn as
+ * sticks from the baseline, only the maximum of the bins needs to be kept.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class PeakPyramid {
+
+    /**
+     * The average number of peaks per bin at the finest level.
+     */
+    private static final int PEAKS_PER_BIN = 8;
+    /**
+     * The maximal number of bins at the finest level.
+     */
+    private static final int MAX_BINS = 1 << 16;
+    /**
+     * The m/z of the peaks sorted by m/z.
+     */
+    private final double[] mz;
+    /**
+     * The intensities of the peaks sorted by m/z.
+     */
+    private final double[] intensities;
+    /**
+     * The index in the original arrays of the peaks sorted by m/z.
+     */
+    private final int[] originalIndexes;
+    /**
+     * The lowest m/z.
+     */
+    private final double minMz;
+    /**
+     * The bins of every level, finest first. Each bin contains the index of
+     * its most intense peak in the sorted arrays, -1 if empty.
+     */
+    private final int[][] levels;
+    /**
+     * The width of the bins of every level, finest first.
+     */
+    private final double[] binWidths;
+
+    /**
+     * Constructor.
+     *
+     * @param mzValues the m/z values of the peaks
+     * @param intensityValues the intensities of the peaks, in the same order
+     */
+    public PeakPyramid(double[] mzValues, double[] intensityValues) {
+
+        if (mzValues.length != intensityValues.length) {
+            throw new IllegalArgumentException("The m/z and intensity arrays must have the same length.");
+        }
+
+        int nPeaks = mzValues.length;
+
+        // sort the peaks by m/z
+        boolean sorted = true;
+        for (int i = 1; i < nPeaks && sorted; i++) {
+            if (mzValues[i] < mzValues[i - 1]) {
+                sorted = false;
+            }
+        }
+        originalIndexes = new int[nPeaks];
+        if (sorted) {
+            for (int i = 0; i < nPeaks; i++) {
+                originalIndexes[i] = i;
+            }
+        } else {
+            Integer[] order = new Integer[nPeaks];
+            for (int i = 0; i < nPeaks; i++) {
+                order[i] = i;
+            }
+            final double[] finalMzValues = mzValues;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(finalMzValues[o1], finalMzValues[o2]);
+                }
+            });
+            for (int i = 0; i < nPeaks; i++) {
+                originalIndexes[i] = order[i];
+            }
+        }
+        mz = new double[nPeaks];
+        intensities = new double[nPeaks];
+        for (int i = 0; i < nPeaks; i++) {
+            mz[i] = mzValues[originalIndexes[i]];
+            intensities[i] = intensityValues[originalIndexes[i]];
+        }
+
+        minMz = nPeaks > 0 ? mz[0] : 0;
+        double mzRange = nPeaks > 0 ? mz[nPeaks - 1] - minMz : 0;
+
+        // number of bins at the finest level: power of two
+        int nBins = 1;
+        while (nBins < MAX_BINS && 2 * nBins * PEAKS_PER_BIN <= nPeaks) {
+            nBins *= 2;
+        }
+
+        if (nBins == 1 || mzRange <= 0) {
+            levels = new int[0][];
+            binWidths = new double[0];
+            return;
+        }
+
+        int nLevels = Integer.numberOfTrailingZeros(nBins) + 1;
+        levels = new int[nLevels][];
+        binWidths = new double[nLevels];
+
+        // finest level
+        double binWidth = mzRange / nBins;
+        int[] level = new int[nBins];
+        Arrays.fill(level, -1);
+        for (int i = 0; i < nPeaks; i++) {
+            int bin = Math.min((int) ((mz[i] - minMz) / binWidth), nBins - 1);
+            if (level[bin] == -1 || intensities[i] > intensities[level[bin]]) {
+                level[bin] = i;
+            }
+        }
+        levels[0] = level;
+        binWidths[0] = binWidth;
+
+        // coarser levels
+        for (int l = 1; l < nLevels; l++) {
+            int[] finer = levels[l - 1];
+            level = new int[finer.length / 2];
+            for (int bin = 0; bin < level.length; bin++) {
+                level[bin] = mostIntense(finer[2 * bin], finer[2 * bin + 1]);
+            }
+            levels[l] = level;
+            binWidths[l] = 2 * binWidths[l - 1];
+        }
+    }
+
+    /**
+     * Returns the lowest m/z.
+     *
+     * @return the lowest m/z
+     */
+    public double getMinMz() {
+        return minMz;
+    }
+
+    /**
+     * Returns the highest m/z.
+     *
+     * @return the highest m/z
+     */
+    public double getMaxMz() {
+        return mz.length > 0 ? mz[mz.length - 1] : 0;
+    }
+
+    /**
+     * Returns the number of peaks.
+     *
+     * @return the number of peaks
+     */
+    public int getNPeaks() {
+        return mz.length;
+    }
+
+    /**
+     * Returns the indexes of the peaks to display in the given m/z range, in
+     * the original arrays, sorted by m/z. If there are more peaks than pixels
+     * in the range, only the most intense peak per pixel is retained. As the
+     * bins of the pyramid are not aligned on the pixels, a peak can be
+     * replaced by a more intense peak of the neighboring pixel. Peaks at the
+     * given m/z values are always retained.
+     *
+     * @param fromMz the lower bound of the m/z range
+     * @param toMz the upper bound of the m/z range
+     * @param nPixels the number of pixels available to display the range
+     * @param retainedMz the m/z of the peaks to retain in any case, e.g. the
+     * annotated peaks, can be null
+     *
+     * @return the indexes of the peaks to display in the original arrays
+     */
+    public int[] getPeakIndexes(double fromMz, double toMz, int nPixels, double[] retainedMz) {
+
+        int lower = lowerBound(fromMz);
+        int upper = lowerBound(Math.nextUp(toMz));
+        boolean[] selected = new boolean[mz.length];
+
+        if (upper - lower <= nPixels || nPixels <= 0 || toMz <= fromMz) {
+            for (int i = lower; i < upper; i++) {
+                selected[i] = true;
+            }
+        } else {
+
+            double pixelWidth = (toMz - fromMz) / nPixels;
+            int[] pixels = new int[nPixels];
+            Arrays.fill(pixels, -1);
+
+            // the coarsest level with bins smaller than a pixel
+            int levelIndex = -1;
+            for (int l = 0; l < levels.length && binWidths[l] <= pixelWidth; l++) {
+                levelIndex = l;
+            }
+
+            if (levelIndex == -1) {
+                addPeaks(lower, upper, fromMz, pixelWidth, pixels);
+            } else {
+
+                int[] level = levels[levelIndex];
+                double binWidth = binWidths[levelIndex];
+
+                // the bins fully contained in the range
+                int firstBin = Math.max((int) Math.ceil((fromMz - minMz) / binWidth), 0);
+                int lastBin = Math.min((int) Math.floor((toMz - minMz) / binWidth), level.length);
+
+                if (firstBin >= lastBin) {
+                    addPeaks(lower, upper, fromMz, pixelWidth, pixels);
+                } else {
+
+                    // partial bins at the edges of the range
+                    int firstBinStart = lowerBound(minMz + firstBin * binWidth);
+                    int lastBinEnd = lastBin == level.length ? mz.length : lowerBound(minMz + lastBin * binWidth);
+                    addPeaks(lower, Math.min(firstBinStart, upper), fromMz, pixelWidth, pixels);
+                    addPeaks(Math.max(lastBinEnd, lower), upper, fromMz, pixelWidth, pixels);
+
+                    for (int bin = firstBin; bin < lastBin; bin++) {
+                        int peak = level[bin];
+                        if (peak >= lower && peak < upper) {
+                            addPeak(peak, fromMz, pixelWidth, pixels);
+                        }
+                    }
+                }
+            }
+
+            for (int peak : pixels) {
+                if (peak != -1) {
+                    selected[peak] = true;
+                }
+            }
+        }
+
+        if (retainedMz != null) {
+            for (double retained : retainedMz) {
+                int index = lowerBound(retained);
+                if (index < mz.length && mz[index] == retained) {
+                    selected[index] = true;
+                }
+            }
+        }
+
+        int nSelected = 0;
+        for (boolean peakSelected : selected) {
+            if (peakSelected) {
+                nSelected++;
+            }
+        }
+        int[] result = new int[nSelected];
+        int resultIndex = 0;
+        for (int i = 0; i < selected.length; i++) {
+            if (selected[i]) {
+                result[resultIndex++] = originalIndexes[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of the given array at the given indexes.
+     *
+     * @param values the values
+     * @param indexes the indexes
+     *
+     * @return the values at the given indexes
+     */
+    public static double[] select(double[] values, int[] indexes) {
+        double[] result = new double[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            result[i] = values[indexes[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Adds the peaks between the given indexes to the pixels, keeping the most
+     * intense per pixel.
+     *
+     * @param from the index of the first peak in the sorted arrays
+     * @param to the index after the last peak in the sorted arrays
+     * @param fromMz the m/z of the first pixel
+     * @param pixelWidth the width of a pixel in m/z
+     * @param pixels the most intense peak per pixel
+     */
+    private void addPeaks(int from, int to, double fromMz, double pixelWidth, int[] pixels) {
+        for (int i = from; i < to; i++) {
+            addPeak(i, fromMz, pixelWidth, pixels);
+        }
+    }
+
+    /**
+     * Adds a peak to the pixels, keeping the most intense per pixel.
+     *
+     * @param peak the index of the peak in the sorted arrays
+     * @param fromMz the m/z of the first pixel
+     * @param pixelWidth the width of a pixel in m/z
+     * @param pixels the most intense peak per pixel
+     */
+    private void addPeak(int peak, double fromMz, double pixelWidth, int[] pixels) {
+        int pixel = Math.max(Math.min((int) ((mz[peak] - fromMz) / pixelWidth), pixels.length - 1), 0);
+        pixels[pixel] = mostIntense(pixels[pixel], peak);
+    }
+
+    /**
+     * Returns the most intense of two peaks, -1 if both are -1.
+     *
+     * @param peak1 the index of the first peak in the sorted arrays, -1 if none
+     * @param peak2 the index of the second peak in the sorted arrays, -1 if
+     * none
+     *
+     * @return the most intense peak
+     */
+    private int mostIntense(int peak1, int peak2) {
+        if (peak1 == -1) {
+            return peak2;
+        }
+        if (peak2 == -1) {
+            return peak1;
+        }
+        return intensities[peak2] > intensities[peak1] ? peak2 : peak1;
+    }
+
+    /**
+     * Returns the index of the first peak with an m/z higher than or equal to
+     * the given value.
+     *
+     * @param value the m/z value
+     *
+     * @return the index of the first peak with an m/z higher than or equal to
+     * the given value
+     */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = mz.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mz[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
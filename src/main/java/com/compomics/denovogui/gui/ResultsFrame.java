@@ -1,10 +1,19 @@
 package com.compomics.denovogui.gui;
 
 import com.compomics.denovogui.DeNovoGUIWrapper;
+import com.compomics.denovogui.gui.panels.StatisticsPanel;
+import com.compomics.denovogui.gui.qc.ScoreStatistics;
 import com.compomics.denovogui.gui.tablemodels.AssumptionsTableModel;
 import com.compomics.denovogui.gui.tablemodels.SpectrumTableModel;
+import com.compomics.denovogui.io.AssumptionFilter;
+import com.compomics.denovogui.io.ConsensusScorer;
 import com.compomics.denovogui.io.ExportType;
+import com.compomics.denovogui.io.ResultFileFilter;
+import com.compomics.denovogui.io.SpectrumClusters;
 import com.compomics.denovogui.io.TextExporter;
+import com.compomics.denovogui.util.MemoryConsumer;
+import com.compomics.denovogui.util.MemoryGovernor;
+import com.compomics.denovogui.util.ResourcePlanner;
 import com.compomics.util.Util;
 import com.compomics.util.db.DerbyUtil;
 import com.compomics.util.db.ObjectsCache;
@@ -57,7 +66,9 @@ import com.compomics.util.experiment.refinementparameters.PepnovoAssumptionDetai
 import com.compomics.util.gui.JOptionEditorPane;
 import com.compomics.util.gui.error_handlers.BugReport;
 import com.compomics.util.gui.error_handlers.HelpDialog;
+import com.compomics.util.gui.events.RescalingEvent;
 import com.compomics.util.gui.export.graphics.ExportGraphicsDialog;
+import com.compomics.util.gui.interfaces.SpectrumPanelListener;
 import com.compomics.util.gui.renderers.AlignedListCellRenderer;
 import com.compomics.util.gui.spectrum.SpectrumPanel;
 import com.compomics.util.waiting.WaitingHandler;
@@ -89,7 +100,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.Box;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.ImageIcon;
@@ -257,6 +271,21 @@ public class ResultsFrame extends javax.swing.JFrame {
      * The object cache used for the identification.
      */
     private ObjectsCache objectsCache = new ObjectsCache();
+    /**
+     * The memory consumer releasing the objects cache when the memory governor
+     * detects memory pressure.
+     */
+    private final MemoryConsumer cacheMemoryConsumer = new MemoryConsumer() {
+        @Override
+        public boolean isEmpty() {
+            return objectsCache.isEmpty();
+        }
+
+        @Override
+        public void reduceMemoryConsumption(double share) throws Exception {
+            objectsCache.reduceMemoryConsumption(share, null);
+        }
+    };
     /**
      * The number of advocate types loaded.
      */
@@ -270,13 +299,78 @@ public class ResultsFrame extends javax.swing.JFrame {
      */
     private FrameExceptionHandler exceptionHandler = new FrameExceptionHandler(this, "https://github.com/compomics/denovogui/issues");
     /**
-     * The spectrum annotator to use for tags.
+     * The spectrum annotator to use for tags. Only used on the spectrum worker
+     * thread.
      */
     private TagSpectrumAnnotator tagSpectrumAnnotator = new TagSpectrumAnnotator();
     /**
-     * The spectrum annotator to use for peptides.
+     * The spectrum annotator to use for peptides. Only used on the spectrum
+     * worker thread.
      */
     private PeptideSpectrumAnnotator peptideSpectrumAnnotator = new PeptideSpectrumAnnotator();
+    /**
+     * The cache of the spectrum annotations.
+     */
+    private final SpectrumAnnotationCache annotationCache = new SpectrumAnnotationCache();
+    /**
+     * The request channel of the assumptions table.
+     */
+    private static final String ASSUMPTIONS_CHANNEL = "assumptions";
+    /**
+     * The request channel of the spectrum viewer.
+     */
+    private static final String SPECTRUM_CHANNEL = "spectrum";
+    /**
+     * The request channel of the annotation prefetching.
+     */
+    private static final String PREFETCH_CHANNEL = "prefetch";
+    /**
+     * The worker loading the assumptions and annotating the spectra in the
+     * background.
+     */
+    private final LatestRequestExecutor spectrumWorker = new LatestRequestExecutor("SpectrumWorkerThread", exceptionHandler);
+    /**
+     * Spectra with more peaks than this are displayed with a level of detail
+     * depending on the zoom.
+     */
+    private static final int LEVEL_OF_DETAIL_THRESHOLD = 2000;
+    /**
+     * The minimal number of pixels assumed for the spectrum panel when
+     * selecting the peaks to display.
+     */
+    private static final int MIN_SPECTRUM_PANEL_WIDTH = 1000;
+    /**
+     * The spectrum displayed, null if none.
+     */
+    private MSnSpectrum displayedSpectrum = null;
+    /**
+     * The level of detail structure of the spectrum displayed, null if the
+     * spectrum is displayed in full.
+     */
+    private PeakPyramid displayedPeakPyramid = null;
+    /**
+     * The annotations of the selected assumptions displayed.
+     */
+    private ArrayList<ArrayList<IonMatch>> displayedAnnotations = null;
+    /**
+     * The m/z range zoomed in by the user, null if the full range is
+     * displayed.
+     */
+    private double[] displayedMzRange = null;
+    /**
+     * Indicates whether the spectrum panel is being rescaled by the program.
+     */
+    private boolean rescalingSpectrum = false;
+    /**
+     * The statistics on the scores of the imported results, gathered during
+     * the import for the QC plots.
+     */
+    private ScoreStatistics scoreStatistics = new ScoreStatistics();
+    /**
+     * The consensus of the advocates for every spectrum, computed during the
+     * import.
+     */
+    private ConsensusScorer consensusScorer = null;
 
     /**
      * Creates a new ResultsPanel.
@@ -291,6 +385,7 @@ public class ResultsFrame extends javax.swing.JFrame {
         this.searchParameters = searchParameters;
         annotationPreferences.setPreferencesFromSearchParameters(searchParameters);
         annotationPreferences.setIntensityLimit(0.0); // annotate all peaks by default
+        MemoryGovernor.getInstance().register(annotationCache);
         setLocationRelativeTo(null);
         setExtendedState(MAXIMIZED_BOTH);
         // set the title of the frame and add the icon
@@ -644,6 +739,7 @@ public class ResultsFrame extends javax.swing.JFrame {
         exportBlastMatchesMenuItem = new javax.swing.JMenuItem();
         viewMenu = new javax.swing.JMenu();
         fixedPtmsCheckBoxMenuItem = new javax.swing.JCheckBoxMenuItem();
+        scoreHistogramsMenuItem = new javax.swing.JMenuItem();
         helpMenu = new javax.swing.JMenu();
         helpMainMenuItem = new javax.swing.JMenuItem();
         jSeparator17 = new javax.swing.JPopupMenu.Separator();
@@ -1204,6 +1300,15 @@ public class ResultsFrame extends javax.swing.JFrame {
         });
         viewMenu.add(fixedPtmsCheckBoxMenuItem);
 
+        scoreHistogramsMenuItem.setMnemonic('S');
+        scoreHistogramsMenuItem.setText("Score Histograms");
+        scoreHistogramsMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                scoreHistogramsMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(scoreHistogramsMenuItem);
+
         menuBar.add(viewMenu);
 
         helpMenu.setMnemonic('H');
@@ -1688,6 +1793,18 @@ public class ResultsFrame extends javax.swing.JFrame {
         }
     }//GEN-LAST:event_fixedPtmsCheckBoxMenuItemActionPerformed
 
+    /**
+     * Show the score histograms of the advocates, gathered when importing the
+     * results.
+     *
+     * @param evt
+     */
+    private void scoreHistogramsMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_scoreHistogramsMenuItemActionPerformed
+        StatisticsPanel statisticsPanel = new StatisticsPanel(deNovoGUI);
+        statisticsPanel.setScoreStatistics(scoreStatistics);
+        new StatisticsDialog(this, "Score Histograms", statisticsPanel);
+    }//GEN-LAST:event_scoreHistogramsMenuItemActionPerformed
+
     /**
      * Export the matches in a BLAST supported format.
      *
@@ -1908,6 +2025,7 @@ public class ResultsFrame extends javax.swing.JFrame {
     private javax.swing.JCheckBoxMenuItem reporterIonsCheckMenu;
     private javax.swing.JMenu resetAnnotationMenu;
     private javax.swing.JCheckBoxMenuItem rewindIonsDeNovoCheckBoxMenuItem;
+    private javax.swing.JMenuItem scoreHistogramsMenuItem;
     private javax.swing.JMenu settingsMenu;
     private javax.swing.JPanel spectrumAnnotationMenuPanel;
     private javax.swing.JComboBox spectrumFileComboBox;
@@ -1959,10 +2077,7 @@ public class ResultsFrame extends javax.swing.JFrame {
         if (scoreThreshold != null) {
             threshold = scoreThreshold;
         }
-        int numberOfMatches = 10;
-        if (aNumberOfMatches != null) {
-            numberOfMatches = aNumberOfMatches;
-        }
+        AssumptionFilter assumptionFilter = new AssumptionFilter(aNumberOfMatches, threshold, greaterThan);
 
         waitingHandler.setWaitingText("Importing FASTA File (Step 1 of 2). Please Wait...");
         waitingHandler.setSecondaryProgressCounterIndeterminate(false);
@@ -2039,32 +2154,15 @@ public class ResultsFrame extends javax.swing.JFrame {
                     HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptionsMap = allAssumptions.get(advocateIndex);
 
                     if (assumptionsMap != null) {
-                        ArrayList<Double> scores = new ArrayList<Double>(assumptionsMap.keySet());
-                        if (advocate.getIndex() == Advocate.pepnovo.getIndex()
-                                || advocate.getIndex() == Advocate.pNovo.getIndex()
-                                || advocate.getIndex() == Advocate.novor.getIndex()) {
-                            Collections.sort(scores, Collections.reverseOrder());
-                        } else {
-                            Collections.sort(scores);
-                        }
 
-                        for (int i = 0; i < scores.size() && i < numberOfMatches; i++) {
+                        for (double score : assumptionFilter.getBestScores(advocateIndex, assumptionsMap.keySet())) {
 
-                            double score = scores.get(i);
                             ArrayList<SpectrumIdentificationAssumption> tempAssumptions = assumptionsMap.get(score);
                             ArrayList<SpectrumIdentificationAssumption> denovoAssumptions = new ArrayList<SpectrumIdentificationAssumption>(tempAssumptions);
 
                             for (SpectrumIdentificationAssumption assumption : denovoAssumptions) {
 
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
+                                if (assumptionFilter.passesThreshold(assumption.getScore())) {
                                     if (assumption instanceof TagAssumption) {
                                         TagAssumption tagAssumption = (TagAssumption) assumption;
                                         int longestAminoAcidSequence = tagAssumption.getTag().getLongestAminoAcidSequence().length();
@@ -2107,9 +2205,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                 identification.updateAssumptions(spectrumKey, allAssumptions);
 
                 // free memory if needed
-                if (memoryUsed() > 0.8 && !objectsCache.isEmpty()) {
-                    objectsCache.reduceMemoryConsumption(0.5, null);
-                }
+                MemoryGovernor.getInstance().relievePressure();
                 waitingHandler.increaseSecondaryProgressCounter();
                 waitingHandler.setWaitingText("Mapping Tags (Step 2 of 2, Spectrum " + ++progress + " of " + total + "). Please Wait...");
 
@@ -2139,10 +2235,7 @@ public class ResultsFrame extends javax.swing.JFrame {
      * @return the share of memory being used
      */
     public double memoryUsed() {
-        long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-        long givenMemory = Runtime.getRuntime().maxMemory();
-        double ratio = usedMemory / givenMemory;
-        return ratio;
+        return MemoryGovernor.getInstance().getMemoryUsedShare();
     }
 
     /**
@@ -2326,7 +2419,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                 try {
                     switch (exportType) {
                         case tags:
-                            TextExporter.exportTags(finalFile, identification, searchParameters, progressDialog, scoreThreshold, greaterThan, numberOfMatches);
+                            TextExporter.exportTags(finalFile, identification, searchParameters, consensusScorer, progressDialog, scoreThreshold, greaterThan, numberOfMatches);
                             break;
                         case peptides:
                             TextExporter.exportPeptides(finalFile, identification, searchParameters, progressDialog, scoreThreshold, greaterThan, numberOfMatches);
@@ -2365,8 +2458,19 @@ public class ResultsFrame extends javax.swing.JFrame {
      * @return the title of the selected spectrum
      */
     public String getSelectedSpectrumTitle() {
-        int selectedRow = querySpectraTable.getSelectedRow();
-        int modelRow = querySpectraTable.convertRowIndexToModel(selectedRow);
+        return getSpectrumTitle(querySpectraTable.getSelectedRow());
+    }
+
+    /**
+     * Returns the title of the spectrum at the given row of the query spectra
+     * table.
+     *
+     * @param row the row in the query spectra table
+     *
+     * @return the title of the spectrum
+     */
+    public String getSpectrumTitle(int row) {
+        int modelRow = querySpectraTable.convertRowIndexToModel(row);
         if (orderedSpectrumTitles != null) {
             return orderedSpectrumTitles.get(modelRow);
         } else {
@@ -2375,70 +2479,383 @@ public class ResultsFrame extends javax.swing.JFrame {
     }
 
     /**
-     * Updates the assumption table based on the selected line.
+     * Updates the assumption table based on the selected line. The
+     * assumptions are loaded in the background and displayed when available.
      *
      * @param selectedPsmRow the selected PSM row
      */
-    public void updateAssumptionsTable(int selectedPsmRow) {
+    public void updateAssumptionsTable(final int selectedPsmRow) {
 
-        try {
+        if (querySpectraTable.getRowCount() > 0) {
+
+            final String psmKey = Spectrum.getSpectrumKey(getSelectedSpectrumFile(), getSelectedSpectrumTitle());
+
+            // the spectrum will be updated when the assumptions are displayed
+            spectrumWorker.invalidate(SPECTRUM_CHANNEL);
+            spectrumWorker.invalidate(PREFETCH_CHANNEL);
+
+            spectrumWorker.submit(ASSUMPTIONS_CHANNEL, new LatestRequestExecutor.Request<ArrayList<SpectrumIdentificationAssumption>>() {
+                @Override
+                protected ArrayList<SpectrumIdentificationAssumption> doInBackground() throws Exception {
+                    return getOrderedAssumptions(psmKey);
+                }
+
+                @Override
+                protected void done(ArrayList<SpectrumIdentificationAssumption> result) {
+                    displayAssumptions(result, selectedPsmRow);
+                }
+            });
+        } else {
             assumptions = new ArrayList<SpectrumIdentificationAssumption>();
+        }
+    }
 
-            if (querySpectraTable.getRowCount() > 0) {
+    /**
+     * Returns the assumptions of the given spectrum in the order of display:
+     * by algorithm and then by score.
+     *
+     * @param psmKey the key of the spectrum match
+     *
+     * @return the assumptions of the given spectrum in the order of display
+     *
+     * @throws Exception thrown whenever an error occurred while loading the
+     * assumptions from the identification
+     */
+    private ArrayList<SpectrumIdentificationAssumption> getOrderedAssumptions(String psmKey) throws Exception {
 
-                String psmKey = Spectrum.getSpectrumKey(getSelectedSpectrumFile(), getSelectedSpectrumTitle());
+        ArrayList<SpectrumIdentificationAssumption> orderedAssumptions = new ArrayList<SpectrumIdentificationAssumption>();
 
-                if (identification.matchExists(psmKey)) {
+        if (identification.matchExists(psmKey)) {
 
-                    for (Advocate advocate : DeNovoGUI.implementedAlgorithms) {
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> allAssumptions = identification.getAssumptions(psmKey);
 
-                        HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> allAssumptions = identification.getAssumptions(psmKey);
-                        HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptionsMap = allAssumptions.get(advocate.getIndex());
+            for (Advocate advocate : DeNovoGUI.implementedAlgorithms) {
 
-                        if (assumptionsMap != null) {
+                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptionsMap = allAssumptions.get(advocate.getIndex());
 
-                            ArrayList<Double> scores = new ArrayList<Double>(assumptionsMap.keySet());
-                            DeNovoGUI.sortScores(advocate, scores);
+                if (assumptionsMap != null) {
 
-                            for (Double score : scores) {
-                                for (SpectrumIdentificationAssumption assumption : assumptionsMap.get(score)) {
-                                    assumptions.add(assumption);
-                                }
-                            }
+                    ArrayList<Double> scores = new ArrayList<Double>(assumptionsMap.keySet());
+                    DeNovoGUI.sortScores(advocate, scores);
+
+                    for (Double score : scores) {
+                        for (SpectrumIdentificationAssumption assumption : assumptionsMap.get(score)) {
+                            orderedAssumptions.add(assumption);
                         }
                     }
                 }
+            }
+        }
 
-                TableModel tableModel = new AssumptionsTableModel(assumptions, searchParameters.getPtmSettings(), !fixedPtmsCheckBoxMenuItem.isSelected());
-                deNovoMatchesTable.setModel(tableModel);
+        return orderedAssumptions;
+    }
 
-                ((DefaultTableModel) deNovoMatchesTable.getModel()).fireTableDataChanged();
-                setAssumptionsTableProperties();
+    /**
+     * Displays the given assumptions in the assumptions table and updates the
+     * spectrum.
+     *
+     * @param selectedAssumptions the assumptions of the selected spectrum
+     * @param selectedPsmRow the selected PSM row
+     */
+    private void displayAssumptions(ArrayList<SpectrumIdentificationAssumption> selectedAssumptions, int selectedPsmRow) {
 
-                if (deNovoMatchesTable.getRowCount() > 0) {
-                    if (selectedPsmRow != -1 && selectedPsmRow < deNovoMatchesTable.getRowCount()) {
-                        deNovoMatchesTable.setRowSelectionInterval(selectedPsmRow, selectedPsmRow);
-                        deNovoMatchesTable.scrollRectToVisible(deNovoMatchesTable.getCellRect(selectedPsmRow, 0, false));
-                    } else {
-                        deNovoMatchesTable.setRowSelectionInterval(0, 0);
+        try {
+            assumptions = selectedAssumptions;
+
+            TableModel tableModel = new AssumptionsTableModel(assumptions, searchParameters.getPtmSettings(), !fixedPtmsCheckBoxMenuItem.isSelected());
+            deNovoMatchesTable.setModel(tableModel);
+
+            ((DefaultTableModel) deNovoMatchesTable.getModel()).fireTableDataChanged();
+            setAssumptionsTableProperties();
+
+            if (deNovoMatchesTable.getRowCount() > 0) {
+                if (selectedPsmRow != -1 && selectedPsmRow < deNovoMatchesTable.getRowCount()) {
+                    deNovoMatchesTable.setRowSelectionInterval(selectedPsmRow, selectedPsmRow);
+                    deNovoMatchesTable.scrollRectToVisible(deNovoMatchesTable.getCellRect(selectedPsmRow, 0, false));
+                } else {
+                    deNovoMatchesTable.setRowSelectionInterval(0, 0);
+                }
+            }
+
+            ((TitledBorder) deNovoMatchesPanel.getBorder()).setTitle("De Novo Matches (" + deNovoMatchesTable.getRowCount() + ")");
+            deNovoMatchesPanel.repaint();
+
+            updateSpectrum();
+            prefetchNeighborAnnotations();
+
+        } catch (Exception e) {
+            catchException(e);
+        }
+    }
+
+    /**
+     * Annotates in the background the spectra preceding and following the
+     * selected spectrum in the query spectra table so that they can be
+     * displayed directly when navigating through the table. Only the default
+     * annotation is prefetched as the annotation menus can only be read on the
+     * event dispatch thread.
+     */
+    private void prefetchNeighborAnnotations() {
+
+        spectrumWorker.invalidate(PREFETCH_CHANNEL);
+
+        int selectedRow = querySpectraTable.getSelectedRow();
+
+        if (selectedRow == -1 || identification == null || !defaultAnnotationCheckBoxMenuItem.isSelected()) {
+            return;
+        }
+
+        String spectrumFile = getSelectedSpectrumFile();
+        final ArrayList<String> spectrumKeys = new ArrayList<String>(2);
+        for (int row : new int[]{selectedRow + 1, selectedRow - 1}) {
+            if (row >= 0 && row < querySpectraTable.getRowCount()) {
+                spectrumKeys.add(Spectrum.getSpectrumKey(spectrumFile, getSpectrumTitle(row)));
+            }
+        }
+        // the settings are copied so that they are not changed on the event dispatch thread while annotating
+        final AnnotationSettings annotationSettings = annotationPreferences.clone();
+        final String settingsKey = getAnnotationSettingsKey(annotationSettings);
+
+        spectrumWorker.submit(PREFETCH_CHANNEL, new LatestRequestExecutor.Request<Object>() {
+            @Override
+            protected Object doInBackground() throws Exception {
+                Exception error = null;
+                for (String spectrumKey : spectrumKeys) {
+                    try {
+                        prefetchAnnotation(spectrumKey, annotationSettings, settingsKey);
+                    } catch (Exception e) {
+                        // try the other spectra before reporting
+                        if (error == null) {
+                            error = e;
+                        }
                     }
                 }
+                if (error != null) {
+                    throw error;
+                }
+                return null;
+            }
+
+            @Override
+            protected void done(Object result) {
+                // nothing to display
+            }
+        });
+    }
+
+    /**
+     * Annotates the first assumption of the given spectrum with the default
+     * annotation settings and stores the result in the annotation cache. To be
+     * called from the spectrum worker thread only.
+     *
+     * @param spectrumKey the key of the spectrum
+     * @param annotationSettings a copy of the annotation settings not
+     * modified by other threads
+     * @param settingsKey the key of the annotation settings
+     *
+     * @throws Exception thrown whenever an error occurred while loading or
+     * annotating the spectrum
+     */
+    private void prefetchAnnotation(String spectrumKey, AnnotationSettings annotationSettings, String settingsKey) throws Exception {
+
+        if (!spectrumFactory.spectrumLoaded(spectrumKey)) {
+            return;
+        }
+
+        // get the assumption displayed first
+        ArrayList<SpectrumIdentificationAssumption> orderedAssumptions = getOrderedAssumptions(spectrumKey);
 
-                ((TitledBorder) deNovoMatchesPanel.getBorder()).setTitle("De Novo Matches (" + deNovoMatchesTable.getRowCount() + ")");
-                deNovoMatchesPanel.repaint();
+        if (orderedAssumptions.isEmpty()) {
+            return;
+        }
+
+        SpectrumIdentificationAssumption assumption = orderedAssumptions.get(0);
+        String annotationKey = SpectrumAnnotationCache.getAnnotationKey(spectrumKey, assumption, settingsKey);
+
+        if (!annotationCache.contains(annotationKey)) {
+            MSnSpectrum spectrum = (MSnSpectrum) spectrumFactory.getSpectrum(spectrumKey);
+            SpecificAnnotationSettings specificAnnotationSettings = annotationSettings.getSpecificAnnotationPreferences(spectrumKey, assumption, SequenceMatchingPreferences.defaultStringMatching, SequenceMatchingPreferences.defaultStringMatching);
+            specificAnnotationSettings.clearNeutralLosses(); // Neutral losses are turned off by default in denovogui
+            getAnnotation(annotationKey, spectrum, assumption, annotationSettings, specificAnnotationSettings);
+        }
+    }
+
+    /**
+     * Returns the annotation of the given assumption, from the cache if
+     * available, stores it in the cache otherwise. To be called from the
+     * spectrum worker thread only.
+     *
+     * @param annotationKey the key of the annotation in the cache
+     * @param spectrum the spectrum to annotate
+     * @param assumption the assumption to annotate
+     * @param annotationSettings a copy of the annotation settings not
+     * modified by other threads
+     * @param specificAnnotationSettings the annotation settings specific to
+     * this spectrum and assumption
+     *
+     * @return the annotation of the given assumption
+     *
+     * @throws Exception thrown whenever an error occurred while annotating the
+     * spectrum
+     */
+    private ArrayList<IonMatch> getAnnotation(String annotationKey, MSnSpectrum spectrum, SpectrumIdentificationAssumption assumption,
+            AnnotationSettings annotationSettings, SpecificAnnotationSettings specificAnnotationSettings) throws Exception {
+
+        ArrayList<IonMatch> annotations = annotationCache.getAnnotation(annotationKey);
+
+        if (annotations == null) {
+            if (assumption instanceof TagAssumption) {
+                TagAssumption tagAssumption = (TagAssumption) assumption;
+                annotations = tagSpectrumAnnotator.getSpectrumAnnotation(annotationSettings, specificAnnotationSettings, spectrum, tagAssumption.getTag());
+            } else if (assumption instanceof PeptideAssumption) {
+                PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
+                annotations = peptideSpectrumAnnotator.getSpectrumAnnotation(annotationSettings, specificAnnotationSettings, spectrum, peptideAssumption.getPeptide());
+            } else {
+                throw new UnsupportedOperationException("Operation not supported for assumption of type " + assumption.getClass() + ".");
+            }
+            annotationCache.putAnnotation(annotationKey, annotations);
+        }
 
-                updateSpectrum();
+        return annotations;
+    }
+
+    /**
+     * Returns a key describing the given annotation settings and the ions
+     * currently selected in the annotation menus. To be called from the event
+     * dispatch thread only.
+     *
+     * @param annotationSettings the annotation settings used to annotate
+     *
+     * @return a key describing the annotation settings
+     */
+    private String getAnnotationSettingsKey(AnnotationSettings annotationSettings) {
+
+        StringBuilder settingsKey = new StringBuilder();
+        settingsKey.append(annotationSettings.getTiesResolution());
+        settingsKey.append('_').append(annotationSettings.getFragmentIonAccuracy());
+        settingsKey.append('_').append(annotationSettings.getAnnotationIntensityLimit());
+
+        if (defaultAnnotationCheckBoxMenuItem.isSelected()) {
+            settingsKey.append("_default");
+        } else {
+            JCheckBoxMenuItem[] ionMenus = {aIonCheckBoxMenuItem, bIonCheckBoxMenuItem, cIonCheckBoxMenuItem,
+                xIonCheckBoxMenuItem, yIonCheckBoxMenuItem, zIonCheckBoxMenuItem,
+                precursorCheckMenu, immoniumIonsCheckMenu, relatedIonsCheckMenu, reporterIonsCheckMenu, adaptCheckBoxMenuItem};
+            settingsKey.append('_');
+            for (JCheckBoxMenuItem ionMenu : ionMenus) {
+                settingsKey.append(ionMenu.isSelected() ? '1' : '0');
+            }
+            for (NeutralLoss neutralLoss : lossMenus.keySet()) {
+                if (lossMenus.get(neutralLoss).isSelected()) {
+                    settingsKey.append('_').append(neutralLoss.name);
+                }
             }
+            for (int charge : chargeMenus.keySet()) {
+                if (chargeMenus.get(charge).isSelected()) {
+                    settingsKey.append('_').append(charge);
+                }
+            }
+        }
+
+        return settingsKey.toString();
+    }
+
+    /**
+     * Update the spectrum and annotations. The annotation settings are set on
+     * the event dispatch thread, the spectrum is then loaded and annotated in
+     * the background and displayed when available.
+     */
+    public void updateSpectrum() {
 
+        int nSelected = deNovoMatchesTable.getSelectedRowCount();
+
+        if (nSelected > 2) {
+            spectrumWorker.invalidate(SPECTRUM_CHANNEL);
+            displaySpectrum(null, null, null);
+            return;
+        }
+
+        final String spectrumKey = Spectrum.getSpectrumKey(getSelectedSpectrumFile(), getSelectedSpectrumTitle());
+
+        // a new spectrum or match is displayed in full
+        displayedMzRange = null;
+
+        if (!spectrumFactory.spectrumLoaded(spectrumKey)) {
+            spectrumWorker.invalidate(SPECTRUM_CHANNEL);
+            displaySpectrum(null, null, null);
+            return;
+        }
+
+        final ArrayList<SpectrumIdentificationAssumption> selectedAssumptions = new ArrayList<SpectrumIdentificationAssumption>(nSelected);
+        final ArrayList<SpecificAnnotationSettings> selectedSettings = new ArrayList<SpecificAnnotationSettings>(nSelected);
+        final ArrayList<String> annotationKeys = new ArrayList<String>(nSelected);
+
+        try {
+            for (int i = 0; i < nSelected; i++) {
+                SpectrumIdentificationAssumption assumption = assumptions.get(deNovoMatchesTable.convertRowIndexToModel(deNovoMatchesTable.getSelectedRows()[i]));
+                specificAnnotationPreferences = annotationPreferences.getSpecificAnnotationPreferences(spectrumKey, assumption, SequenceMatchingPreferences.defaultStringMatching, SequenceMatchingPreferences.defaultStringMatching);
+                updateAnnotationPreferences();
+                selectedAssumptions.add(assumption);
+                selectedSettings.add(specificAnnotationPreferences);
+                annotationKeys.add(SpectrumAnnotationCache.getAnnotationKey(spectrumKey, assumption, getAnnotationSettingsKey(annotationPreferences)));
+            }
         } catch (Exception e) {
             catchException(e);
+            return;
         }
+
+        // the settings are copied so that they are not changed on the event dispatch thread while annotating
+        final AnnotationSettings annotationSettings = annotationPreferences.clone();
+
+        spectrumWorker.submit(SPECTRUM_CHANNEL, new LatestRequestExecutor.Request<ArrayList<ArrayList<IonMatch>>>() {
+
+            /**
+             * The spectrum loaded.
+             */
+            private MSnSpectrum spectrum;
+            /**
+             * The level of detail structure of the spectrum, null if the
+             * spectrum is displayed in full.
+             */
+            private PeakPyramid peakPyramid = null;
+
+            @Override
+            protected ArrayList<ArrayList<IonMatch>> doInBackground() throws Exception {
+                spectrum = (MSnSpectrum) spectrumFactory.getSpectrum(spectrumKey);
+                double[] mzValues = spectrum.getMzValuesAsArray();
+                if (mzValues.length > LEVEL_OF_DETAIL_THRESHOLD) {
+                    peakPyramid = new PeakPyramid(mzValues, spectrum.getIntensityValuesAsArray());
+                }
+                ArrayList<ArrayList<IonMatch>> selectedAnnotations = new ArrayList<ArrayList<IonMatch>>(selectedAssumptions.size());
+                for (int i = 0; i < selectedAssumptions.size(); i++) {
+                    selectedAnnotations.add(getAnnotation(annotationKeys.get(i), spectrum, selectedAssumptions.get(i), annotationSettings, selectedSettings.get(i)));
+                }
+                return selectedAnnotations;
+            }
+
+            @Override
+            protected void done(ArrayList<ArrayList<IonMatch>> result) {
+                // make sure that the selection did not change in the meantime
+                if (result.size() == deNovoMatchesTable.getSelectedRowCount()) {
+                    displaySpectrum(spectrum, peakPyramid, result);
+                }
+            }
+        });
     }
 
     /**
-     * Update the spectrum and annotations.
+     * Displays the given spectrum and annotations.
+     *
+     * @param currentSpectrum the spectrum to display, null if not available
+     * @param peakPyramid the level of detail structure of the spectrum, null
+     * to display all peaks
+     * @param selectedAnnotations the annotations of the selected assumptions
      */
-    public void updateSpectrum() {
+    private void displaySpectrum(MSnSpectrum currentSpectrum, PeakPyramid peakPyramid, ArrayList<ArrayList<IonMatch>> selectedAnnotations) {
+
+        displayedSpectrum = currentSpectrum;
+        displayedPeakPyramid = peakPyramid;
+        displayedAnnotations = selectedAnnotations;
 
         spectrumJPanel.removeAll();
 
@@ -2457,17 +2874,16 @@ public class ResultsFrame extends javax.swing.JFrame {
             spectrumJPanel.add(tempPanel);
         } else {
 
-            String spectrumKey = Spectrum.getSpectrumKey(getSelectedSpectrumFile(), getSelectedSpectrumTitle());
-
-            if (spectrumFactory.spectrumLoaded(spectrumKey)) {
+            if (currentSpectrum != null) {
                 try {
                     int maxPrecursorCharge = 1;
                     ArrayList<ModificationMatch> allModifications = new ArrayList<ModificationMatch>();
 
-                    MSnSpectrum currentSpectrum = (MSnSpectrum) spectrumFactory.getSpectrum(spectrumKey);
-
                     // add the data to the spectrum panel
                     Precursor precursor = currentSpectrum.getPrecursor();
+                    double[] mzAsArray = currentSpectrum.getMzValuesAsArray();
+                    int[] displayedPeaks = getDisplayedPeakIndexes(peakPyramid, selectedAnnotations);
+
                     if (deNovoMatchesTable.getSelectedRow() != -1) {
 
                         double[] intensitiesAsArray = currentSpectrum.getIntensityValuesAsArray();
@@ -2477,7 +2893,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                         }
 
                         SpectrumPanel spectrumPanel = new SpectrumPanel(
-                                currentSpectrum.getMzValuesAsArray(), intensitiesAsArray,
+                                selectPeaks(mzAsArray, displayedPeaks), selectPeaks(intensitiesAsArray, displayedPeaks),
                                 precursor.getMz(), "",
                                 "", 40, false, false, false, 2, false);
                         spectrumPanel.setBorder(null);
@@ -2492,7 +2908,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                         // add the mirrored spectrum
                         if (deNovoMatchesTable.getSelectedRowCount() == 2) {
                             spectrumPanel.addMirroredSpectrum(
-                                    currentSpectrum.getMzValuesAsArray(), currentSpectrum.getIntensityValuesNormalizedAsArray(), precursor.getMz(),
+                                    selectPeaks(mzAsArray, displayedPeaks), selectPeaks(currentSpectrum.getIntensityValuesNormalizedAsArray(), displayedPeaks), precursor.getMz(),
                                     "", "", false,
                                     Color.BLUE, Color.BLUE); // @TODO: remove hardcoded colors!
                         }
@@ -2503,18 +2919,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                         for (int i = 0; i < deNovoMatchesTable.getSelectedRowCount(); i++) {
 
                             SpectrumIdentificationAssumption assumption = assumptions.get(deNovoMatchesTable.convertRowIndexToModel(deNovoMatchesTable.getSelectedRows()[i]));
-                            specificAnnotationPreferences = annotationPreferences.getSpecificAnnotationPreferences(spectrumKey, assumption, SequenceMatchingPreferences.defaultStringMatching, SequenceMatchingPreferences.defaultStringMatching);
-                            updateAnnotationPreferences();
-                            ArrayList<IonMatch> annotations;
-                            if (assumption instanceof TagAssumption) {
-                                TagAssumption tagAssumption = (TagAssumption) assumption;
-                                annotations = tagSpectrumAnnotator.getSpectrumAnnotation(annotationPreferences, specificAnnotationPreferences, currentSpectrum, tagAssumption.getTag());
-                            } else if (assumption instanceof PeptideAssumption) {
-                                PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
-                                annotations = peptideSpectrumAnnotator.getSpectrumAnnotation(annotationPreferences, specificAnnotationPreferences, currentSpectrum, peptideAssumption.getPeptide());
-                            } else {
-                                throw new UnsupportedOperationException("Operation not supported for assumption of type " + assumption.getClass() + ".");
-                            }
+                            ArrayList<IonMatch> annotations = selectedAnnotations.get(i);
                             if (i == 0) {
                                 spectrumPanel.setAnnotations(SpectrumAnnotator.getSpectrumAnnotation(annotations));
 
@@ -2637,7 +3042,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                             }
                         }
 
-                        spectrumPanel.rescale(0.0, spectrumPanel.getMaxXAxisValue());
+                        rescaleSpectrumPanel(spectrumPanel, peakPyramid);
 
                         // update the spectrum title
                         if (deNovoMatchesTable.getSelectedRowCount() == 1) {
@@ -2669,13 +3074,16 @@ public class ResultsFrame extends javax.swing.JFrame {
                     } else {
                         // Show spectrum without identification.
                         SpectrumPanel spectrumPanel = new SpectrumPanel(
-                                currentSpectrum.getMzValuesAsArray(), currentSpectrum.getIntensityValuesAsArray(),
+                                selectPeaks(mzAsArray, displayedPeaks), selectPeaks(currentSpectrum.getIntensityValuesAsArray(), displayedPeaks),
                                 precursor.getMz(), "",
                                 "", 40, false, false, false, 2, false);
                         spectrumPanel.setDeltaMassWindow(annotationPreferences.getFragmentIonAccuracy());
                         SpectrumPanel.setKnownMassDeltas(getCurrentMassDeltas());
                         spectrumPanel.setBorder(null);
                         spectrumJPanel.add(spectrumPanel);
+                        if (peakPyramid != null) {
+                            rescaleSpectrumPanel(spectrumPanel, peakPyramid);
+                        }
                     }
 
                     updateAnnotationMenus(maxPrecursorCharge, allModifications);
@@ -2690,6 +3098,133 @@ public class ResultsFrame extends javax.swing.JFrame {
         spectrumJPanel.repaint();
     }
 
+    /**
+     * Returns the indexes of the peaks to display. For dense spectra, the most
+     * intense peak per pixel is displayed for the full m/z range and for the
+     * m/z range zoomed in, if any. The annotated peaks are always displayed.
+     *
+     * @param peakPyramid the level of detail structure of the spectrum, null
+     * to display all peaks
+     * @param selectedAnnotations the annotations of the selected assumptions,
+     * can be null
+     *
+     * @return the indexes of the peaks to display, null to display all peaks
+     */
+    private int[] getDisplayedPeakIndexes(PeakPyramid peakPyramid, ArrayList<ArrayList<IonMatch>> selectedAnnotations) {
+
+        if (peakPyramid == null) {
+            return null;
+        }
+
+        int nAnnotations = 0;
+        if (selectedAnnotations != null) {
+            for (ArrayList<IonMatch> annotations : selectedAnnotations) {
+                nAnnotations += annotations.size();
+            }
+        }
+        double[] annotatedMz = new double[nAnnotations];
+        int annotationIndex = 0;
+        if (selectedAnnotations != null) {
+            for (ArrayList<IonMatch> annotations : selectedAnnotations) {
+                for (IonMatch ionMatch : annotations) {
+                    annotatedMz[annotationIndex++] = ionMatch.peak.mz;
+                }
+            }
+        }
+
+        int nPixels = Math.max(spectrumJPanel.getWidth(), MIN_SPECTRUM_PANEL_WIDTH);
+        int[] fullRange = peakPyramid.getPeakIndexes(peakPyramid.getMinMz(), peakPyramid.getMaxMz(), nPixels, annotatedMz);
+
+        if (displayedMzRange == null) {
+            return fullRange;
+        }
+
+        // merge with the peaks of the zoomed range
+        int[] zoomedRange = peakPyramid.getPeakIndexes(displayedMzRange[0], displayedMzRange[1], nPixels, null);
+        boolean[] displayed = new boolean[peakPyramid.getNPeaks()];
+        int nDisplayed = 0;
+        for (int index : fullRange) {
+            displayed[index] = true;
+            nDisplayed++;
+        }
+        for (int index : zoomedRange) {
+            if (!displayed[index]) {
+                displayed[index] = true;
+                nDisplayed++;
+            }
+        }
+        int[] result = new int[nDisplayed];
+        int resultIndex = 0;
+        for (int i = 0; i < displayed.length; i++) {
+            if (displayed[i]) {
+                result[resultIndex++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of the peaks to display.
+     *
+     * @param values the values of all peaks
+     * @param displayedPeaks the indexes of the peaks to display, null to
+     * display all peaks
+     *
+     * @return the values of the peaks to display
+     */
+    private double[] selectPeaks(double[] values, int[] displayedPeaks) {
+        if (displayedPeaks == null) {
+            return values;
+        }
+        return PeakPyramid.select(values, displayedPeaks);
+    }
+
+    /**
+     * Rescales the given spectrum panel to the m/z range zoomed in by the
+     * user, the full range if none. For dense spectra, the panel is rebuilt
+     * with the peaks of the new range whenever the user zooms.
+     *
+     * @param spectrumPanel the spectrum panel
+     * @param peakPyramid the level of detail structure of the spectrum, null
+     * if the spectrum is displayed in full
+     */
+    private void rescaleSpectrumPanel(SpectrumPanel spectrumPanel, final PeakPyramid peakPyramid) {
+
+        rescalingSpectrum = true;
+        try {
+            if (displayedMzRange != null) {
+                spectrumPanel.rescale(displayedMzRange[0], displayedMzRange[1]);
+            } else {
+                spectrumPanel.rescale(0.0, spectrumPanel.getMaxXAxisValue());
+            }
+        } finally {
+            rescalingSpectrum = false;
+        }
+
+        if (peakPyramid != null) {
+            spectrumPanel.addSpectrumPanelListener(new SpectrumPanelListener() {
+                @Override
+                public void rescaled(RescalingEvent rescalingEvent) {
+                    if (!rescalingSpectrum && displayedPeakPyramid == peakPyramid) {
+                        if (rescalingEvent.getMinMass() <= peakPyramid.getMinMz() && rescalingEvent.getMaxMass() >= peakPyramid.getMaxMz()) {
+                            displayedMzRange = null;
+                        } else {
+                            displayedMzRange = new double[]{rescalingEvent.getMinMass(), rescalingEvent.getMaxMass()};
+                        }
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (displayedPeakPyramid == peakPyramid) {
+                                    displaySpectrum(displayedSpectrum, displayedPeakPyramid, displayedAnnotations);
+                                }
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * Loads the results of the given spectrum files and loads everything in the
      * identification.
@@ -3276,6 +3811,7 @@ public class ResultsFrame extends javax.swing.JFrame {
         // The cache used whenever the identification becomes too big
         String dbFolder = getCacheDirectory(getJarFilePath()).getAbsolutePath();
         objectsCache.setAutomatedMemoryManagement(true);
+        MemoryGovernor.getInstance().register(cacheMemoryConsumer);
         try {
             tempIdentification.establishConnection(dbFolder, true, objectsCache);
         } catch (Exception e) {
@@ -3286,224 +3822,301 @@ public class ResultsFrame extends javax.swing.JFrame {
         }
 
         numAdvocatesLoaded = 0;
+        scoreStatistics = new ScoreStatistics();
+        consensusScorer = new ConsensusScorer(searchParameters.getFragmentIonAccuracy());
         boolean pepNovoDataLoaded = false;
         boolean direcTagDataLoaded = false;
         boolean pNovoDataLoaded = false;
         boolean novorDataLoaded = false;
 
-        for (int i = 0; i < resultFiles.size(); i++) {
+        // the filter set in the main frame, null if all assumptions are imported
+        AssumptionFilter importFilter = deNovoGUI.getImportFilter();
+
+        // the results not passing the filter are removed from the files before parsing where possible
+        ResultFileFilter resultFileFilter = null;
+        File filteredFilesFolder = null;
+        if (importFilter != null) {
+            resultFileFilter = new ResultFileFilter(importFilter);
+            filteredFilesFolder = File.createTempFile("denovogui_import", "");
+            filteredFilesFolder.delete();
+            if (!filteredFilesFolder.mkdir()) {
+                filteredFilesFolder = null;
+            }
+        }
 
-            File resultFile = resultFiles.get(i);
+        // the clusters of replicate spectra, indexed by output folder
+        HashMap<File, SpectrumClusters> clustersMap = new HashMap<File, SpectrumClusters>();
 
-            // initiate the parser
-            String loadingText = "Loading Results. Loading File. Please Wait...";
-            if (resultFiles.size() > 1) {
-                loadingText += " (" + (i + 1) + "/" + resultFiles.size() + ")";
-            }
-            progressDialog.setTitle(loadingText);
+        // the threads used to process the matches of all files
+        int nThreads = ResourcePlanner.getInstance().getNCpus();
+        ExecutorService importExecutor = Executors.newFixedThreadPool(nThreads);
 
-            IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(resultFile);
+        try {
+            for (int i = 0; i < resultFiles.size(); i++) {
 
-            if (idfileReader != null) {
+                File resultFile = resultFiles.get(i);
 
-                LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(waitingHandler, searchParameters);
-                progressDialog.setPrimaryProgressCounterIndeterminate(true);
+                // initiate the parser
+                String loadingText = "Loading Results. Loading File. Please Wait...";
+                if (resultFiles.size() > 1) {
+                    loadingText += " (" + (i + 1) + "/" + resultFiles.size() + ")";
+                }
+                progressDialog.setTitle(loadingText);
+
+                // parse a copy of the file without the results not passing the import filter
+                File parsedFile = resultFile;
+                if (filteredFilesFolder != null && ResultFileFilter.isSupported(resultFile)) {
+                    parsedFile = resultFileFilter.filter(resultFile, filteredFilesFolder);
+                }
 
-                // remap the ptms and set GUI min/max values
-                for (SpectrumMatch spectrumMatch : spectrumMatches) {
+                IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(parsedFile);
 
-                    HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+                if (idfileReader != null) {
 
-                    for (int advocate : assumptionsMap.keySet()) {
+                    LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(waitingHandler, searchParameters);
+                    progressDialog.setPrimaryProgressCounterIndeterminate(true);
 
-                        if (advocate == Advocate.pepnovo.getIndex()) {
-                            pepNovoDataLoaded = true;
-                        } else if (advocate == Advocate.direcTag.getIndex()) {
-                            direcTagDataLoaded = true;
-                        } else if (advocate == Advocate.pNovo.getIndex()) {
-                            pNovoDataLoaded = true;
-                        } else if (advocate == Advocate.novor.getIndex()) {
-                            novorDataLoaded = true;
+                    // filter the assumptions, remap the ptms and set GUI min/max values
+                    Iterator<SpectrumMatch> matchIterator = spectrumMatches.iterator();
+                    while (matchIterator.hasNext()) {
+
+                        SpectrumMatch spectrumMatch = matchIterator.next();
+                        HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+
+                        // only keep the assumptions passing the import filter
+                        if (importFilter != null) {
+                            importFilter.filter(assumptionsMap);
+                            if (assumptionsMap.isEmpty()) {
+                                matchIterator.remove();
+                                continue;
+                            }
                         }
 
-                        HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> tempAssumptions = assumptionsMap.get(advocate);
+                        for (int advocate : assumptionsMap.keySet()) {
 
-                        for (double score : tempAssumptions.keySet()) {
-                            for (SpectrumIdentificationAssumption assumption : tempAssumptions.get(score)) {
+                            if (advocate == Advocate.pepnovo.getIndex()) {
+                                pepNovoDataLoaded = true;
+                            } else if (advocate == Advocate.direcTag.getIndex()) {
+                                direcTagDataLoaded = true;
+                            } else if (advocate == Advocate.pNovo.getIndex()) {
+                                pNovoDataLoaded = true;
+                            } else if (advocate == Advocate.novor.getIndex()) {
+                                novorDataLoaded = true;
+                            }
 
-                                if (assumption instanceof TagAssumption) {
+                            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> tempAssumptions = assumptionsMap.get(advocate);
 
-                                    TagAssumption tagAssumption = (TagAssumption) assumption;
-                                    Tag tag = tagAssumption.getTag();
-
-                                    // add the fixed PTMs
-                                    ptmFactory.checkFixedModifications(searchParameters.getPtmSettings(), tag, deNovoGUI.getSequenceMatchingPreferences());
-
-                                    // rename the variable modifications
-                                    for (TagComponent tagComponent : tag.getContent()) {
-                                        if (tagComponent instanceof AminoAcidPattern) {
-
-                                            AminoAcidPattern aminoAcidPattern = (AminoAcidPattern) tagComponent;
-
-                                            for (int aa : aminoAcidPattern.getModificationIndexes()) {
-                                                for (ModificationMatch modificationMatch : aminoAcidPattern.getModificationsAt(aa)) {
-                                                    if (modificationMatch.isVariable()) {
-                                                        if (advocate == Advocate.pepnovo.getIndex()) {
-                                                            String pepnovoPtmName = modificationMatch.getTheoreticPtm();
-                                                            PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
-                                                            String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
-                                                            if (utilitiesPtmName == null) {
-                                                                throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
-                                                            }
-                                                            modificationMatch.setTheoreticPtm(utilitiesPtmName);
-                                                        } else if (advocate == Advocate.direcTag.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.pNovo.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.novor.getIndex()) {
-                                                            // already mapped
-                                                        } else {
-                                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                                            if (notImplemented == null) {
-                                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                            for (double score : tempAssumptions.keySet()) {
+                                for (SpectrumIdentificationAssumption assumption : tempAssumptions.get(score)) {
+
+                                    if (assumption instanceof TagAssumption) {
+
+                                        TagAssumption tagAssumption = (TagAssumption) assumption;
+                                        Tag tag = tagAssumption.getTag();
+
+                                        // add the fixed PTMs
+                                        ptmFactory.checkFixedModifications(searchParameters.getPtmSettings(), tag, deNovoGUI.getSequenceMatchingPreferences());
+
+                                        // rename the variable modifications
+                                        for (TagComponent tagComponent : tag.getContent()) {
+                                            if (tagComponent instanceof AminoAcidPattern) {
+
+                                                AminoAcidPattern aminoAcidPattern = (AminoAcidPattern) tagComponent;
+
+                                                for (int aa : aminoAcidPattern.getModificationIndexes()) {
+                                                    for (ModificationMatch modificationMatch : aminoAcidPattern.getModificationsAt(aa)) {
+                                                        if (modificationMatch.isVariable()) {
+                                                            if (advocate == Advocate.pepnovo.getIndex()) {
+                                                                String pepnovoPtmName = modificationMatch.getTheoreticPtm();
+                                                                PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
+                                                                String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
+                                                                if (utilitiesPtmName == null) {
+                                                                    throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
+                                                                }
+                                                                modificationMatch.setTheoreticPtm(utilitiesPtmName);
+                                                            } else if (advocate == Advocate.direcTag.getIndex()) {
+                                                                // already mapped
+                                                            } else if (advocate == Advocate.pNovo.getIndex()) {
+                                                                // already mapped
+                                                            } else if (advocate == Advocate.novor.getIndex()) {
+                                                                // already mapped
+                                                            } else {
+                                                                Advocate notImplemented = Advocate.getAdvocate(advocate);
+                                                                if (notImplemented == null) {
+                                                                    throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                                                                }
+                                                                throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
                                                             }
-                                                            throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
                                                         }
                                                     }
                                                 }
-                                            }
-                                        } else if (tagComponent instanceof AminoAcidSequence) {
-
-                                            AminoAcidSequence aminoAcidSequence = (AminoAcidSequence) tagComponent;
-
-                                            for (int aa : aminoAcidSequence.getModificationIndexes()) {
-                                                for (ModificationMatch modificationMatch : aminoAcidSequence.getModificationsAt(aa)) {
-                                                    if (modificationMatch.isVariable()) {
-                                                        if (advocate == Advocate.pepnovo.getIndex()) {
-                                                            String pepnovoPtmName = modificationMatch.getTheoreticPtm();
-                                                            PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
-                                                            String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
-                                                            if (utilitiesPtmName == null) {
-                                                                throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
-                                                            }
-                                                            modificationMatch.setTheoreticPtm(utilitiesPtmName);
-                                                        } else if (advocate == Advocate.direcTag.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.pNovo.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.novor.getIndex()) {
-                                                            // already mapped
-                                                        } else {
-                                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                                            if (notImplemented == null) {
-                                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                                            } else if (tagComponent instanceof AminoAcidSequence) {
+
+                                                AminoAcidSequence aminoAcidSequence = (AminoAcidSequence) tagComponent;
+
+                                                for (int aa : aminoAcidSequence.getModificationIndexes()) {
+                                                    for (ModificationMatch modificationMatch : aminoAcidSequence.getModificationsAt(aa)) {
+                                                        if (modificationMatch.isVariable()) {
+                                                            if (advocate == Advocate.pepnovo.getIndex()) {
+                                                                String pepnovoPtmName = modificationMatch.getTheoreticPtm();
+                                                                PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
+                                                                String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
+                                                                if (utilitiesPtmName == null) {
+                                                                    throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
+                                                                }
+                                                                modificationMatch.setTheoreticPtm(utilitiesPtmName);
+                                                            } else if (advocate == Advocate.direcTag.getIndex()) {
+                                                                // already mapped
+                                                            } else if (advocate == Advocate.pNovo.getIndex()) {
+                                                                // already mapped
+                                                            } else if (advocate == Advocate.novor.getIndex()) {
+                                                                // already mapped
+                                                            } else {
+                                                                Advocate notImplemented = Advocate.getAdvocate(advocate);
+                                                                if (notImplemented == null) {
+                                                                    throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                                                                }
+                                                                throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
                                                             }
-                                                            throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
                                                         }
                                                     }
                                                 }
+                                            } else if (tagComponent instanceof MassGap) {
+                                                // Nothing to do here
+                                            } else {
+                                                throw new UnsupportedOperationException("Annotation not supported for the tag component " + tagComponent.getClass() + ".");
                                             }
-                                        } else if (tagComponent instanceof MassGap) {
-                                            // Nothing to do here
-                                        } else {
-                                            throw new UnsupportedOperationException("Annotation not supported for the tag component " + tagComponent.getClass() + ".");
                                         }
-                                    }
 
-                                    // Set GUI min/max values
-                                    double mz = tagAssumption.getTheoreticMz();
-                                    if (mz > maxIdentificationMz) {
-                                        maxIdentificationMz = mz;
-                                    }
-                                    if (tagAssumption.getIdentificationCharge().value > maxIdentificationCharge) {
-                                        maxIdentificationCharge = tagAssumption.getIdentificationCharge().value;
-                                    }
-                                    double nGap = tag.getNTerminalGap();
-                                    if (nGap > maxNGap) {
-                                        maxNGap = nGap;
-                                    }
-                                    double cGap = tag.getCTerminalGap();
-                                    if (cGap > maxCGap) {
-                                        maxCGap = cGap;
-                                    }
-
-                                    if (advocate == Advocate.pepnovo.getIndex()) {
-                                        PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
-                                        pepnovoAssumptionDetails = (PepnovoAssumptionDetails) tagAssumption.getUrParam(pepnovoAssumptionDetails);
-                                        double rankScore = pepnovoAssumptionDetails.getRankScore();
-                                        if (rankScore < minRankScore) {
-                                            minRankScore = rankScore;
-                                        }
-                                        if (rankScore > maxRankScore) {
-                                            maxRankScore = rankScore;
-                                        }
-                                        if (score > maxPepnovoScore) {
-                                            maxPepnovoScore = score;
+                                        // Set GUI min/max values
+                                        double mz = tagAssumption.getTheoreticMz();
+                                        if (mz > maxIdentificationMz) {
+                                            maxIdentificationMz = mz;
                                         }
-                                    } else if (advocate == Advocate.direcTag.getIndex()) {
-                                        if (score > maxDirectTagEvalue) {
-                                            maxDirectTagEvalue = score;
+                                        if (tagAssumption.getIdentificationCharge().value > maxIdentificationCharge) {
+                                            maxIdentificationCharge = tagAssumption.getIdentificationCharge().value;
                                         }
-                                        if (score < minDirectTagEvalue) {
-                                            minDirectTagEvalue = score;
+                                        double nGap = tag.getNTerminalGap();
+                                        if (nGap > maxNGap) {
+                                            maxNGap = nGap;
                                         }
-                                    } else if (advocate == Advocate.pNovo.getIndex()) {
-                                        if (score > maxPNovoScore) {
-                                            maxPNovoScore = score;
+                                        double cGap = tag.getCTerminalGap();
+                                        if (cGap > maxCGap) {
+                                            maxCGap = cGap;
                                         }
-                                        if (score < minPNovoScore) {
-                                            minPNovoScore = score;
-                                        }
-                                    } else if (advocate == Advocate.novor.getIndex()) {
-                                        if (score > maxNovorScore) {
-                                            maxNovorScore = score;
-                                        }
-                                        if (score < minNovorScore) {
-                                            minNovorScore = score;
-                                        }
-                                    } else {
-                                        Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                        if (notImplemented == null) {
-                                            throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
-                                        }
-                                        throw new IllegalArgumentException("Unsupported advocate " + Advocate.getAdvocate(advocate).getName() + ".");
-                                    }
-                                } else if (assumption instanceof PeptideAssumption) {
-                                    //@TODO: implement other algorithms?
-                                    if (advocate == Advocate.novor.getIndex()) {
-                                        if (score > maxNovorScore) {
-                                            maxNovorScore = score;
+
+                                        if (advocate == Advocate.pepnovo.getIndex()) {
+                                            PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
+                                            pepnovoAssumptionDetails = (PepnovoAssumptionDetails) tagAssumption.getUrParam(pepnovoAssumptionDetails);
+                                            double rankScore = pepnovoAssumptionDetails.getRankScore();
+                                            if (rankScore < minRankScore) {
+                                                minRankScore = rankScore;
+                                            }
+                                            if (rankScore > maxRankScore) {
+                                                maxRankScore = rankScore;
+                                            }
+                                            if (score > maxPepnovoScore) {
+                                                maxPepnovoScore = score;
+                                            }
+                                        } else if (advocate == Advocate.direcTag.getIndex()) {
+                                            if (score > maxDirectTagEvalue) {
+                                                maxDirectTagEvalue = score;
+                                            }
+                                            if (score < minDirectTagEvalue) {
+                                                minDirectTagEvalue = score;
+                                            }
+                                        } else if (advocate == Advocate.pNovo.getIndex()) {
+                                            if (score > maxPNovoScore) {
+                                                maxPNovoScore = score;
+                                            }
+                                            if (score < minPNovoScore) {
+                                                minPNovoScore = score;
+                                            }
+                                        } else if (advocate == Advocate.novor.getIndex()) {
+                                            if (score > maxNovorScore) {
+                                                maxNovorScore = score;
+                                            }
+                                            if (score < minNovorScore) {
+                                                minNovorScore = score;
+                                            }
+                                        } else {
+                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
+                                            if (notImplemented == null) {
+                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                                            }
+                                            throw new IllegalArgumentException("Unsupported advocate " + Advocate.getAdvocate(advocate).getName() + ".");
                                         }
-                                        if (score < minNovorScore) {
-                                            minNovorScore = score;
+                                    } else if (assumption instanceof PeptideAssumption) {
+                                        //@TODO: implement other algorithms?
+                                        if (advocate == Advocate.novor.getIndex()) {
+                                            if (score > maxNovorScore) {
+                                                maxNovorScore = score;
+                                            }
+                                            if (score < minNovorScore) {
+                                                minNovorScore = score;
+                                            }
+                                        } else {
+                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
+                                            if (notImplemented == null) {
+                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                                            }
+                                            throw new IllegalArgumentException("Unsupported advocate " + Advocate.getAdvocate(advocate).getName() + ".");
                                         }
                                     } else {
-                                        Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                        if (notImplemented == null) {
-                                            throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
-                                        }
-                                        throw new IllegalArgumentException("Unsupported advocate " + Advocate.getAdvocate(advocate).getName() + ".");
+                                        throw new UnsupportedOperationException("Operation not supported for assumption of type " + assumption.getClass() + ".");
                                     }
-                                } else {
-                                    throw new UnsupportedOperationException("Operation not supported for assumption of type " + assumption.getClass() + ".");
                                 }
                             }
                         }
                     }
-                }
 
-                // put the matches in the identification object
-                tempIdentification.addSpectrumMatches(spectrumMatches);
+                    // gather the score statistics for the QC plots
+                    scoreStatistics.addSpectrumMatches(spectrumMatches, importExecutor, nThreads);
 
-                idfileReader.close();
+                    // give the results of the representative spectra to the other spectra of their cluster
+                    File outputFolder = resultFile.getAbsoluteFile().getParentFile();
+                    if (!clustersMap.containsKey(outputFolder)) {
+                        clustersMap.put(outputFolder, SpectrumClusters.read(outputFolder));
+                    }
+                    SpectrumClusters spectrumClusters = clustersMap.get(outputFolder);
+                    if (spectrumClusters != null) {
+                        spectrumClusters.propagate(spectrumMatches);
+                    }
 
-                loadingText = "Loading Results. Loading Matches. Please Wait...";
-                if (resultFiles.size() > 1) {
-                    loadingText += " (" + (i + 1) + "/" + resultFiles.size() + ")";
+                    // combine the results of the different advocates
+                    consensusScorer.addSpectrumMatches(spectrumMatches, importExecutor, nThreads);
+
+                    // put the matches in the identification object
+                    tempIdentification.addSpectrumMatches(spectrumMatches);
+
+                    idfileReader.close();
+
+                    if (parsedFile != resultFile) {
+                        parsedFile.delete();
+                    }
+
+                    // free memory if needed before parsing the next file
+                    MemoryGovernor.getInstance().relievePressure();
+
+                    loadingText = "Loading Results. Loading Matches. Please Wait...";
+                    if (resultFiles.size() > 1) {
+                        loadingText += " (" + (i + 1) + "/" + resultFiles.size() + ")";
+                    }
                 }
-            }
 
-            progressDialog.setTitle(loadingText);
+                progressDialog.setTitle(loadingText);
+            }
+        } finally {
+            importExecutor.shutdown();
+            if (filteredFilesFolder != null) {
+                File[] filteredFiles = filteredFilesFolder.listFiles();
+                if (filteredFiles != null) {
+                    for (File filteredFile : filteredFiles) {
+                        filteredFile.delete();
+                    }
+                }
+                filteredFilesFolder.delete();
+            }
         }
 
         int numberOfAdvocateLoaded = 0;
@@ -3525,6 +4138,25 @@ public class ResultsFrame extends javax.swing.JFrame {
         return tempIdentification;
     }
 
+    /**
+     * Returns the statistics on the scores of the imported results.
+     *
+     * @return the statistics on the scores of the imported results
+     */
+    public ScoreStatistics getScoreStatistics() {
+        return scoreStatistics;
+    }
+
+    /**
+     * Returns the consensus of the advocates for every spectrum.
+     *
+     * @return the consensus of the advocates for every spectrum, null if no
+     * results were imported
+     */
+    public ConsensusScorer getConsensusScorer() {
+        return consensusScorer;
+    }
+
     /**
      * Close the DB connection and empty the temp folder.
      */
@@ -3553,7 +4185,12 @@ public class ResultsFrame extends javax.swing.JFrame {
 //            SwingUtilities.invokeLater(new Runnable() {
 //                @Override
 //                public void run() {
+            spectrumWorker.shutdown();
+            MemoryGovernor.getInstance().unregister(annotationCache);
+            annotationCache.clear();
+
             try {
+                MemoryGovernor.getInstance().unregister(cacheMemoryConsumer);
                 identification.close();
                 DerbyUtil.closeConnection();
                 File matchFolder = getCacheDirectory(getJarFilePath());
@@ -3624,6 +4261,7 @@ public class ResultsFrame extends javax.swing.JFrame {
      */
     public void setAnnotationPreferences(AnnotationSettings annotationPreferences) {
         this.annotationPreferences = annotationPreferences;
+        annotationCache.clear();
     }
 
     /**
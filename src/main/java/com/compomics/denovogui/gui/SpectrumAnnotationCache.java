@@ -0,0 +1,150 @@
+package com.compomics.denovogui.gui;
+
+import com.compomics.denovogui.util.MemoryConsumer;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.matches.IonMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the spectrum annotations displayed in the
+ * spectrum viewer. The annotations are indexed by spectrum, assumption and
+ * annotation settings so that browsing back and forth through the spectra does
+ * not require annotating the same spectrum again.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumAnnotationCache implements MemoryConsumer {
+
+    /**
+     * The default maximal number of annotations kept in cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 200;
+    /**
+     * The maximal number of annotations kept in cache.
+     */
+    private final int cacheSize;
+    /**
+     * The cached annotations, in access order.
+     */
+    private final LinkedHashMap<String, ArrayList<IonMatch>> annotations;
+
+    /**
+     * Constructor using the default cache size.
+     */
+    public SpectrumAnnotationCache() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheSize the maximal number of annotations kept in cache
+     */
+    public SpectrumAnnotationCache(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+        this.cacheSize = cacheSize;
+        annotations = new LinkedHashMap<String, ArrayList<IonMatch>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArrayList<IonMatch>> eldest) {
+                return size() > SpectrumAnnotationCache.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the key of an annotation in the cache.
+     *
+     * @param spectrumKey the key of the spectrum
+     * @param assumption the annotated assumption
+     * @param settingsKey a key describing the annotation settings
+     *
+     * @return the key of the annotation in the cache
+     */
+    public static String getAnnotationKey(String spectrumKey, SpectrumIdentificationAssumption assumption, String settingsKey) {
+
+        StringBuilder key = new StringBuilder();
+        key.append(spectrumKey).append('|');
+        key.append(assumption.getAdvocate()).append('_');
+        key.append(assumption.getRank()).append('_');
+        key.append(assumption.getIdentificationCharge().value).append('_');
+        key.append(assumption.getScore()).append('_');
+
+        if (assumption instanceof TagAssumption) {
+            TagAssumption tagAssumption = (TagAssumption) assumption;
+            key.append(tagAssumption.getTag().asSequence()).append('_');
+            key.append(tagAssumption.getTag().getMass());
+        } else if (assumption instanceof PeptideAssumption) {
+            PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
+            key.append(peptideAssumption.getPeptide().getSequence()).append('_');
+            key.append(peptideAssumption.getPeptide().getMass());
+        } else {
+            throw new UnsupportedOperationException("Operation not supported for assumption of type " + assumption.getClass() + ".");
+        }
+
+        key.append('|').append(settingsKey);
+        return key.toString();
+    }
+
+    /**
+     * Returns the annotation stored under the given key, null if not in cache.
+     *
+     * @param annotationKey the key of the annotation
+     *
+     * @return the annotation, null if not in cache
+     */
+    public synchronized ArrayList<IonMatch> getAnnotation(String annotationKey) {
+        return annotations.get(annotationKey);
+    }
+
+    /**
+     * Indicates whether the annotation of the given key is in cache. Does not
+     * change the access order.
+     *
+     * @param annotationKey the key of the annotation
+     *
+     * @return true if the annotation is in cache
+     */
+    public synchronized boolean contains(String annotationKey) {
+        return annotations.containsKey(annotationKey);
+    }
+
+    /**
+     * Stores an annotation in the cache.
+     *
+     * @param annotationKey the key of the annotation
+     * @param annotation the annotation
+     */
+    public synchronized void putAnnotation(String annotationKey, ArrayList<IonMatch> annotation) {
+        annotations.put(annotationKey, annotation);
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public synchronized void clear() {
+        annotations.clear();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return annotations.isEmpty();
+    }
+
+    @Override
+    public synchronized void reduceMemoryConsumption(double share) {
+        int toRemove = (int) Math.ceil(share * annotations.size());
+        Iterator<String> keyIterator = annotations.keySet().iterator();
+        for (int i = 0; i < toRemove && keyIterator.hasNext(); i++) {
+            keyIterator.next();
+            keyIterator.remove();
+        }
+    }
+}
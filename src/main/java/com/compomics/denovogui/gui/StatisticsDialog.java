@@ -0,0 +1,55 @@
+package com.compomics.denovogui.gui;
+
+import com.compomics.denovogui.gui.panels.StatisticsPanel;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.JDialog;
+
+/**
+ * A non modal dialog displaying the charts of a statistics panel.
+ *
+ * @author Harald Barsnes
+ */
+public class StatisticsDialog extends JDialog {
+
+    /**
+     * The statistics panel displayed.
+     */
+    private final StatisticsPanel statisticsPanel;
+
+    /**
+     * Creates and shows a new StatisticsDialog. The live updates of the panel
+     * are stopped when the dialog is closed.
+     *
+     * @param owner the owner of the dialog
+     * @param title the title of the dialog
+     * @param statisticsPanel the statistics panel to display
+     */
+    public StatisticsDialog(Window owner, String title, StatisticsPanel statisticsPanel) {
+        super(owner, title, ModalityType.MODELESS);
+        this.statisticsPanel = statisticsPanel;
+        setIconImage(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui.png")));
+        setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                StatisticsDialog.this.statisticsPanel.setLiveStatistics(null);
+            }
+        });
+        getContentPane().add(statisticsPanel);
+        setSize(1000, 650);
+        setLocationRelativeTo(owner);
+        setVisible(true);
+    }
+
+    /**
+     * Returns the statistics panel displayed.
+     *
+     * @return the statistics panel displayed
+     */
+    public StatisticsPanel getStatisticsPanel() {
+        return statisticsPanel;
+    }
+}
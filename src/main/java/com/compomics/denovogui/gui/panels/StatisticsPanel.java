@@ -1,6 +1,17 @@
 package com.compomics.denovogui.gui.panels;
 
 import com.compomics.denovogui.gui.DeNovoGUI;
+import com.compomics.denovogui.gui.qc.DistributionHistogram;
+import com.compomics.denovogui.gui.qc.LiveStatistics;
+import com.compomics.denovogui.gui.qc.QuantileSketch;
+import com.compomics.denovogui.gui.qc.ScoreHistogram;
+import com.compomics.denovogui.gui.qc.ScoreStatistics;
+import com.compomics.util.experiment.identification.Advocate;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.BorderFactory;
+import javax.swing.Timer;
+import org.jfree.chart.ChartPanel;
 
 /**
  *
@@ -13,6 +24,19 @@ public class StatisticsPanel extends javax.swing.JPanel {
      * A references to the main frame.
      */
     private DeNovoGUI deNovoGUI;
+    /**
+     * The interval between two updates of the live statistics in
+     * milliseconds.
+     */
+    private static final int LIVE_UPDATE_INTERVAL = 2000;
+    /**
+     * The live statistics displayed, null if none.
+     */
+    private LiveStatistics liveStatistics = null;
+    /**
+     * The timer updating the live statistics.
+     */
+    private Timer liveUpdateTimer = null;
 
     /**
      * Creates a new StatisticsPanel.
@@ -24,6 +48,89 @@ public class StatisticsPanel extends javax.swing.JPanel {
         this.deNovoGUI = deNovoGUI;
     }
 
+    /**
+     * Displays the score histogram of every advocate from the statistics
+     * gathered during the import of the results.
+     *
+     * @param scoreStatistics the score statistics
+     */
+    public void setScoreStatistics(ScoreStatistics scoreStatistics) {
+
+        setLiveStatistics(null);
+
+        deNovoHistogramPlotPanel.removeAll();
+        String title = "De Novo Score Histogram";
+        for (int advocateIndex : scoreStatistics.getAdvocates()) {
+            Advocate advocate = Advocate.getAdvocate(advocateIndex);
+            deNovoHistogramPlotPanel.add(new ChartPanel(new ScoreHistogram(scoreStatistics, advocate).getChart()));
+            QuantileSketch scoreSketch = scoreStatistics.getQuantileSketch(advocateIndex);
+            if (scoreSketch != null && scoreSketch.getCount() > 0) {
+                title += " - " + advocate.getName() + ": " + scoreSketch.getCount() + " spectra, median best score " + String.format("%.2f", scoreSketch.getQuantile(0.5));
+            }
+        }
+        deNovoHistogramPanel.setBorder(BorderFactory.createTitledBorder(title));
+
+        deNovoHistogramPlotPanel.revalidate();
+        deNovoHistogramPlotPanel.repaint();
+    }
+
+    /**
+     * Displays live statistics, updated periodically until the statistics are
+     * set to null.
+     *
+     * @param liveStatistics the live statistics to display, null to stop the
+     * updates after a last update
+     */
+    public void setLiveStatistics(LiveStatistics liveStatistics) {
+
+        if (liveUpdateTimer != null) {
+            liveUpdateTimer.stop();
+            liveUpdateTimer = null;
+            updateLiveStatistics();
+        }
+
+        this.liveStatistics = liveStatistics;
+
+        if (liveStatistics != null) {
+            liveUpdateTimer = new Timer(LIVE_UPDATE_INTERVAL, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    updateLiveStatistics();
+                }
+            });
+            liveUpdateTimer.start();
+            updateLiveStatistics();
+        }
+    }
+
+    /**
+     * Updates the plots with the current state of the live statistics.
+     */
+    private void updateLiveStatistics() {
+
+        if (liveStatistics == null) {
+            return;
+        }
+
+        // plot snapshots of the statistics, they are updated by another thread
+        ScoreStatistics scoreStatistics = new ScoreStatistics();
+        scoreStatistics.merge(liveStatistics.getScoreStatistics());
+
+        deNovoHistogramPlotPanel.removeAll();
+        deNovoHistogramPlotPanel.add(new ChartPanel(new ScoreHistogram(scoreStatistics, null).getChart()));
+        deNovoHistogramPlotPanel.add(new ChartPanel(new DistributionHistogram(liveStatistics.getLengthHistograms(), "Sequence Length Histogram", "Length").getChart()));
+        deNovoHistogramPlotPanel.add(new ChartPanel(new DistributionHistogram(liveStatistics.getGapHistograms(), "Mass Gap Histogram", "Mass Gap (Da)").getChart()));
+
+        String title = "De Novo Score Histogram";
+        for (int advocateIndex : liveStatistics.getAdvocates()) {
+            title += " - " + liveStatistics.getSummary(advocateIndex);
+        }
+        deNovoHistogramPanel.setBorder(BorderFactory.createTitledBorder(title));
+
+        deNovoHistogramPlotPanel.revalidate();
+        deNovoHistogramPlotPanel.repaint();
+    }
+
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
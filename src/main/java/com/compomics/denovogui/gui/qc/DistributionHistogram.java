@@ -0,0 +1,103 @@
+package com.compomics.denovogui.gui.qc;
+
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.Identification;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYBarRenderer;
+import org.jfree.data.xy.XYIntervalSeries;
+import org.jfree.data.xy.XYIntervalSeriesCollection;
+
+/**
+ * <p>
+ * Class to plot the histograms of a value for every advocate, e.g. the
+ * length of the sequences or the mass gaps.</p>
+ *
+ * @author Thilo Muth
+ * @author Marc Vaudel
+ */
+public class DistributionHistogram extends Chart {
+
+    /**
+     * The histogram of every advocate.
+     */
+    private HashMap<Integer, MergeableHistogram> histograms;
+    /**
+     * The title of the chart.
+     */
+    private String title;
+    /**
+     * The label of the x axis.
+     */
+    private String xAxisLabel;
+
+    /**
+     * Constructor.
+     *
+     * @param histograms the histogram of every advocate
+     * @param title the title of the chart
+     * @param xAxisLabel the label of the x axis
+     */
+    public DistributionHistogram(HashMap<Integer, MergeableHistogram> histograms, String title, String xAxisLabel) {
+        super(null);
+        this.histograms = histograms;
+        this.title = title;
+        this.xAxisLabel = xAxisLabel;
+        setChart();
+    }
+
+    @Override
+    protected void process(Identification identification) {
+        // the histograms are given to the constructor
+    }
+
+    @Override
+    protected void setChart() {
+
+        XYIntervalSeriesCollection dataset = new XYIntervalSeriesCollection();
+        ArrayList<Integer> advocates = new ArrayList<Integer>(histograms.keySet());
+        Collections.sort(advocates);
+
+        for (int advocateIndex : advocates) {
+            MergeableHistogram histogram = histograms.get(advocateIndex);
+            XYIntervalSeries series = new XYIntervalSeries(Advocate.getAdvocate(advocateIndex).getName());
+            for (int bin = 0; bin < histogram.getNBins(); bin++) {
+                long binCount = histogram.getBinCount(bin);
+                if (binCount > 0) {
+                    double binStart = histogram.getBinStart(bin);
+                    double binEnd = binStart + histogram.getBinWidth();
+                    series.add((binStart + binEnd) / 2, binStart, binEnd, binCount, binCount, binCount);
+                }
+            }
+            dataset.addSeries(series);
+        }
+
+        chart = ChartFactory.createHistogram(getChartTitle(),
+                xAxisLabel,
+                "Frequency",
+                dataset,
+                PlotOrientation.VERTICAL,
+                true,
+                true,
+                false);
+
+        XYPlot plot = (XYPlot) chart.getPlot();
+        plot.setBackgroundAlpha(0f);
+        plot.setDomainGridlinesVisible(false);
+        plot.setRangeGridlinesVisible(false);
+        plot.setOutlineVisible(false);
+
+        XYBarRenderer renderer = new XYBarRenderer();
+        renderer.setShadowVisible(false);
+        plot.setRenderer(renderer);
+    }
+
+    @Override
+    public String getChartTitle() {
+        return title;
+    }
+}
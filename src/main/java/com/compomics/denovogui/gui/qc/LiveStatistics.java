@@ -0,0 +1,258 @@
+package com.compomics.denovogui.gui.qc;
+
+import com.compomics.util.experiment.identification.Advocate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Statistics on the results of the advocates updated while the sequencing is
+ * running: distribution of the best score, of the length of the best sequence
+ * or tag, of the mass gaps at its termini, and number of spectra processed per
+ * second.
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class LiveStatistics {
+
+    /**
+     * The statistics on the best score per spectrum.
+     */
+    private final ScoreStatistics scoreStatistics = new ScoreStatistics();
+    /**
+     * The histogram of the length of the best sequence of every advocate.
+     */
+    private final HashMap<Integer, MergeableHistogram> lengthHistograms = new HashMap<Integer, MergeableHistogram>();
+    /**
+     * The histogram of the terminal mass gaps of the best sequence of every
+     * advocate.
+     */
+    private final HashMap<Integer, MergeableHistogram> gapHistograms = new HashMap<Integer, MergeableHistogram>();
+    /**
+     * The number of spectra processed by every advocate.
+     */
+    private final HashMap<Integer, Long> nSpectra = new HashMap<Integer, Long>();
+    /**
+     * The number of result files of every advocate currently written.
+     */
+    private final HashMap<Integer, Integer> nActiveFiles = new HashMap<Integer, Integer>();
+    /**
+     * The time at which the current result files of every advocate started to
+     * be written.
+     */
+    private final HashMap<Integer, Long> activeSince = new HashMap<Integer, Long>();
+    /**
+     * The time spent writing result files before the current ones for every
+     * advocate, in milliseconds.
+     */
+    private final HashMap<Integer, Long> elapsedTime = new HashMap<Integer, Long>();
+
+    /**
+     * Constructor.
+     */
+    public LiveStatistics() {
+    }
+
+    /**
+     * Indicates that a result file of the given advocate started to be
+     * written. The time between the start and the end of the writing of
+     * result files is used to estimate the throughput.
+     *
+     * @param advocateIndex the index of the advocate
+     */
+    public synchronized void startFile(int advocateIndex) {
+        Integer nFiles = nActiveFiles.get(advocateIndex);
+        if (nFiles == null || nFiles == 0) {
+            nActiveFiles.put(advocateIndex, 1);
+            activeSince.put(advocateIndex, System.currentTimeMillis());
+        } else {
+            nActiveFiles.put(advocateIndex, nFiles + 1);
+        }
+    }
+
+    /**
+     * Indicates that a result file of the given advocate is completed.
+     *
+     * @param advocateIndex the index of the advocate
+     */
+    public synchronized void endFile(int advocateIndex) {
+        Integer nFiles = nActiveFiles.get(advocateIndex);
+        if (nFiles == null || nFiles == 0) {
+            return;
+        }
+        if (nFiles == 1) {
+            Long elapsed = elapsedTime.get(advocateIndex);
+            elapsed = elapsed == null ? 0 : elapsed;
+            elapsedTime.put(advocateIndex, elapsed + System.currentTimeMillis() - activeSince.get(advocateIndex));
+        }
+        nActiveFiles.put(advocateIndex, nFiles - 1);
+    }
+
+    /**
+     * Adds a spectrum processed by the given advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     */
+    public synchronized void addSpectrum(int advocateIndex) {
+        Long count = nSpectra.get(advocateIndex);
+        nSpectra.put(advocateIndex, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Adds the best result of a spectrum processed by the given advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     * @param score the score
+     * @param length the number of amino acids of the sequence or tag
+     * @param nTermGap the mass gap at the N-terminus, NaN if not available
+     * @param cTermGap the mass gap at the C-terminus, NaN if not available
+     */
+    public synchronized void addResult(int advocateIndex, double score, int length, double nTermGap, double cTermGap) {
+
+        scoreStatistics.addScore(advocateIndex, score);
+
+        MergeableHistogram lengthHistogram = lengthHistograms.get(advocateIndex);
+        if (lengthHistogram == null) {
+            lengthHistogram = new MergeableHistogram();
+            lengthHistograms.put(advocateIndex, lengthHistogram);
+        }
+        lengthHistogram.add(length);
+
+        if (!Double.isNaN(nTermGap) || !Double.isNaN(cTermGap)) {
+            MergeableHistogram gapHistogram = gapHistograms.get(advocateIndex);
+            if (gapHistogram == null) {
+                gapHistogram = new MergeableHistogram();
+                gapHistograms.put(advocateIndex, gapHistogram);
+            }
+            gapHistogram.add(nTermGap);
+            gapHistogram.add(cTermGap);
+        }
+    }
+
+    /**
+     * Returns the indexes of the advocates which processed spectra, sorted.
+     *
+     * @return the indexes of the advocates which processed spectra
+     */
+    public synchronized ArrayList<Integer> getAdvocates() {
+        ArrayList<Integer> advocates = new ArrayList<Integer>(nSpectra.keySet());
+        Collections.sort(advocates);
+        return advocates;
+    }
+
+    /**
+     * Returns the number of spectra processed by the given advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return the number of spectra processed by the given advocate
+     */
+    public synchronized long getNSpectra(int advocateIndex) {
+        Long count = nSpectra.get(advocateIndex);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the number of spectra processed per second by the given
+     * advocate while its result files were written.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return the number of spectra processed per second, NaN if not
+     * available
+     */
+    public synchronized double getThroughput(int advocateIndex) {
+        Long elapsed = elapsedTime.get(advocateIndex);
+        long time = elapsed == null ? 0 : elapsed;
+        Integer nFiles = nActiveFiles.get(advocateIndex);
+        if (nFiles != null && nFiles > 0) {
+            time += System.currentTimeMillis() - activeSince.get(advocateIndex);
+        }
+        if (time == 0) {
+            return Double.NaN;
+        }
+        return 1000.0 * getNSpectra(advocateIndex) / time;
+    }
+
+    /**
+     * Returns the statistics on the best score per spectrum. The statistics
+     * are updated live, its methods are thread safe.
+     *
+     * @return the statistics on the best score per spectrum
+     */
+    public ScoreStatistics getScoreStatistics() {
+        return scoreStatistics;
+    }
+
+    /**
+     * Returns a copy of the histograms of the length of the best sequence or
+     * tag per spectrum indexed by advocate.
+     *
+     * @return a copy of the histograms of the length of the best sequence or
+     * tag
+     */
+    public synchronized HashMap<Integer, MergeableHistogram> getLengthHistograms() {
+        return copy(lengthHistograms);
+    }
+
+    /**
+     * Returns a copy of the histograms of the terminal mass gaps of the best
+     * sequence or tag per spectrum indexed by advocate. Only the advocates
+     * reporting the mass gaps are included.
+     *
+     * @return a copy of the histograms of the terminal mass gaps
+     */
+    public synchronized HashMap<Integer, MergeableHistogram> getGapHistograms() {
+        return copy(gapHistograms);
+    }
+
+    /**
+     * Returns a copy of the given histograms.
+     *
+     * @param histograms the histograms to copy
+     *
+     * @return a copy of the histograms
+     */
+    private static HashMap<Integer, MergeableHistogram> copy(HashMap<Integer, MergeableHistogram> histograms) {
+        HashMap<Integer, MergeableHistogram> result = new HashMap<Integer, MergeableHistogram>(histograms.size());
+        for (Integer advocateIndex : histograms.keySet()) {
+            MergeableHistogram histogram = histograms.get(advocateIndex);
+            MergeableHistogram histogramCopy = new MergeableHistogram(histogram.getNBins());
+            histogramCopy.merge(histogram);
+            result.put(advocateIndex, histogramCopy);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a one line summary of the statistics of the given advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return a one line summary of the statistics
+     */
+    public synchronized String getSummary(int advocateIndex) {
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(Advocate.getAdvocate(advocateIndex).getName()).append(": ").append(getNSpectra(advocateIndex)).append(" spectra");
+
+        double throughput = getThroughput(advocateIndex);
+        if (!Double.isNaN(throughput)) {
+            summary.append(" (").append(String.format("%.1f", throughput)).append(" spectra/s)");
+        }
+
+        QuantileSketch scoreSketch = scoreStatistics.getQuantileSketch(advocateIndex);
+        if (scoreSketch != null && scoreSketch.getCount() > 0) {
+            summary.append(", median best score ").append(String.format("%.2f", scoreSketch.getQuantile(0.5)));
+        }
+
+        MergeableHistogram lengthHistogram = lengthHistograms.get(advocateIndex);
+        if (lengthHistogram != null && lengthHistogram.getCount() > 0) {
+            summary.append(", mean length ").append(String.format("%.1f", lengthHistogram.getMean()));
+        }
+
+        summary.append(".");
+        return summary.toString();
+    }
+}
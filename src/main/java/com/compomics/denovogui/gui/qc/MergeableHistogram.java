@@ -0,0 +1,290 @@
+package com.compomics.denovogui.gui.qc;
+
+/**
+ * Fixed memory histogram which can be filled in a single pass without knowing
+ * the range of the values in advance. The bins lie on a grid anchored at zero
+ * with a width of a power of two: when a value falls outside the histogram,
+ * pairs of bins are merged until all values fit. Two histograms can be merged,
+ * so that different threads can fill their own histogram.
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class MergeableHistogram {
+
+    /**
+     * The default number of bins.
+     */
+    public static final int DEFAULT_N_BINS = 128;
+    /**
+     * The initial width of the bins, common to all histograms so that they
+     * can be merged.
+     */
+    private static final double INITIAL_BIN_WIDTH = 1.0 / 1024;
+    /**
+     * The counts per bin.
+     */
+    private long[] counts;
+    /**
+     * The width of the bins.
+     */
+    private double binWidth = INITIAL_BIN_WIDTH;
+    /**
+     * The index of the first bin on the grid.
+     */
+    private long firstBin = 0;
+    /**
+     * The number of values.
+     */
+    private long count = 0;
+    /**
+     * The smallest value.
+     */
+    private double min = Double.NaN;
+    /**
+     * The largest value.
+     */
+    private double max = Double.NaN;
+    /**
+     * The mean of the values.
+     */
+    private double mean = 0;
+    /**
+     * The sum of the squared differences to the mean.
+     */
+    private double m2 = 0;
+
+    /**
+     * Constructor with the default number of bins.
+     */
+    public MergeableHistogram() {
+        this(DEFAULT_N_BINS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param nBins the number of bins
+     */
+    public MergeableHistogram(int nBins) {
+        if (nBins < 2) {
+            throw new IllegalArgumentException("At least two bins are needed.");
+        }
+        counts = new long[nBins];
+    }
+
+    /**
+     * Adds a value to the histogram. Infinite and NaN values are ignored.
+     *
+     * @param value the value to add
+     */
+    public void add(double value) {
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+
+        fit(value, value, binWidth);
+        counts[(int) (getBin(value) - firstBin)]++;
+
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Adds the content of another histogram to this histogram.
+     *
+     * @param other the other histogram
+     */
+    public void merge(MergeableHistogram other) {
+
+        if (other.count == 0) {
+            return;
+        }
+
+        fit(other.min, other.max, other.binWidth);
+
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                double binCenter = (other.firstBin + i + 0.5) * other.binWidth;
+                counts[(int) (getBin(binCenter) - firstBin)] += other.counts[i];
+            }
+        }
+
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        long newCount = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / newCount;
+        m2 += other.m2 + delta * delta * count * other.count / newCount;
+        count = newCount;
+    }
+
+    /**
+     * Makes sure that the values between the given bounds and the values
+     * already in the histogram fall in the histogram, merging the bins if
+     * needed.
+     *
+     * @param lowValue the lower bound
+     * @param highValue the upper bound
+     * @param minBinWidth the minimal width of the bins
+     */
+    private void fit(double lowValue, double highValue, double minBinWidth) {
+
+        double low = count > 0 ? Math.min(lowValue, min) : lowValue;
+        double high = count > 0 ? Math.max(highValue, max) : highValue;
+
+        double newBinWidth = Math.max(binWidth, minBinWidth);
+        while ((long) Math.floor(high / newBinWidth) - (long) Math.floor(low / newBinWidth) >= counts.length) {
+            newBinWidth *= 2;
+        }
+
+        long lowBin = (long) Math.floor(low / newBinWidth);
+        long highBin = (long) Math.floor(high / newBinWidth);
+
+        if (count == 0) {
+            binWidth = newBinWidth;
+            firstBin = lowBin - (counts.length - 1 - (highBin - lowBin)) / 2;
+        } else if (newBinWidth != binWidth || lowBin < firstBin) {
+            rebin(newBinWidth, lowBin);
+        } else if (highBin >= firstBin + counts.length) {
+            rebin(newBinWidth, highBin - counts.length + 1);
+        }
+    }
+
+    /**
+     * Moves the content of the histogram to a new grid.
+     *
+     * @param newBinWidth the width of the bins of the new grid, a multiple of
+     * the current width
+     * @param newFirstBin the index of the first bin on the new grid
+     */
+    private void rebin(double newBinWidth, long newFirstBin) {
+
+        long[] newCounts = new long[counts.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                double binCenter = (firstBin + i + 0.5) * binWidth;
+                int newIndex = (int) ((long) Math.floor(binCenter / newBinWidth) - newFirstBin);
+                newIndex = Math.max(0, Math.min(newIndex, counts.length - 1));
+                newCounts[newIndex] += counts[i];
+            }
+        }
+
+        counts = newCounts;
+        binWidth = newBinWidth;
+        firstBin = newFirstBin;
+    }
+
+    /**
+     * Returns the index of the bin of the given value on the grid.
+     *
+     * @param value the value
+     *
+     * @return the index of the bin on the grid
+     */
+    private long getBin(double value) {
+        return (long) Math.floor(value / binWidth);
+    }
+
+    /**
+     * Returns the number of bins.
+     *
+     * @return the number of bins
+     */
+    public int getNBins() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the width of the bins.
+     *
+     * @return the width of the bins
+     */
+    public double getBinWidth() {
+        return binWidth;
+    }
+
+    /**
+     * Returns the lower bound of the given bin.
+     *
+     * @param bin the index of the bin
+     *
+     * @return the lower bound of the bin
+     */
+    public double getBinStart(int bin) {
+        return (firstBin + bin) * binWidth;
+    }
+
+    /**
+     * Returns the number of values in the given bin.
+     *
+     * @param bin the index of the bin
+     *
+     * @return the number of values in the bin
+     */
+    public long getBinCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest value, NaN if empty.
+     *
+     * @return the smallest value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest value, NaN if empty.
+     *
+     * @return the largest value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values, NaN if empty.
+     *
+     * @return the mean of the values
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the standard deviation of the values, NaN if less than two
+     * values.
+     *
+     * @return the standard deviation of the values
+     */
+    public double getStandardDeviation() {
+        return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1));
+    }
+}
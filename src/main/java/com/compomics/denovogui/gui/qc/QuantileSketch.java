@@ -0,0 +1,201 @@
+package com.compomics.denovogui.gui.qc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Mergeable sketch estimating the quantiles of a stream of values in bounded
+ * memory. The values are stored in a stack of compactors: when a compactor is
+ * full, its values are sorted and every other value is promoted to the next
+ * compactor where it counts double. The memory used grows with the logarithm
+ * of the number of values only.
+ *
+ * @author Marc Vaudel
+ */
+public class QuantileSketch {
+
+    /**
+     * The default capacity of the compactors.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * The capacity of the compactors.
+     */
+    private final int capacity;
+    /**
+     * The values of every compactor, a value at level l has a weight of 2^l.
+     */
+    private double[][] levels = new double[0][];
+    /**
+     * The number of values of every compactor.
+     */
+    private int[] levelSizes = new int[0];
+    /**
+     * Alternates the values kept between compactions to avoid a bias.
+     */
+    private boolean[] keepOdd = new boolean[0];
+    /**
+     * The number of values added.
+     */
+    private long count = 0;
+
+    /**
+     * Constructor with the default capacity.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the capacity of the compactors, the higher the more
+     * accurate
+     */
+    public QuantileSketch(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least two.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a value to the sketch. NaN values are ignored.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        compact();
+    }
+
+    /**
+     * Adds the content of another sketch to this sketch.
+     *
+     * @param other the other sketch
+     */
+    public void merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        compact();
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the estimated quantile.
+     *
+     * @param quantile the quantile, between 0 and 1
+     *
+     * @return the estimated quantile, NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("The quantile must be between 0 and 1.");
+        }
+
+        int nValues = 0;
+        for (int size : levelSizes) {
+            nValues += size;
+        }
+
+        if (nValues == 0) {
+            return Double.NaN;
+        }
+
+        // sort the values with their weights
+        double[] values = new double[nValues];
+        long[] weights = new long[nValues];
+        Integer[] order = new Integer[nValues];
+        int index = 0;
+        long totalWeight = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                values[index] = levels[level][i];
+                weights[index] = 1L << level;
+                order[index] = index;
+                totalWeight += weights[index];
+                index++;
+            }
+        }
+        final double[] finalValues = values;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(finalValues[o1], finalValues[o2]);
+            }
+        });
+
+        double rank = quantile * totalWeight;
+        long cumulativeWeight = 0;
+        for (Integer i : order) {
+            cumulativeWeight += weights[i];
+            if (cumulativeWeight >= rank) {
+                return values[i];
+            }
+        }
+        return values[order[nValues - 1]];
+    }
+
+    /**
+     * Appends a value to the compactor of the given level.
+     *
+     * @param level the level
+     * @param value the value
+     */
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            levelSizes = Arrays.copyOf(levelSizes, level + 1);
+            keepOdd = Arrays.copyOf(keepOdd, level + 1);
+            levels[level] = new double[2 * capacity];
+        }
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+        }
+        levels[level][levelSizes[level]++] = value;
+    }
+
+    /**
+     * Compacts the full compactors, from the lowest level up.
+     */
+    private void compact() {
+        for (int level = 0; level < levels.length; level++) {
+            if (levelSizes[level] >= capacity) {
+                double[] levelValues = levels[level];
+                int size = levelSizes[level];
+                Arrays.sort(levelValues, 0, size);
+
+                // an odd value out stays at this level
+                int nPaired = size - size % 2;
+                for (int i = keepOdd[level] ? 1 : 0; i < nPaired; i += 2) {
+                    append(level + 1, levelValues[i]);
+                }
+                keepOdd[level] = !keepOdd[level];
+
+                if (nPaired < size) {
+                    levelValues[0] = levelValues[size - 1];
+                    levelSizes[level] = 1;
+                } else {
+                    levelSizes[level] = 0;
+                }
+            }
+        }
+    }
+}
@@ -2,34 +2,39 @@ package com.compomics.denovogui.gui.qc;
 
 import com.compomics.util.experiment.identification.Advocate;
 import com.compomics.util.experiment.identification.Identification;
-import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
 import com.compomics.util.experiment.identification.matches.SpectrumMatch;
 import com.compomics.util.experiment.identification.matches_iterators.PsmIterator;
-import com.compomics.util.experiment.massspectrometry.Spectrum;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYBarRenderer;
-import org.jfree.data.statistics.HistogramDataset;
-import org.jfree.data.statistics.HistogramType;
+import org.jfree.data.xy.XYIntervalSeries;
+import org.jfree.data.xy.XYIntervalSeriesCollection;
 
 /**
  * <p>
- * Class to plot a histogram of the number of peaks of all intensity values.</p>
+ * Class to plot a histogram of the best score per spectrum of the
+ * advocates.</p>
  *
  * @author Thilo Muth
  */
 public class ScoreHistogram extends Chart {
 
-    private double[] data;
+    /**
+     * The score statistics to plot.
+     */
+    private ScoreStatistics scoreStatistics;
+    /**
+     * The advocate to plot, null for all advocates.
+     */
+    private Advocate advocate;
 
     /**
-     * Constructs a de novo score histogram
+     * Constructs a de novo score histogram of all advocates. The scores are
+     * gathered in a single pass over the spectrum matches.
      *
      * @param identification the identification
      */
@@ -37,37 +42,65 @@ public class ScoreHistogram extends Chart {
         super(identification);
     }
 
+    /**
+     * Constructs a de novo score histogram from statistics gathered during
+     * the import of the results.
+     *
+     * @param scoreStatistics the score statistics
+     * @param advocate the advocate to plot, null for all advocates
+     */
+    public ScoreHistogram(ScoreStatistics scoreStatistics, Advocate advocate) {
+        super(null);
+        this.scoreStatistics = scoreStatistics;
+        this.advocate = advocate;
+        setChart();
+    }
+
     @Override
     protected void process(Identification identification) throws IOException, SQLException, ClassNotFoundException, InterruptedException {
-        // List of all the scores
-        List<Double> scores = new ArrayList<Double>();
+
+        scoreStatistics = new ScoreStatistics();
+
         for (String spectrumFile : identification.getSpectrumFiles()) {
 
             PsmIterator psmIterator = identification.getPsmIterator(spectrumFile, true, null);
 
             while (psmIterator.hasNext()) {
-
                 SpectrumMatch spectrumMatch = psmIterator.next();
-                ArrayList<Double> matchScores = new ArrayList<Double>(spectrumMatch.getAssumptionsMap().get(Advocate.pepnovo.getIndex()).keySet());
-                Collections.sort(matchScores);
-                scores.add(matchScores.get(0));
+                scoreStatistics.addSpectrumMatch(spectrumMatch);
             }
         }
 
-        // Set data.
-        data = new double[scores.size()];
-        for (int i = 0; i < scores.size(); i++) {
-            data[i] = scores.get(i);
-        }
-
         setChart();
     }
 
     @Override
     protected void setChart() {
-        HistogramDataset dataset = new HistogramDataset();
-        dataset.setType(HistogramType.FREQUENCY);
-        dataset.addSeries("Best Assumption Score", data, 40);
+
+        XYIntervalSeriesCollection dataset = new XYIntervalSeriesCollection();
+        ArrayList<Integer> advocates = new ArrayList<Integer>();
+        if (advocate != null) {
+            advocates.add(advocate.getIndex());
+        } else {
+            advocates.addAll(scoreStatistics.getAdvocates());
+        }
+
+        for (int advocateIndex : advocates) {
+            MergeableHistogram histogram = scoreStatistics.getHistogram(advocateIndex);
+            if (histogram != null) {
+                XYIntervalSeries series = new XYIntervalSeries(Advocate.getAdvocate(advocateIndex).getName());
+                for (int bin = 0; bin < histogram.getNBins(); bin++) {
+                    long binCount = histogram.getBinCount(bin);
+                    if (binCount > 0) {
+                        double binStart = histogram.getBinStart(bin);
+                        double binEnd = binStart + histogram.getBinWidth();
+                        series.add((binStart + binEnd) / 2, binStart, binEnd, binCount, binCount, binCount);
+                    }
+                }
+                dataset.addSeries(series);
+            }
+        }
+
         chart = ChartFactory.createHistogram(getChartTitle(),
                 "Score",
                 "Frequency",
@@ -90,6 +123,18 @@ public class ScoreHistogram extends Chart {
 
     @Override
     public String getChartTitle() {
+        if (advocate != null) {
+            return advocate.getName() + " Score Histogram";
+        }
         return "De Novo Score Histogram";
     }
+
+    /**
+     * Returns the score statistics plotted.
+     *
+     * @return the score statistics plotted
+     */
+    public ScoreStatistics getScoreStatistics() {
+        return scoreStatistics;
+    }
 }
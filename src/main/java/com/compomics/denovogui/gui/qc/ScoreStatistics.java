@@ -0,0 +1,187 @@
+package com.compomics.denovogui.gui.qc;
+
+import com.compomics.denovogui.io.AssumptionFilter;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Statistics on the best score per spectrum of every advocate. For every
+ * advocate the scores are stored in a histogram and a quantile sketch of
+ * fixed size, so that the statistics can be filled while importing the
+ * results and merged between threads, without keeping the scores in memory.
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class ScoreStatistics {
+
+    /**
+     * The minimal number of spectrum matches processed per thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 1000;
+    /**
+     * The score histogram of every advocate.
+     */
+    private final HashMap<Integer, MergeableHistogram> histograms = new HashMap<Integer, MergeableHistogram>();
+    /**
+     * The score quantile sketch of every advocate.
+     */
+    private final HashMap<Integer, QuantileSketch> sketches = new HashMap<Integer, QuantileSketch>();
+
+    /**
+     * Constructor.
+     */
+    public ScoreStatistics() {
+    }
+
+    /**
+     * Adds the best score of every advocate of the given spectrum match.
+     *
+     * @param spectrumMatch the spectrum match
+     */
+    public synchronized void addSpectrumMatch(SpectrumMatch spectrumMatch) {
+
+        HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+
+        for (Integer advocateIndex : assumptionsMap.keySet()) {
+
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(advocateIndex);
+
+            if (advocateMap != null && !advocateMap.isEmpty()) {
+
+                boolean lowerBetter = AssumptionFilter.isLowerBetter(advocateIndex);
+                double bestScore = Double.NaN;
+
+                for (double score : advocateMap.keySet()) {
+                    if (Double.isNaN(bestScore) || (lowerBetter ? score < bestScore : score > bestScore)) {
+                        bestScore = score;
+                    }
+                }
+
+                addScore(advocateIndex, bestScore);
+            }
+        }
+    }
+
+    /**
+     * Adds the best scores of the given spectrum matches. The matches are
+     * split in chunks processed in parallel by the given executor, the
+     * statistics of every chunk being merged in the end.
+     *
+     * @param spectrumMatches the spectrum matches
+     * @param executor the executor to use
+     * @param nThreads the number of threads available in the executor
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting for the chunks to be processed
+     * @throws ExecutionException thrown if an exception occurred while
+     * processing a chunk
+     */
+    public void addSpectrumMatches(List<SpectrumMatch> spectrumMatches, ExecutorService executor, int nThreads) throws InterruptedException, ExecutionException {
+
+        // the chunks are views of the list, they need random access
+        if (!(spectrumMatches instanceof RandomAccess)) {
+            spectrumMatches = new ArrayList<SpectrumMatch>(spectrumMatches);
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (spectrumMatches.size() + nThreads - 1) / Math.max(nThreads, 1));
+        ArrayList<Future<ScoreStatistics>> futures = new ArrayList<Future<ScoreStatistics>>();
+
+        for (int start = 0; start < spectrumMatches.size(); start += chunkSize) {
+            final List<SpectrumMatch> chunk = spectrumMatches.subList(start, Math.min(start + chunkSize, spectrumMatches.size()));
+            futures.add(executor.submit(new Callable<ScoreStatistics>() {
+                @Override
+                public ScoreStatistics call() {
+                    ScoreStatistics chunkStatistics = new ScoreStatistics();
+                    for (SpectrumMatch spectrumMatch : chunk) {
+                        chunkStatistics.addSpectrumMatch(spectrumMatch);
+                    }
+                    return chunkStatistics;
+                }
+            }));
+        }
+
+        for (Future<ScoreStatistics> future : futures) {
+            merge(future.get());
+        }
+    }
+
+    /**
+     * Adds a score of the given advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     * @param score the score
+     */
+    public synchronized void addScore(int advocateIndex, double score) {
+        MergeableHistogram histogram = histograms.get(advocateIndex);
+        if (histogram == null) {
+            histogram = new MergeableHistogram();
+            histograms.put(advocateIndex, histogram);
+            sketches.put(advocateIndex, new QuantileSketch());
+        }
+        histogram.add(score);
+        sketches.get(advocateIndex).add(score);
+    }
+
+    /**
+     * Adds the content of other statistics to these statistics.
+     *
+     * @param other the other statistics
+     */
+    public synchronized void merge(ScoreStatistics other) {
+        synchronized (other) {
+            for (Integer advocateIndex : other.histograms.keySet()) {
+                MergeableHistogram histogram = histograms.get(advocateIndex);
+                if (histogram == null) {
+                    histogram = new MergeableHistogram();
+                    histograms.put(advocateIndex, histogram);
+                    sketches.put(advocateIndex, new QuantileSketch());
+                }
+                histogram.merge(other.histograms.get(advocateIndex));
+                sketches.get(advocateIndex).merge(other.sketches.get(advocateIndex));
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of the advocates with scores, sorted.
+     *
+     * @return the indexes of the advocates with scores
+     */
+    public synchronized ArrayList<Integer> getAdvocates() {
+        ArrayList<Integer> advocates = new ArrayList<Integer>(histograms.keySet());
+        Collections.sort(advocates);
+        return advocates;
+    }
+
+    /**
+     * Returns the score histogram of the given advocate, null if none.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return the score histogram of the given advocate
+     */
+    public synchronized MergeableHistogram getHistogram(int advocateIndex) {
+        return histograms.get(advocateIndex);
+    }
+
+    /**
+     * Returns the score quantile sketch of the given advocate, null if none.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return the score quantile sketch of the given advocate
+     */
+    public synchronized QuantileSketch getQuantileSketch(int advocateIndex) {
+        return sketches.get(advocateIndex);
+    }
+}
@@ -0,0 +1,298 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filter on the de novo assumptions retained per spectrum. The filter keeps
+ * the best assumptions of every advocate passing the score threshold, up to a
+ * maximal number of matches. It can be applied directly after parsing, before
+ * the matches are stored in the identification, so that assumptions which
+ * would be discarded by the exports or the protein mapping are never kept in
+ * memory.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class AssumptionFilter {
+
+    /**
+     * The default maximal number of matches per spectrum.
+     */
+    public static final int DEFAULT_NUMBER_OF_MATCHES = 10;
+    /**
+     * The maximal number of matches to retain per advocate and spectrum.
+     */
+    private int numberOfMatches = DEFAULT_NUMBER_OF_MATCHES;
+    /**
+     * The score threshold, null if no threshold is used.
+     */
+    private Double scoreThreshold = null;
+    /**
+     * If true, the score has to be higher than or equal to the threshold,
+     * lower than or equal otherwise.
+     */
+    private boolean greaterThan = true;
+
+    /**
+     * Constructor for a filter only retaining the given number of best matches
+     * per advocate.
+     *
+     * @param numberOfMatches the maximal number of matches to retain per
+     * advocate and spectrum, the default is used if null
+     */
+    public AssumptionFilter(Integer numberOfMatches) {
+        this(numberOfMatches, null, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param numberOfMatches the maximal number of matches to retain per
+     * advocate and spectrum, the default is used if null
+     * @param scoreThreshold the score threshold, ignored if null
+     * @param greaterThan if true the score has to be higher than or equal to
+     * the threshold, lower than or equal otherwise
+     */
+    public AssumptionFilter(Integer numberOfMatches, Double scoreThreshold, boolean greaterThan) {
+        if (numberOfMatches != null) {
+            if (numberOfMatches < 0) {
+                throw new IllegalArgumentException("The number of matches cannot be negative.");
+            }
+            this.numberOfMatches = numberOfMatches;
+        }
+        this.scoreThreshold = scoreThreshold;
+        this.greaterThan = greaterThan;
+    }
+
+    /**
+     * Returns the maximal number of matches retained per advocate and
+     * spectrum.
+     *
+     * @return the maximal number of matches retained per advocate and spectrum
+     */
+    public int getNumberOfMatches() {
+        return numberOfMatches;
+    }
+
+    /**
+     * Returns the score threshold, null if not set.
+     *
+     * @return the score threshold
+     */
+    public Double getScoreThreshold() {
+        return scoreThreshold;
+    }
+
+    /**
+     * Returns true if the scores have to be higher than or equal to the
+     * threshold, false if lower than or equal.
+     *
+     * @return true if the scores have to be higher than or equal to the
+     * threshold
+     */
+    public boolean isGreaterThan() {
+        return greaterThan;
+    }
+
+    /**
+     * Indicates whether the given score passes the threshold.
+     *
+     * @param score the score
+     *
+     * @return true if the score passes the threshold
+     */
+    public boolean passesThreshold(double score) {
+        if (scoreThreshold == null) {
+            return true;
+        }
+        if (greaterThan) {
+            return score >= scoreThreshold;
+        } else { // less than
+            return score <= scoreThreshold;
+        }
+    }
+
+    /**
+     * Indicates whether a low score is better than a high score for the given
+     * advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     *
+     * @return true if a low score is better than a high score
+     */
+    public static boolean isLowerBetter(int advocateIndex) {
+        return advocateIndex == Advocate.direcTag.getIndex();
+    }
+
+    /**
+     * Returns the best scores passing the threshold, best first, limited to
+     * the maximal number of matches. The scores are selected using a bounded
+     * heap so that the whole set is neither boxed into a list nor sorted.
+     *
+     * @param advocateIndex the index of the advocate which produced the scores
+     * @param scores the scores to select from
+     *
+     * @return the selected scores, best first
+     */
+    public double[] getBestScores(int advocateIndex, Set<Double> scores) {
+
+        // the scores are stored as goodness, i.e. negated when a lower score is better, the heap root being the worst kept
+        double sign = isLowerBetter(advocateIndex) ? -1 : 1;
+        double[] heap = new double[Math.min(numberOfMatches, scores.size())];
+        int size = 0;
+
+        if (heap.length > 0) {
+            for (double score : scores) {
+                if (passesThreshold(score)) {
+                    double goodness = sign * score;
+                    if (size < heap.length) {
+                        heap[size] = goodness;
+                        siftUp(heap, size++);
+                    } else if (goodness > heap[0]) {
+                        heap[0] = goodness;
+                        siftDown(heap, 0, size);
+                    }
+                }
+            }
+        }
+
+        double[] result = Arrays.copyOf(heap, size);
+        Arrays.sort(result);
+        double[] bestFirst = new double[size];
+        for (int i = 0; i < size; i++) {
+            bestFirst[i] = sign * result[size - 1 - i];
+        }
+        return bestFirst;
+    }
+
+    /**
+     * Removes from the given assumptions map all assumptions not passing the
+     * filter. Advocates left without assumption are removed from the map.
+     *
+     * @param assumptionsMap the assumptions map: advocate index &gt; score
+     * &gt; assumptions
+     *
+     * @return the number of assumptions removed
+     */
+    public int filter(HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap) {
+
+        int removed = 0;
+        Iterator<Integer> advocateIterator = assumptionsMap.keySet().iterator();
+
+        while (advocateIterator.hasNext()) {
+
+            int advocateIndex = advocateIterator.next();
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(advocateIndex);
+
+            if (advocateMap == null) {
+                advocateIterator.remove();
+                continue;
+            }
+
+            int nBefore = 0;
+            for (ArrayList<SpectrumIdentificationAssumption> scoreAssumptions : advocateMap.values()) {
+                nBefore += scoreAssumptions.size();
+            }
+
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> filteredMap = new HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>(numberOfMatches);
+            int nKept = 0;
+            for (double score : getBestScores(advocateIndex, advocateMap.keySet())) {
+                ArrayList<SpectrumIdentificationAssumption> scoreAssumptions = advocateMap.get(score);
+                int nToKeep = Math.min(scoreAssumptions.size(), numberOfMatches - nKept);
+                if (nToKeep <= 0) {
+                    break;
+                }
+                if (nToKeep < scoreAssumptions.size()) {
+                    scoreAssumptions = new ArrayList<SpectrumIdentificationAssumption>(scoreAssumptions.subList(0, nToKeep));
+                }
+                filteredMap.put(score, scoreAssumptions);
+                nKept += nToKeep;
+            }
+
+            removed += nBefore - nKept;
+
+            if (filteredMap.isEmpty()) {
+                advocateIterator.remove();
+            } else if (nKept < nBefore) {
+                advocateMap.clear();
+                advocateMap.putAll(filteredMap);
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Filters the assumptions of the given spectrum matches. Spectrum matches
+     * left without assumption are removed from the list.
+     *
+     * @param spectrumMatches the spectrum matches to filter
+     *
+     * @return the number of assumptions removed
+     */
+    public int filter(List<SpectrumMatch> spectrumMatches) {
+        int removed = 0;
+        Iterator<SpectrumMatch> matchIterator = spectrumMatches.iterator();
+        while (matchIterator.hasNext()) {
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = matchIterator.next().getAssumptionsMap();
+            removed += filter(assumptionsMap);
+            if (assumptionsMap.isEmpty()) {
+                matchIterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Moves the element at the given index up the min heap.
+     *
+     * @param heap the heap
+     * @param index the index of the element
+     */
+    private static void siftUp(double[] heap, int index) {
+        double value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * Moves the element at the given index down the min heap.
+     *
+     * @param heap the heap
+     * @param index the index of the element
+     * @param size the number of elements in the heap
+     */
+    private static void siftDown(double[] heap, int index, int size) {
+        double value = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
@@ -0,0 +1,513 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.Util;
+import com.compomics.util.experiment.biology.AminoAcid;
+import com.compomics.util.experiment.biology.AminoAcidPattern;
+import com.compomics.util.experiment.biology.AminoAcidSequence;
+import com.compomics.util.experiment.biology.MassGap;
+import com.compomics.util.experiment.biology.PTMFactory;
+import com.compomics.util.experiment.biology.Peptide;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.amino_acid_tags.Tag;
+import com.compomics.util.experiment.identification.amino_acid_tags.TagComponent;
+import com.compomics.util.experiment.identification.matches.ModificationMatch;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Combines the best assumptions of the different advocates for a spectrum
+ * into a consensus sequence. The residues of the assumptions are aligned by
+ * their position in mass from the N-terminus, so that tags with mass gaps can
+ * be aligned to complete peptides. For every position, the residue with the
+ * highest summed amino acid score wins, and its confidence is its summed
+ * score divided by the number of advocates, i.e. a residue found with full
+ * confidence by all advocates gets a confidence of 100. Positions covered by
+ * none of the advocates are reported as mass gaps.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ConsensusScorer {
+
+    /**
+     * The minimal number of spectrum matches processed per thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 1000;
+    /**
+     * The amino acid score used for the residues of the assumptions without
+     * amino acid scores.
+     */
+    public static final double DEFAULT_AMINO_ACID_SCORE = 50;
+    /**
+     * The maximal amino acid score.
+     */
+    private static final double MAX_AMINO_ACID_SCORE = 100;
+    /**
+     * The PTM factory.
+     */
+    private final PTMFactory ptmFactory = PTMFactory.getInstance();
+    /**
+     * The mass tolerance used to align the residues.
+     */
+    private final double massTolerance;
+    /**
+     * The consensus of every spectrum, indexed by spectrum key.
+     */
+    private final HashMap<String, Consensus> consensusMap = new HashMap<String, Consensus>();
+
+    /**
+     * Constructor.
+     *
+     * @param massTolerance the mass tolerance used to align the residues
+     */
+    public ConsensusScorer(double massTolerance) {
+        this.massTolerance = massTolerance;
+    }
+
+    /**
+     * Computes the consensus of the given spectrum matches. The matches are
+     * split in chunks processed in parallel by the given executor.
+     *
+     * @param spectrumMatches the spectrum matches
+     * @param executor the executor to use
+     * @param nThreads the number of threads available in the executor
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting for the chunks to be processed
+     * @throws ExecutionException thrown if an exception occurred while
+     * processing a chunk
+     */
+    public void addSpectrumMatches(List<SpectrumMatch> spectrumMatches, ExecutorService executor, int nThreads) throws InterruptedException, ExecutionException {
+
+        // the chunks are views of the list, they need random access
+        if (!(spectrumMatches instanceof RandomAccess)) {
+            spectrumMatches = new ArrayList<SpectrumMatch>(spectrumMatches);
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (spectrumMatches.size() + nThreads - 1) / Math.max(nThreads, 1));
+        ArrayList<Future<HashMap<String, Consensus>>> futures = new ArrayList<Future<HashMap<String, Consensus>>>();
+
+        for (int start = 0; start < spectrumMatches.size(); start += chunkSize) {
+            final List<SpectrumMatch> chunk = spectrumMatches.subList(start, Math.min(start + chunkSize, spectrumMatches.size()));
+            futures.add(executor.submit(new Callable<HashMap<String, Consensus>>() {
+                @Override
+                public HashMap<String, Consensus> call() {
+                    HashMap<String, Consensus> chunkConsensus = new HashMap<String, Consensus>(chunk.size());
+                    for (SpectrumMatch spectrumMatch : chunk) {
+                        Consensus consensus = getConsensus(spectrumMatch);
+                        if (consensus != null) {
+                            chunkConsensus.put(spectrumMatch.getKey(), consensus);
+                        }
+                    }
+                    return chunkConsensus;
+                }
+            }));
+        }
+
+        for (Future<HashMap<String, Consensus>> future : futures) {
+            HashMap<String, Consensus> chunkConsensus = future.get();
+            synchronized (this) {
+                consensusMap.putAll(chunkConsensus);
+            }
+        }
+    }
+
+    /**
+     * Returns the consensus of a spectrum, null if not computed or if the
+     * spectrum has no assumption.
+     *
+     * @param spectrumKey the key of the spectrum
+     *
+     * @return the consensus of the spectrum
+     */
+    public synchronized Consensus getConsensus(String spectrumKey) {
+        return consensusMap.get(spectrumKey);
+    }
+
+    /**
+     * Returns the number of spectra with a consensus.
+     *
+     * @return the number of spectra with a consensus
+     */
+    public synchronized int size() {
+        return consensusMap.size();
+    }
+
+    /**
+     * Computes the consensus of the best assumptions of every advocate of a
+     * spectrum match.
+     *
+     * @param spectrumMatch the spectrum match
+     *
+     * @return the consensus, null if the match has no assumption
+     */
+    public Consensus getConsensus(SpectrumMatch spectrumMatch) {
+
+        HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+
+        // the residues of the best assumption of every advocate
+        ArrayList<Residue> residues = new ArrayList<Residue>();
+        int nAdvocates = 0;
+        for (int advocateIndex : assumptionsMap.keySet()) {
+            SpectrumIdentificationAssumption bestAssumption = getBestAssumption(advocateIndex, assumptionsMap.get(advocateIndex));
+            if (bestAssumption != null) {
+                ArrayList<Residue> advocateResidues = getResidues(bestAssumption);
+                if (!advocateResidues.isEmpty()) {
+                    residues.addAll(advocateResidues);
+                    nAdvocates++;
+                }
+            }
+        }
+        if (nAdvocates == 0) {
+            return null;
+        }
+
+        // group the residues found at the same position
+        Collections.sort(residues, new Comparator<Residue>() {
+            @Override
+            public int compare(Residue residue1, Residue residue2) {
+                return Double.compare(residue1.start, residue2.start);
+            }
+        });
+        ArrayList<Residue> candidates = new ArrayList<Residue>();
+        int groupStart = 0;
+        while (groupStart < residues.size()) {
+            int groupEnd = groupStart + 1;
+            while (groupEnd < residues.size() && residues.get(groupEnd).start - residues.get(groupStart).start <= massTolerance) {
+                groupEnd++;
+            }
+            candidates.add(getBestResidue(residues.subList(groupStart, groupEnd)));
+            groupStart = groupEnd;
+        }
+
+        // walk the best residues from the N-terminus, filling the gaps with the mass
+        StringBuilder sequence = new StringBuilder();
+        ArrayList<Double> confidence = new ArrayList<Double>();
+        double position = 0;
+        double totalScore = 0;
+        for (Residue candidate : candidates) {
+            if (candidate.start < position - massTolerance) {
+                // overlaps the previous residue
+                continue;
+            }
+            if (candidate.start - position > massTolerance) {
+                sequence.append('<').append(Util.roundDouble(candidate.start - position, 2)).append('>');
+            }
+            double residueConfidence = candidate.score / nAdvocates;
+            sequence.append(candidate.aminoAcid);
+            confidence.add(residueConfidence);
+            totalScore += residueConfidence;
+            position = candidate.end;
+        }
+
+        double[] residueConfidence = new double[confidence.size()];
+        for (int i = 0; i < residueConfidence.length; i++) {
+            residueConfidence[i] = confidence.get(i);
+        }
+        double score = residueConfidence.length > 0 ? totalScore / residueConfidence.length : 0;
+
+        return new Consensus(sequence.toString(), residueConfidence, score, nAdvocates);
+    }
+
+    /**
+     * Returns the best assumption of an advocate.
+     *
+     * @param advocateIndex the index of the advocate
+     * @param advocateMap the assumptions of the advocate indexed by score
+     *
+     * @return the best assumption, null if none
+     */
+    private SpectrumIdentificationAssumption getBestAssumption(int advocateIndex, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap) {
+        if (advocateMap == null || advocateMap.isEmpty()) {
+            return null;
+        }
+        boolean lowerBetter = AssumptionFilter.isLowerBetter(advocateIndex);
+        Double bestScore = null;
+        for (double score : advocateMap.keySet()) {
+            if (bestScore == null || (lowerBetter ? score < bestScore : score > bestScore)) {
+                bestScore = score;
+            }
+        }
+        ArrayList<SpectrumIdentificationAssumption> bestAssumptions = advocateMap.get(bestScore);
+        if (bestAssumptions == null || bestAssumptions.isEmpty()) {
+            return null;
+        }
+        return bestAssumptions.get(0);
+    }
+
+    /**
+     * Returns the residue with the highest summed score of a group of residues
+     * found at the same position. Isoleucine and leucine are considered
+     * identical.
+     *
+     * @param group the residues found at the same position
+     *
+     * @return the residue with the highest summed score
+     */
+    private Residue getBestResidue(List<Residue> group) {
+        HashMap<Character, Residue> scores = new HashMap<Character, Residue>(group.size());
+        Residue best = null;
+        for (Residue residue : group) {
+            char aminoAcid = residue.aminoAcid == 'I' ? 'L' : residue.aminoAcid;
+            Residue summed = scores.get(aminoAcid);
+            if (summed == null) {
+                summed = new Residue(aminoAcid, residue.start, residue.end, residue.score);
+                scores.put(aminoAcid, summed);
+            } else {
+                summed.score += residue.score;
+            }
+            if (best == null || summed.score > best.score) {
+                best = summed;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the residues of an assumption.
+     *
+     * @param assumption the assumption
+     *
+     * @return the residues of the assumption
+     */
+    private ArrayList<Residue> getResidues(SpectrumIdentificationAssumption assumption) {
+
+        ArrayList<double[]> aminoAcidScores = assumption.getAminoAcidScores();
+        ArrayList<Residue> residues = new ArrayList<Residue>();
+
+        if (assumption instanceof TagAssumption) {
+            Tag tag = ((TagAssumption) assumption).getTag();
+            double position = 0;
+            int sequenceIndex = 0;
+            for (TagComponent tagComponent : tag.getContent()) {
+                if (tagComponent instanceof MassGap) {
+                    position += tagComponent.getMass();
+                } else if (tagComponent instanceof AminoAcidSequence) {
+                    AminoAcidSequence aminoAcidSequence = (AminoAcidSequence) tagComponent;
+                    double[] scores = getScores(aminoAcidScores, sequenceIndex++);
+                    String sequence = aminoAcidSequence.getSequence();
+                    for (int i = 0; i < sequence.length(); i++) {
+                        double mass = getResidueMass(sequence.charAt(i), aminoAcidSequence.getModificationsAt(i + 1));
+                        residues.add(new Residue(sequence.charAt(i), position, position + mass, getScore(scores, i)));
+                        position += mass;
+                    }
+                } else if (tagComponent instanceof AminoAcidPattern) {
+                    AminoAcidPattern aminoAcidPattern = (AminoAcidPattern) tagComponent;
+                    double[] scores = getScores(aminoAcidScores, sequenceIndex++);
+                    String sequence = aminoAcidPattern.asSequence();
+                    for (int i = 0; i < sequence.length(); i++) {
+                        double mass = getResidueMass(sequence.charAt(i), aminoAcidPattern.getModificationsAt(i + 1));
+                        residues.add(new Residue(sequence.charAt(i), position, position + mass, getScore(scores, i)));
+                        position += mass;
+                    }
+                } else {
+                    throw new UnsupportedOperationException("Consensus not implemented for the tag component " + tagComponent.getClass() + ".");
+                }
+            }
+        } else if (assumption instanceof PeptideAssumption) {
+            Peptide peptide = ((PeptideAssumption) assumption).getPeptide();
+            HashMap<Integer, ArrayList<ModificationMatch>> modificationsMap = new HashMap<Integer, ArrayList<ModificationMatch>>();
+            if (peptide.getModificationMatches() != null) {
+                for (ModificationMatch modificationMatch : peptide.getModificationMatches()) {
+                    ArrayList<ModificationMatch> siteModifications = modificationsMap.get(modificationMatch.getModificationSite());
+                    if (siteModifications == null) {
+                        siteModifications = new ArrayList<ModificationMatch>(1);
+                        modificationsMap.put(modificationMatch.getModificationSite(), siteModifications);
+                    }
+                    siteModifications.add(modificationMatch);
+                }
+            }
+            double[] scores = getScores(aminoAcidScores, 0);
+            String sequence = peptide.getSequence();
+            double position = 0;
+            for (int i = 0; i < sequence.length(); i++) {
+                double mass = getResidueMass(sequence.charAt(i), modificationsMap.get(i + 1));
+                residues.add(new Residue(sequence.charAt(i), position, position + mass, getScore(scores, i)));
+                position += mass;
+            }
+        } else {
+            throw new UnsupportedOperationException("Consensus not implemented for assumption of type " + assumption.getClass() + ".");
+        }
+
+        return residues;
+    }
+
+    /**
+     * Returns the amino acid scores of a sequence of an assumption, null if
+     * not available.
+     *
+     * @param aminoAcidScores the amino acid scores of the assumption
+     * @param index the index of the sequence in the assumption
+     *
+     * @return the amino acid scores of the sequence
+     */
+    private static double[] getScores(ArrayList<double[]> aminoAcidScores, int index) {
+        if (aminoAcidScores == null || index >= aminoAcidScores.size()) {
+            return null;
+        }
+        return aminoAcidScores.get(index);
+    }
+
+    /**
+     * Returns the score of a residue, the default score if not available.
+     *
+     * @param scores the amino acid scores of the sequence
+     * @param index the index of the residue in the sequence
+     *
+     * @return the score of the residue
+     */
+    private static double getScore(double[] scores, int index) {
+        if (scores == null || index >= scores.length) {
+            return DEFAULT_AMINO_ACID_SCORE;
+        }
+        return Math.max(0, Math.min(MAX_AMINO_ACID_SCORE, scores[index]));
+    }
+
+    /**
+     * Returns the mass of a residue including its modifications.
+     *
+     * @param aminoAcid the amino acid
+     * @param modificationMatches the modifications of the residue, can be
+     * null
+     *
+     * @return the mass of the residue
+     */
+    private double getResidueMass(char aminoAcid, ArrayList<ModificationMatch> modificationMatches) {
+        AminoAcid residue = AminoAcid.getAminoAcid(aminoAcid);
+        double mass = residue == null ? 0 : residue.getMonoisotopicMass();
+        if (modificationMatches != null) {
+            for (ModificationMatch modificationMatch : modificationMatches) {
+                mass += ptmFactory.getPTM(modificationMatch.getTheoreticPtm()).getMass();
+            }
+        }
+        return mass;
+    }
+
+    /**
+     * A residue of an assumption positioned by mass from the N-terminus.
+     */
+    private static class Residue {
+
+        /**
+         * The amino acid.
+         */
+        private final char aminoAcid;
+        /**
+         * The mass from the N-terminus at the start of the residue.
+         */
+        private final double start;
+        /**
+         * The mass from the N-terminus at the end of the residue.
+         */
+        private final double end;
+        /**
+         * The score of the residue.
+         */
+        private double score;
+
+        /**
+         * Constructor.
+         *
+         * @param aminoAcid the amino acid
+         * @param start the mass from the N-terminus at the start of the
+         * residue
+         * @param end the mass from the N-terminus at the end of the residue
+         * @param score the score of the residue
+         */
+        private Residue(char aminoAcid, double start, double end, double score) {
+            this.aminoAcid = aminoAcid;
+            this.start = start;
+            this.end = end;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The consensus of the advocates for a spectrum.
+     */
+    public static class Consensus {
+
+        /**
+         * The consensus sequence, the gaps are given as masses between angle
+         * brackets.
+         */
+        private final String sequence;
+        /**
+         * The confidence of every residue of the sequence, between 0 and 100.
+         */
+        private final double[] residueConfidence;
+        /**
+         * The consensus score, the average residue confidence.
+         */
+        private final double score;
+        /**
+         * The number of advocates contributing to the consensus.
+         */
+        private final int nAdvocates;
+
+        /**
+         * Constructor.
+         *
+         * @param sequence the consensus sequence
+         * @param residueConfidence the confidence of every residue
+         * @param score the consensus score
+         * @param nAdvocates the number of advocates contributing to the
+         * consensus
+         */
+        public Consensus(String sequence, double[] residueConfidence, double score, int nAdvocates) {
+            this.sequence = sequence;
+            this.residueConfidence = residueConfidence;
+            this.score = score;
+            this.nAdvocates = nAdvocates;
+        }
+
+        /**
+         * Returns the consensus sequence, the gaps are given as masses between
+         * angle brackets.
+         *
+         * @return the consensus sequence
+         */
+        public String getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the confidence of every residue of the sequence, between 0
+         * and 100.
+         *
+         * @return the confidence of every residue
+         */
+        public double[] getResidueConfidence() {
+            return residueConfidence;
+        }
+
+        /**
+         * Returns the consensus score, the average residue confidence.
+         *
+         * @return the consensus score
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Returns the number of advocates contributing to the consensus.
+         *
+         * @return the number of advocates contributing to the consensus
+         */
+        public int getNAdvocates() {
+            return nAdvocates;
+        }
+    }
+}
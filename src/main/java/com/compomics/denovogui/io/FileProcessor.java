@@ -20,7 +20,8 @@ import uk.ac.ebi.pride.tools.braf.BufferedRandomAccessFile;
 public class FileProcessor {
 
     /**
-     * Writes the chunk/merged output files.
+     * Writes the chunk/merged output files in the folder of the file to
+     * chunk.
      *
      * @param file the file to chunk
      * @param chunkSize the chunk size
@@ -35,13 +36,33 @@ public class FileProcessor {
      * file
      */
     public static ArrayList<File> chunkFile(File file, int chunkSize, int remaining, int nSpectra, WaitingHandler waitingHandler) throws IOException {
+        return chunkFile(file, file.getParentFile(), chunkSize, remaining, nSpectra, waitingHandler);
+    }
+
+    /**
+     * Writes the chunk/merged output files.
+     *
+     * @param file the file to chunk
+     * @param outputFolder the folder where to write the chunks
+     * @param chunkSize the chunk size
+     * @param remaining no. of remaining spectra (not fitting in file number
+     * division)
+     * @param nSpectra no. of all spectra.
+     * @param waitingHandler waiting handler displaying the progress and
+     * allowing the user to cancel the progress
+     *
+     * @return the chunk files.
+     * @throws IOException thrown if there are problems with the random access
+     * file
+     */
+    public static ArrayList<File> chunkFile(File file, File outputFolder, int chunkSize, int remaining, int nSpectra, WaitingHandler waitingHandler) throws IOException {
 
         final String path;
         String line;
         int spectrumCounter = 0;
         int chunkNumber = 1;
         BufferedRandomAccessFile br = new BufferedRandomAccessFile(file, "r", 1024 * 100);
-        path = file.getParent();
+        path = outputFolder.getAbsolutePath();
 
         ArrayList<File> chunkedFiles = new ArrayList<File>();
 
@@ -128,6 +149,69 @@ public class FileProcessor {
         return chunkedFiles;
     }
 
+    /**
+     * Writes the spectra of an mgf file between the given indexes in a new
+     * file.
+     *
+     * @param mgfFile the mgf file
+     * @param first the index of the first spectrum to write
+     * @param last the index of the spectrum after the last spectrum to write
+     * @param output the file to write
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the files
+     */
+    public static void writeSpectra(File mgfFile, int first, int last, File output) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(output));
+            try {
+                String line;
+                int index = 0;
+                while ((line = reader.readLine()) != null && index < last) {
+                    if (index >= first) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                    if (line.contains("END IONS")) {
+                        index++;
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the titles of the spectra of an mgf file in the order of the
+     * file.
+     *
+     * @param mgfFile the mgf file
+     * @return the titles of the spectra
+     * @throws IOException thrown if there are problems with the reading of
+     * the file
+     */
+    public static ArrayList<String> getSpectrumTitles(File mgfFile) throws IOException {
+
+        ArrayList<String> titles = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("TITLE=")) {
+                    titles.add(line.substring(6));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return titles;
+    }
+
     /**
      * Deletes the chunk files.
      *
@@ -156,9 +240,21 @@ public class FileProcessor {
      * to the file
      */
     public static void mergeAndDeleteOutputFiles(List<File> outFiles) throws IOException {
-
         File first = outFiles.get(0);
         File mergedFile = new File(first.getParent(), first.getName().substring(0, first.getName().lastIndexOf("_")) + ".mgf.out");
+        mergeAndDeleteOutputFiles(outFiles, mergedFile);
+    }
+
+    /**
+     * Merges and deletes the (split) output files in the given file.
+     *
+     * @param outFiles The output files to be merged.
+     * @param mergedFile The merged file.
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the file
+     */
+    public static void mergeAndDeleteOutputFiles(List<File> outFiles, File mergedFile) throws IOException {
+
         BufferedWriter bWriter = new BufferedWriter(new FileWriter(mergedFile));
 
         try {
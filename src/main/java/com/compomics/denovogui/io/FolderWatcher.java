@@ -0,0 +1,155 @@
+package com.compomics.denovogui.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Watches a folder for spectrum files written by an instrument or copied from
+ * another location. A file is reported once complete, i.e. when its size and
+ * modification date did not change for a given time. A file modified after
+ * being reported is reported again once complete.
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class FolderWatcher {
+
+    /**
+     * The default time in milliseconds during which a file must remain
+     * unchanged to be considered complete.
+     */
+    public static final long DEFAULT_STABILITY_TIME = 3000;
+    /**
+     * The folder watched.
+     */
+    private final File folder;
+    /**
+     * The extensions of the files watched, lower case.
+     */
+    private final ArrayList<String> extensions = new ArrayList<String>();
+    /**
+     * The time during which a file must remain unchanged to be considered
+     * complete.
+     */
+    private final long stabilityTime;
+    /**
+     * The size of the files seen at the last poll indexed by path.
+     */
+    private final HashMap<String, Long> sizes = new HashMap<String, Long>();
+    /**
+     * The modification date of the files seen at the last poll indexed by
+     * path.
+     */
+    private final HashMap<String, Long> dates = new HashMap<String, Long>();
+    /**
+     * The time since when the files are unchanged indexed by path.
+     */
+    private final HashMap<String, Long> stableSince = new HashMap<String, Long>();
+    /**
+     * The modification date of the files reported indexed by path.
+     */
+    private final HashMap<String, Long> reported = new HashMap<String, Long>();
+
+    /**
+     * Constructor.
+     *
+     * @param folder the folder to watch
+     * @param extensions the extensions of the files to watch, e.g. '.mgf'
+     * @param stabilityTime the time in milliseconds during which a file must
+     * remain unchanged to be considered complete
+     */
+    public FolderWatcher(File folder, ArrayList<String> extensions, long stabilityTime) {
+        this.folder = folder;
+        for (String extension : extensions) {
+            this.extensions.add(extension.toLowerCase());
+        }
+        this.stabilityTime = stabilityTime;
+    }
+
+    /**
+     * Indicates whether the given file has one of the watched extensions.
+     *
+     * @param file the file
+     *
+     * @return true if the file has one of the watched extensions
+     */
+    private boolean isWatched(File file) {
+        String name = file.getName().toLowerCase();
+        for (String extension : extensions) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the folder and returns the files which became complete since the
+     * last poll.
+     *
+     * @return the files which became complete since the last poll
+     */
+    public synchronized ArrayList<File> poll() {
+
+        ArrayList<File> result = new ArrayList<File>();
+        long now = System.currentTimeMillis();
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return result;
+        }
+
+        HashMap<String, Long> present = new HashMap<String, Long>(files.length);
+
+        for (File file : files) {
+
+            if (!file.isFile() || file.isHidden() || !isWatched(file)) {
+                continue;
+            }
+
+            String path = file.getAbsolutePath();
+            long size = file.length();
+            long date = file.lastModified();
+            present.put(path, date);
+
+            Long lastSize = sizes.get(path);
+            Long lastDate = dates.get(path);
+            if (lastSize == null || lastSize != size || lastDate == null || lastDate != date) {
+                sizes.put(path, size);
+                dates.put(path, date);
+                stableSince.put(path, now);
+                continue;
+            }
+
+            Long reportedDate = reported.get(path);
+            if (size > 0 && (reportedDate == null || reportedDate != date) && now - stableSince.get(path) >= stabilityTime) {
+                reported.put(path, date);
+                result.add(file);
+            }
+        }
+
+        // forget the files removed
+        Iterator<String> iterator = sizes.keySet().iterator();
+        while (iterator.hasNext()) {
+            String path = iterator.next();
+            if (!present.containsKey(path)) {
+                iterator.remove();
+                dates.remove(path);
+                stableSince.remove(path);
+                reported.remove(path);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the folder watched.
+     *
+     * @return the folder watched
+     */
+    public File getFolder() {
+        return folder;
+    }
+}
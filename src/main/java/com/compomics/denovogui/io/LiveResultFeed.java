@@ -0,0 +1,219 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.gui.qc.LiveStatistics;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Feeds live statistics by periodically reading the result files while the
+ * algorithms are writing them. A summary of the statistics can be
+ * periodically appended to the report of a waiting handler.
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class LiveResultFeed {
+
+    /**
+     * The default interval between two reads of the result files in
+     * milliseconds.
+     */
+    public static final long DEFAULT_POLLING_INTERVAL = 2000;
+    /**
+     * The default interval between two reports of the statistics in
+     * milliseconds.
+     */
+    public static final long DEFAULT_REPORT_INTERVAL = 5 * 60 * 1000;
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(LiveResultFeed.class);
+    /**
+     * The statistics fed.
+     */
+    private final LiveStatistics liveStatistics;
+    /**
+     * The readers of the result files being written.
+     */
+    private final CopyOnWriteArrayList<LiveResultReader> readers = new CopyOnWriteArrayList<LiveResultReader>();
+    /**
+     * The waiting handler where to report the statistics, null if none.
+     */
+    private final WaitingHandler waitingHandler;
+    /**
+     * The interval between two reports of the statistics in milliseconds.
+     */
+    private long reportInterval = DEFAULT_REPORT_INTERVAL;
+    /**
+     * The time of the last report.
+     */
+    private long lastReport;
+    /**
+     * The executor polling the files.
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * Constructor.
+     *
+     * @param liveStatistics the statistics to feed
+     * @param waitingHandler the waiting handler where to report the
+     * statistics, can be null
+     */
+    public LiveResultFeed(LiveStatistics liveStatistics, WaitingHandler waitingHandler) {
+        this.liveStatistics = liveStatistics;
+        this.waitingHandler = waitingHandler;
+    }
+
+    /**
+     * Starts reading the result files periodically.
+     *
+     * @param pollingInterval the interval between two reads in milliseconds
+     */
+    public synchronized void start(long pollingInterval) {
+        if (executor != null) {
+            return;
+        }
+        lastReport = System.currentTimeMillis();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LiveResultFeed");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, pollingInterval, pollingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading the result files. The files still registered are read a
+     * last time.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        for (LiveResultReader reader : readers) {
+            removeFile(reader);
+        }
+    }
+
+    /**
+     * Registers a result file to read.
+     *
+     * @param file the file written by the algorithm
+     * @param finalFile the name under which the file is renamed when
+     * completed, null if not renamed
+     * @param advocateIndex the index of the advocate writing the file
+     *
+     * @return the reader of the file
+     */
+    public LiveResultReader addFile(File file, File finalFile, int advocateIndex) {
+        LiveResultReader reader = new LiveResultReader(file, finalFile, advocateIndex, liveStatistics);
+        liveStatistics.startFile(advocateIndex);
+        readers.add(reader);
+        return reader;
+    }
+
+    /**
+     * Reads a result file a last time and stops reading it. To be called when
+     * the algorithm completed the file and before it is moved or deleted.
+     *
+     * @param reader the reader of the file
+     */
+    public void removeFile(LiveResultReader reader) {
+        if (readers.remove(reader)) {
+            read(reader, true);
+            liveStatistics.endFile(reader.getAdvocateIndex());
+        }
+    }
+
+    /**
+     * Reads the lines completed in all result files and reports the
+     * statistics if needed.
+     */
+    public void poll() {
+
+        for (LiveResultReader reader : readers) {
+            read(reader, false);
+        }
+
+        if (waitingHandler != null && System.currentTimeMillis() - lastReport >= reportInterval) {
+            lastReport = System.currentTimeMillis();
+            report();
+        }
+    }
+
+    /**
+     * Appends a summary of the statistics of every advocate to the report of
+     * the waiting handler.
+     */
+    public void report() {
+        if (waitingHandler != null && !waitingHandler.isRunCanceled()) {
+            for (int advocateIndex : liveStatistics.getAdvocates()) {
+                waitingHandler.appendReport(liveStatistics.getSummary(advocateIndex), true, true);
+            }
+        }
+    }
+
+    /**
+     * Reads the lines completed in a result file. Errors are logged only, as
+     * the statistics should not interrupt the sequencing.
+     *
+     * @param reader the reader of the file
+     * @param lastRead indicates whether the file is complete
+     */
+    private void read(LiveResultReader reader, boolean lastRead) {
+        try {
+            reader.read(lastRead);
+        } catch (IOException e) {
+            log.warn("Failed to read " + reader.getFile().getAbsolutePath() + " for the live statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the statistics fed.
+     *
+     * @return the statistics fed
+     */
+    public LiveStatistics getLiveStatistics() {
+        return liveStatistics;
+    }
+
+    /**
+     * Returns the interval between two reports of the statistics in
+     * milliseconds.
+     *
+     * @return the interval between two reports of the statistics
+     */
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    /**
+     * Sets the interval between two reports of the statistics in
+     * milliseconds.
+     *
+     * @param reportInterval the interval between two reports of the
+     * statistics
+     */
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+}
@@ -0,0 +1,377 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.gui.qc.LiveStatistics;
+import com.compomics.util.experiment.identification.Advocate;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+/**
+ * Reads a result file while it is being written by a de novo sequencing
+ * algorithm and feeds the best result of every spectrum to live statistics.
+ * Every call to read() parses the lines completed since the previous call.
+ * Supported formats are PepNovo+ (.out), DirecTag (.tags), pNovo+ and Novor
+ * (.novor.csv).
+ *
+ * @author Marc Vaudel
+ * @author Thilo Muth
+ */
+public class LiveResultReader {
+
+    /**
+     * The maximal number of bytes read at once.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    /**
+     * The file written by the algorithm.
+     */
+    private final File file;
+    /**
+     * The name under which the file is renamed when completed, null if not
+     * renamed.
+     */
+    private final File finalFile;
+    /**
+     * The index of the advocate writing the file.
+     */
+    private final int advocateIndex;
+    /**
+     * The statistics to feed.
+     */
+    private final LiveStatistics liveStatistics;
+    /**
+     * The number of bytes of the file already parsed.
+     */
+    private long offset = 0;
+    /**
+     * The columns of the results as found in the header of the file.
+     */
+    private HashMap<String, Integer> columns = new HashMap<String, Integer>();
+    /**
+     * Indicates whether the best result of the current spectrum is still to
+     * be parsed.
+     */
+    private boolean awaitingResult = false;
+    /**
+     * The number of spectra found in the file.
+     */
+    private long nSpectra = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file written by the algorithm
+     * @param finalFile the name under which the file is renamed when
+     * completed, null if not renamed
+     * @param advocateIndex the index of the advocate writing the file
+     * @param liveStatistics the statistics to feed
+     */
+    public LiveResultReader(File file, File finalFile, int advocateIndex, LiveStatistics liveStatistics) {
+        this.file = file;
+        this.finalFile = finalFile;
+        this.advocateIndex = advocateIndex;
+        this.liveStatistics = liveStatistics;
+    }
+
+    /**
+     * Parses the lines completed since the last call.
+     *
+     * @param lastRead if true, the file is assumed to be complete and a last
+     * line without line break is also parsed
+     *
+     * @return the number of bytes parsed
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    public synchronized long read(boolean lastRead) throws IOException {
+
+        File currentFile = file;
+        if (!currentFile.exists() && finalFile != null) {
+            currentFile = finalFile;
+        }
+        if (!currentFile.exists()) {
+            return 0;
+        }
+
+        long parsed = 0;
+        RandomAccessFile raf = new RandomAccessFile(currentFile, "r");
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (offset < raf.length()) {
+
+                raf.seek(offset);
+                int nBytes = raf.read(buffer);
+                if (nBytes <= 0) {
+                    break;
+                }
+
+                // only parse complete lines
+                int end = nBytes;
+                while (end > 0 && buffer[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    if (nBytes < buffer.length && !lastRead) {
+                        break;
+                    }
+                    // line longer than the buffer or last line
+                    end = nBytes;
+                }
+
+                String[] lines = new String(buffer, 0, end, "UTF-8").split("\r?\n");
+                for (String line : lines) {
+                    parseLine(line);
+                }
+
+                offset += end;
+                parsed += end;
+            }
+        } finally {
+            raf.close();
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Parses a line of the result file.
+     *
+     * @param line the line
+     */
+    private void parseLine(String line) {
+
+        if (line.length() == 0) {
+            return;
+        }
+
+        if (advocateIndex == Advocate.pepnovo.getIndex()) {
+            parsePepNovoLine(line);
+        } else if (advocateIndex == Advocate.direcTag.getIndex()) {
+            parseDirecTagLine(line);
+        } else if (advocateIndex == Advocate.pNovo.getIndex()) {
+            parsePNovoLine(line);
+        } else if (advocateIndex == Advocate.novor.getIndex()) {
+            parseNovorLine(line);
+        } else {
+            throw new UnsupportedOperationException("Live statistics not implemented for " + Advocate.getAdvocate(advocateIndex).getName() + ".");
+        }
+    }
+
+    /**
+     * Parses a line of a PepNovo+ result file. Spectra start with a line
+     * starting with '&gt;&gt;', followed by the header of the solutions and the
+     * solutions sorted by rank.
+     *
+     * @param line the line
+     */
+    private void parsePepNovoLine(String line) {
+
+        if (line.startsWith(">>")) {
+            addSpectrum();
+            awaitingResult = true;
+        } else if (line.startsWith("#Index")) {
+            setColumns(line.substring(1).split("\t"));
+        } else if (awaitingResult && !line.startsWith("#") && !columns.isEmpty()) {
+            String[] values = line.split("\t");
+            double score = getDouble(values, getColumn(1, "RnkScr", "Score"));
+            String sequence = getString(values, getColumn(values.length - 1, "Sequence"));
+            double nTermGap = getDouble(values, getColumn(-1, "N-Gap", "N-mass"));
+            double cTermGap = getDouble(values, getColumn(-1, "C-Gap", "C-Mass"));
+            liveStatistics.addResult(advocateIndex, score, getLength(sequence), nTermGap, cTermGap);
+            awaitingResult = false;
+        }
+    }
+
+    /**
+     * Parses a line of a DirecTag result file. The columns are given by the
+     * H(T) header, spectra start with an S line followed by the tags as T
+     * lines.
+     *
+     * @param line the line
+     */
+    private void parseDirecTagLine(String line) {
+
+        if (line.startsWith("H(T)")) {
+            setColumns(line.split("\t"));
+        } else if (line.startsWith("S\t")) {
+            addSpectrum();
+            awaitingResult = true;
+        } else if (awaitingResult && line.startsWith("T\t")) {
+            String[] values = line.split("\t");
+            double score = getDouble(values, getColumn(4, "TotalScore"));
+            String tag = getString(values, getColumn(1, "Tag"));
+            double nTermGap = getDouble(values, getColumn(2, "nTerminusFlankMass"));
+            double cTermGap = getDouble(values, getColumn(3, "cTerminusFlankMass"));
+            liveStatistics.addResult(advocateIndex, score, getLength(tag), nTermGap, cTermGap);
+            awaitingResult = false;
+        }
+    }
+
+    /**
+     * Parses a line of a pNovo+ result file. Spectra start with an S line
+     * followed by the peptides as P lines sorted by rank.
+     *
+     * @param line the line
+     */
+    private void parsePNovoLine(String line) {
+
+        if (line.startsWith("S")) {
+            addSpectrum();
+            awaitingResult = true;
+        } else if (awaitingResult && line.startsWith("P")) {
+            String[] values = line.split("\t");
+            double score = getDouble(values, 2);
+            String sequence = getString(values, 1);
+            liveStatistics.addResult(advocateIndex, score, getLength(sequence), Double.NaN, Double.NaN);
+            awaitingResult = false;
+        }
+    }
+
+    /**
+     * Parses a line of a Novor result file. The columns are given by the last
+     * comment line, every other line is the result of a spectrum.
+     *
+     * @param line the line
+     */
+    private void parseNovorLine(String line) {
+
+        if (line.startsWith("#")) {
+            String header = line.substring(1).trim();
+            if (header.startsWith("id")) {
+                setColumns(header.split(","));
+            }
+        } else if (!columns.isEmpty()) {
+            String[] values = line.split(",");
+            addSpectrum();
+            double score = getDouble(values, getColumn(8, "score"));
+            String sequence = getString(values, getColumn(9, "peptide"));
+            liveStatistics.addResult(advocateIndex, score, getLength(sequence), Double.NaN, Double.NaN);
+        }
+    }
+
+    /**
+     * Adds a spectrum found in the file.
+     */
+    private void addSpectrum() {
+        nSpectra++;
+        liveStatistics.addSpectrum(advocateIndex);
+    }
+
+    /**
+     * Sets the columns from a header line.
+     *
+     * @param header the header split in columns
+     */
+    private void setColumns(String[] header) {
+        columns.clear();
+        for (int i = 0; i < header.length; i++) {
+            columns.put(header[i].trim(), i);
+        }
+    }
+
+    /**
+     * Returns the index of the first of the given columns found in the
+     * header.
+     *
+     * @param defaultIndex the index to return if none is found
+     * @param names the names of the columns
+     *
+     * @return the index of the column
+     */
+    private int getColumn(int defaultIndex, String... names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null) {
+                return index;
+            }
+        }
+        return defaultIndex;
+    }
+
+    /**
+     * Returns the value at the given index as a string, an empty string if
+     * not available.
+     *
+     * @param values the values of the line
+     * @param index the index
+     *
+     * @return the value as a string
+     */
+    private static String getString(String[] values, int index) {
+        if (index < 0 || index >= values.length) {
+            return "";
+        }
+        return values[index].trim();
+    }
+
+    /**
+     * Returns the value at the given index as a double, NaN if not available.
+     *
+     * @param values the values of the line
+     * @param index the index
+     *
+     * @return the value as a double
+     */
+    private static double getDouble(String[] values, int index) {
+        String value = getString(values, index);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the number of amino acids in a sequence, ignoring the
+     * modification annotations between brackets or parentheses.
+     *
+     * @param sequence the sequence
+     *
+     * @return the number of amino acids
+     */
+    private static int getLength(String sequence) {
+        int length = 0;
+        int depth = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            char aa = sequence.charAt(i);
+            if (aa == '(' || aa == '[') {
+                depth++;
+            } else if (aa == ')' || aa == ']') {
+                depth = Math.max(depth - 1, 0);
+            } else if (depth == 0 && Character.isLetter(aa)) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the index of the advocate writing the file.
+     *
+     * @return the index of the advocate writing the file
+     */
+    public int getAdvocateIndex() {
+        return advocateIndex;
+    }
+
+    /**
+     * Returns the number of spectra found in the file so far.
+     *
+     * @return the number of spectra found in the file
+     */
+    public synchronized long getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the file written by the algorithm.
+     *
+     * @return the file written by the algorithm
+     */
+    public File getFile() {
+        return file;
+    }
+}
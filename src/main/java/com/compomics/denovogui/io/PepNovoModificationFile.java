@@ -61,15 +61,18 @@ public class PepNovoModificationFile {
     private static double maxMassOffsetValue = -50; // @TODO: why -50???
 
     /**
-     * This method writes the modifications to a file.
+     * This method writes the modifications to a file. The file is first
+     * written under a temporary name and then renamed, so that PepNovo+
+     * processes already started never read a partially written file.
      *
      * @param filePath the folder where the file shall be saved
      * @param modificationProfile the modification profile of the search
      * @throws java.io.IOException thrown if the file access fails
      */
-    public static void writeFile(File filePath, PtmSettings modificationProfile) throws IOException {
+    public static synchronized void writeFile(File filePath, PtmSettings modificationProfile) throws IOException {
         // Init the buffered writer.
-        BufferedWriter writer = new BufferedWriter(new FileWriter(new File(filePath, name)));
+        File tempFile = new File(filePath, name + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
 
         // PTM file header
         writer.append(getHeader());
@@ -88,6 +91,15 @@ public class PepNovoModificationFile {
 
         writer.flush();
         writer.close();
+
+        File modFile = new File(filePath, name);
+        if (!tempFile.renameTo(modFile)) {
+            // the rename does not replace existing files on all platforms
+            modFile.delete();
+            if (!tempFile.renameTo(modFile)) {
+                throw new IOException("Failed to rename " + tempFile.getAbsolutePath() + " to " + modFile.getName() + ".");
+            }
+        }
     }
 
     /**
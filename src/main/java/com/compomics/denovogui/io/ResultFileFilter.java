@@ -0,0 +1,298 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.identification.Advocate;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Applies an assumption filter to a result file before it is parsed. The file
+ * is read line by line and copied without the results which cannot pass the
+ * filter, so that the assumptions of these results are never created by the
+ * parser. Supported formats are PepNovo+ (.out) and DirecTag (.tags).
+ * <br><br>
+ * The results kept are the results passing the score threshold which have
+ * one of the best scores of their spectrum, the number of best scores being
+ * the maximal number of matches of the filter. When several results share a
+ * score, more results than the maximal number of matches can be kept. The
+ * filter must thus still be applied to the parsed assumptions.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ResultFileFilter {
+
+    /**
+     * The filter to apply.
+     */
+    private final AssumptionFilter assumptionFilter;
+    /**
+     * The number of results removed from the files filtered.
+     */
+    private long nRemoved = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param assumptionFilter the filter to apply
+     */
+    public ResultFileFilter(AssumptionFilter assumptionFilter) {
+        this.assumptionFilter = assumptionFilter;
+    }
+
+    /**
+     * Indicates whether the given result file can be filtered before it is
+     * parsed.
+     *
+     * @param resultFile the result file
+     *
+     * @return true if the result file can be filtered
+     */
+    public static boolean isSupported(File resultFile) {
+        return getAdvocateIndex(resultFile) != -1;
+    }
+
+    /**
+     * Returns the index of the advocate of the given result file, -1 if the
+     * format is not supported.
+     *
+     * @param resultFile the result file
+     *
+     * @return the index of the advocate of the result file
+     */
+    private static int getAdvocateIndex(File resultFile) {
+        String fileName = resultFile.getName().toLowerCase();
+        if (fileName.endsWith(".out")) {
+            return Advocate.pepnovo.getIndex();
+        } else if (fileName.endsWith(".tags")) {
+            return Advocate.direcTag.getIndex();
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the results of the given file which can pass the filter to a
+     * file of the same name in the given folder. The name is kept as the
+     * parsers infer the spectrum file from it.
+     *
+     * @param resultFile the result file
+     * @param destinationFolder the folder where to write the filtered file,
+     * must differ from the folder of the result file
+     *
+     * @return the filtered file
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the files
+     */
+    public File filter(File resultFile, File destinationFolder) throws IOException {
+
+        int advocateIndex = getAdvocateIndex(resultFile);
+        if (advocateIndex == -1) {
+            throw new IllegalArgumentException("Filtering not implemented for " + resultFile.getName() + ".");
+        }
+
+        File filteredFile = new File(destinationFolder, resultFile.getName());
+        if (filteredFile.getAbsoluteFile().equals(resultFile.getAbsoluteFile())) {
+            throw new IllegalArgumentException("The filtered file cannot replace " + resultFile.getName() + ".");
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(filteredFile));
+
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(resultFile));
+            try {
+                boolean pepNovo = advocateIndex == Advocate.pepnovo.getIndex();
+                SpectrumBlock block = new SpectrumBlock(advocateIndex);
+                int scoreColumn = -1;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (pepNovo ? line.startsWith(">>") : line.startsWith("S\t")) {
+                        // a new spectrum
+                        block.write(writer);
+                        block.start();
+                        block.addLine(line);
+                    } else if (pepNovo ? line.startsWith("#Index") : line.startsWith("H(T)")) {
+                        // the columns of the results
+                        scoreColumn = pepNovo ? getColumn(line.substring(1), "PnvScr") : getColumn(line, "TotalScore");
+                        block.addLine(line);
+                    } else if (block.isStarted() && (pepNovo ? line.length() > 0 && !line.startsWith("#") : line.startsWith("T\t"))) {
+                        block.addResult(line, getScore(line, scoreColumn));
+                    } else {
+                        block.addLine(line);
+                    }
+                }
+                block.write(writer);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            writer.close();
+        }
+
+        return filteredFile;
+    }
+
+    /**
+     * Returns the number of results removed from the files filtered.
+     *
+     * @return the number of results removed from the files filtered
+     */
+    public long getNRemoved() {
+        return nRemoved;
+    }
+
+    /**
+     * Returns the index of the given column in a tab separated header line,
+     * -1 if not found.
+     *
+     * @param header the header line
+     * @param name the name of the column
+     *
+     * @return the index of the column
+     */
+    private static int getColumn(String header, String name) {
+        String[] columns = header.split("\t");
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].trim().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the score of a tab separated result line, NaN if not found.
+     *
+     * @param line the result line
+     * @param scoreColumn the index of the score column, -1 if unknown
+     *
+     * @return the score of the result
+     */
+    private static double getScore(String line, int scoreColumn) {
+        if (scoreColumn == -1) {
+            return Double.NaN;
+        }
+        String[] values = line.split("\t");
+        if (scoreColumn >= values.length) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(values[scoreColumn].trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The lines of a spectrum, kept until all the results of the spectrum are
+     * read.
+     */
+    private class SpectrumBlock {
+
+        /**
+         * The index of the advocate of the results.
+         */
+        private final int advocateIndex;
+        /**
+         * The lines of the spectrum, in the order of the file.
+         */
+        private final ArrayList<String> lines = new ArrayList<String>();
+        /**
+         * The score of every line, null for the lines which are not results.
+         */
+        private final ArrayList<Double> lineScores = new ArrayList<Double>();
+        /**
+         * The distinct scores of the results.
+         */
+        private final HashSet<Double> scores = new HashSet<Double>();
+        /**
+         * Indicates whether the header of a spectrum was read.
+         */
+        private boolean started = false;
+
+        /**
+         * Constructor.
+         *
+         * @param advocateIndex the index of the advocate of the results
+         */
+        SpectrumBlock(int advocateIndex) {
+            this.advocateIndex = advocateIndex;
+        }
+
+        /**
+         * Indicates whether the header of a spectrum was read.
+         *
+         * @return true if the header of a spectrum was read
+         */
+        boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * Indicates that the following lines belong to a spectrum.
+         */
+        void start() {
+            started = true;
+        }
+
+        /**
+         * Adds a line which is not a result.
+         *
+         * @param line the line
+         */
+        void addLine(String line) {
+            lines.add(line);
+            lineScores.add(null);
+        }
+
+        /**
+         * Adds a result line.
+         *
+         * @param line the line
+         * @param score the score of the result, NaN if unknown
+         */
+        void addResult(String line, double score) {
+            lines.add(line);
+            lineScores.add(score);
+            if (!Double.isNaN(score)) {
+                scores.add(score);
+            }
+        }
+
+        /**
+         * Writes the lines of the spectrum without the results which cannot
+         * pass the filter and clears the block. The results with an unknown
+         * score are kept.
+         *
+         * @param writer the writer
+         *
+         * @throws IOException thrown if an error occurred while writing
+         */
+        void write(BufferedWriter writer) throws IOException {
+
+            HashSet<Double> bestScores = new HashSet<Double>();
+            for (double score : assumptionFilter.getBestScores(advocateIndex, scores)) {
+                bestScores.add(score);
+            }
+
+            for (int i = 0; i < lines.size(); i++) {
+                Double score = lineScores.get(i);
+                if (score == null || Double.isNaN(score) || bestScores.contains(score)) {
+                    writer.write(lines.get(i));
+                    writer.newLine();
+                } else {
+                    nRemoved++;
+                }
+            }
+
+            lines.clear();
+            lineScores.clear();
+            scores.clear();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Merges the results obtained on the shards of a spectrum file into the result
+ * files of the spectrum file. The shards must be given in the order of the
+ * spectrum file.
+ * <br><br>
+ * The DirecTag and Novor results refer to the spectra by their index in the
+ * file sequenced. These indexes are shifted by the number of spectra in the
+ * previous shards so that they refer to the spectrum file. PepNovo+ and pNovo+
+ * results refer to the spectra by title and are concatenated. The indexes of
+ * results obtained on files where spectra were skipped are set back to the
+ * indexes of the original file in the same way.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ShardMerger {
+
+    /**
+     * The prefix of the spectrum index in the DirecTag spectrum lines.
+     */
+    private static final String DIRECTAG_INDEX_PREFIX = "index=";
+
+    /**
+     * Returns the number of spectra in an mgf file.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the number of spectra in the file
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    public static int countSpectra(File mgfFile) throws IOException {
+        int nSpectra = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith("BEGIN IONS")) {
+                    nSpectra++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return nSpectra;
+    }
+
+    /**
+     * Merges PepNovo+ out files. The header of the files is skipped as done
+     * when merging the chunks of a file.
+     *
+     * @param shardFiles the out files of the shards
+     * @param mergedFile the merged file
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public static void mergePepNovo(List<File> shardFiles, File mergedFile) throws IOException {
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(mergedFile));
+
+        try {
+            for (File file : shardFiles) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    boolean isContent = false;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(">>")) {
+                            isContent = true;
+                        }
+                        if (isContent && !line.startsWith("#Processed")) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Merges DirecTag tags files. The header of the first file is kept and
+     * the spectrum indexes are shifted by the number of spectra of the
+     * previous shards.
+     *
+     * @param shardFiles the tags files of the shards
+     * @param offsets the number of spectra before every shard
+     * @param mergedFile the merged file
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public static void mergeDirecTag(List<File> shardFiles, int[] offsets, File mergedFile) throws IOException {
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(mergedFile));
+
+        try {
+            for (int i = 0; i < shardFiles.size(); i++) {
+                BufferedReader reader = new BufferedReader(new FileReader(shardFiles.get(i)));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("S\t")) {
+                            writer.write(setDirecTagIndex(line, offsets[i], null));
+                            writer.newLine();
+                        } else if (line.startsWith("T\t") || i == 0) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Sets the original spectrum indexes in a DirecTag tags file obtained on
+     * a file where spectra were skipped. The file is rewritten.
+     *
+     * @param tagsFile the tags file
+     * @param originalIndexes the original index of every spectrum sequenced
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the file
+     */
+    public static void reindexDirecTag(File tagsFile, int[] originalIndexes) throws IOException {
+
+        File tempFile = new File(tagsFile.getParentFile(), tagsFile.getName() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
+
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(tagsFile));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("S\t")) {
+                        line = setDirecTagIndex(line, 0, originalIndexes);
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            writer.close();
+        }
+
+        replace(tempFile, tagsFile);
+    }
+
+    /**
+     * Sets the original spectrum ids in a Novor result file obtained on a
+     * file where spectra were skipped. The file is rewritten.
+     *
+     * @param novorFile the Novor result file
+     * @param originalIndexes the original index of every spectrum sequenced
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the file
+     */
+    public static void reindexNovor(File novorFile, int[] originalIndexes) throws IOException {
+
+        File tempFile = new File(novorFile.getParentFile(), novorFile.getName() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
+
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(novorFile));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("#") && line.trim().length() > 0) {
+                        line = setNovorId(line, 0, originalIndexes);
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            writer.close();
+        }
+
+        replace(tempFile, novorFile);
+    }
+
+    /**
+     * Replaces a file by another one.
+     *
+     * @param newFile the new file
+     * @param file the file to replace
+     *
+     * @throws IOException thrown if the file cannot be replaced
+     */
+    private static void replace(File newFile, File file) throws IOException {
+        if (!file.delete() || !newFile.renameTo(file)) {
+            throw new IOException("Impossible to replace " + file.getAbsolutePath() + " by " + newFile.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the index of a spectrum in the merged or original file.
+     *
+     * @param index the index of the spectrum in the file sequenced
+     * @param offset the number of spectra before the shard
+     * @param originalIndexes the original index of every spectrum sequenced,
+     * null if no spectrum was skipped
+     *
+     * @return the index of the spectrum in the merged or original file
+     */
+    private static int getIndex(int index, int offset, int[] originalIndexes) {
+        if (originalIndexes != null && index >= 0 && index < originalIndexes.length) {
+            return originalIndexes[index];
+        }
+        return index + offset;
+    }
+
+    /**
+     * Sets the spectrum index of a DirecTag spectrum line.
+     *
+     * @param line the spectrum line
+     * @param offset the number of spectra before the shard
+     * @param originalIndexes the original index of every spectrum sequenced,
+     * null if no spectrum was skipped
+     *
+     * @return the line with the index set
+     */
+    private static String setDirecTagIndex(String line, int offset, int[] originalIndexes) {
+
+        if (offset == 0 && originalIndexes == null) {
+            return line;
+        }
+
+        String[] values = line.split("\t", -1);
+        StringBuilder result = new StringBuilder(line.length() + 4);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                result.append('\t');
+            }
+            String value = values[i];
+            if (value.startsWith(DIRECTAG_INDEX_PREFIX)) {
+                try {
+                    int index = Integer.parseInt(value.substring(DIRECTAG_INDEX_PREFIX.length()));
+                    value = DIRECTAG_INDEX_PREFIX + getIndex(index, offset, originalIndexes);
+                } catch (NumberFormatException e) {
+                    // not an index, keep as is
+                }
+            }
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Merges pNovo+ result files.
+     *
+     * @param shardFiles the result files of the shards
+     * @param mergedFile the merged file
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public static void mergePNovo(List<File> shardFiles, File mergedFile) throws IOException {
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(mergedFile));
+
+        try {
+            for (File file : shardFiles) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Merges Novor result files. The comment lines of the first file are kept
+     * and the spectrum id in the first column is shifted by the number of
+     * spectra of the previous shards.
+     *
+     * @param shardFiles the result files of the shards
+     * @param offsets the number of spectra before every shard
+     * @param mergedFile the merged file
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public static void mergeNovor(List<File> shardFiles, int[] offsets, File mergedFile) throws IOException {
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(mergedFile));
+
+        try {
+            for (int i = 0; i < shardFiles.size(); i++) {
+                BufferedReader reader = new BufferedReader(new FileReader(shardFiles.get(i)));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("#") || line.trim().length() == 0) {
+                            if (i == 0) {
+                                writer.write(line);
+                                writer.newLine();
+                            }
+                        } else {
+                            writer.write(setNovorId(line, offsets[i], null));
+                            writer.newLine();
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Sets the spectrum id of a Novor result line.
+     *
+     * @param line the result line
+     * @param offset the number of spectra before the shard
+     * @param originalIndexes the original index of every spectrum sequenced,
+     * null if no spectrum was skipped
+     *
+     * @return the line with the id set
+     */
+    private static String setNovorId(String line, int offset, int[] originalIndexes) {
+
+        int separator = line.indexOf(',');
+        if (offset == 0 && originalIndexes == null || separator == -1) {
+            return line;
+        }
+
+        String id = line.substring(0, separator);
+        try {
+            int index = Integer.parseInt(id.trim());
+            int start = 0;
+            while (start < id.length() && Character.isWhitespace(id.charAt(start))) {
+                start++;
+            }
+            return id.substring(0, start) + getIndex(index, offset, originalIndexes) + line.substring(separator);
+        } catch (NumberFormatException e) {
+            return line;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * The work folder shared by the coordinator and the workers of a distributed
+ * sequencing, typically on a network file system. The folder contains:
+ * <br>- run.properties: the description of the run written by the coordinator
+ * <br>- shards: the shards of the spectrum files
+ * <br>- claims: one lock file per shard being sequenced by a worker
+ * <br>- results: one folder per shard sequenced, and one file per shard which
+ * failed
+ * <br>- logs: the logs of the workers started by the coordinator
+ * <br><br>
+ * Only atomic file system operations are used for the coordination: a shard
+ * is claimed by creating its lock file and its results are published by
+ * renaming a complete folder. The lock files contain the id of the worker
+ * owning the claim and are touched regularly by this worker, a lock which was
+ * not touched for a given time is considered stale and the shard can be
+ * claimed by another worker. Workers only touch and release the claims they
+ * own. In the rare case where two workers take over a stale claim at the same
+ * time, a shard can be sequenced twice, its results are published only once.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ShardWorkFolder {
+
+    /**
+     * The name of the run description file.
+     */
+    public static final String RUN_FILE = "run.properties";
+    /**
+     * Key of the search parameters file in the run description.
+     */
+    public static final String ID_PARAMS = "id_params";
+    /**
+     * Key of the PepNovo+ flag in the run description.
+     */
+    public static final String PEPNOVO = "pepnovo";
+    /**
+     * Key of the DirecTag flag in the run description.
+     */
+    public static final String DIRECTAG = "directag";
+    /**
+     * Key of the pNovo+ flag in the run description.
+     */
+    public static final String PNOVO = "pnovo";
+    /**
+     * Key of the Novor flag in the run description.
+     */
+    public static final String NOVOR = "novor";
+    /**
+     * Key of the number of shards in the run description.
+     */
+    public static final String SHARDS = "shards";
+    /**
+     * Prefix of the keys of the shard names in the run description.
+     */
+    public static final String SHARD = "shard.";
+    /**
+     * The work folder.
+     */
+    private final File folder;
+
+    /**
+     * Constructor.
+     *
+     * @param folder the work folder
+     */
+    public ShardWorkFolder(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Creates the sub-folders of the work folder.
+     *
+     * @throws IOException thrown if a folder cannot be created
+     */
+    public void createFolders() throws IOException {
+        for (File subFolder : new File[]{folder, getShardsFolder(), getClaimsFolder(), getResultsFolder(), getLogsFolder()}) {
+            if (!subFolder.isDirectory() && !subFolder.mkdirs()) {
+                throw new IOException("Impossible to create the folder " + subFolder.getAbsolutePath() + ".");
+            }
+        }
+    }
+
+    /**
+     * Returns the work folder.
+     *
+     * @return the work folder
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns the folder containing the shards.
+     *
+     * @return the folder containing the shards
+     */
+    public File getShardsFolder() {
+        return new File(folder, "shards");
+    }
+
+    /**
+     * Returns the folder containing the claims.
+     *
+     * @return the folder containing the claims
+     */
+    public File getClaimsFolder() {
+        return new File(folder, "claims");
+    }
+
+    /**
+     * Returns the folder containing the results.
+     *
+     * @return the folder containing the results
+     */
+    public File getResultsFolder() {
+        return new File(folder, "results");
+    }
+
+    /**
+     * Returns the folder containing the logs of the workers.
+     *
+     * @return the folder containing the logs of the workers
+     */
+    public File getLogsFolder() {
+        return new File(folder, "logs");
+    }
+
+    /**
+     * Returns the run description file.
+     *
+     * @return the run description file
+     */
+    public File getRunFile() {
+        return new File(folder, RUN_FILE);
+    }
+
+    /**
+     * Returns the file of a shard.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the file of the shard
+     */
+    public File getShardFile(String shardName) {
+        return new File(getShardsFolder(), shardName);
+    }
+
+    /**
+     * Returns the lock file of a shard.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the lock file of the shard
+     */
+    public File getClaimFile(String shardName) {
+        return new File(getClaimsFolder(), shardName + ".lock");
+    }
+
+    /**
+     * Returns the folder where the results of a shard are published.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the folder where the results of a shard are published
+     */
+    public File getResultFolder(String shardName) {
+        return new File(getResultsFolder(), shardName);
+    }
+
+    /**
+     * Returns the file indicating that the sequencing of a shard failed.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the file indicating that the sequencing of a shard failed
+     */
+    public File getFailureFile(String shardName) {
+        return new File(getResultsFolder(), shardName + ".failed");
+    }
+
+    /**
+     * Writes the run description. The file is written under a temporary name
+     * and renamed so that workers never read an incomplete description.
+     *
+     * @param runDescription the run description
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    public void writeRunDescription(Properties runDescription) throws IOException {
+        File runFile = getRunFile();
+        File tempFile = new File(folder, RUN_FILE + ".tmp");
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+        try {
+            runDescription.store(outputStream, "DeNovoGUI distributed sequencing");
+        } finally {
+            outputStream.close();
+        }
+        if (!tempFile.renameTo(runFile)) {
+            throw new IOException("Failed to rename " + tempFile.getAbsolutePath() + " to " + runFile.getName() + ".");
+        }
+    }
+
+    /**
+     * Reads the run description.
+     *
+     * @return the run description, null if not written yet
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    public Properties readRunDescription() throws IOException {
+        File runFile = getRunFile();
+        if (!runFile.exists()) {
+            return null;
+        }
+        Properties runDescription = new Properties();
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(runFile));
+        try {
+            runDescription.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return runDescription;
+    }
+
+    /**
+     * Returns the names of the shards of a run in the order of sequencing.
+     *
+     * @param runDescription the run description
+     *
+     * @return the names of the shards
+     */
+    public static ArrayList<String> getShardNames(Properties runDescription) {
+        int nShards = Integer.parseInt(runDescription.getProperty(SHARDS, "0"));
+        ArrayList<String> shardNames = new ArrayList<String>(nShards);
+        for (int i = 0; i < nShards; i++) {
+            shardNames.add(runDescription.getProperty(SHARD + i));
+        }
+        return shardNames;
+    }
+
+    /**
+     * Indicates whether the results of a shard are published.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return true if the results of the shard are published
+     */
+    public boolean isDone(String shardName) {
+        return getResultFolder(shardName).isDirectory();
+    }
+
+    /**
+     * Indicates whether the sequencing of a shard failed.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return true if the sequencing of the shard failed
+     */
+    public boolean isFailed(String shardName) {
+        return getFailureFile(shardName).exists();
+    }
+
+    /**
+     * Tries to claim a shard. The claim succeeds if the shard is not claimed,
+     * or if its claim is older than the given timeout.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker claiming the shard
+     * @param claimTimeout the time in milliseconds after which a claim not
+     * touched is considered stale
+     *
+     * @return true if the shard was claimed by this worker
+     *
+     * @throws IOException thrown if an error occurred while writing the lock
+     * file
+     */
+    public boolean claim(String shardName, String workerId, long claimTimeout) throws IOException {
+
+        File claimFile = getClaimFile(shardName);
+
+        if (!claimFile.createNewFile()) {
+
+            long lastModified = claimFile.lastModified();
+            if (lastModified == 0 || System.currentTimeMillis() - lastModified < claimTimeout) {
+                return false;
+            }
+            String staleOwner = getClaimOwner(claimFile);
+
+            // move the stale claim aside, the rename succeeds even if another worker replaced the claim in the meantime
+            File staleFile = new File(getClaimsFolder(), shardName + ".stale_" + workerId);
+            if (!claimFile.renameTo(staleFile)) {
+                return false;
+            }
+
+            // make sure that the claim moved is the stale one and not the new claim of another worker
+            String movedOwner = getClaimOwner(staleFile);
+            long movedLastModified = staleFile.lastModified();
+            if (System.currentTimeMillis() - movedLastModified < claimTimeout
+                    || (staleOwner == null ? movedOwner != null : !staleOwner.equals(movedOwner))) {
+                if (claimFile.exists() || !staleFile.renameTo(claimFile)) {
+                    staleFile.delete();
+                }
+                return false;
+            }
+
+            staleFile.delete();
+            if (!claimFile.createNewFile()) {
+                return false;
+            }
+        }
+
+        // the results may have been published since the shard was listed
+        if (isDone(shardName) || isFailed(shardName)) {
+            claimFile.delete();
+            return false;
+        }
+
+        FileWriter writer = new FileWriter(claimFile);
+        try {
+            writer.write(workerId + " " + System.currentTimeMillis() + System.getProperty("line.separator"));
+        } finally {
+            writer.close();
+        }
+        return workerId.equals(getClaimOwner(claimFile));
+    }
+
+    /**
+     * Returns the id of the worker owning the claim in the given lock file.
+     *
+     * @param claimFile the lock file
+     *
+     * @return the id of the worker owning the claim, null if the lock file
+     * does not exist or if the id is not written yet
+     */
+    private static String getClaimOwner(File claimFile) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(claimFile));
+            try {
+                String line = reader.readLine();
+                if (line == null || line.trim().isEmpty()) {
+                    return null;
+                }
+                return line.trim().split(" ")[0];
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the claim of a shard is owned by the given worker.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker
+     *
+     * @return true if the claim of the shard is owned by the worker
+     */
+    public boolean isClaimOwner(String shardName, String workerId) {
+        return workerId.equals(getClaimOwner(getClaimFile(shardName)));
+    }
+
+    /**
+     * Touches the lock file of a shard claimed to show that the worker is
+     * alive. The lock file is not touched if the claim was taken over by
+     * another worker.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker owning the claim
+     *
+     * @return true if the claim is still owned by the worker
+     */
+    public boolean touchClaim(String shardName, String workerId) {
+        if (!isClaimOwner(shardName, workerId)) {
+            return false;
+        }
+        getClaimFile(shardName).setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Releases the claim of a shard if it is still owned by the given worker.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker owning the claim
+     */
+    public void releaseClaim(String shardName, String workerId) {
+        if (isClaimOwner(shardName, workerId)) {
+            getClaimFile(shardName).delete();
+        }
+    }
+
+    /**
+     * Publishes the results of a shard. The files are copied in a temporary
+     * folder which is renamed when complete, and the claim of the shard is
+     * released.
+     *
+     * @param shardName the name of the shard
+     * @param resultFiles the result files of the shard
+     * @param workerId the id of the worker publishing the results
+     *
+     * @throws IOException thrown if an error occurred while copying the files
+     */
+    public void publish(String shardName, ArrayList<File> resultFiles, String workerId) throws IOException {
+
+        File tempFolder = new File(getResultsFolder(), shardName + ".tmp_" + workerId);
+        if (!tempFolder.isDirectory() && !tempFolder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + tempFolder.getAbsolutePath() + ".");
+        }
+        for (File resultFile : resultFiles) {
+            copyFile(resultFile, new File(tempFolder, resultFile.getName()));
+        }
+
+        if (!tempFolder.renameTo(getResultFolder(shardName))) {
+
+            // published by another worker in the meantime
+            for (File file : tempFolder.listFiles()) {
+                file.delete();
+            }
+            tempFolder.delete();
+
+            if (!isDone(shardName)) {
+                throw new IOException("Failed to rename " + tempFolder.getAbsolutePath() + " to " + shardName + ".");
+            }
+        }
+        releaseClaim(shardName, workerId);
+    }
+
+    /**
+     * Marks a shard as failed and releases its claim.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker owning the claim
+     * @param message a message on the failure
+     *
+     * @throws IOException thrown if an error occurred while writing the
+     * failure file
+     */
+    public void fail(String shardName, String workerId, String message) throws IOException {
+        FileWriter writer = new FileWriter(getFailureFile(shardName));
+        try {
+            writer.write(message + System.getProperty("line.separator"));
+        } finally {
+            writer.close();
+        }
+        releaseClaim(shardName, workerId);
+    }
+
+    /**
+     * Copies a file.
+     *
+     * @param source the file to copy
+     * @param destination the copy
+     *
+     * @throws IOException thrown if an error occurred while copying the file
+     */
+    public static void copyFile(File source, File destination) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(source));
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destination));
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
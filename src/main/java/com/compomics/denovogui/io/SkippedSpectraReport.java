@@ -0,0 +1,141 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Report of the spectra skipped during the sequencing because an algorithm
+ * repeatedly crashed or hanged on them. The report is a tab separated file in
+ * the output folder, created when the first spectrum is skipped.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SkippedSpectraReport {
+
+    /**
+     * The name of the report file.
+     */
+    public static final String FILE_NAME = "skipped_spectra.txt";
+    /**
+     * The column separator.
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * The header of the report.
+     */
+    private static final String HEADER = "Spectrum File" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Algorithm" + SEPARATOR + "Reason";
+    /**
+     * The report file.
+     */
+    private final File file;
+    /**
+     * The number of spectra in the report.
+     */
+    private int nSpectra = 0;
+
+    /**
+     * Constructor. A report previously written in the output folder is
+     * overwritten when the first spectrum is skipped.
+     *
+     * @param outputFolder the output folder
+     */
+    public SkippedSpectraReport(File outputFolder) {
+        this.file = getReportFile(outputFolder);
+    }
+
+    /**
+     * Returns the report file of an output folder.
+     *
+     * @param outputFolder the output folder
+     *
+     * @return the report file
+     */
+    public static File getReportFile(File outputFolder) {
+        return new File(outputFolder, FILE_NAME);
+    }
+
+    /**
+     * Returns the report file.
+     *
+     * @return the report file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of spectra in the report.
+     *
+     * @return the number of spectra in the report
+     */
+    public synchronized int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Adds a skipped spectrum to the report.
+     *
+     * @param spectrumFileName the name of the spectrum file
+     * @param spectrumTitle the title of the spectrum
+     * @param algorithm the name of the algorithm
+     * @param reason the reason why the spectrum was skipped
+     *
+     * @throws IOException thrown if an error occurred while writing the report
+     */
+    public synchronized void addSpectrum(String spectrumFileName, String spectrumTitle, String algorithm, String reason) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file, nSpectra > 0));
+        try {
+            if (nSpectra == 0) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+            writer.write(clean(spectrumFileName) + SEPARATOR + clean(spectrumTitle) + SEPARATOR + clean(algorithm) + SEPARATOR + clean(reason));
+            writer.newLine();
+        } finally {
+            writer.close();
+        }
+        nSpectra++;
+    }
+
+    /**
+     * Adds the spectra of another report to this report, e.g. the report of a
+     * shard of a spectrum file.
+     *
+     * @param reportFile the report file to add
+     * @param spectrumFileName the name of the spectrum file to use for the
+     * spectra of the report
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing the reports
+     */
+    public synchronized void addReport(File reportFile, String spectrumFileName) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(reportFile));
+        try {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(SEPARATOR, -1);
+                if (values.length >= 4) {
+                    addSpectrum(spectrumFileName, values[1], values[2], values[3]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Removes the separators and line breaks from a value.
+     *
+     * @param value the value
+     *
+     * @return the cleaned value
+     */
+    private static String clean(String value) {
+        return value == null ? "" : value.replaceAll("[\t\r\n]", " ");
+    }
+}
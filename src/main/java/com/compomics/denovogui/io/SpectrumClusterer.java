@@ -0,0 +1,493 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.massspectrometry.MSnSpectrum;
+import com.compomics.util.experiment.massspectrometry.Peak;
+import com.compomics.util.experiment.massspectrometry.Precursor;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Clusters the replicate spectra of the files loaded in the spectrum factory.
+ * <br><br>
+ * The spectra are bucketed by charge and precursor m/z: the precursors are
+ * encoded as sortable long values, sorted per charge in parallel, and the
+ * buckets are the runs of precursors within the precursor tolerance of the
+ * first precursor of the bucket. Only the peaks of the spectra of buckets
+ * with several spectra are loaded. Within a bucket, the spectra are compared
+ * by the cosine similarity of their binned peak vectors, from the highest to
+ * the lowest total ion current: a spectrum joins the cluster of the first
+ * representative spectrum it is similar to, or becomes a representative
+ * spectrum. The representative spectrum of a cluster is thus its most
+ * intense spectrum.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumClusterer {
+
+    /**
+     * The default minimal cosine similarity between a spectrum and the
+     * representative spectrum of its cluster.
+     */
+    public static final double DEFAULT_SIMILARITY = 0.8;
+    /**
+     * The number of bits used for the spectrum number in the precursor keys.
+     */
+    private static final int SPECTRUM_BITS = 31;
+    /**
+     * The factor applied to the m/z values in the precursor keys.
+     */
+    private static final double MZ_FACTOR = 10000;
+    /**
+     * The maximal charge considered, higher charges are bucketed together.
+     */
+    private static final int MAX_CHARGE = 15;
+    /**
+     * The number of spectra processed between two checks of the
+     * cancellation.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1000;
+    /**
+     * The spectrum factory.
+     */
+    private final SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    /**
+     * The precursor m/z tolerance.
+     */
+    private final double precursorTolerance;
+    /**
+     * The width of the m/z bins of the peak vectors.
+     */
+    private final double binWidth;
+    /**
+     * The minimal cosine similarity between a spectrum and the representative
+     * spectrum of its cluster.
+     */
+    private double similarity = DEFAULT_SIMILARITY;
+
+    /**
+     * Constructor.
+     *
+     * @param precursorTolerance the precursor m/z tolerance
+     * @param fragmentTolerance the fragment ion m/z tolerance, used as width
+     * of the m/z bins
+     */
+    public SpectrumClusterer(double precursorTolerance, double fragmentTolerance) {
+        this.precursorTolerance = precursorTolerance;
+        this.binWidth = fragmentTolerance > 0 ? fragmentTolerance : 0.02;
+    }
+
+    /**
+     * Clusters the spectra of the given files. The files must be loaded in
+     * the spectrum factory. The precursors are read from the indexes of the
+     * files, built in parallel when missing.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param indexFolder the folder where the indexes of the files are saved
+     * @param nThreads the number of threads to use
+     * @param waitingHandler the waiting handler
+     *
+     * @return the clusters
+     *
+     * @throws IOException thrown if an error occurred while reading the
+     * spectra
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the clustering
+     */
+    public SpectrumClusters cluster(List<File> spectrumFiles, File indexFolder, int nThreads, WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        final ArrayList<SpectrumIndex> spectrumIndexes = new SpectrumIndexer(nThreads).index(spectrumFiles, indexFolder, waitingHandler);
+        if (waitingHandler.isRunCanceled()) {
+            return new SpectrumClusters();
+        }
+
+        // the spectra are numbered across files
+        final String[] fileNames = new String[spectrumFiles.size()];
+        final int[] fileOffsets = new int[spectrumFiles.size() + 1];
+        final ArrayList<ArrayList<String>> titles = new ArrayList<ArrayList<String>>(spectrumFiles.size());
+        for (int i = 0; i < spectrumFiles.size(); i++) {
+            fileNames[i] = spectrumFiles.get(i).getName();
+            titles.add(spectrumFactory.getSpectrumTitles(fileNames[i]));
+            long nSpectra = (long) fileOffsets[i] + titles.get(i).size();
+            if (nSpectra >= 1L << SPECTRUM_BITS) {
+                throw new IllegalArgumentException("Too many spectra to cluster.");
+            }
+            fileOffsets[i + 1] = (int) nSpectra;
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.setMaxSecondaryProgressCounter(2 * spectrumFiles.size());
+        waitingHandler.setSecondaryProgressCounter(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+        try {
+
+            // get the precursor keys per file
+            ArrayList<Future<long[][]>> keyFutures = new ArrayList<Future<long[][]>>(spectrumFiles.size());
+            for (int i = 0; i < spectrumFiles.size(); i++) {
+                final int fileIndex = i;
+                final WaitingHandler finalWaitingHandler = waitingHandler;
+                keyFutures.add(executor.submit(new Callable<long[][]>() {
+                    @Override
+                    public long[][] call() throws Exception {
+                        long[][] keys = getPrecursorKeys(fileNames[fileIndex], titles.get(fileIndex), spectrumIndexes.get(fileIndex), fileOffsets[fileIndex], finalWaitingHandler);
+                        finalWaitingHandler.increaseSecondaryProgressCounter();
+                        return keys;
+                    }
+                }));
+            }
+            ArrayList<long[][]> fileKeys = new ArrayList<long[][]>(spectrumFiles.size());
+            for (Future<long[][]> future : keyFutures) {
+                fileKeys.add(get(future));
+            }
+            if (waitingHandler.isRunCanceled()) {
+                return new SpectrumClusters();
+            }
+
+            // sort the keys per charge
+            ArrayList<Future<long[]>> sortFutures = new ArrayList<Future<long[]>>(MAX_CHARGE + 1);
+            for (int charge = 0; charge <= MAX_CHARGE; charge++) {
+                int nKeys = 0;
+                for (long[][] keys : fileKeys) {
+                    nKeys += keys[charge].length;
+                }
+                final long[] chargeKeys = new long[nKeys];
+                int offset = 0;
+                for (long[][] keys : fileKeys) {
+                    System.arraycopy(keys[charge], 0, chargeKeys, offset, keys[charge].length);
+                    offset += keys[charge].length;
+                    keys[charge] = null;
+                }
+                sortFutures.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        Arrays.sort(chargeKeys);
+                        return chargeKeys;
+                    }
+                }));
+            }
+
+            // cluster the buckets
+            final SpectrumClusters spectrumClusters = new SpectrumClusters();
+            ArrayList<Future<Object>> clusterFutures = new ArrayList<Future<Object>>();
+            long tolerance = (long) Math.ceil(precursorTolerance * MZ_FACTOR);
+            for (Future<long[]> future : sortFutures) {
+                long[] chargeKeys = get(future);
+                int start = 0;
+                while (start < chargeKeys.length) {
+                    long startMz = chargeKeys[start] >>> SPECTRUM_BITS;
+                    int end = start + 1;
+                    while (end < chargeKeys.length && (chargeKeys[end] >>> SPECTRUM_BITS) - startMz <= tolerance) {
+                        end++;
+                    }
+                    if (end - start > 1) {
+                        final int[] bucket = new int[end - start];
+                        for (int i = start; i < end; i++) {
+                            bucket[i - start] = (int) (chargeKeys[i] & ((1L << SPECTRUM_BITS) - 1));
+                        }
+                        final WaitingHandler finalWaitingHandler = waitingHandler;
+                        clusterFutures.add(executor.submit(new Callable<Object>() {
+                            @Override
+                            public Object call() throws Exception {
+                                if (!finalWaitingHandler.isRunCanceled()) {
+                                    clusterBucket(bucket, fileNames, fileOffsets, titles, spectrumClusters);
+                                }
+                                return null;
+                            }
+                        }));
+                    }
+                    start = end;
+                }
+            }
+            for (Future<Object> future : clusterFutures) {
+                get(future);
+            }
+            waitingHandler.setSecondaryProgressCounter(2 * spectrumFiles.size());
+            waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+            return spectrumClusters;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the precursor keys of the spectra of a file, per charge. A key
+     * is made of the precursor m/z in the high bits and of the number of the
+     * spectrum in the low bits, so that the keys sort by m/z. The precursors
+     * are taken from the index of the file, or from the spectrum factory for
+     * the titles not found in the index.
+     *
+     * @param fileName the name of the spectrum file
+     * @param titles the titles of the spectra of the file
+     * @param spectrumIndex the index of the spectrum file
+     * @param offset the number of the first spectrum of the file
+     * @param waitingHandler the waiting handler
+     *
+     * @return the precursor keys of the file indexed by charge
+     *
+     * @throws Exception thrown if an error occurred while reading the
+     * precursors
+     */
+    private long[][] getPrecursorKeys(String fileName, ArrayList<String> titles, SpectrumIndex spectrumIndex, int offset, WaitingHandler waitingHandler) throws Exception {
+        int[] nKeys = new int[MAX_CHARGE + 1];
+        long[] keys = new long[titles.size()];
+        int[] charges = new int[titles.size()];
+        for (int i = 0; i < titles.size(); i++) {
+            int index = spectrumIndex.getIndex(titles.get(i));
+            double precursorMz;
+            int charge = 0;
+            if (index != -1) {
+                precursorMz = spectrumIndex.getPrecursorMz(index);
+                charge = Math.min(Math.max(spectrumIndex.getCharge(index), 0), MAX_CHARGE);
+            } else {
+                Precursor precursor = spectrumFactory.getPrecursor(fileName, titles.get(i));
+                precursorMz = precursor.getMz();
+                if (!precursor.getPossibleCharges().isEmpty()) {
+                    charge = Math.min(Math.max(precursor.getPossibleCharges().get(0).value, 0), MAX_CHARGE);
+                }
+            }
+            long mz = Math.max(0, Math.round(precursorMz * MZ_FACTOR));
+            keys[i] = (mz << SPECTRUM_BITS) | (offset + i);
+            charges[i] = charge;
+            nKeys[charge]++;
+            if (i % CANCEL_CHECK_INTERVAL == 0 && waitingHandler.isRunCanceled()) {
+                return new long[MAX_CHARGE + 1][0];
+            }
+        }
+        long[][] result = new long[MAX_CHARGE + 1][];
+        for (int charge = 0; charge <= MAX_CHARGE; charge++) {
+            result[charge] = new long[nKeys[charge]];
+            nKeys[charge] = 0;
+        }
+        for (int i = 0; i < titles.size(); i++) {
+            int charge = charges[i];
+            result[charge][nKeys[charge]++] = keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Clusters the spectra of a bucket.
+     *
+     * @param bucket the numbers of the spectra of the bucket
+     * @param fileNames the names of the spectrum files
+     * @param fileOffsets the number of the first spectrum of every file
+     * @param titles the titles of the spectra of every file
+     * @param spectrumClusters the clusters where to add the members
+     *
+     * @throws Exception thrown if an error occurred while reading the spectra
+     */
+    private void clusterBucket(int[] bucket, String[] fileNames, int[] fileOffsets, ArrayList<ArrayList<String>> titles,
+            SpectrumClusters spectrumClusters) throws Exception {
+
+        ArrayList<PeakVector> vectors = new ArrayList<PeakVector>(bucket.length);
+        for (int number : bucket) {
+            int fileIndex = Arrays.binarySearch(fileOffsets, number);
+            if (fileIndex < 0) {
+                fileIndex = -fileIndex - 2;
+            } else {
+                // skip the empty files
+                while (fileIndex + 1 < fileOffsets.length && fileOffsets[fileIndex + 1] == number) {
+                    fileIndex++;
+                }
+            }
+            int index = number - fileOffsets[fileIndex];
+            String title = titles.get(fileIndex).get(index);
+            MSnSpectrum spectrum = (MSnSpectrum) spectrumFactory.getSpectrum(fileNames[fileIndex], title);
+            vectors.add(new PeakVector(fileIndex, index, title, spectrum.getPeakList()));
+        }
+
+        Collections.sort(vectors, new Comparator<PeakVector>() {
+            @Override
+            public int compare(PeakVector vector1, PeakVector vector2) {
+                return Double.compare(vector2.tic, vector1.tic);
+            }
+        });
+
+        ArrayList<PeakVector> representatives = new ArrayList<PeakVector>();
+        for (PeakVector vector : vectors) {
+            PeakVector representative = null;
+            for (PeakVector candidate : representatives) {
+                if (vector.getCosine(candidate) >= similarity) {
+                    representative = candidate;
+                    break;
+                }
+            }
+            if (representative == null) {
+                representatives.add(vector);
+            } else {
+                spectrumClusters.addMember(fileNames[vector.fileIndex], vector.index, vector.title,
+                        fileNames[representative.fileIndex], representative.title);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of a future, the exceptions thrown by the task are
+     * returned as IOException.
+     *
+     * @param <T> the type of result
+     * @param future the future
+     *
+     * @return the result of the future
+     *
+     * @throws IOException thrown if the task threw an exception
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("An error occurred while clustering the spectra.", cause);
+        }
+    }
+
+    /**
+     * Returns the minimal cosine similarity between a spectrum and the
+     * representative spectrum of its cluster.
+     *
+     * @return the minimal cosine similarity
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Sets the minimal cosine similarity between a spectrum and the
+     * representative spectrum of its cluster.
+     *
+     * @param similarity the minimal cosine similarity
+     */
+    public void setSimilarity(double similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * The binned peak vector of a spectrum. The intensities are square root
+     * transformed and normalized to a unit vector.
+     */
+    private class PeakVector {
+
+        /**
+         * The index of the spectrum file.
+         */
+        private final int fileIndex;
+        /**
+         * The index of the spectrum in its file.
+         */
+        private final int index;
+        /**
+         * The title of the spectrum.
+         */
+        private final String title;
+        /**
+         * The total ion current of the spectrum.
+         */
+        private final double tic;
+        /**
+         * The indexes of the non empty bins, sorted.
+         */
+        private final int[] bins;
+        /**
+         * The normalized values of the non empty bins.
+         */
+        private final double[] values;
+
+        /**
+         * Constructor.
+         *
+         * @param fileIndex the index of the spectrum file
+         * @param index the index of the spectrum in its file
+         * @param title the title of the spectrum
+         * @param peaks the peaks of the spectrum
+         */
+        private PeakVector(int fileIndex, int index, String title, Iterable<Peak> peaks) {
+            this.fileIndex = fileIndex;
+            this.index = index;
+            this.title = title;
+
+            ArrayList<Peak> sortedPeaks = new ArrayList<Peak>();
+            double totalIntensity = 0;
+            for (Peak peak : peaks) {
+                sortedPeaks.add(peak);
+                totalIntensity += peak.intensity;
+            }
+            tic = totalIntensity;
+            Collections.sort(sortedPeaks, new Comparator<Peak>() {
+                @Override
+                public int compare(Peak peak1, Peak peak2) {
+                    return Double.compare(peak1.mz, peak2.mz);
+                }
+            });
+
+            int[] tempBins = new int[sortedPeaks.size()];
+            double[] tempValues = new double[sortedPeaks.size()];
+            int nBins = 0;
+            double norm = 0;
+            for (Peak peak : sortedPeaks) {
+                int bin = (int) (peak.mz / binWidth);
+                double value = Math.sqrt(Math.max(peak.intensity, 0));
+                if (nBins > 0 && tempBins[nBins - 1] == bin) {
+                    norm -= tempValues[nBins - 1] * tempValues[nBins - 1];
+                    tempValues[nBins - 1] += value;
+                } else {
+                    tempBins[nBins] = bin;
+                    tempValues[nBins] = value;
+                    nBins++;
+                }
+                norm += tempValues[nBins - 1] * tempValues[nBins - 1];
+            }
+            norm = Math.sqrt(norm);
+            bins = Arrays.copyOf(tempBins, nBins);
+            values = Arrays.copyOf(tempValues, nBins);
+            if (norm > 0) {
+                for (int i = 0; i < nBins; i++) {
+                    values[i] /= norm;
+                }
+            }
+        }
+
+        /**
+         * Returns the cosine similarity with another vector.
+         *
+         * @param other the other vector
+         *
+         * @return the cosine similarity
+         */
+        private double getCosine(PeakVector other) {
+            double cosine = 0;
+            int i = 0;
+            int j = 0;
+            while (i < bins.length && j < other.bins.length) {
+                if (bins[i] < other.bins[j]) {
+                    i++;
+                } else if (bins[i] > other.bins[j]) {
+                    j++;
+                } else {
+                    cosine += values[i] * other.values[j];
+                    i++;
+                    j++;
+                }
+            }
+            return cosine;
+        }
+    }
+}
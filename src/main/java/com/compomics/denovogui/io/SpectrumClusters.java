@@ -0,0 +1,211 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The clusters of replicate spectra of a sequencing. Only the representative
+ * spectrum of a cluster is sequenced, the other spectra of the cluster, the
+ * members, get the results of the representative spectrum when the results
+ * are imported. The clusters are saved as a tab separated file in the output
+ * folder.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumClusters {
+
+    /**
+     * The name of the clusters file.
+     */
+    public static final String FILE_NAME = "spectrum_clusters.txt";
+    /**
+     * The column separator.
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * The header of the clusters file.
+     */
+    private static final String HEADER = "Spectrum File" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Representative File" + SEPARATOR + "Representative Title";
+    /**
+     * The indexes of the member spectra, indexed by spectrum file name.
+     */
+    private final HashMap<String, BitSet> memberIndexes = new HashMap<String, BitSet>();
+    /**
+     * The keys of the members of every representative spectrum, indexed by
+     * the key of the representative spectrum.
+     */
+    private final HashMap<String, ArrayList<String>> members = new HashMap<String, ArrayList<String>>();
+    /**
+     * The file name and title of the members and of their representative
+     * spectrum, in the order they were added.
+     */
+    private final ArrayList<String[]> lines = new ArrayList<String[]>();
+
+    /**
+     * Returns the clusters file of an output folder.
+     *
+     * @param outputFolder the output folder
+     *
+     * @return the clusters file
+     */
+    public static File getClustersFile(File outputFolder) {
+        return new File(outputFolder, FILE_NAME);
+    }
+
+    /**
+     * Adds a member spectrum to the cluster of a representative spectrum.
+     *
+     * @param fileName the name of the file of the member
+     * @param index the index of the member in its file
+     * @param title the title of the member
+     * @param representativeFileName the name of the file of the
+     * representative spectrum
+     * @param representativeTitle the title of the representative spectrum
+     */
+    public synchronized void addMember(String fileName, int index, String title, String representativeFileName, String representativeTitle) {
+        if (index >= 0) {
+            BitSet fileIndexes = memberIndexes.get(fileName);
+            if (fileIndexes == null) {
+                fileIndexes = new BitSet();
+                memberIndexes.put(fileName, fileIndexes);
+            }
+            fileIndexes.set(index);
+        }
+        String representativeKey = Spectrum.getSpectrumKey(representativeFileName, representativeTitle);
+        ArrayList<String> representativeMembers = members.get(representativeKey);
+        if (representativeMembers == null) {
+            representativeMembers = new ArrayList<String>(1);
+            members.put(representativeKey, representativeMembers);
+        }
+        representativeMembers.add(Spectrum.getSpectrumKey(fileName, title));
+        lines.add(new String[]{fileName, title, representativeFileName, representativeTitle});
+    }
+
+    /**
+     * Indicates whether a spectrum is the member of a cluster and should
+     * therefore not be sequenced.
+     *
+     * @param fileName the name of the spectrum file
+     * @param index the index of the spectrum in the file
+     *
+     * @return true if the spectrum is the member of a cluster
+     */
+    public synchronized boolean isMember(String fileName, int index) {
+        BitSet fileIndexes = memberIndexes.get(fileName);
+        return fileIndexes != null && fileIndexes.get(index);
+    }
+
+    /**
+     * Returns the number of member spectra.
+     *
+     * @return the number of member spectra
+     */
+    public synchronized int getNMembers() {
+        return lines.size();
+    }
+
+    /**
+     * Returns the keys of the members of a representative spectrum.
+     *
+     * @param representativeKey the key of the representative spectrum
+     *
+     * @return the keys of the members, null if none
+     */
+    public synchronized ArrayList<String> getMembers(String representativeKey) {
+        return members.get(representativeKey);
+    }
+
+    /**
+     * Adds the matches of the members of the clusters, with the assumptions
+     * of their representative spectrum, to the given list of matches.
+     *
+     * @param spectrumMatches the spectrum matches
+     */
+    public void propagate(List<SpectrumMatch> spectrumMatches) {
+        ArrayList<SpectrumMatch> memberMatches = new ArrayList<SpectrumMatch>();
+        for (SpectrumMatch spectrumMatch : spectrumMatches) {
+            ArrayList<String> memberKeys = getMembers(spectrumMatch.getKey());
+            if (memberKeys != null) {
+                HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+                for (String memberKey : memberKeys) {
+                    SpectrumMatch memberMatch = new SpectrumMatch(memberKey);
+                    for (int advocate : assumptionsMap.keySet()) {
+                        // the direcTag e-values are better when lower
+                        boolean ascendingScore = advocate == Advocate.direcTag.getIndex();
+                        for (ArrayList<SpectrumIdentificationAssumption> assumptions : assumptionsMap.get(advocate).values()) {
+                            for (SpectrumIdentificationAssumption assumption : assumptions) {
+                                memberMatch.addHit(advocate, assumption, ascendingScore);
+                            }
+                        }
+                    }
+                    memberMatches.add(memberMatch);
+                }
+            }
+        }
+        spectrumMatches.addAll(memberMatches);
+    }
+
+    /**
+     * Writes the clusters to a file.
+     *
+     * @param file the file
+     *
+     * @throws IOException thrown if an error occurred while writing the file
+     */
+    public synchronized void write(File file) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String[] line : lines) {
+                writer.write(line[0] + SEPARATOR + line[1] + SEPARATOR + line[2] + SEPARATOR + line[3]);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads the clusters of an output folder.
+     *
+     * @param outputFolder the output folder
+     *
+     * @return the clusters, null if the spectra were not clustered
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    public static SpectrumClusters read(File outputFolder) throws IOException {
+        File file = getClustersFile(outputFolder);
+        if (!file.exists()) {
+            return null;
+        }
+        SpectrumClusters spectrumClusters = new SpectrumClusters();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(SEPARATOR, -1);
+                if (values.length >= 4) {
+                    spectrumClusters.addMember(values[0], -1, values[1], values[2], values[3]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return spectrumClusters;
+    }
+}
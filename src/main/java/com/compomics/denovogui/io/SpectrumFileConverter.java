@@ -0,0 +1,714 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts the spectrum files which cannot be given to the engines as they
+ * are, i.e. mzML files and gzipped files, to mgf files. The files are read as
+ * a stream and the mgf files are written directly, without intermediate
+ * files. For mzML files, the binary arrays of the spectra, possibly zlib
+ * compressed, are decoded by worker threads while the file is read, the
+ * spectra being written in the order of the file. Only the MS2 and higher
+ * spectra are converted.
+ * <br><br>
+ * The mgf file of a spectrum file has the name of the spectrum file with the
+ * mgf extension. It is only written if missing or older than the spectrum
+ * file.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumFileConverter {
+
+    /**
+     * The mgf extension.
+     */
+    public static final String MGF_EXTENSION = ".mgf";
+    /**
+     * The mzML extension.
+     */
+    public static final String MZML_EXTENSION = ".mzML";
+    /**
+     * The gzip extension.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+    /**
+     * The number of spectra waiting to be written per thread.
+     */
+    private static final int PENDING_SPECTRA_PER_THREAD = 64;
+    /**
+     * The size of the buffers used to read the files.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    /**
+     * The number of threads decoding the spectra.
+     */
+    private final int nThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads the number of threads decoding the spectra
+     */
+    public SpectrumFileConverter(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Returns the extensions of the supported spectrum files.
+     *
+     * @return the extensions of the supported spectrum files
+     */
+    public static ArrayList<String> getSupportedExtensions() {
+        ArrayList<String> extensions = new ArrayList<String>();
+        extensions.add(MGF_EXTENSION);
+        extensions.add(MGF_EXTENSION + GZIP_EXTENSION);
+        extensions.add(MZML_EXTENSION);
+        extensions.add(MZML_EXTENSION + GZIP_EXTENSION);
+        return extensions;
+    }
+
+    /**
+     * Indicates whether a spectrum file must be converted before the
+     * sequencing.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return true if the file must be converted
+     */
+    public static boolean isConversionNeeded(File spectrumFile) {
+        return !spectrumFile.getName().toLowerCase().endsWith(MGF_EXTENSION);
+    }
+
+    /**
+     * Indicates whether a spectrum file is an mzML file.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return true if the file is an mzML file, gzipped or not
+     */
+    public static boolean isMzML(File spectrumFile) {
+        String name = spectrumFile.getName().toLowerCase();
+        return name.endsWith(MZML_EXTENSION.toLowerCase()) || name.endsWith(MZML_EXTENSION.toLowerCase() + GZIP_EXTENSION);
+    }
+
+    /**
+     * Returns the mgf file of a spectrum file, the spectrum file itself if it
+     * is an mgf file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param folder the folder where the converted files are written
+     *
+     * @return the mgf file of the spectrum file
+     */
+    public static File getMgfFile(File spectrumFile, File folder) {
+        if (!isConversionNeeded(spectrumFile)) {
+            return spectrumFile;
+        }
+        String name = spectrumFile.getName();
+        if (name.toLowerCase().endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        if (name.toLowerCase().endsWith(MZML_EXTENSION.toLowerCase())) {
+            name = name.substring(0, name.length() - MZML_EXTENSION.length()) + MGF_EXTENSION;
+        }
+        return new File(folder, name);
+    }
+
+    /**
+     * Returns the mgf files of the given spectrum files, converting the
+     * files when needed.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param folder the folder where to write the converted files
+     * @param waitingHandler the waiting handler
+     *
+     * @return the mgf files in the order of the spectrum files
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the conversion
+     */
+    public ArrayList<File> convert(List<File> spectrumFiles, File folder, final WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        ArrayList<File> mgfFiles = new ArrayList<File>(spectrumFiles.size());
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + folder.getAbsolutePath() + ".");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+
+            // the gzipped mgf files are copied in the background while the mzML files are read
+            ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+            ArrayList<File> mzMLFiles = new ArrayList<File>();
+            for (final File spectrumFile : spectrumFiles) {
+                final File mgfFile = getMgfFile(spectrumFile, folder);
+                mgfFiles.add(mgfFile);
+                if (mgfFile != spectrumFile && !isUpToDate(spectrumFile, mgfFile)) {
+                    if (isMzML(spectrumFile)) {
+                        mzMLFiles.add(spectrumFile);
+                    } else {
+                        futures.add(executor.submit(new Callable<Object>() {
+                            @Override
+                            public Object call() throws IOException {
+                                waitingHandler.appendReport("Decompressing " + spectrumFile.getName() + ".", true, true);
+                                convertGzippedMgf(spectrumFile, mgfFile);
+                                return null;
+                            }
+                        }));
+                    }
+                }
+            }
+
+            for (File mzMLFile : mzMLFiles) {
+                if (waitingHandler.isRunCanceled()) {
+                    break;
+                }
+                waitingHandler.appendReport("Converting " + mzMLFile.getName() + ".", true, true);
+                int nSpectra = convertMzML(mzMLFile, getMgfFile(mzMLFile, folder), executor, waitingHandler);
+                waitingHandler.appendReport(nSpectra + " spectra converted from " + mzMLFile.getName() + ".", true, true);
+            }
+
+            for (Future<Object> future : futures) {
+                get(future);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return mgfFiles;
+    }
+
+    /**
+     * Indicates whether the mgf file of a spectrum file is up to date.
+     *
+     * @param spectrumFile the spectrum file
+     * @param mgfFile the mgf file
+     *
+     * @return true if the mgf file exists and is not older than the spectrum
+     * file
+     */
+    private static boolean isUpToDate(File spectrumFile, File mgfFile) {
+        return mgfFile.exists() && mgfFile.lastModified() >= spectrumFile.lastModified();
+    }
+
+    /**
+     * Decompresses a gzipped mgf file.
+     *
+     * @param gzippedFile the gzipped mgf file
+     * @param mgfFile the mgf file to write
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public void convertGzippedMgf(File gzippedFile, File mgfFile) throws IOException {
+
+        File tempFile = getTempFile(mgfFile);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(gzippedFile), BUFFER_SIZE)), BUFFER_SIZE);
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile), BUFFER_SIZE);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+        rename(tempFile, mgfFile);
+    }
+
+    /**
+     * Converts the MS2 and higher spectra of an mzML file to mgf. The file is
+     * read in this thread, the spectra are decoded by the given executor.
+     *
+     * @param mzMLFile the mzML file, can be gzipped
+     * @param mgfFile the mgf file to write
+     * @param executor the executor decoding the spectra
+     * @param waitingHandler the waiting handler
+     *
+     * @return the number of spectra converted
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the decoding
+     */
+    public int convertMzML(File mzMLFile, File mgfFile, ExecutorService executor, WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        File tempFile = getTempFile(mgfFile);
+        int nSpectra = 0;
+        int maxPending = nThreads * PENDING_SPECTRA_PER_THREAD;
+        LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(mzMLFile), BUFFER_SIZE);
+        try {
+            if (mzMLFile.getName().toLowerCase().endsWith(GZIP_EXTENSION)) {
+                inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+            }
+            BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile), BUFFER_SIZE);
+            try {
+                XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+                try {
+                    MzMLSpectrum spectrum = null;
+                    BinaryArray binaryArray = null;
+                    boolean inSelectedIon = false;
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            String name = reader.getLocalName();
+                            if (name.equals("spectrum")) {
+                                spectrum = new MzMLSpectrum(reader.getAttributeValue(null, "id"));
+                            } else if (spectrum == null) {
+                                // chromatograms and metadata
+                            } else if (name.equals("selectedIon")) {
+                                inSelectedIon = true;
+                            } else if (name.equals("binaryDataArray")) {
+                                binaryArray = new BinaryArray();
+                            } else if (name.equals("binary") && binaryArray != null) {
+                                binaryArray.base64 = reader.getElementText();
+                            } else if (name.equals("cvParam")) {
+                                setCvParam(reader, spectrum, binaryArray, inSelectedIon);
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT && spectrum != null) {
+                            String name = reader.getLocalName();
+                            if (name.equals("selectedIon")) {
+                                inSelectedIon = false;
+                            } else if (name.equals("binaryDataArray")) {
+                                if (binaryArray.type == BinaryArray.MZ) {
+                                    spectrum.mzArray = binaryArray;
+                                } else if (binaryArray.type == BinaryArray.INTENSITY) {
+                                    spectrum.intensityArray = binaryArray;
+                                }
+                                binaryArray = null;
+                            } else if (name.equals("spectrum")) {
+                                if (spectrum.msLevel >= 2 && spectrum.mzArray != null && spectrum.intensityArray != null) {
+                                    pending.add(executor.submit(spectrum));
+                                    nSpectra++;
+                                    if (pending.size() >= maxPending) {
+                                        writer.write(get(pending.removeFirst()));
+                                    }
+                                }
+                                spectrum = null;
+                                if (waitingHandler.isRunCanceled()) {
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+                while (!pending.isEmpty()) {
+                    writer.write(get(pending.removeFirst()));
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("An error occurred while reading " + mzMLFile.getName() + ".", e);
+        } finally {
+            for (Future<String> future : pending) {
+                future.cancel(true);
+            }
+            inputStream.close();
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            tempFile.delete();
+        } else {
+            rename(tempFile, mgfFile);
+        }
+
+        return nSpectra;
+    }
+
+    /**
+     * Sets the value of a cvParam of an mzML file.
+     *
+     * @param reader the reader, positioned at the cvParam
+     * @param spectrum the current spectrum
+     * @param binaryArray the current binary array, null if none
+     * @param inSelectedIon indicates whether the cvParam is the one of a
+     * selected ion
+     *
+     * @throws IOException thrown if the compression of a binary array is not
+     * supported
+     */
+    private static void setCvParam(XMLStreamReader reader, MzMLSpectrum spectrum, BinaryArray binaryArray, boolean inSelectedIon) throws IOException {
+
+        String accession = reader.getAttributeValue(null, "accession");
+        String value = reader.getAttributeValue(null, "value");
+        if (accession == null) {
+            return;
+        }
+
+        if (binaryArray != null) {
+            if (accession.equals("MS:1000514")) { // m/z array
+                binaryArray.type = BinaryArray.MZ;
+            } else if (accession.equals("MS:1000515")) { // intensity array
+                binaryArray.type = BinaryArray.INTENSITY;
+            } else if (accession.equals("MS:1000521")) { // 32-bit float
+                binaryArray.doublePrecision = false;
+            } else if (accession.equals("MS:1000523")) { // 64-bit float
+                binaryArray.doublePrecision = true;
+            } else if (accession.equals("MS:1000574")) { // zlib compression
+                binaryArray.zlib = true;
+            } else if (accession.equals("MS:1000576")) { // no compression
+                binaryArray.zlib = false;
+            } else if (accession.equals("MS:1002312") || accession.equals("MS:1002313") || accession.equals("MS:1002314")
+                    || accession.equals("MS:1002746") || accession.equals("MS:1002747") || accession.equals("MS:1002748")) {
+                throw new IOException("MS-Numpress compression not supported, spectrum " + spectrum.title + ".");
+            }
+        } else if (accession.equals("MS:1000511")) { // ms level
+            spectrum.msLevel = new Integer(value);
+        } else if (accession.equals("MS:1000016")) { // scan start time
+            double rt = new Double(value);
+            String unit = reader.getAttributeValue(null, "unitName");
+            if ("minute".equals(unit) || "UO:0000031".equals(reader.getAttributeValue(null, "unitAccession"))) {
+                rt *= 60;
+            }
+            spectrum.rt = rt;
+        } else if (inSelectedIon && accession.equals("MS:1000744")) { // selected ion m/z
+            spectrum.precursorMz = new Double(value);
+        } else if (inSelectedIon && accession.equals("MS:1000041")) { // charge state
+            spectrum.charge = new Integer(value);
+        }
+    }
+
+    /**
+     * Returns the temporary file used while writing a file.
+     *
+     * @param file the file
+     *
+     * @return the temporary file
+     */
+    private static File getTempFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Renames a temporary file to its final name.
+     *
+     * @param tempFile the temporary file
+     * @param file the final file
+     *
+     * @throws IOException thrown if the file cannot be renamed
+     */
+    private static void rename(File tempFile, File file) throws IOException {
+        if (file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+            throw new IOException("Impossible to write " + file.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the result of a future, the exceptions thrown by the task are
+     * returned as IOException.
+     *
+     * @param <T> the type of result
+     * @param future the future
+     *
+     * @return the result of the future
+     *
+     * @throws IOException thrown if the task threw an exception
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("An error occurred while converting the spectra.", cause);
+        }
+    }
+
+    /**
+     * A binary data array of an mzML spectrum.
+     */
+    private static class BinaryArray {
+
+        /**
+         * The type of m/z arrays.
+         */
+        private static final int MZ = 1;
+        /**
+         * The type of intensity arrays.
+         */
+        private static final int INTENSITY = 2;
+        /**
+         * The type of array, zero if not supported.
+         */
+        private int type = 0;
+        /**
+         * Indicates whether the values are 64-bit floats.
+         */
+        private boolean doublePrecision = true;
+        /**
+         * Indicates whether the array is zlib compressed.
+         */
+        private boolean zlib = false;
+        /**
+         * The base64 encoded content of the array.
+         */
+        private String base64 = null;
+
+        /**
+         * Decodes the values of the array.
+         *
+         * @return the values of the array
+         *
+         * @throws DataFormatException thrown if the compressed data cannot be
+         * inflated
+         */
+        private double[] decode() throws DataFormatException {
+            return decodeBinaryArray(base64, zlib, doublePrecision);
+        }
+    }
+
+    /**
+     * Decodes the values of a binary data array of an mzML file.
+     *
+     * @param base64 the base64 encoded content of the array
+     * @param zlib indicates whether the array is zlib compressed
+     * @param doublePrecision indicates whether the values are 64-bit floats,
+     * 32-bit otherwise
+     *
+     * @return the values of the array
+     *
+     * @throws DataFormatException thrown if the content is not valid base64 or
+     * if the compressed data cannot be inflated
+     */
+    static double[] decodeBinaryArray(String base64, boolean zlib, boolean doublePrecision) throws DataFormatException {
+        if (base64 == null) {
+            return new double[0];
+        }
+        byte[] bytes = decodeBase64(base64);
+        if (zlib && bytes.length > 0) {
+            bytes = inflate(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int size = doublePrecision ? 8 : 4;
+        double[] values = new double[bytes.length / size];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = doublePrecision ? buffer.getDouble() : buffer.getFloat();
+        }
+        return values;
+    }
+
+    /**
+     * Decodes base64 encoded text, ignoring white spaces. The decoder of the
+     * JDK is not used as it is not available in all the supported Java
+     * versions.
+     *
+     * @param base64 the base64 encoded text
+     *
+     * @return the decoded bytes
+     *
+     * @throws DataFormatException thrown if the text is not valid base64
+     */
+    static byte[] decodeBase64(String base64) throws DataFormatException {
+
+        byte[] result = new byte[base64.length() * 3 / 4];
+        int length = 0;
+        int buffer = 0;
+        int nBits = 0;
+        boolean padding = false;
+
+        for (int i = 0; i < base64.length(); i++) {
+            char character = base64.charAt(i);
+            int value;
+            if (character >= 'A' && character <= 'Z') {
+                value = character - 'A';
+            } else if (character >= 'a' && character <= 'z') {
+                value = character - 'a' + 26;
+            } else if (character >= '0' && character <= '9') {
+                value = character - '0' + 52;
+            } else if (character == '+') {
+                value = 62;
+            } else if (character == '/') {
+                value = 63;
+            } else if (character == '=') {
+                padding = true;
+                continue;
+            } else if (Character.isWhitespace(character)) {
+                continue;
+            } else {
+                throw new DataFormatException("Invalid character '" + character + "' in base64 data.");
+            }
+            if (padding) {
+                throw new DataFormatException("Base64 data found after the padding.");
+            }
+            buffer = (buffer << 6) | value;
+            nBits += 6;
+            if (nBits >= 8) {
+                nBits -= 8;
+                result[length++] = (byte) (buffer >> nBits);
+                buffer &= (1 << nBits) - 1;
+            }
+        }
+
+        if (nBits >= 6) {
+            throw new DataFormatException("Truncated base64 data.");
+        }
+        if (length == result.length) {
+            return result;
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(result, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Inflates zlib compressed bytes.
+     *
+     * @param bytes the compressed bytes
+     *
+     * @return the inflated bytes
+     *
+     * @throws DataFormatException thrown if the compressed data cannot be
+     * inflated
+     */
+    private static byte[] inflate(byte[] bytes) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] result = new byte[Math.max(bytes.length * 4, 1024)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == result.length) {
+                    byte[] larger = new byte[result.length * 2];
+                    System.arraycopy(result, 0, larger, 0, length);
+                    result = larger;
+                }
+                int inflated = inflater.inflate(result, length, result.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            byte[] inflatedBytes = new byte[length];
+            System.arraycopy(result, 0, inflatedBytes, 0, length);
+            return inflatedBytes;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * A spectrum read from an mzML file, decoded to mgf by a worker thread.
+     */
+    private static class MzMLSpectrum implements Callable<String> {
+
+        /**
+         * The title of the spectrum, its native id.
+         */
+        private final String title;
+        /**
+         * The MS level.
+         */
+        private int msLevel = 0;
+        /**
+         * The precursor m/z, zero if not known.
+         */
+        private double precursorMz = 0;
+        /**
+         * The precursor charge, zero if not known.
+         */
+        private int charge = 0;
+        /**
+         * The retention time in seconds, negative if not known.
+         */
+        private double rt = -1;
+        /**
+         * The m/z array.
+         */
+        private BinaryArray mzArray = null;
+        /**
+         * The intensity array.
+         */
+        private BinaryArray intensityArray = null;
+
+        /**
+         * Constructor.
+         *
+         * @param title the title of the spectrum
+         */
+        private MzMLSpectrum(String title) {
+            this.title = title;
+        }
+
+        /**
+         * Returns the spectrum in the mgf format.
+         *
+         * @return the spectrum in the mgf format
+         *
+         * @throws IOException thrown if the arrays cannot be decoded
+         */
+        @Override
+        public String call() throws IOException {
+            double[] mzs;
+            double[] intensities;
+            try {
+                mzs = mzArray.decode();
+                intensities = intensityArray.decode();
+            } catch (DataFormatException e) {
+                throw new IOException("Impossible to decode the peaks of spectrum " + title + ".", e);
+            }
+            if (mzs.length != intensities.length) {
+                throw new IOException("Different number of m/z and intensity values in spectrum " + title + ".");
+            }
+            String lineSeparator = System.getProperty("line.separator");
+            StringBuilder mgf = new StringBuilder(64 + 32 * mzs.length);
+            mgf.append("BEGIN IONS").append(lineSeparator);
+            mgf.append("TITLE=").append(title).append(lineSeparator);
+            mgf.append("PEPMASS=").append(precursorMz).append(lineSeparator);
+            if (charge > 0) {
+                mgf.append("CHARGE=").append(charge).append('+').append(lineSeparator);
+            }
+            if (rt >= 0) {
+                mgf.append("RTINSECONDS=").append(rt).append(lineSeparator);
+            }
+            for (int i = 0; i < mzs.length; i++) {
+                mgf.append(mzs[i]).append(' ').append(intensities[i]).append(lineSeparator);
+            }
+            mgf.append("END IONS").append(lineSeparator).append(lineSeparator);
+            return mgf.toString();
+        }
+    }
+}
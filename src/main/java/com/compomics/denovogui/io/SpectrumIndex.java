@@ -0,0 +1,324 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * A compact index of the spectra of an mgf file: the offset of every spectrum
+ * in the file, its title, precursor m/z, charge and number of peaks. The index
+ * is saved in the index folder of the output folder with the name of the mgf
+ * file and the index extension, and is memory mapped when loaded, only the
+ * titles are read in memory.
+ * <br><br>
+ * The index file is made of a header, of one fixed size record per spectrum
+ * and of the titles. The header contains the length and the last
+ * modification date of the mgf file, the index is only used when they match
+ * the mgf file.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumIndex {
+
+    /**
+     * The name of the folder of the index files in the output folder.
+     */
+    public static final String FOLDER_NAME = "spectrum_indexes";
+    /**
+     * The extension of the index files.
+     */
+    public static final String EXTENSION = ".dgi";
+    /**
+     * The encoding of the titles, as used by the spectrum factory.
+     */
+    static final String ENCODING = "ISO-8859-1";
+    /**
+     * The value identifying the index files.
+     */
+    private static final int MAGIC_NUMBER = 0x44474931;
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 36;
+    /**
+     * The size of a spectrum record in bytes: offset, precursor m/z, charge
+     * and number of peaks.
+     */
+    private static final int RECORD_SIZE = 24;
+    /**
+     * The indexed spectrum file.
+     */
+    private final File spectrumFile;
+    /**
+     * The number of spectra.
+     */
+    private final int nSpectra;
+    /**
+     * The memory mapped spectrum records.
+     */
+    private final MappedByteBuffer records;
+    /**
+     * The titles of the spectra in the order of the file.
+     */
+    private final String[] titles;
+    /**
+     * The index of the spectra indexed by title, built when first needed.
+     */
+    private HashMap<String, Integer> titleIndexes = null;
+
+    /**
+     * Constructor.
+     *
+     * @param spectrumFile the indexed spectrum file
+     * @param records the memory mapped spectrum records
+     * @param titles the titles of the spectra
+     */
+    private SpectrumIndex(File spectrumFile, MappedByteBuffer records, String[] titles) {
+        this.spectrumFile = spectrumFile;
+        this.nSpectra = titles.length;
+        this.records = records;
+        this.titles = titles;
+    }
+
+    /**
+     * Returns the index file of a spectrum file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param indexFolder the folder of the index files
+     *
+     * @return the index file
+     */
+    public static File getIndexFile(File spectrumFile, File indexFolder) {
+        return new File(indexFolder, spectrumFile.getName() + EXTENSION);
+    }
+
+    /**
+     * Indicates whether the index file of a spectrum file exists and matches
+     * the spectrum file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param indexFolder the folder of the index files
+     *
+     * @return true if the index is up to date
+     *
+     * @throws IOException thrown if an error occurred while reading the index
+     * file
+     */
+    public static boolean isUpToDate(File spectrumFile, File indexFolder) throws IOException {
+        File indexFile = getIndexFile(spectrumFile, indexFolder);
+        if (!indexFile.exists() || indexFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "r");
+        try {
+            return randomAccessFile.readInt() == MAGIC_NUMBER
+                    && randomAccessFile.readInt() == VERSION
+                    && randomAccessFile.readLong() == spectrumFile.length()
+                    && randomAccessFile.readLong() == spectrumFile.lastModified();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Loads the index of a spectrum file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param indexFolder the folder of the index files
+     *
+     * @return the index of the spectrum file, null if the index is missing or
+     * out of date
+     *
+     * @throws IOException thrown if an error occurred while reading the index
+     * file
+     */
+    public static SpectrumIndex load(File spectrumFile, File indexFolder) throws IOException {
+
+        if (!isUpToDate(spectrumFile, indexFolder)) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(getIndexFile(spectrumFile, indexFolder), "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            randomAccessFile.seek(HEADER_SIZE - 12);
+            int nSpectra = randomAccessFile.readInt();
+            long titlesPosition = randomAccessFile.readLong();
+
+            // the records stay on disk, the mapping remains valid once the file is closed
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) nSpectra * RECORD_SIZE);
+
+            MappedByteBuffer titlesBuffer = channel.map(FileChannel.MapMode.READ_ONLY, titlesPosition, channel.size() - titlesPosition);
+            String[] titles = new String[nSpectra];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < nSpectra; i++) {
+                int length = titlesBuffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                titlesBuffer.get(bytes, 0, length);
+                titles[i] = new String(bytes, 0, length, ENCODING);
+            }
+
+            return new SpectrumIndex(spectrumFile, records, titles);
+
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the index of a spectrum file. The index is written in a
+     * temporary file renamed when complete.
+     *
+     * @param spectrumFile the spectrum file
+     * @param indexFolder the folder of the index files
+     * @param length the length of the spectrum file when indexed
+     * @param lastModified the last modification date of the spectrum file
+     * when indexed
+     * @param offsets the offsets of the spectra
+     * @param titles the titles of the spectra
+     * @param precursorMzs the precursor m/z of the spectra
+     * @param charges the charges of the spectra, 0 if unknown
+     * @param nPeaks the number of peaks of the spectra
+     *
+     * @throws IOException thrown if an error occurred while writing the index
+     * file
+     */
+    static void write(File spectrumFile, File indexFolder, long length, long lastModified, long[] offsets, String[] titles, double[] precursorMzs, int[] charges, int[] nPeaks) throws IOException {
+
+        File indexFile = getIndexFile(spectrumFile, indexFolder);
+        File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        int nSpectra = titles.length;
+
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1024 * 1024));
+        try {
+            outputStream.writeInt(MAGIC_NUMBER);
+            outputStream.writeInt(VERSION);
+            outputStream.writeLong(length);
+            outputStream.writeLong(lastModified);
+            outputStream.writeInt(nSpectra);
+            outputStream.writeLong(HEADER_SIZE + (long) nSpectra * RECORD_SIZE);
+            for (int i = 0; i < nSpectra; i++) {
+                outputStream.writeLong(offsets[i]);
+                outputStream.writeDouble(precursorMzs[i]);
+                outputStream.writeInt(charges[i]);
+                outputStream.writeInt(nPeaks[i]);
+            }
+            for (String title : titles) {
+                byte[] bytes = title.getBytes(ENCODING);
+                outputStream.writeInt(bytes.length);
+                outputStream.write(bytes);
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        if (indexFile.exists() && !indexFile.delete() || !tempFile.renameTo(indexFile)) {
+            throw new IOException("Impossible to write " + indexFile.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the indexed spectrum file.
+     *
+     * @return the indexed spectrum file
+     */
+    public File getSpectrumFile() {
+        return spectrumFile;
+    }
+
+    /**
+     * Returns the number of spectra.
+     *
+     * @return the number of spectra
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the title of a spectrum.
+     *
+     * @param index the index of the spectrum in the file
+     *
+     * @return the title of the spectrum
+     */
+    public String getTitle(int index) {
+        return titles[index];
+    }
+
+    /**
+     * Returns the index of a spectrum in the file.
+     *
+     * @param title the title of the spectrum
+     *
+     * @return the index of the spectrum, -1 if not found
+     */
+    public synchronized int getIndex(String title) {
+        if (titleIndexes == null) {
+            titleIndexes = new HashMap<String, Integer>(nSpectra);
+            for (int i = nSpectra - 1; i >= 0; i--) {
+                titleIndexes.put(titles[i], i);
+            }
+        }
+        Integer index = titleIndexes.get(title);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the offset of a spectrum in the file, i.e. the position of its
+     * BEGIN IONS line.
+     *
+     * @param index the index of the spectrum in the file
+     *
+     * @return the offset of the spectrum
+     */
+    public long getOffset(int index) {
+        return records.getLong(index * RECORD_SIZE);
+    }
+
+    /**
+     * Returns the precursor m/z of a spectrum.
+     *
+     * @param index the index of the spectrum in the file
+     *
+     * @return the precursor m/z of the spectrum
+     */
+    public double getPrecursorMz(int index) {
+        return records.getDouble(index * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Returns the charge of a spectrum.
+     *
+     * @param index the index of the spectrum in the file
+     *
+     * @return the charge of the spectrum, 0 if unknown
+     */
+    public int getCharge(int index) {
+        return records.getInt(index * RECORD_SIZE + 16);
+    }
+
+    /**
+     * Returns the number of peaks of a spectrum.
+     *
+     * @param index the index of the spectrum in the file
+     *
+     * @return the number of peaks of the spectrum
+     */
+    public int getNPeaks(int index) {
+        return records.getInt(index * RECORD_SIZE + 20);
+    }
+}
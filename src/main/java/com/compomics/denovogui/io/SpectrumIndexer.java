@@ -0,0 +1,561 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.experiment.io.massspectrometry.MgfReader;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Indexes mgf files in parallel.
+ * <br><br>
+ * Before the files are loaded in the spectrum factory, the indexes of the
+ * spectrum factory which are missing or out of date are built one file per
+ * thread, so that loading the files in the factory only reads the saved
+ * indexes. The parallelism is thus over files only: every file is still read
+ * by a single thread, and a single file is left to the spectrum factory.
+ * <br><br>
+ * When the precursors of all spectra are needed, i.e. for the clustering, the
+ * files are indexed as {@link SpectrumIndex} files: the files are split in
+ * chunks scanned by different threads, a chunk containing the spectra whose
+ * BEGIN IONS line starts in the chunk, and the chunks of all files are
+ * scanned at the same time. These indexes are not used by the spectrum
+ * factory.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumIndexer {
+
+    /**
+     * The minimal size of a chunk in bytes.
+     */
+    private static final long MIN_CHUNK_SIZE = 8 * 1024 * 1024;
+    /**
+     * The size of the buffers used to read the files.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    /**
+     * The number of spectra indexed between two checks of the cancellation.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1000;
+    /**
+     * The extension of the index files of the spectrum factory.
+     */
+    private static final String FACTORY_INDEX_EXTENSION = ".cui";
+    /**
+     * The spectrum factory.
+     */
+    private final SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    /**
+     * The number of threads to use.
+     */
+    private final int nThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads the number of threads to use
+     */
+    public SpectrumIndexer(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Builds the indexes of the spectrum factory of the given mgf files, one
+     * file per thread. The indexes which are up to date are not rebuilt, and
+     * the files of folders which cannot be written are left to the spectrum
+     * factory. Nothing is done when less than two files need an index, each
+     * file being read by one thread.
+     *
+     * @param spectrumFiles the mgf files
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if an error occurred while reading a file
+     * or writing an index
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the indexing
+     */
+    public void buildFactoryIndexes(List<File> spectrumFiles, final WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        ArrayList<File> filesToIndex = new ArrayList<File>(spectrumFiles.size());
+        for (File spectrumFile : spectrumFiles) {
+            File folder = spectrumFile.getAbsoluteFile().getParentFile();
+            if (!isFactoryIndexUpToDate(spectrumFile) && folder.canWrite()) {
+                filesToIndex.add(spectrumFile);
+            }
+        }
+        if (filesToIndex.size() < 2) {
+            // nothing to gain from the threads, the factory indexes the file when loading it
+            return;
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.setMaxSecondaryProgressCounter(filesToIndex.size());
+        waitingHandler.setSecondaryProgressCounter(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nThreads, filesToIndex.size()));
+        try {
+            ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(filesToIndex.size());
+            for (final File spectrumFile : filesToIndex) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        if (!waitingHandler.isRunCanceled()) {
+                            spectrumFactory.writeIndex(MgfReader.getIndexMap(spectrumFile), spectrumFile.getAbsoluteFile().getParentFile());
+                        }
+                        waitingHandler.increaseSecondaryProgressCounter();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                get(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+    }
+
+    /**
+     * Returns the indexes of the given mgf files, indexing the files when
+     * needed.
+     *
+     * @param spectrumFiles the mgf files
+     * @param indexFolder the folder where the indexes are saved
+     * @param waitingHandler the waiting handler
+     *
+     * @return the indexes in the order of the files, empty if the indexing
+     * was canceled
+     *
+     * @throws IOException thrown if an error occurred while reading a file
+     * or writing an index
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the indexing
+     */
+    public ArrayList<SpectrumIndex> index(List<File> spectrumFiles, File indexFolder, final WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        ArrayList<SpectrumIndex> indexes = new ArrayList<SpectrumIndex>(spectrumFiles.size());
+        if (!indexFolder.exists() && !indexFolder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + indexFolder.getAbsolutePath() + ".");
+        }
+
+        // split the files to index in chunks
+        long[] lengths = new long[spectrumFiles.size()];
+        long[] lastModified = new long[spectrumFiles.size()];
+        long[] chunkSizes = new long[spectrumFiles.size()];
+        int nTasks = 0;
+        for (int i = 0; i < spectrumFiles.size(); i++) {
+            File spectrumFile = spectrumFiles.get(i);
+            if (!SpectrumIndex.isUpToDate(spectrumFile, indexFolder)) {
+                lengths[i] = spectrumFile.length();
+                lastModified[i] = spectrumFile.lastModified();
+                chunkSizes[i] = Math.max(MIN_CHUNK_SIZE, (lengths[i] + nThreads - 1) / nThreads);
+                nTasks += (int) ((lengths[i] + chunkSizes[i] - 1) / chunkSizes[i]);
+            }
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.setMaxSecondaryProgressCounter(nTasks);
+        waitingHandler.setSecondaryProgressCounter(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+
+            // index the chunks of all files at the same time
+            ArrayList<ArrayList<Future<Chunk>>> chunkFutures = new ArrayList<ArrayList<Future<Chunk>>>(spectrumFiles.size());
+            for (int i = 0; i < spectrumFiles.size(); i++) {
+                final File spectrumFile = spectrumFiles.get(i);
+                if (chunkSizes[i] == 0) {
+                    chunkFutures.add(null);
+                } else {
+                    ArrayList<Future<Chunk>> fileFutures = new ArrayList<Future<Chunk>>();
+                    for (long start = 0; start < lengths[i]; start += chunkSizes[i]) {
+                        final long chunkStart = start;
+                        final long chunkEnd = Math.min(start + chunkSizes[i], lengths[i]);
+                        fileFutures.add(executor.submit(new Callable<Chunk>() {
+                            @Override
+                            public Chunk call() throws IOException {
+                                Chunk chunk = indexChunk(spectrumFile, chunkStart, chunkEnd, waitingHandler);
+                                waitingHandler.increaseSecondaryProgressCounter();
+                                return chunk;
+                            }
+                        }));
+                    }
+                    chunkFutures.add(fileFutures);
+                }
+            }
+
+            // merge the chunks in the order of the files
+            for (int i = 0; i < spectrumFiles.size(); i++) {
+                File spectrumFile = spectrumFiles.get(i);
+                ArrayList<Future<Chunk>> fileFutures = chunkFutures.get(i);
+                if (fileFutures != null) {
+                    ArrayList<Chunk> chunks = new ArrayList<Chunk>(fileFutures.size());
+                    for (Future<Chunk> future : fileFutures) {
+                        chunks.add(get(future));
+                    }
+                    if (waitingHandler.isRunCanceled()) {
+                        return new ArrayList<SpectrumIndex>();
+                    }
+                    writeIndex(spectrumFile, indexFolder, lengths[i], lastModified[i], chunks);
+                }
+                SpectrumIndex spectrumIndex = SpectrumIndex.load(spectrumFile, indexFolder);
+                if (spectrumIndex == null) {
+                    throw new IOException(spectrumFile.getName() + " was modified while being indexed.");
+                }
+                indexes.add(spectrumIndex);
+            }
+
+            waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Indicates whether the index of the spectrum factory of a file exists
+     * and is not older than the file. The spectrum factory checks the index
+     * when loading the file.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return true if the index exists and is not older than the file
+     */
+    private static boolean isFactoryIndexUpToDate(File spectrumFile) {
+        File indexFile = new File(spectrumFile.getParentFile(), spectrumFile.getName() + FACTORY_INDEX_EXTENSION);
+        return indexFile.exists() && indexFile.lastModified() >= spectrumFile.lastModified();
+    }
+
+    /**
+     * Writes the index of a spectrum file from the chunks of the file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param indexFolder the folder where the index is saved
+     * @param length the length of the file when indexed
+     * @param lastModified the last modification date of the file when
+     * indexed
+     * @param chunks the chunks of the file in the order of the file
+     *
+     * @throws IOException thrown if an error occurred while writing the index
+     */
+    private static void writeIndex(File spectrumFile, File indexFolder, long length, long lastModified, ArrayList<Chunk> chunks) throws IOException {
+        int nSpectra = 0;
+        for (Chunk chunk : chunks) {
+            nSpectra += chunk.size;
+        }
+        long[] offsets = new long[nSpectra];
+        String[] titles = new String[nSpectra];
+        double[] precursorMzs = new double[nSpectra];
+        int[] charges = new int[nSpectra];
+        int[] nPeaks = new int[nSpectra];
+        int index = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.offsets, 0, offsets, index, chunk.size);
+            System.arraycopy(chunk.precursorMzs, 0, precursorMzs, index, chunk.size);
+            System.arraycopy(chunk.charges, 0, charges, index, chunk.size);
+            System.arraycopy(chunk.nPeaks, 0, nPeaks, index, chunk.size);
+            for (int i = 0; i < chunk.size; i++) {
+                titles[index + i] = chunk.titles.get(i);
+            }
+            index += chunk.size;
+        }
+        SpectrumIndex.write(spectrumFile, indexFolder, length, lastModified, offsets, titles, precursorMzs, charges, nPeaks);
+    }
+
+    /**
+     * Indexes the spectra whose BEGIN IONS line starts in the given chunk of
+     * a file. The last spectrum is read past the end of the chunk.
+     *
+     * @param spectrumFile the spectrum file
+     * @param start the start of the chunk
+     * @param end the end of the chunk, exclusive
+     * @param waitingHandler the waiting handler
+     *
+     * @return the index of the chunk
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static Chunk indexChunk(File spectrumFile, long start, long end, WaitingHandler waitingHandler) throws IOException {
+
+        Chunk chunk = new Chunk();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(spectrumFile, "r");
+        try {
+            LineReader reader = new LineReader(randomAccessFile.getChannel(), Math.max(0, start - 1));
+
+            // skip the end of the line started before the chunk
+            if (start > 0) {
+                reader.readLine();
+            }
+
+            boolean inSpectrum = false;
+            long offset = 0;
+            String title = null;
+            double precursorMz = 0;
+            int charge = 0;
+            int nPeaks = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (!inSpectrum) {
+                    if (reader.getLineStart() >= end) {
+                        break;
+                    }
+                    if (line.startsWith("BEGIN IONS")) {
+                        inSpectrum = true;
+                        offset = reader.getLineStart();
+                        title = null;
+                        precursorMz = 0;
+                        charge = 0;
+                        nPeaks = 0;
+                    }
+                } else if (line.startsWith("END IONS")) {
+                    inSpectrum = false;
+                    chunk.add(offset, title == null ? "" : title, precursorMz, charge, nPeaks);
+                    if (chunk.size % CANCEL_CHECK_INTERVAL == 0 && waitingHandler.isRunCanceled()) {
+                        break;
+                    }
+                } else if (line.startsWith("TITLE=")) {
+                    title = line.substring(line.indexOf('=') + 1).trim();
+                } else if (line.startsWith("PEPMASS=")) {
+                    String value = line.substring(line.indexOf('=') + 1).trim();
+                    int separator = value.indexOf(' ');
+                    if (separator == -1) {
+                        separator = value.indexOf('\t');
+                    }
+                    precursorMz = new Double(separator == -1 ? value : value.substring(0, separator));
+                } else if (line.startsWith("CHARGE=")) {
+                    charge = parseCharge(line.substring(line.indexOf('=') + 1).trim());
+                } else if (line.length() > 0 && line.indexOf('=') == -1 && line.charAt(0) != '#') {
+                    nPeaks++;
+                }
+            }
+
+        } finally {
+            randomAccessFile.close();
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Parses the first charge of an mgf charge value, e.g. 2 for "2+ and 3+".
+     *
+     * @param value the charge value
+     *
+     * @return the charge, 0 if it cannot be parsed
+     */
+    private static int parseCharge(String value) {
+        int charge = 0;
+        int i = 0;
+        while (i < value.length() && Character.isDigit(value.charAt(i))) {
+            charge = 10 * charge + value.charAt(i) - '0';
+            i++;
+        }
+        if (i < value.length() && value.charAt(i) == '-') {
+            charge = -charge;
+        }
+        return charge;
+    }
+
+    /**
+     * Returns the result of a future, the exceptions thrown by the task are
+     * returned as IOException.
+     *
+     * @param <T> the type of result
+     * @param future the future
+     *
+     * @return the result of the future
+     *
+     * @throws IOException thrown if the task threw an exception
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("An error occurred while indexing the spectra.", cause);
+        }
+    }
+
+    /**
+     * The index of the spectra of a chunk of a file.
+     */
+    private static class Chunk {
+
+        /**
+         * The number of spectra.
+         */
+        private int size = 0;
+        /**
+         * The offsets of the spectra.
+         */
+        private long[] offsets = new long[1024];
+        /**
+         * The titles of the spectra.
+         */
+        private final ArrayList<String> titles = new ArrayList<String>(1024);
+        /**
+         * The precursor m/z of the spectra.
+         */
+        private double[] precursorMzs = new double[1024];
+        /**
+         * The charges of the spectra.
+         */
+        private int[] charges = new int[1024];
+        /**
+         * The number of peaks of the spectra.
+         */
+        private int[] nPeaks = new int[1024];
+
+        /**
+         * Adds a spectrum.
+         *
+         * @param offset the offset of the spectrum
+         * @param title the title of the spectrum
+         * @param precursorMz the precursor m/z of the spectrum
+         * @param charge the charge of the spectrum
+         * @param peakCount the number of peaks of the spectrum
+         */
+        private void add(long offset, String title, double precursorMz, int charge, int peakCount) {
+            if (size == offsets.length) {
+                int capacity = 2 * size;
+                long[] newOffsets = new long[capacity];
+                System.arraycopy(offsets, 0, newOffsets, 0, size);
+                offsets = newOffsets;
+                double[] newPrecursorMzs = new double[capacity];
+                System.arraycopy(precursorMzs, 0, newPrecursorMzs, 0, size);
+                precursorMzs = newPrecursorMzs;
+                int[] newCharges = new int[capacity];
+                System.arraycopy(charges, 0, newCharges, 0, size);
+                charges = newCharges;
+                int[] newNPeaks = new int[capacity];
+                System.arraycopy(nPeaks, 0, newNPeaks, 0, size);
+                nPeaks = newNPeaks;
+            }
+            offsets[size] = offset;
+            titles.add(title);
+            precursorMzs[size] = precursorMz;
+            charges[size] = charge;
+            nPeaks[size] = peakCount;
+            size++;
+        }
+    }
+
+    /**
+     * Reads the lines of a file from a given position, keeping track of the
+     * position of every line.
+     */
+    private static class LineReader {
+
+        /**
+         * The channel of the file.
+         */
+        private final FileChannel channel;
+        /**
+         * The buffer.
+         */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        /**
+         * The number of bytes in the buffer.
+         */
+        private int bufferLength = 0;
+        /**
+         * The position in the buffer.
+         */
+        private int bufferPosition = 0;
+        /**
+         * The position in the file of the start of the buffer.
+         */
+        private long bufferStart;
+        /**
+         * The position in the file of the last line read.
+         */
+        private long lineStart;
+        /**
+         * The bytes of the current line.
+         */
+        private byte[] line = new byte[256];
+
+        /**
+         * Constructor.
+         *
+         * @param channel the channel of the file
+         * @param position the position where to start reading
+         */
+        private LineReader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.bufferStart = position;
+        }
+
+        /**
+         * Returns the position in the file of the last line read.
+         *
+         * @return the position in the file of the last line read
+         */
+        private long getLineStart() {
+            return lineStart;
+        }
+
+        /**
+         * Reads the next line, without the line separator.
+         *
+         * @return the next line, null at the end of the file
+         *
+         * @throws IOException thrown if an error occurred while reading the
+         * file
+         */
+        private String readLine() throws IOException {
+            lineStart = bufferStart + bufferPosition;
+            int length = 0;
+            boolean read = false;
+            while (true) {
+                if (bufferPosition == bufferLength) {
+                    bufferStart += bufferLength;
+                    bufferPosition = 0;
+                    bufferLength = Math.max(0, channel.read(ByteBuffer.wrap(buffer), bufferStart));
+                    if (bufferLength == 0) {
+                        break;
+                    }
+                }
+                read = true;
+                byte b = buffer[bufferPosition++];
+                if (b == '\n') {
+                    break;
+                }
+                if (length == line.length) {
+                    byte[] newLine = new byte[2 * length];
+                    System.arraycopy(line, 0, newLine, 0, length);
+                    line = newLine;
+                }
+                line[length++] = b;
+            }
+            if (!read) {
+                return null;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, SpectrumIndex.ENCODING);
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.Util;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Preprocesses the spectra before they are given to the sequencing engines.
+ * The peaks of the precursor are removed, the low intensity peaks are
+ * filtered out, the isotopes are removed and only the most intense peaks of
+ * every m/z window are kept. The preprocessed spectra are written to mgf files
+ * named after the original files, in the same order and with the same
+ * headers, so that the results of the engines refer to the same spectra. All
+ * engines are given the same preprocessed files.
+ * <br><br>
+ * When a quality filter is set, the spectra of low quality are not written.
+ * The indexes of the spectra in the preprocessed files then differ from the
+ * original indexes, the original index of every spectrum written is kept to
+ * convert the results referring to spectra by index.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumPreprocessor {
+
+    /**
+     * The name of the folder where the preprocessed files are written, in the
+     * output folder.
+     */
+    public static final String FOLDER_NAME = "preprocessed";
+    /**
+     * The mass difference between two isotopes.
+     */
+    public static final double ISOTOPE_MASS = 1.003355;
+    /**
+     * The mass of a proton.
+     */
+    public static final double PROTON_MASS = 1.007276;
+    /**
+     * The default number of peaks kept per m/z window.
+     */
+    public static final int DEFAULT_PEAKS_PER_WINDOW = 10;
+    /**
+     * The default width of the m/z windows.
+     */
+    public static final double DEFAULT_WINDOW_WIDTH = 100;
+    /**
+     * The default intensity below which peaks are considered noise, relative
+     * to the most intense peak.
+     */
+    public static final double DEFAULT_NOISE_THRESHOLD = 0.01;
+    /**
+     * The maximal number of isotopes removed after a peak.
+     */
+    private static final int MAX_ISOTOPES = 3;
+    /**
+     * The fragment ion m/z tolerance.
+     */
+    private final double mzTolerance;
+    /**
+     * The number of peaks kept per m/z window, no limit if zero or negative.
+     */
+    private int peaksPerWindow = DEFAULT_PEAKS_PER_WINDOW;
+    /**
+     * The width of the m/z windows.
+     */
+    private double windowWidth = DEFAULT_WINDOW_WIDTH;
+    /**
+     * The intensity below which peaks are considered noise, relative to the
+     * most intense peak. No filtering if zero.
+     */
+    private double noiseThreshold = DEFAULT_NOISE_THRESHOLD;
+    /**
+     * Indicates whether the isotopes are removed.
+     */
+    private boolean deisotope = true;
+    /**
+     * Indicates whether the peaks of the precursor are removed.
+     */
+    private boolean removePrecursor = true;
+    /**
+     * The quality filter of the spectra, null if all spectra are kept.
+     */
+    private SpectrumQualityFilter qualityFilter = null;
+    /**
+     * The clusters of replicate spectra, the member spectra are not written.
+     * Null if the spectra were not clustered.
+     */
+    private SpectrumClusters clusters = null;
+    /**
+     * The original index of the spectra written in the preprocessed files,
+     * indexed by file name. Only for the files where spectra were skipped.
+     */
+    private final HashMap<String, int[]> originalIndexes = new HashMap<String, int[]>();
+    /**
+     * The number of spectra written in the preprocessed files, indexed by
+     * file name.
+     */
+    private final HashMap<String, Integer> nSpectraMap = new HashMap<String, Integer>();
+
+    /**
+     * Constructor.
+     *
+     * @param mzTolerance the fragment ion m/z tolerance
+     */
+    public SpectrumPreprocessor(double mzTolerance) {
+        this.mzTolerance = mzTolerance;
+    }
+
+    /**
+     * Returns a preprocessor copying the peaks of the spectra as they are.
+     * Spectra are thus only skipped by the quality filter or the clusters
+     * when set.
+     *
+     * @param mzTolerance the fragment ion m/z tolerance
+     *
+     * @return a preprocessor copying the peaks of the spectra
+     */
+    public static SpectrumPreprocessor getFilter(double mzTolerance) {
+        SpectrumPreprocessor spectrumPreprocessor = new SpectrumPreprocessor(mzTolerance);
+        spectrumPreprocessor.setRemovePrecursor(false);
+        spectrumPreprocessor.setNoiseThreshold(0);
+        spectrumPreprocessor.setDeisotope(false);
+        spectrumPreprocessor.setPeaksPerWindow(0);
+        return spectrumPreprocessor;
+    }
+
+    /**
+     * Preprocesses the given spectrum files in parallel. The preprocessed
+     * files are written in the given folder and have the name of the original
+     * files.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param folder the folder where to write the preprocessed files
+     * @param nThreads the number of threads to use
+     * @param skippedSpectraReport the report where to list the spectra of low
+     * quality, can be null
+     * @param waitingHandler the waiting handler
+     *
+     * @return the preprocessed files in the order of the spectrum files
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * the preprocessing
+     */
+    public ArrayList<File> preprocess(List<File> spectrumFiles, File folder, int nThreads, final SkippedSpectraReport skippedSpectraReport,
+            final WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create the folder " + folder.getAbsolutePath() + ".");
+        }
+
+        ArrayList<File> preprocessedFiles = new ArrayList<File>(spectrumFiles.size());
+        ArrayList<Future<Integer>> futures = new ArrayList<Future<Integer>>(spectrumFiles.size());
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+        waitingHandler.setMaxSecondaryProgressCounter(spectrumFiles.size());
+        waitingHandler.setSecondaryProgressCounter(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, spectrumFiles.size())));
+        try {
+            for (final File spectrumFile : spectrumFiles) {
+                final File preprocessedFile = new File(folder, spectrumFile.getName());
+                preprocessedFiles.add(preprocessedFile);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        int nSpectra = preprocess(spectrumFile, preprocessedFile, skippedSpectraReport, waitingHandler);
+                        waitingHandler.increaseSecondaryProgressCounter();
+                        return nSpectra;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("An error occurred while preprocessing the spectra.", cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+        return preprocessedFiles;
+    }
+
+    /**
+     * Preprocesses the spectra of an mgf file. The headers of the spectra are
+     * copied, the peaks are filtered. The spectra rejected by the quality
+     * filter and the members of the clusters are not written.
+     *
+     * @param mgfFile the mgf file
+     * @param preprocessedFile the file where to write the preprocessed spectra
+     * @param skippedSpectraReport the report where to list the spectra of low
+     * quality, can be null
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @return the number of spectra written
+     *
+     * @throws IOException thrown if an error occurred while reading or
+     * writing a file
+     */
+    public int preprocess(File mgfFile, File preprocessedFile, SkippedSpectraReport skippedSpectraReport, WaitingHandler waitingHandler) throws IOException {
+
+        ArrayList<Integer> indexes = new ArrayList<Integer>();
+        int nSpectra = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(preprocessedFile));
+            try {
+                boolean inSpectrum = false;
+                double precursorMz = 0;
+                int charge = 0;
+                String title = null;
+                ArrayList<String> headers = new ArrayList<String>();
+                ArrayList<Peak> peaks = new ArrayList<Peak>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith("BEGIN IONS")) {
+                        inSpectrum = true;
+                        precursorMz = 0;
+                        charge = 0;
+                        title = null;
+                        headers.clear();
+                        peaks.clear();
+                    } else if (inSpectrum && line.startsWith("END IONS")) {
+                        inSpectrum = false;
+                        Collections.sort(peaks, Peak.MZ_COMPARATOR);
+                        double score = qualityFilter == null ? 1 : qualityFilter.getScore(peaks, precursorMz, charge);
+                        if (clusters != null && clusters.isMember(mgfFile.getName(), nSpectra)) {
+                            // sequenced with the representative spectrum of the cluster
+                        } else if (qualityFilter == null || qualityFilter.accept(score)) {
+                            writer.write("BEGIN IONS");
+                            writer.newLine();
+                            for (String header : headers) {
+                                writer.write(header);
+                                writer.newLine();
+                            }
+                            for (Peak peak : filter(peaks, precursorMz, charge)) {
+                                writer.write(peak.line);
+                                writer.newLine();
+                            }
+                            writer.write(line);
+                            writer.newLine();
+                            indexes.add(nSpectra);
+                        } else if (skippedSpectraReport != null) {
+                            skippedSpectraReport.addSpectrum(mgfFile.getName(), title, "All", "Quality score " + Util.roundDouble(score, 3)
+                                    + " below the cutoff " + qualityFilter.getCutoff() + ".");
+                        }
+                        nSpectra++;
+                        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                            break;
+                        }
+                    } else if (inSpectrum && !line.isEmpty() && (Character.isDigit(line.charAt(0)) || line.charAt(0) == '.')) {
+                        Peak peak = parsePeak(line);
+                        if (peak != null) {
+                            peaks.add(peak);
+                        }
+                    } else if (inSpectrum) {
+                        if (line.startsWith("PEPMASS=")) {
+                            precursorMz = parsePrecursorMz(line.substring(line.indexOf('=') + 1));
+                        } else if (line.startsWith("CHARGE=")) {
+                            charge = parseCharge(line.substring(line.indexOf('=') + 1));
+                        } else if (line.startsWith("TITLE=")) {
+                            title = line.substring(line.indexOf('=') + 1);
+                        }
+                        headers.add(line);
+                    } else {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+
+        synchronized (this) {
+            nSpectraMap.put(mgfFile.getName(), indexes.size());
+            if (indexes.size() < nSpectra) {
+                int[] fileIndexes = new int[indexes.size()];
+                for (int i = 0; i < fileIndexes.length; i++) {
+                    fileIndexes[i] = indexes.get(i);
+                }
+                originalIndexes.put(mgfFile.getName(), fileIndexes);
+            } else {
+                originalIndexes.remove(mgfFile.getName());
+            }
+        }
+
+        return indexes.size();
+    }
+
+    /**
+     * Returns the original index of the spectra written in the preprocessed
+     * file of the given spectrum file.
+     *
+     * @param fileName the name of the spectrum file
+     *
+     * @return the original index of the spectra written, null if no spectrum
+     * was skipped
+     */
+    public synchronized int[] getOriginalIndexes(String fileName) {
+        return originalIndexes.get(fileName);
+    }
+
+    /**
+     * Returns the number of spectra written in the preprocessed file of the
+     * given spectrum file.
+     *
+     * @param fileName the name of the spectrum file
+     *
+     * @return the number of spectra written, null if the file was not
+     * preprocessed
+     */
+    public synchronized Integer getNSpectra(String fileName) {
+        return nSpectraMap.get(fileName);
+    }
+
+    /**
+     * Filters the peaks of a spectrum.
+     *
+     * @param peaks the peaks of the spectrum
+     * @param precursorMz the m/z of the precursor, zero if not known
+     * @param charge the charge of the precursor, zero if not known
+     *
+     * @return the peaks kept, sorted by m/z
+     */
+    public List<Peak> filter(List<Peak> peaks, double precursorMz, int charge) {
+
+        if (peaks.isEmpty()) {
+            return peaks;
+        }
+
+        ArrayList<Peak> result = new ArrayList<Peak>(peaks);
+        Collections.sort(result, Peak.MZ_COMPARATOR);
+
+        if (removePrecursor && precursorMz > 0) {
+            result = removePrecursor(result, precursorMz, charge);
+        }
+        if (noiseThreshold > 0) {
+            result = removeNoise(result);
+        }
+        if (deisotope) {
+            result = deisotope(result, Math.max(1, charge - 1));
+        }
+        if (peaksPerWindow > 0) {
+            result = getMostIntensePeaks(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the peaks of the precursor at all charges up to the charge of
+     * the precursor.
+     *
+     * @param peaks the peaks sorted by m/z
+     * @param precursorMz the m/z of the precursor
+     * @param charge the charge of the precursor, zero if not known
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<Peak> removePrecursor(ArrayList<Peak> peaks, double precursorMz, int charge) {
+        double[] precursorMzs;
+        if (charge > 0) {
+            double mass = (precursorMz - PROTON_MASS) * charge;
+            precursorMzs = new double[charge];
+            for (int i = 1; i <= charge; i++) {
+                precursorMzs[i - 1] = mass / i + PROTON_MASS;
+            }
+        } else {
+            precursorMzs = new double[]{precursorMz};
+        }
+        ArrayList<Peak> result = new ArrayList<Peak>(peaks.size());
+        for (Peak peak : peaks) {
+            boolean precursor = false;
+            for (double mz : precursorMzs) {
+                if (Math.abs(peak.mz - mz) <= mzTolerance) {
+                    precursor = true;
+                    break;
+                }
+            }
+            if (!precursor) {
+                result.add(peak);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the peaks below the noise threshold.
+     *
+     * @param peaks the peaks sorted by m/z
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<Peak> removeNoise(ArrayList<Peak> peaks) {
+        double maxIntensity = 0;
+        for (Peak peak : peaks) {
+            maxIntensity = Math.max(maxIntensity, peak.intensity);
+        }
+        double threshold = noiseThreshold * maxIntensity;
+        ArrayList<Peak> result = new ArrayList<Peak>(peaks.size());
+        for (Peak peak : peaks) {
+            if (peak.intensity >= threshold) {
+                result.add(peak);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the isotopes: the peaks found at isotope spacing after a more
+     * intense peak, for all charges up to the given charge.
+     *
+     * @param peaks the peaks sorted by m/z
+     * @param maxCharge the maximal fragment charge
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<Peak> deisotope(ArrayList<Peak> peaks, int maxCharge) {
+        boolean[] isotope = new boolean[peaks.size()];
+        for (int i = 0; i < peaks.size(); i++) {
+            if (isotope[i]) {
+                continue;
+            }
+            Peak monoisotopic = peaks.get(i);
+            for (int charge = 1; charge <= maxCharge; charge++) {
+                double previousIntensity = monoisotopic.intensity;
+                int index = i + 1;
+                for (int n = 1; n <= MAX_ISOTOPES; n++) {
+                    double mz = monoisotopic.mz + n * ISOTOPE_MASS / charge;
+                    int match = -1;
+                    while (index < peaks.size() && peaks.get(index).mz <= mz + mzTolerance) {
+                        Peak candidate = peaks.get(index);
+                        if (candidate.mz >= mz - mzTolerance && candidate.intensity < previousIntensity
+                                && (match == -1 || candidate.intensity > peaks.get(match).intensity)) {
+                            match = index;
+                        }
+                        index++;
+                    }
+                    if (match == -1) {
+                        break;
+                    }
+                    isotope[match] = true;
+                    previousIntensity = peaks.get(match).intensity;
+                    index = match + 1;
+                }
+            }
+        }
+        ArrayList<Peak> result = new ArrayList<Peak>(peaks.size());
+        for (int i = 0; i < peaks.size(); i++) {
+            if (!isotope[i]) {
+                result.add(peaks.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the most intense peaks of every m/z window.
+     *
+     * @param peaks the peaks sorted by m/z
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<Peak> getMostIntensePeaks(ArrayList<Peak> peaks) {
+        HashMap<Integer, ArrayList<Peak>> windows = new HashMap<Integer, ArrayList<Peak>>();
+        for (Peak peak : peaks) {
+            Integer window = (int) (peak.mz / windowWidth);
+            ArrayList<Peak> windowPeaks = windows.get(window);
+            if (windowPeaks == null) {
+                windowPeaks = new ArrayList<Peak>();
+                windows.put(window, windowPeaks);
+            }
+            windowPeaks.add(peak);
+        }
+        ArrayList<Peak> result = new ArrayList<Peak>(peaks.size());
+        for (ArrayList<Peak> windowPeaks : windows.values()) {
+            if (windowPeaks.size() > peaksPerWindow) {
+                Collections.sort(windowPeaks, Peak.INTENSITY_COMPARATOR);
+                result.addAll(windowPeaks.subList(0, peaksPerWindow));
+            } else {
+                result.addAll(windowPeaks);
+            }
+        }
+        Collections.sort(result, Peak.MZ_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Parses a peak line, the line is kept to be written as is.
+     *
+     * @param line the peak line
+     *
+     * @return the peak, null if the line cannot be parsed
+     */
+    private static Peak parsePeak(String line) {
+        String[] split = line.split("\\s+");
+        if (split.length < 2) {
+            return null;
+        }
+        try {
+            return new Peak(new Double(split[0]), new Double(split[1]), line);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the precursor m/z of a PEPMASS header.
+     *
+     * @param value the value of the header
+     *
+     * @return the precursor m/z, zero if it cannot be parsed
+     */
+    private static double parsePrecursorMz(String value) {
+        String[] split = value.trim().split("\\s+");
+        try {
+            return new Double(split[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses the charge of a CHARGE header, the highest charge is returned
+     * when several charges are given.
+     *
+     * @param value the value of the header, e.g. 2+ or 2+ and 3+
+     *
+     * @return the charge, zero if it cannot be parsed
+     */
+    private static int parseCharge(String value) {
+        int charge = 0;
+        for (String part : value.split("[^0-9]+")) {
+            if (!part.isEmpty()) {
+                charge = Math.max(charge, new Integer(part));
+            }
+        }
+        return charge;
+    }
+
+    /**
+     * Returns the number of peaks kept per m/z window.
+     *
+     * @return the number of peaks kept per m/z window, no limit if zero or
+     * negative
+     */
+    public int getPeaksPerWindow() {
+        return peaksPerWindow;
+    }
+
+    /**
+     * Sets the number of peaks kept per m/z window.
+     *
+     * @param peaksPerWindow the number of peaks kept per m/z window, no limit
+     * if zero or negative
+     */
+    public void setPeaksPerWindow(int peaksPerWindow) {
+        this.peaksPerWindow = peaksPerWindow;
+    }
+
+    /**
+     * Returns the width of the m/z windows.
+     *
+     * @return the width of the m/z windows
+     */
+    public double getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Sets the width of the m/z windows.
+     *
+     * @param windowWidth the width of the m/z windows
+     */
+    public void setWindowWidth(double windowWidth) {
+        this.windowWidth = windowWidth;
+    }
+
+    /**
+     * Returns the noise threshold relative to the most intense peak.
+     *
+     * @return the noise threshold, no filtering if zero
+     */
+    public double getNoiseThreshold() {
+        return noiseThreshold;
+    }
+
+    /**
+     * Sets the noise threshold relative to the most intense peak.
+     *
+     * @param noiseThreshold the noise threshold, no filtering if zero
+     */
+    public void setNoiseThreshold(double noiseThreshold) {
+        this.noiseThreshold = noiseThreshold;
+    }
+
+    /**
+     * Indicates whether the isotopes are removed.
+     *
+     * @return true if the isotopes are removed
+     */
+    public boolean isDeisotope() {
+        return deisotope;
+    }
+
+    /**
+     * Sets whether the isotopes are removed.
+     *
+     * @param deisotope true if the isotopes are to be removed
+     */
+    public void setDeisotope(boolean deisotope) {
+        this.deisotope = deisotope;
+    }
+
+    /**
+     * Indicates whether the peaks of the precursor are removed.
+     *
+     * @return true if the peaks of the precursor are removed
+     */
+    public boolean isRemovePrecursor() {
+        return removePrecursor;
+    }
+
+    /**
+     * Sets whether the peaks of the precursor are removed.
+     *
+     * @param removePrecursor true if the peaks of the precursor are to be
+     * removed
+     */
+    public void setRemovePrecursor(boolean removePrecursor) {
+        this.removePrecursor = removePrecursor;
+    }
+
+    /**
+     * Returns the quality filter of the spectra.
+     *
+     * @return the quality filter of the spectra, null if all spectra are kept
+     */
+    public SpectrumQualityFilter getQualityFilter() {
+        return qualityFilter;
+    }
+
+    /**
+     * Sets the quality filter of the spectra.
+     *
+     * @param qualityFilter the quality filter of the spectra, null to keep all
+     * spectra
+     */
+    public void setQualityFilter(SpectrumQualityFilter qualityFilter) {
+        this.qualityFilter = qualityFilter;
+    }
+
+    /**
+     * Returns the clusters of replicate spectra.
+     *
+     * @return the clusters of replicate spectra, null if the spectra were not
+     * clustered
+     */
+    public SpectrumClusters getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Sets the clusters of replicate spectra, the member spectra are not
+     * written.
+     *
+     * @param clusters the clusters of replicate spectra, null to write all
+     * spectra
+     */
+    public void setClusters(SpectrumClusters clusters) {
+        this.clusters = clusters;
+    }
+
+    /**
+     * A peak of a spectrum and the line where it was read.
+     */
+    public static class Peak {
+
+        /**
+         * Sorts peaks by increasing m/z.
+         */
+        public static final Comparator<Peak> MZ_COMPARATOR = new Comparator<Peak>() {
+            @Override
+            public int compare(Peak peak1, Peak peak2) {
+                return Double.compare(peak1.mz, peak2.mz);
+            }
+        };
+        /**
+         * Sorts peaks by decreasing intensity.
+         */
+        public static final Comparator<Peak> INTENSITY_COMPARATOR = new Comparator<Peak>() {
+            @Override
+            public int compare(Peak peak1, Peak peak2) {
+                return Double.compare(peak2.intensity, peak1.intensity);
+            }
+        };
+        /**
+         * The m/z of the peak.
+         */
+        public final double mz;
+        /**
+         * The intensity of the peak.
+         */
+        public final double intensity;
+        /**
+         * The line of the peak in the mgf file.
+         */
+        public final String line;
+
+        /**
+         * Constructor.
+         *
+         * @param mz the m/z of the peak
+         * @param intensity the intensity of the peak
+         * @param line the line of the peak in the mgf file
+         */
+        public Peak(double mz, double intensity, String line) {
+            this.mz = mz;
+            this.intensity = intensity;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.io.SpectrumPreprocessor.Peak;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scores the quality of the spectra to skip the spectra which cannot be
+ * sequenced, e.g. empty or noise only spectra. The score is the average of
+ * three sub-scores between 0 and 1:
+ * <br><br>
+ * - the number of peaks, 1 from 50 peaks on,<br>
+ * - the signal to noise ratio, i.e. the ratio between the average intensity
+ * of the five most intense peaks and the median intensity, 1 from a ratio of
+ * 100 on,<br>
+ * - the number of complementary ion pairs, i.e. pairs of peaks whose masses
+ * sum up to the precursor mass, 1 from 5 pairs on.
+ * <br><br>
+ * Spectra with less peaks or a lower total ion current than the minimal
+ * values get a score of zero.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class SpectrumQualityFilter {
+
+    /**
+     * The default quality score cutoff.
+     */
+    public static final double DEFAULT_CUTOFF = 0.2;
+    /**
+     * The default minimal number of peaks.
+     */
+    public static final int DEFAULT_MIN_PEAKS = 10;
+    /**
+     * The number of peaks giving the maximal peak count score.
+     */
+    private static final int MAX_SCORE_PEAKS = 50;
+    /**
+     * The number of most intense peaks considered as signal.
+     */
+    private static final int N_SIGNAL_PEAKS = 5;
+    /**
+     * The signal to noise ratio giving the maximal signal to noise score.
+     */
+    private static final double MAX_SCORE_SIGNAL_TO_NOISE = 100;
+    /**
+     * The number of complementary ion pairs giving the maximal complementary
+     * ions score.
+     */
+    private static final int MAX_SCORE_PAIRS = 5;
+    /**
+     * The fragment ion m/z tolerance.
+     */
+    private final double mzTolerance;
+    /**
+     * The minimal quality score of the spectra kept.
+     */
+    private double cutoff = DEFAULT_CUTOFF;
+    /**
+     * The minimal number of peaks.
+     */
+    private int minPeaks = DEFAULT_MIN_PEAKS;
+    /**
+     * The minimal total ion current.
+     */
+    private double minTic = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param mzTolerance the fragment ion m/z tolerance
+     */
+    public SpectrumQualityFilter(double mzTolerance) {
+        this.mzTolerance = mzTolerance;
+    }
+
+    /**
+     * Returns the quality score of a spectrum.
+     *
+     * @param peaks the peaks of the spectrum sorted by m/z
+     * @param precursorMz the m/z of the precursor, zero if not known
+     * @param charge the charge of the precursor, zero if not known
+     *
+     * @return the quality score of the spectrum, between 0 and 1
+     */
+    public double getScore(List<Peak> peaks, double precursorMz, int charge) {
+
+        int nPeaks = peaks.size();
+        if (nPeaks == 0 || nPeaks < minPeaks) {
+            return 0;
+        }
+
+        double[] intensities = new double[nPeaks];
+        double tic = 0;
+        for (int i = 0; i < nPeaks; i++) {
+            intensities[i] = peaks.get(i).intensity;
+            tic += intensities[i];
+        }
+        if (tic <= 0 || tic < minTic) {
+            return 0;
+        }
+
+        double peakScore = Math.min(1.0, ((double) nPeaks) / MAX_SCORE_PEAKS);
+
+        Arrays.sort(intensities);
+        double median = intensities[nPeaks / 2];
+        double signal = 0;
+        int nSignal = Math.min(N_SIGNAL_PEAKS, nPeaks);
+        for (int i = nPeaks - nSignal; i < nPeaks; i++) {
+            signal += intensities[i];
+        }
+        signal /= nSignal;
+        double signalToNoiseScore = 0;
+        if (median > 0 && signal > median) {
+            signalToNoiseScore = Math.min(1.0, Math.log10(signal / median) / Math.log10(MAX_SCORE_SIGNAL_TO_NOISE));
+        }
+
+        double complementScore = 0;
+        if (precursorMz > 0) {
+            complementScore = Math.min(1.0, ((double) getNComplementaryPairs(peaks, precursorMz, Math.max(charge, 1))) / MAX_SCORE_PAIRS);
+        }
+
+        return (peakScore + signalToNoiseScore + complementScore) / 3;
+    }
+
+    /**
+     * Returns the number of pairs of singly charged peaks whose masses sum up
+     * to the mass of the precursor plus two protons.
+     *
+     * @param peaks the peaks of the spectrum sorted by m/z
+     * @param precursorMz the m/z of the precursor
+     * @param charge the charge of the precursor
+     *
+     * @return the number of complementary ion pairs
+     */
+    private int getNComplementaryPairs(List<Peak> peaks, double precursorMz, int charge) {
+        double pairMz = (precursorMz - SpectrumPreprocessor.PROTON_MASS) * charge + 2 * SpectrumPreprocessor.PROTON_MASS;
+        double tolerance = 2 * mzTolerance;
+        int nPairs = 0;
+        int low = 0;
+        int high = peaks.size() - 1;
+        while (low < high) {
+            double sum = peaks.get(low).mz + peaks.get(high).mz;
+            if (sum < pairMz - tolerance) {
+                low++;
+            } else if (sum > pairMz + tolerance) {
+                high--;
+            } else {
+                nPairs++;
+                low++;
+                high--;
+            }
+        }
+        return nPairs;
+    }
+
+    /**
+     * Indicates whether a spectrum of the given quality score should be
+     * sequenced.
+     *
+     * @param score the quality score of the spectrum
+     *
+     * @return true if the spectrum should be sequenced
+     */
+    public boolean accept(double score) {
+        return score >= cutoff;
+    }
+
+    /**
+     * Returns the minimal quality score of the spectra kept.
+     *
+     * @return the minimal quality score of the spectra kept
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Sets the minimal quality score of the spectra kept.
+     *
+     * @param cutoff the minimal quality score of the spectra kept
+     */
+    public void setCutoff(double cutoff) {
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * Returns the minimal number of peaks.
+     *
+     * @return the minimal number of peaks
+     */
+    public int getMinPeaks() {
+        return minPeaks;
+    }
+
+    /**
+     * Sets the minimal number of peaks.
+     *
+     * @param minPeaks the minimal number of peaks
+     */
+    public void setMinPeaks(int minPeaks) {
+        this.minPeaks = minPeaks;
+    }
+
+    /**
+     * Returns the minimal total ion current.
+     *
+     * @return the minimal total ion current
+     */
+    public double getMinTic() {
+        return minTic;
+    }
+
+    /**
+     * Sets the minimal total ion current.
+     *
+     * @param minTic the minimal total ion current
+     */
+    public void setMinTic(double minTic) {
+        this.minTic = minTic;
+    }
+}
@@ -1,5 +1,6 @@
 package com.compomics.denovogui.io;
 
+import com.compomics.util.Util;
 import com.compomics.util.experiment.biology.Peptide;
 import com.compomics.util.experiment.identification.Advocate;
 import com.compomics.util.experiment.identification.Identification;
@@ -72,10 +73,8 @@ public class TextExporter {
         if (scoreThreshold != null) {
             threshold = scoreThreshold;
         }
-        int numberOfMatches = 10;
-        if (aNumberOfMatches != null) {
-            numberOfMatches = aNumberOfMatches;
-        }
+        AssumptionFilter assumptionFilter = new AssumptionFilter(aNumberOfMatches, threshold, greaterThan);
+        int numberOfMatches = assumptionFilter.getNumberOfMatches();
 
         try {
             BufferedWriter b = new BufferedWriter(f);
@@ -132,15 +131,7 @@ public class TextExporter {
 
                                 PeptideAssumption peptideAssumption = assumptions.get(i);
 
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = peptideAssumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = peptideAssumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
+                                if (assumptionFilter.passesThreshold(peptideAssumption.getScore())) {
 
                                     b.write(spectrumDetails.toString());
                                     b.write(peptideAssumption.getRank() + SEPARATOR);
@@ -253,6 +244,8 @@ public class TextExporter {
      * @param identification the identification object containing identification
      * details
      * @param searchParameters the search parameters used for the search
+     * @param consensusScorer the consensus of the advocates for every
+     * spectrum, can be null
      * @param waitingHandler waiting handler displaying progress to the user and
      * allowing to cancel the process
      * @param scoreThreshold de novo score threshold
@@ -267,7 +260,7 @@ public class TextExporter {
      * extracted from a spectrum
      * @throws InterruptedException thrown if the process is interrupted
      */
-    public static void exportTags(File destinationFile, Identification identification, SearchParameters searchParameters,
+    public static void exportTags(File destinationFile, Identification identification, SearchParameters searchParameters, ConsensusScorer consensusScorer,
             WaitingHandler waitingHandler, Double scoreThreshold, boolean greaterThan, Integer aNumberOfMatches)
             throws IOException, SQLException, ClassNotFoundException, MzMLUnmarshallerException, InterruptedException {
 
@@ -277,10 +270,8 @@ public class TextExporter {
         if (scoreThreshold != null) {
             threshold = scoreThreshold;
         }
-        int numberOfMatches = 10;
-        if (aNumberOfMatches != null) {
-            numberOfMatches = aNumberOfMatches;
-        }
+        AssumptionFilter assumptionFilter = new AssumptionFilter(aNumberOfMatches, threshold, greaterThan);
+        int numberOfMatches = assumptionFilter.getNumberOfMatches();
 
         try {
             BufferedWriter b = new BufferedWriter(f);
@@ -289,7 +280,8 @@ public class TextExporter {
                 b.write("File Name" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Retention Time (s)" + SEPARATOR + "Measured m/z" + SEPARATOR + "Measured Charge" + SEPARATOR
                         + "Rank" + SEPARATOR + "Tag" + SEPARATOR + "Longest AminoAcid sequence" + SEPARATOR + "Variable Modifications" + SEPARATOR + "Modified Sequence" + SEPARATOR
                         + "PepNovo RankScore" + SEPARATOR + "PepNovo Score" + SEPARATOR + "DirecTag E-value" + SEPARATOR + "pNovo+ Score" + SEPARATOR + "Novor Score" + SEPARATOR
-                        + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge");
+                        + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge" + SEPARATOR
+                        + "Consensus Sequence" + SEPARATOR + "Consensus Residue Confidence" + SEPARATOR + "Consensus Score" + SEPARATOR + "Consensus Advocates");
                 b.newLine();
 
                 if (waitingHandler != null) {
@@ -327,6 +319,14 @@ public class TextExporter {
                                 }
                             }
 
+                            String consensusDetails = "";
+                            if (consensusScorer != null) {
+                                ConsensusScorer.Consensus consensus = consensusScorer.getConsensus(spectrumKey);
+                                if (consensus != null) {
+                                    consensusDetails = getConsensusAsString(consensus);
+                                }
+                            }
+
                             int rank = 0;
 
                             // export all matches above the score threshold up to the given user selected amount
@@ -334,18 +334,11 @@ public class TextExporter {
 
                                 SpectrumIdentificationAssumption assumption = allAssumptions.get(i);
 
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
+                                if (assumptionFilter.passesThreshold(assumption.getScore())) {
                                     b.write(spectrumDetails.toString());
                                     b.write(++rank + SEPARATOR);
                                     writeTagExportLine(b, assumption, searchParameters);
+                                    b.write(consensusDetails);
                                     b.newLine();
                                 }
                             }
@@ -371,6 +364,27 @@ public class TextExporter {
         }
     }
 
+    /**
+     * Returns the consensus columns of the tag export.
+     *
+     * @param consensus the consensus of a spectrum
+     *
+     * @return the consensus columns
+     */
+    private static String getConsensusAsString(ConsensusScorer.Consensus consensus) {
+        StringBuilder result = new StringBuilder();
+        result.append(consensus.getSequence()).append(SEPARATOR);
+        double[] residueConfidence = consensus.getResidueConfidence();
+        for (int i = 0; i < residueConfidence.length; i++) {
+            if (i > 0) {
+                result.append(SEPARATOR_2);
+            }
+            result.append(Util.roundDouble(residueConfidence[i], 1));
+        }
+        result.append(SEPARATOR).append(Util.roundDouble(consensus.getScore(), 2)).append(SEPARATOR).append(consensus.getNAdvocates());
+        return result.toString();
+    }
+
     /**
      * Writes the details on the given assumption to the given writer in the
      * form of a tag export.
@@ -495,10 +509,8 @@ public class TextExporter {
         if (scoreThreshold != null) {
             threshold = scoreThreshold;
         }
-        int numberOfMatches = 10;
-        if (aNumberOfMatches != null) {
-            numberOfMatches = aNumberOfMatches;
-        }
+        AssumptionFilter assumptionFilter = new AssumptionFilter(aNumberOfMatches, threshold, greaterThan);
+        int numberOfMatches = assumptionFilter.getNumberOfMatches();
 
         try {
             BufferedWriter b = new BufferedWriter(f);
@@ -541,15 +553,7 @@ public class TextExporter {
 
                                 SpectrumIdentificationAssumption assumption = assumptions.get(i);
 
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
+                                if (assumptionFilter.passesThreshold(assumption.getScore())) {
                                     b.write(spectrumDetails);
                                     if (assumption.getAdvocate() == Advocate.pepnovo.getIndex()) {
                                         PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
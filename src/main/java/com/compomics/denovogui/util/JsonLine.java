@@ -0,0 +1,131 @@
+package com.compomics.denovogui.util;
+
+/**
+ * Builds a JSON object written on a single line, as used for the JSON lines
+ * records of the metrics and progress feeds. Only flat objects of strings,
+ * numbers and booleans are supported, nested values can be added as raw JSON.
+ *
+ * @author Marc Vaudel
+ */
+public class JsonLine {
+
+    /**
+     * The content of the object.
+     */
+    private final StringBuilder content = new StringBuilder("{");
+
+    /**
+     * Constructor.
+     */
+    public JsonLine() {
+    }
+
+    /**
+     * Adds a string value, null values are written as null.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return this object
+     */
+    public JsonLine add(String key, String value) {
+        return addRaw(key, value == null ? "null" : quote(value));
+    }
+
+    /**
+     * Adds a long value.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return this object
+     */
+    public JsonLine add(String key, long value) {
+        return addRaw(key, Long.toString(value));
+    }
+
+    /**
+     * Adds a double value, NaN and infinite values are written as null.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return this object
+     */
+    public JsonLine add(String key, double value) {
+        return addRaw(key, Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+    }
+
+    /**
+     * Adds a boolean value.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return this object
+     */
+    public JsonLine add(String key, boolean value) {
+        return addRaw(key, Boolean.toString(value));
+    }
+
+    /**
+     * Adds a value already formatted in JSON, e.g. another object.
+     *
+     * @param key the key
+     * @param json the value in JSON
+     *
+     * @return this object
+     */
+    public JsonLine addRaw(String key, String json) {
+        if (content.length() > 1) {
+            content.append(',');
+        }
+        content.append(quote(key)).append(':').append(json);
+        return this;
+    }
+
+    /**
+     * Returns the given string as a JSON string.
+     *
+     * @param value the string
+     *
+     * @return the string quoted and escaped
+     */
+    public static String quote(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        result.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        result.append(character);
+                    }
+            }
+        }
+        result.append('"');
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return content.toString() + "}";
+    }
+}
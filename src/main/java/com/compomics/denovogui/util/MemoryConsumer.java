@@ -0,0 +1,29 @@
+package com.compomics.denovogui.util;
+
+/**
+ * Interface for objects holding memory which can be released on demand, like
+ * caches or buffers. Memory consumers register to the MemoryGovernor and are
+ * asked to shrink when the heap runs low.
+ *
+ * @author Marc Vaudel
+ */
+public interface MemoryConsumer {
+
+    /**
+     * Returns true if the consumer currently holds no memory which can be
+     * released.
+     *
+     * @return true if the consumer currently holds no releasable memory
+     */
+    public boolean isEmpty();
+
+    /**
+     * Releases the given share of the memory held by this consumer.
+     *
+     * @param share the share of memory to release, between 0 and 1
+     *
+     * @throws Exception exception thrown whenever an error occurred while
+     * releasing the memory
+     */
+    public void reduceMemoryConsumption(double share) throws Exception;
+}
@@ -0,0 +1,251 @@
+package com.compomics.denovogui.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import org.apache.log4j.Logger;
+
+/**
+ * The memory governor monitors the heap and asks the registered memory
+ * consumers to shrink when it runs low.
+ *
+ * The monitoring relies on the usage and collection usage thresholds of the
+ * heap memory pools. The JVM notifies the governor when a threshold is
+ * crossed, the collection usage threshold being evaluated after every garbage
+ * collection. The notification only raises a flag: the memory is released by
+ * the worker threads calling relievePressure() in their loops, so that the
+ * consumers are never accessed from the notification thread.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class MemoryGovernor implements NotificationListener {
+
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(MemoryGovernor.class);
+    /**
+     * The default share of the heap above which memory is released.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.8;
+    /**
+     * The default share of memory released by the consumers on pressure.
+     */
+    public static final double DEFAULT_REDUCTION_SHARE = 0.5;
+    /**
+     * The instance of the governor.
+     */
+    private static MemoryGovernor instance = null;
+    /**
+     * The share of the heap above which memory is released.
+     */
+    private double threshold = DEFAULT_THRESHOLD;
+    /**
+     * The share of memory released by the consumers on pressure.
+     */
+    private double reductionShare = DEFAULT_REDUCTION_SHARE;
+    /**
+     * The registered memory consumers.
+     */
+    private final CopyOnWriteArrayList<MemoryConsumer> consumers = new CopyOnWriteArrayList<MemoryConsumer>();
+    /**
+     * The heap memory pools supporting thresholds.
+     */
+    private final ArrayList<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+    /**
+     * Flag raised by the JVM notifications when a threshold was crossed.
+     */
+    private volatile boolean pressure = false;
+    /**
+     * Lock preventing several threads from releasing memory at the same time.
+     */
+    private final Object reductionLock = new Object();
+
+    /**
+     * Constructor.
+     */
+    private MemoryGovernor() {
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.isValid()) {
+                heapPools.add(memoryPool);
+            }
+        }
+        setThresholds();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        if (memoryBean instanceof NotificationEmitter) {
+            ((NotificationEmitter) memoryBean).addNotificationListener(this, null, null);
+        }
+    }
+
+    /**
+     * Returns the instance of the governor.
+     *
+     * @return the instance of the governor
+     */
+    public static synchronized MemoryGovernor getInstance() {
+        if (instance == null) {
+            instance = new MemoryGovernor();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the usage thresholds of the heap memory pools according to the
+     * current threshold.
+     */
+    private void setThresholds() {
+        for (MemoryPoolMXBean memoryPool : heapPools) {
+            long max = memoryPool.getUsage().getMax();
+            if (max <= 0) {
+                continue; // undefined maximum, no threshold can be set
+            }
+            long poolThreshold = (long) (threshold * max);
+            try {
+                if (memoryPool.isUsageThresholdSupported()) {
+                    memoryPool.setUsageThreshold(poolThreshold);
+                }
+                if (memoryPool.isCollectionUsageThresholdSupported()) {
+                    memoryPool.setCollectionUsageThreshold(poolThreshold);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to set the memory threshold of the " + memoryPool.getName() + " pool.", e);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            pressure = true;
+        }
+    }
+
+    /**
+     * Returns the share of the maximal heap currently in use.
+     *
+     * @return the share of the maximal heap currently in use
+     */
+    public double getMemoryUsedShare() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        long givenMemory = runtime.maxMemory();
+        return ((double) usedMemory) / givenMemory;
+    }
+
+    /**
+     * Indicates whether memory should be released, i.e. if a threshold was
+     * crossed or if the heap usage is above the threshold.
+     *
+     * @return true if memory should be released
+     */
+    public boolean isUnderPressure() {
+        return pressure || getMemoryUsedShare() > threshold;
+    }
+
+    /**
+     * Registers a memory consumer. A consumer registered twice is only
+     * registered once.
+     *
+     * @param memoryConsumer the memory consumer
+     */
+    public void register(MemoryConsumer memoryConsumer) {
+        consumers.addIfAbsent(memoryConsumer);
+    }
+
+    /**
+     * Unregisters a memory consumer.
+     *
+     * @param memoryConsumer the memory consumer
+     */
+    public void unregister(MemoryConsumer memoryConsumer) {
+        consumers.remove(memoryConsumer);
+    }
+
+    /**
+     * Asks the registered consumers to release memory if the heap is under
+     * pressure. The consumers are called in the order of registration on the
+     * calling thread until the pressure is relieved. This method is cheap when
+     * there is no pressure and is meant to be called regularly from the
+     * processing loops.
+     *
+     * @return true if memory was released
+     */
+    public boolean relievePressure() {
+        if (!isUnderPressure()) {
+            return false;
+        }
+        synchronized (reductionLock) {
+            boolean released = false;
+            for (MemoryConsumer memoryConsumer : consumers) {
+                if (getMemoryUsedShare() <= threshold) {
+                    break;
+                }
+                if (!memoryConsumer.isEmpty()) {
+                    try {
+                        memoryConsumer.reduceMemoryConsumption(reductionShare);
+                        released = true;
+                    } catch (Exception e) {
+                        log.error("Failed to reduce the memory consumption of " + memoryConsumer + ".", e);
+                    }
+                }
+            }
+            pressure = false;
+            return released;
+        }
+    }
+
+    /**
+     * Returns the share of the heap above which memory is released.
+     *
+     * @return the share of the heap above which memory is released
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the share of the heap above which memory is released.
+     *
+     * @param threshold the share of the heap above which memory is released,
+     * between 0 and 1
+     */
+    public synchronized void setThreshold(double threshold) {
+        if (threshold <= 0 || threshold >= 1) {
+            throw new IllegalArgumentException("The memory threshold must be between 0 and 1.");
+        }
+        this.threshold = threshold;
+        setThresholds();
+    }
+
+    /**
+     * Returns the share of memory released by the consumers on pressure.
+     *
+     * @return the share of memory released by the consumers on pressure
+     */
+    public double getReductionShare() {
+        return reductionShare;
+    }
+
+    /**
+     * Sets the share of memory released by the consumers on pressure.
+     *
+     * @param reductionShare the share of memory released by the consumers on
+     * pressure, between 0 and 1
+     */
+    public void setReductionShare(double reductionShare) {
+        if (reductionShare <= 0 || reductionShare > 1) {
+            throw new IllegalArgumentException("The reduction share must be between 0 and 1.");
+        }
+        this.reductionShare = reductionShare;
+    }
+}
@@ -0,0 +1,479 @@
+package com.compomics.denovogui.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.apache.log4j.Logger;
+
+/**
+ * Plans the number of threads and the memory used for the sequencing
+ * according to the limits of the container the process runs in. The CPU
+ * quota and memory limit are read from the cgroup of the process, version 2
+ * (cpu.max and memory.max) or version 1 (cpu.cfs_quota_us and
+ * memory.limit_in_bytes). The lowest limit of the cgroup and its parents is
+ * used.
+ * <br><br>
+ * The memory limit is shared by the Java virtual machine, its heap and
+ * native memory, and the sequencing processes. The algorithms are run one
+ * after the other; PepNovo+ being the only algorithm started once per
+ * thread, its memory limits the number of threads. The Novor process is a
+ * Java virtual machine of its own and its heap is limited to the memory not
+ * used by DeNovoGUI. A share of the CPUs is left to DeNovoGUI for the
+ * chunking, merging and import of the files.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ResourcePlanner {
+
+    /**
+     * The logger.
+     */
+    private static Logger log = Logger.getLogger(ResourcePlanner.class);
+    /**
+     * The number of bytes in a megabyte.
+     */
+    public static final long MB = 1024 * 1024;
+    /**
+     * The memory used by the Java virtual machine in addition to the heap:
+     * classes, thread stacks, buffers and garbage collector.
+     */
+    public static final long JVM_NON_HEAP_MEMORY = 256 * MB;
+    /**
+     * The memory needed by a PepNovo+ process.
+     */
+    public static final long PEPNOVO_PROCESS_MEMORY = 400 * MB;
+    /**
+     * The memory needed by the DirecTag process.
+     */
+    public static final long DIRECTAG_PROCESS_MEMORY = 1024 * MB;
+    /**
+     * The memory needed by the pNovo+ process.
+     */
+    public static final long PNOVO_PROCESS_MEMORY = 2048 * MB;
+    /**
+     * The minimal heap given to the Novor process.
+     */
+    public static final long NOVOR_MIN_HEAP = 512 * MB;
+    /**
+     * The share of the CPUs left to DeNovoGUI, one CPU for every ten.
+     */
+    public static final double JVM_CPU_SHARE = 0.1;
+    /**
+     * A limit above this value is considered as no limit.
+     */
+    private static final long NO_LIMIT = Long.MAX_VALUE / 4;
+    /**
+     * The instance of the planner.
+     */
+    private static ResourcePlanner instance = null;
+    /**
+     * The number of CPUs allowed by the cgroup quota, -1 if not limited.
+     */
+    private double cpuLimit = -1;
+    /**
+     * The memory limit of the cgroup in bytes, -1 if not limited.
+     */
+    private long memoryLimit = -1;
+    /**
+     * The number of processors available to the virtual machine.
+     */
+    private final int availableProcessors;
+    /**
+     * The maximal heap of the virtual machine in bytes.
+     */
+    private final long maxHeap;
+
+    /**
+     * Returns the planner of this process. The limits are read once.
+     *
+     * @return the planner of this process
+     */
+    public static synchronized ResourcePlanner getInstance() {
+        if (instance == null) {
+            instance = new ResourcePlanner(new File("/sys/fs/cgroup"), new File("/proc/self/cgroup"));
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor. The limits are not read if the files are not found, e.g.
+     * on other operating systems than Linux.
+     *
+     * @param cgroupFolder the folder where the cgroup file system is mounted
+     * @param processCgroupFile the file listing the cgroups of the process
+     */
+    public ResourcePlanner(File cgroupFolder, File processCgroupFile) {
+
+        availableProcessors = Runtime.getRuntime().availableProcessors();
+        maxHeap = Runtime.getRuntime().maxMemory();
+
+        try {
+            if (processCgroupFile.exists()) {
+                for (String line : readLines(processCgroupFile)) {
+                    String[] fields = line.split(":", 3);
+                    if (fields.length < 3) {
+                        continue;
+                    }
+                    if (fields[0].equals("0") && fields[1].length() == 0) {
+                        readCgroupV2(cgroupFolder, fields[2]);
+                    } else {
+                        readCgroupV1(cgroupFolder, fields[1], fields[2]);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read the cgroup limits: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the limits of a version 2 cgroup and its parents.
+     *
+     * @param cgroupFolder the folder where the cgroup file system is mounted
+     * @param path the path of the cgroup
+     *
+     * @throws IOException thrown if an error occurred while reading a file
+     */
+    private void readCgroupV2(File cgroupFolder, String path) throws IOException {
+        for (File folder : getHierarchy(cgroupFolder, path)) {
+            File cpuFile = new File(folder, "cpu.max");
+            if (cpuFile.exists()) {
+                String[] values = readFirstLine(cpuFile).split("\\s+");
+                if (values.length == 2 && !values[0].equals("max")) {
+                    setCpuLimit(Double.parseDouble(values[0]) / Double.parseDouble(values[1]));
+                }
+            }
+            File memoryFile = new File(folder, "memory.max");
+            if (memoryFile.exists()) {
+                String value = readFirstLine(memoryFile);
+                if (!value.equals("max")) {
+                    setMemoryLimit(Long.parseLong(value));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the limits of a version 1 cgroup and its parents.
+     *
+     * @param cgroupFolder the folder where the cgroup file system is mounted
+     * @param controllers the controllers of the cgroup separated by commas
+     * @param path the path of the cgroup
+     *
+     * @throws IOException thrown if an error occurred while reading a file
+     */
+    private void readCgroupV1(File cgroupFolder, String controllers, String path) throws IOException {
+        for (String controller : controllers.split(",")) {
+            if (controller.equals("cpu")) {
+                for (File folder : getHierarchy(getControllerFolder(cgroupFolder, controllers, controller), path)) {
+                    File quotaFile = new File(folder, "cpu.cfs_quota_us");
+                    File periodFile = new File(folder, "cpu.cfs_period_us");
+                    if (quotaFile.exists() && periodFile.exists()) {
+                        long quota = Long.parseLong(readFirstLine(quotaFile));
+                        if (quota > 0) {
+                            setCpuLimit(((double) quota) / Long.parseLong(readFirstLine(periodFile)));
+                        }
+                    }
+                }
+            } else if (controller.equals("memory")) {
+                for (File folder : getHierarchy(getControllerFolder(cgroupFolder, controllers, controller), path)) {
+                    File memoryFile = new File(folder, "memory.limit_in_bytes");
+                    if (memoryFile.exists()) {
+                        setMemoryLimit(Long.parseLong(readFirstLine(memoryFile)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the folder where a version 1 controller is mounted.
+     *
+     * @param cgroupFolder the folder where the cgroup file system is mounted
+     * @param controllers the controllers mounted together
+     * @param controller the controller
+     *
+     * @return the folder where the controller is mounted
+     */
+    private static File getControllerFolder(File cgroupFolder, String controllers, String controller) {
+        File folder = new File(cgroupFolder, controllers);
+        if (folder.isDirectory()) {
+            return folder;
+        }
+        return new File(cgroupFolder, controller);
+    }
+
+    /**
+     * Returns the folders of a cgroup and of its parents up to the mount
+     * folder. Within a container the path of the cgroup is usually not
+     * visible and only the mount folder is returned.
+     *
+     * @param mountFolder the folder where the hierarchy is mounted
+     * @param path the path of the cgroup
+     *
+     * @return the folders of the cgroup and of its parents
+     */
+    private static ArrayList<File> getHierarchy(File mountFolder, String path) {
+        ArrayList<File> result = new ArrayList<File>();
+        File folder = new File(mountFolder, path);
+        while (folder != null && !folder.equals(mountFolder)) {
+            if (folder.isDirectory()) {
+                result.add(folder);
+            }
+            folder = folder.getParentFile();
+        }
+        result.add(mountFolder);
+        return result;
+    }
+
+    /**
+     * Lowers the CPU limit.
+     *
+     * @param limit the number of CPUs allowed by a quota
+     */
+    private void setCpuLimit(double limit) {
+        if (limit > 0 && (cpuLimit == -1 || limit < cpuLimit)) {
+            cpuLimit = limit;
+        }
+    }
+
+    /**
+     * Lowers the memory limit.
+     *
+     * @param limit a memory limit in bytes
+     */
+    private void setMemoryLimit(long limit) {
+        if (limit > 0 && limit < NO_LIMIT && (memoryLimit == -1 || limit < memoryLimit)) {
+            memoryLimit = limit;
+        }
+    }
+
+    /**
+     * Returns the number of CPUs allowed by the cgroup quota, -1 if not
+     * limited.
+     *
+     * @return the number of CPUs allowed by the cgroup quota
+     */
+    public double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    /**
+     * Returns the memory limit of the cgroup in bytes, -1 if not limited.
+     *
+     * @return the memory limit of the cgroup in bytes
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Indicates whether the process runs with a CPU quota or a memory limit.
+     *
+     * @return true if the process runs with a CPU quota or a memory limit
+     */
+    public boolean isLimited() {
+        return cpuLimit != -1 || memoryLimit != -1;
+    }
+
+    /**
+     * Returns the number of CPUs which can be used, i.e. the available
+     * processors limited by the CPU quota. A fractional quota is rounded down
+     * so that the threads are not throttled, at least one CPU is returned.
+     *
+     * @return the number of CPUs which can be used
+     */
+    public int getNCpus() {
+        int nCpus = availableProcessors;
+        if (cpuLimit != -1) {
+            nCpus = Math.min(nCpus, (int) Math.floor(cpuLimit));
+        }
+        return Math.max(1, nCpus);
+    }
+
+    /**
+     * Returns the memory of the Java virtual machine, i.e. its maximal heap
+     * and its non-heap memory.
+     *
+     * @return the memory of the Java virtual machine in bytes
+     */
+    public long getJvmMemory() {
+        return maxHeap + JVM_NON_HEAP_MEMORY;
+    }
+
+    /**
+     * Returns the memory left to the sequencing processes, -1 if not limited.
+     *
+     * @return the memory left to the sequencing processes in bytes
+     */
+    public long getEngineMemory() {
+        if (memoryLimit == -1) {
+            return -1;
+        }
+        return Math.max(0, memoryLimit - getJvmMemory());
+    }
+
+    /**
+     * Returns the number of threads to use for the sequencing: the CPUs not
+     * left to DeNovoGUI, and, when PepNovo+ is run, not more PepNovo+
+     * processes than the memory left allows.
+     *
+     * @param runPepNovo indicates whether PepNovo+ is run
+     *
+     * @return the number of threads to use for the sequencing
+     */
+    public int getNThreads(boolean runPepNovo) {
+        int nCpus = getNCpus();
+        int nThreads = nCpus - (int) (nCpus * JVM_CPU_SHARE);
+        long engineMemory = getEngineMemory();
+        if (runPepNovo && engineMemory != -1) {
+            nThreads = (int) Math.min(nThreads, engineMemory / PEPNOVO_PROCESS_MEMORY);
+        }
+        return Math.max(1, nThreads);
+    }
+
+    /**
+     * Returns the maximal heap to give to a Java process started for the
+     * sequencing, i.e. Novor, -1 if not limited.
+     *
+     * @return the maximal heap to give to a Java process in bytes
+     */
+    public long getChildHeap() {
+        long engineMemory = getEngineMemory();
+        if (engineMemory == -1) {
+            return -1;
+        }
+        return Math.max(NOVOR_MIN_HEAP, Math.min(maxHeap, engineMemory - JVM_NON_HEAP_MEMORY));
+    }
+
+    /**
+     * Returns the maximal number of Novor processes that can run at the same
+     * time in the memory left to the sequencing processes.
+     *
+     * @return the maximal number of Novor processes that can run at the same
+     * time, Integer.MAX_VALUE if the memory is not limited
+     */
+    public int getMaxNovorProcesses() {
+        long engineMemory = getEngineMemory();
+        if (engineMemory == -1) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(1, engineMemory / (getChildHeap() + JVM_NON_HEAP_MEMORY));
+    }
+
+    /**
+     * Returns the memory needed by the sequencing processes running at the
+     * same time.
+     *
+     * @param runPepNovo indicates whether PepNovo+ is run
+     * @param runDirecTag indicates whether DirecTag is run
+     * @param runPNovo indicates whether pNovo+ is run
+     * @param runNovor indicates whether Novor is run
+     * @param nThreads the number of threads used for the sequencing
+     *
+     * @return the memory needed by the sequencing processes in bytes
+     */
+    public long getEngineMemoryNeeded(boolean runPepNovo, boolean runDirecTag, boolean runPNovo, boolean runNovor, int nThreads) {
+        long needed = 0;
+        if (runPepNovo) {
+            needed = Math.max(needed, nThreads * PEPNOVO_PROCESS_MEMORY);
+        }
+        if (runDirecTag) {
+            needed = Math.max(needed, DIRECTAG_PROCESS_MEMORY);
+        }
+        if (runPNovo) {
+            needed = Math.max(needed, PNOVO_PROCESS_MEMORY);
+        }
+        if (runNovor) {
+            long novorHeap = getChildHeap();
+            needed = Math.max(needed, (novorHeap == -1 ? maxHeap : novorHeap) + JVM_NON_HEAP_MEMORY);
+        }
+        return needed;
+    }
+
+    /**
+     * Returns a warning if the memory needed by DeNovoGUI and the sequencing
+     * processes exceeds the memory limit, null otherwise.
+     *
+     * @param runPepNovo indicates whether PepNovo+ is run
+     * @param runDirecTag indicates whether DirecTag is run
+     * @param runPNovo indicates whether pNovo+ is run
+     * @param runNovor indicates whether Novor is run
+     * @param nThreads the number of threads used for the sequencing
+     *
+     * @return a warning, null if the memory limit is not exceeded
+     */
+    public String getMemoryWarning(boolean runPepNovo, boolean runDirecTag, boolean runPNovo, boolean runNovor, int nThreads) {
+
+        if (memoryLimit == -1) {
+            return null;
+        }
+
+        long engineMemoryNeeded = getEngineMemoryNeeded(runPepNovo, runDirecTag, runPNovo, runNovor, nThreads);
+        long needed = getJvmMemory() + engineMemoryNeeded;
+        if (needed <= memoryLimit) {
+            return null;
+        }
+
+        long recommendedHeap = memoryLimit - JVM_NON_HEAP_MEMORY - engineMemoryNeeded;
+        String warning = "The memory needed by DeNovoGUI and the sequencing (" + needed / MB + " MB) exceeds the memory limit of the container (" + memoryLimit / MB + " MB).";
+        if (recommendedHeap > 0) {
+            warning += " Please reduce the memory given to Java (-Xmx in JavaOptions.txt) to at most " + recommendedHeap / MB + " MB or the number of threads.";
+        } else {
+            warning += " Please increase the memory limit or reduce the number of threads.";
+        }
+        return warning;
+    }
+
+    @Override
+    public String toString() {
+        String cpus = cpuLimit == -1 ? "no CPU limit" : "CPU limit " + cpuLimit;
+        String memory = memoryLimit == -1 ? "no memory limit" : "memory limit " + memoryLimit / MB + " MB";
+        return availableProcessors + " processor(s), " + cpus + ", " + memory + ", Java heap " + maxHeap / MB + " MB";
+    }
+
+    /**
+     * Returns the first line of a file, trimmed.
+     *
+     * @param file the file
+     *
+     * @return the first line of the file
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static String readFirstLine(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine();
+            return line == null ? "" : line.trim();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the lines of a file.
+     *
+     * @param file the file
+     *
+     * @return the lines of the file
+     *
+     * @throws IOException thrown if an error occurred while reading the file
+     */
+    private static ArrayList<String> readLines(File file) throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
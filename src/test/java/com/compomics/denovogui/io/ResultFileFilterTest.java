@@ -0,0 +1,185 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the removal of the results not passing the import filter from the
+ * result files before they are parsed.
+ *
+ * @author Marc Vaudel
+ */
+public class ResultFileFilterTest extends TestCase {
+
+    /**
+     * The folder of the result files.
+     */
+    private File folder;
+    /**
+     * The folder of the filtered files.
+     */
+    private File filteredFolder;
+
+    @Override
+    protected void setUp() throws IOException {
+        folder = File.createTempFile("ResultFileFilterTest", "");
+        folder.delete();
+        folder.mkdirs();
+        filteredFolder = new File(folder, "filtered");
+        filteredFolder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : filteredFolder.listFiles()) {
+            file.delete();
+        }
+        filteredFolder.delete();
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    /**
+     * Tests that only the PepNovo+ solutions with the best scores passing the
+     * threshold are kept, in the order of the file, and that the other lines
+     * are kept.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testPepNovo() throws IOException {
+
+        File resultFile = write("file.mgf.out",
+                ">> 0 0 spectrum 1",
+                "#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence",
+                "0\t5.1\t40.2\t0\t0\t1000\t2\tPEPTIDE",
+                "1\t4.9\t52.0\t0\t0\t1000\t2\tPEPTLDE",
+                "2\t4.0\t12.5\t0\t0\t1000\t2\tPEPTKDE",
+                "3\t3.5\t40.2\t0\t0\t1000\t2\tPEPTIED",
+                "",
+                ">> 0 1 spectrum 2",
+                "# No solutions found.",
+                "",
+                ">> 0 2 spectrum 3",
+                "#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence",
+                "0\t2.0\t9.0\t0\t0\t800\t1\tSEQ");
+
+        ResultFileFilter resultFileFilter = new ResultFileFilter(new AssumptionFilter(2, 10.0, true));
+        File filteredFile = resultFileFilter.filter(resultFile, filteredFolder);
+
+        Assert.assertEquals(resultFile.getName(), filteredFile.getName());
+        assertLines(filteredFile,
+                ">> 0 0 spectrum 1",
+                "#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence",
+                "0\t5.1\t40.2\t0\t0\t1000\t2\tPEPTIDE",
+                "1\t4.9\t52.0\t0\t0\t1000\t2\tPEPTLDE",
+                "3\t3.5\t40.2\t0\t0\t1000\t2\tPEPTIED",
+                "",
+                ">> 0 1 spectrum 2",
+                "# No solutions found.",
+                "",
+                ">> 0 2 spectrum 3",
+                "#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence");
+        Assert.assertEquals(2, resultFileFilter.getNRemoved());
+    }
+
+    /**
+     * Tests that the DirecTag tags with the lowest scores are kept.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testDirecTag() throws IOException {
+
+        File resultFile = write("file.tags",
+                "H\tDirecTag",
+                "H(S)\tID\tChargeState",
+                "H(T)\tTag\tnTerminusFlankMass\tcTerminusFlankMass\tTotalScore",
+                "S\tindex=0\t2",
+                "T\tPEP\t100.0\t200.0\t0.5",
+                "T\tTID\t100.0\t200.0\t0.01",
+                "T\tSEQ\t100.0\t200.0\t0.2",
+                "S\tindex=1\t2",
+                "T\tABC\t100.0\t200.0\tunknown");
+
+        ResultFileFilter resultFileFilter = new ResultFileFilter(new AssumptionFilter(2));
+        File filteredFile = resultFileFilter.filter(resultFile, filteredFolder);
+
+        assertLines(filteredFile,
+                "H\tDirecTag",
+                "H(S)\tID\tChargeState",
+                "H(T)\tTag\tnTerminusFlankMass\tcTerminusFlankMass\tTotalScore",
+                "S\tindex=0\t2",
+                "T\tTID\t100.0\t200.0\t0.01",
+                "T\tSEQ\t100.0\t200.0\t0.2",
+                "S\tindex=1\t2",
+                "T\tABC\t100.0\t200.0\tunknown");
+        Assert.assertEquals(1, resultFileFilter.getNRemoved());
+    }
+
+    /**
+     * Tests the formats supported.
+     */
+    public void testIsSupported() {
+        Assert.assertTrue(ResultFileFilter.isSupported(new File("file.mgf.out")));
+        Assert.assertTrue(ResultFileFilter.isSupported(new File("file.tags")));
+        Assert.assertFalse(ResultFileFilter.isSupported(new File("file.novor.csv")));
+        Assert.assertFalse(ResultFileFilter.isSupported(new File("file.pnovo.txt")));
+    }
+
+    /**
+     * Writes the given lines in a file of the test folder.
+     *
+     * @param name the name of the file
+     * @param lines the lines to write
+     *
+     * @return the file
+     *
+     * @throws IOException if an exception occurs
+     */
+    private File write(String name, String... lines) throws IOException {
+        File file = new File(folder, name);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Asserts that a file contains the given lines.
+     *
+     * @param file the file
+     * @param lines the expected lines
+     *
+     * @throws IOException if an exception occurs
+     */
+    private static void assertLines(File file, String... lines) throws IOException {
+        ArrayList<String> fileLines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fileLines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        Assert.assertEquals(lines.length, fileLines.size());
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertEquals(lines[i], fileLines.get(i));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the merging of the results of the shards of a distributed sequencing
+ * and the reindexing of the results of files where spectra were skipped.
+ *
+ * @author Marc Vaudel
+ */
+public class ShardMergerTest extends TestCase {
+
+    /**
+     * The folder of the test files.
+     */
+    private File folder;
+
+    @Override
+    protected void setUp() throws IOException {
+        folder = File.createTempFile("ShardMergerTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    /**
+     * Tests the counting of the spectra of an mgf file.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testCountSpectra() throws IOException {
+        File mgfFile = write("shard.mgf", "BEGIN IONS", "TITLE=1", "END IONS", "", "  BEGIN IONS", "TITLE=2", "END IONS");
+        Assert.assertEquals(2, ShardMerger.countSpectra(mgfFile));
+    }
+
+    /**
+     * Tests that the DirecTag indexes are shifted by the spectra of the
+     * previous shards and that only the header of the first shard is kept.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testMergeDirecTag() throws IOException {
+
+        ArrayList<File> shardFiles = new ArrayList<File>();
+        shardFiles.add(write("shard_0.tags", "H\theader", "S\tindex=0\t2", "T\tPEP", "S\tindex=1\t3", "T\tTIDE"));
+        shardFiles.add(write("shard_1.tags", "H\theader", "S\tindex=0\t2", "T\tSEQ"));
+
+        File mergedFile = new File(folder, "merged.tags");
+        ShardMerger.mergeDirecTag(shardFiles, new int[]{0, 2}, mergedFile);
+
+        assertLines(mergedFile, "H\theader", "S\tindex=0\t2", "T\tPEP", "S\tindex=1\t3", "T\tTIDE", "S\tindex=2\t2", "T\tSEQ");
+    }
+
+    /**
+     * Tests that the Novor ids are shifted by the spectra of the previous
+     * shards and that only the comments of the first shard are kept.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testMergeNovor() throws IOException {
+
+        ArrayList<File> shardFiles = new ArrayList<File>();
+        shardFiles.add(write("shard_0.novor.csv", "# header", "1, 1, PEP", "2, 2, TIDE"));
+        shardFiles.add(write("shard_1.novor.csv", "# header", "1, 1, SEQ"));
+
+        File mergedFile = new File(folder, "merged.novor.csv");
+        ShardMerger.mergeNovor(shardFiles, new int[]{0, 2}, mergedFile);
+
+        assertLines(mergedFile, "# header", "1, 1, PEP", "2, 2, TIDE", "3, 1, SEQ");
+    }
+
+    /**
+     * Tests that the original indexes are restored in the results of a file
+     * where spectra were skipped.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testReindex() throws IOException {
+
+        int[] originalIndexes = new int[]{1, 4, 5};
+
+        File tagsFile = write("file.tags", "H\theader", "S\tindex=0\t2", "T\tPEP", "S\tindex=2\t3");
+        ShardMerger.reindexDirecTag(tagsFile, originalIndexes);
+        assertLines(tagsFile, "H\theader", "S\tindex=1\t2", "T\tPEP", "S\tindex=5\t3");
+
+        File novorFile = write("file.novor.csv", "# header", "0, 0, PEP", " 1, 1, TIDE");
+        ShardMerger.reindexNovor(novorFile, originalIndexes);
+        assertLines(novorFile, "# header", "1, 0, PEP", " 4, 1, TIDE");
+    }
+
+    /**
+     * Writes the given lines in a file of the test folder.
+     *
+     * @param name the name of the file
+     * @param lines the lines to write
+     *
+     * @return the file
+     *
+     * @throws IOException if an exception occurs
+     */
+    private File write(String name, String... lines) throws IOException {
+        File file = new File(folder, name);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Asserts that a file contains the given lines.
+     *
+     * @param file the file
+     * @param lines the expected lines
+     *
+     * @throws IOException if an exception occurs
+     */
+    private static void assertLines(File file, String... lines) throws IOException {
+        ArrayList<String> fileLines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fileLines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        Assert.assertEquals(lines.length, fileLines.size());
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertEquals(lines[i], fileLines.get(i));
+        }
+    }
+}
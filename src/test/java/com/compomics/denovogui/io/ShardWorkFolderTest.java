@@ -0,0 +1,80 @@
+package com.compomics.denovogui.io;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the claims of the shards of a distributed sequencing.
+ *
+ * @author Marc Vaudel
+ */
+public class ShardWorkFolderTest extends TestCase {
+
+    /**
+     * The work folder.
+     */
+    private ShardWorkFolder workFolder;
+
+    @Override
+    protected void setUp() throws IOException {
+        File folder = File.createTempFile("ShardWorkFolderTest", "");
+        folder.delete();
+        workFolder = new ShardWorkFolder(folder);
+        workFolder.createFolders();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File subFolder : workFolder.getFolder().listFiles()) {
+            for (File file : subFolder.listFiles()) {
+                file.delete();
+            }
+            subFolder.delete();
+        }
+        workFolder.getFolder().delete();
+    }
+
+    /**
+     * Tests that a claim is exclusive and only released by its owner.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testClaim() throws IOException {
+
+        Assert.assertTrue(workFolder.claim("shard_0.mgf", "worker_1", 60000));
+        Assert.assertTrue(workFolder.isClaimOwner("shard_0.mgf", "worker_1"));
+        Assert.assertFalse(workFolder.claim("shard_0.mgf", "worker_2", 60000));
+
+        Assert.assertFalse(workFolder.touchClaim("shard_0.mgf", "worker_2"));
+        workFolder.releaseClaim("shard_0.mgf", "worker_2");
+        Assert.assertTrue(workFolder.getClaimFile("shard_0.mgf").exists());
+
+        Assert.assertTrue(workFolder.touchClaim("shard_0.mgf", "worker_1"));
+        workFolder.releaseClaim("shard_0.mgf", "worker_1");
+        Assert.assertFalse(workFolder.getClaimFile("shard_0.mgf").exists());
+    }
+
+    /**
+     * Tests that a stale claim is taken over and that the previous owner can
+     * neither touch nor release it anymore.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testStaleClaim() throws IOException {
+
+        Assert.assertTrue(workFolder.claim("shard_0.mgf", "worker_1", 60000));
+        File claimFile = workFolder.getClaimFile("shard_0.mgf");
+        claimFile.setLastModified(System.currentTimeMillis() - 120000);
+
+        Assert.assertTrue(workFolder.claim("shard_0.mgf", "worker_2", 60000));
+        Assert.assertTrue(workFolder.isClaimOwner("shard_0.mgf", "worker_2"));
+
+        Assert.assertFalse(workFolder.touchClaim("shard_0.mgf", "worker_1"));
+        workFolder.releaseClaim("shard_0.mgf", "worker_1");
+        Assert.assertTrue(workFolder.isClaimOwner("shard_0.mgf", "worker_2"));
+
+        Assert.assertEquals(1, workFolder.getClaimsFolder().listFiles().length);
+    }
+}
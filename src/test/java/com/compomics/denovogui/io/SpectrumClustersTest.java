@@ -0,0 +1,76 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the mapping of the member spectra of the clusters to their
+ * representative spectrum.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumClustersTest extends TestCase {
+
+    /**
+     * Tests the mapping of the members, and that it is kept when the clusters
+     * are written and read back.
+     *
+     * @throws IOException if an exception occurs
+     */
+    public void testMembers() throws IOException {
+
+        SpectrumClusters spectrumClusters = new SpectrumClusters();
+        spectrumClusters.addMember("a.mgf", 3, "spectrum 3", "a.mgf", "spectrum 1");
+        spectrumClusters.addMember("b.mgf", 0, "spectrum 0", "a.mgf", "spectrum 1");
+        spectrumClusters.addMember("b.mgf", 7, "spectrum 7", "b.mgf", "spectrum 5");
+
+        Assert.assertEquals(3, spectrumClusters.getNMembers());
+        Assert.assertTrue(spectrumClusters.isMember("a.mgf", 3));
+        Assert.assertTrue(spectrumClusters.isMember("b.mgf", 0));
+        Assert.assertTrue(spectrumClusters.isMember("b.mgf", 7));
+        Assert.assertFalse(spectrumClusters.isMember("a.mgf", 1));
+        Assert.assertFalse(spectrumClusters.isMember("a.mgf", 0));
+        Assert.assertFalse(spectrumClusters.isMember("c.mgf", 3));
+
+        assertMembers(spectrumClusters);
+
+        File outputFolder = File.createTempFile("SpectrumClustersTest", "");
+        outputFolder.delete();
+        outputFolder.mkdirs();
+        File clustersFile = SpectrumClusters.getClustersFile(outputFolder);
+        try {
+            Assert.assertNull(SpectrumClusters.read(outputFolder));
+            spectrumClusters.write(clustersFile);
+            SpectrumClusters readClusters = SpectrumClusters.read(outputFolder);
+            Assert.assertEquals(3, readClusters.getNMembers());
+            assertMembers(readClusters);
+        } finally {
+            clustersFile.delete();
+            outputFolder.delete();
+        }
+    }
+
+    /**
+     * Asserts that the members of the test clusters are mapped to their
+     * representative spectrum.
+     *
+     * @param spectrumClusters the test clusters
+     */
+    private static void assertMembers(SpectrumClusters spectrumClusters) {
+
+        ArrayList<String> members = spectrumClusters.getMembers(Spectrum.getSpectrumKey("a.mgf", "spectrum 1"));
+        Assert.assertEquals(2, members.size());
+        Assert.assertEquals(Spectrum.getSpectrumKey("a.mgf", "spectrum 3"), members.get(0));
+        Assert.assertEquals(Spectrum.getSpectrumKey("b.mgf", "spectrum 0"), members.get(1));
+
+        members = spectrumClusters.getMembers(Spectrum.getSpectrumKey("b.mgf", "spectrum 5"));
+        Assert.assertEquals(1, members.size());
+        Assert.assertEquals(Spectrum.getSpectrumKey("b.mgf", "spectrum 7"), members.get(0));
+
+        Assert.assertNull(spectrumClusters.getMembers(Spectrum.getSpectrumKey("a.mgf", "spectrum 3")));
+    }
+}
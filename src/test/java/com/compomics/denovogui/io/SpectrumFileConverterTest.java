@@ -0,0 +1,71 @@
+package com.compomics.denovogui.io;
+
+import java.util.zip.DataFormatException;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the decoding of the binary data arrays of mzML files.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumFileConverterTest extends TestCase {
+
+    /**
+     * Tests the base64 decoding, with and without padding and white spaces.
+     *
+     * @throws DataFormatException if an exception occurs
+     */
+    public void testDecodeBase64() throws DataFormatException {
+
+        Assert.assertEquals("ab", new String(SpectrumFileConverter.decodeBase64("YWI=")));
+        Assert.assertEquals("a", new String(SpectrumFileConverter.decodeBase64("YQ==")));
+        Assert.assertEquals("ab", new String(SpectrumFileConverter.decodeBase64(" Y W\nI=\r\n")));
+        Assert.assertEquals(0, SpectrumFileConverter.decodeBase64("").length);
+
+        try {
+            SpectrumFileConverter.decodeBase64("YW*=");
+            Assert.fail("Invalid character not detected.");
+        } catch (DataFormatException e) {
+            // expected
+        }
+        try {
+            SpectrumFileConverter.decodeBase64("YQ==YQ==");
+            Assert.fail("Data after the padding not detected.");
+        } catch (DataFormatException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests the decoding of 64-bit and 32-bit arrays, compressed or not.
+     *
+     * @throws DataFormatException if an exception occurs
+     */
+    public void testDecodeBinaryArray() throws DataFormatException {
+
+        double[] doubles = new double[]{100.5, 200.25, 1234.5678};
+        double[] floats = new double[]{1.5, 2.25};
+
+        assertArrayEquals(doubles, SpectrumFileConverter.decodeBinaryArray("AAAAAAAgWUAAAAAAAAhpQK36XG1FSpNA", false, true));
+        assertArrayEquals(floats, SpectrumFileConverter.decodeBinaryArray("AADAPwAAEEA=", false, false));
+        assertArrayEquals(doubles, SpectrumFileConverter.decodeBinaryArray("eJxjYAAChUgHEMXAkemw9ldMrqvXZAcAJ4sFPQ==", true, true));
+        assertArrayEquals(floats, SpectrumFileConverter.decodeBinaryArray("eJxjYDhgz8Ag4AAABiMBUA==", true, false));
+
+        Assert.assertEquals(0, SpectrumFileConverter.decodeBinaryArray("", true, true).length);
+        Assert.assertEquals(0, SpectrumFileConverter.decodeBinaryArray(null, false, true).length);
+    }
+
+    /**
+     * Asserts that two arrays of doubles are equal.
+     *
+     * @param expected the expected values
+     * @param actual the actual values
+     */
+    private static void assertArrayEquals(double[] expected, double[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], actual[i], 0);
+        }
+    }
+}